@@ -0,0 +1,402 @@
+package com.cafe24.crm.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AI Endpoint Load Test
+ *
+ * Open-loop load driver for the AI and OAuth endpoints: requests are started on a fixed
+ * schedule at the target rate whether or not earlier ones have finished, and
+ * latency is measured from the scheduled start, so a backed-up server shows up
+ * as latency instead of a silently lower rate.
+ *
+ * Scenarios are spread round-robin over the schedule:
+ * <ul>
+ *   <li>{@code chat}: POST /ai/chat</li>
+ *   <li>{@code insight}: POST /ai/insight (semantic cache, grounding, gateway)</li>
+ *   <li>{@code stub}: POST /v1/chat/completions straight at the LLM, to calibrate the stub</li>
+ *   <li>{@code install}: GET /auth/cafe24/callback as a merchant finishing an app install,
+ *       against {@link StubCafe24Server}; succeeds on the redirect to the frontend's success page</li>
+ *   <li>{@code health}: GET /actuator/health, showing whether cheap requests still get a servlet thread</li>
+ * </ul>
+ * While it runs, the backend's Prometheus endpoint is sampled every second for
+ * the LiteLLM connection pool ({@code reactor_netty_connection_provider_*},
+ * pool "litellm"), the LLM gateway gauges and the Tomcat thread pool.
+ *
+ * Settings are system properties prefixed with {@code loadtest.}, e.g.
+ * <pre>
+ * ./gradlew loadTest -Ploadtest.rps=20 -Ploadtest.duration-seconds=60 -Ploadtest.scenarios=chat,insight
+ * ./gradlew loadTest -Ploadtest.rps=300 -Ploadtest.scenarios=install,health
+ * </pre>
+ * A JSON report is written to {@code loadtest.report} for comparison between runs.
+ */
+public final class AiLoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private static final List<String> QUESTIONS = List.of(
+            "Which customer segment should we target for a re-engagement campaign?",
+            "How can we raise the repeat purchase rate this quarter?",
+            "What is driving the change in average order value?",
+            "Which products should we bundle for VIP customers?",
+            "How should we win back customers at risk of churning?");
+
+    private static final List<String> SAMPLED_METRICS = List.of(
+            "reactor_netty_connection_provider_active_connections",
+            "reactor_netty_connection_provider_idle_connections",
+            "reactor_netty_connection_provider_pending_connections",
+            "reactor_netty_connection_provider_max_connections",
+            "reactor_netty_connection_provider_active_streams",
+            "reactor_netty_connection_provider_pending_streams",
+            "crm_ai_gateway_in_flight",
+            "crm_ai_gateway_queued",
+            "crm_ai_gateway_limit",
+            "tomcat_threads_busy_threads",
+            "tomcat_threads_current_threads",
+            "tomcat_threads_config_max_threads");
+
+    /**
+     * Load test settings
+     *
+     * @param uniqueQueries append the request number to every question, defeating
+     *                      request coalescing and the semantic cache
+     */
+    public record Settings(String baseUrl, String stubUrl, List<String> scenarios, double rps,
+                           int durationSeconds, int warmupSeconds, int maxInFlight, long timeoutMs,
+                           boolean uniqueQueries, String mallId, String prometheusUrl, String report) {
+
+        public static Settings fromSystemProperties() {
+            String baseUrl = System.getProperty("loadtest.base-url", "http://localhost:8089/api");
+            return new Settings(
+                    baseUrl,
+                    System.getProperty("loadtest.stub-url", "http://localhost:18089"),
+                    Arrays.stream(System.getProperty("loadtest.scenarios", "chat,insight").split(","))
+                            .map(String::trim)
+                            .filter(name -> !name.isEmpty())
+                            .toList(),
+                    Double.parseDouble(System.getProperty("loadtest.rps", "10")),
+                    Integer.getInteger("loadtest.duration-seconds", 60),
+                    Integer.getInteger("loadtest.warmup-seconds", 10),
+                    Integer.getInteger("loadtest.max-in-flight", 5000),
+                    Long.getLong("loadtest.timeout-ms", 130_000),
+                    Boolean.parseBoolean(System.getProperty("loadtest.unique-queries", "true")),
+                    System.getProperty("loadtest.mall-id", "loadtest"),
+                    System.getProperty("loadtest.prometheus-url", baseUrl + "/actuator/prometheus"),
+                    System.getProperty("loadtest.report", "build/loadtest/report.json"));
+        }
+    }
+
+    /**
+     * Latencies and outcomes of one scenario, excluding warmup
+     */
+    private static final class ScenarioStats {
+
+        private final AtomicLong sent = new AtomicLong();
+        private final Map<String, AtomicLong> outcomes = new ConcurrentHashMap<>();
+        private long[] latenciesMicros = new long[1024];
+        private int count;
+
+        /**
+         * @param success counts toward throughput and latency; everything else is an error
+         */
+        void record(String outcome, long latencyMicros, boolean success) {
+            outcomes.computeIfAbsent(outcome, key -> new AtomicLong()).incrementAndGet();
+            if (success) {
+                synchronized (this) {
+                    if (count == latenciesMicros.length) {
+                        latenciesMicros = Arrays.copyOf(latenciesMicros, count * 2);
+                    }
+                    latenciesMicros[count++] = latencyMicros;
+                }
+            }
+        }
+
+        synchronized Map<String, Object> summary(double measuredSeconds) {
+            long[] sorted = Arrays.copyOf(latenciesMicros, count);
+            Arrays.sort(sorted);
+            long total = outcomes.values().stream().mapToLong(AtomicLong::get).sum();
+            long errors = total - count;
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("sent", sent.get());
+            summary.put("completed", total);
+            summary.put("errors", errors);
+            summary.put("errorRate", total > 0 ? round((double) errors / total) : 0.0);
+            summary.put("throughputPerSecond", round(count / measuredSeconds));
+            summary.put("outcomes", new LinkedHashMap<>(outcomes));
+            Map<String, Object> latency = new LinkedHashMap<>();
+            for (double percentile : new double[]{50, 90, 95, 99, 99.9}) {
+                latency.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile)
+                        : String.valueOf(percentile)), millis(percentile(sorted, percentile)));
+            }
+            latency.put("max", millis(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+            summary.put("latencyMillis", latency);
+            return summary;
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.min(Math.max(index, 0), sorted.length - 1)];
+        }
+    }
+
+    private final Settings settings;
+    private final HttpClient client;
+    private final Map<String, ScenarioStats> stats = new LinkedHashMap<>();
+    private final Map<String, Double> peakMetrics = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean measuring;
+
+    public AiLoadTest(Settings settings) {
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(8, runnable -> {
+                    Thread thread = new Thread(runnable, "loadtest-http");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+        settings.scenarios().forEach(scenario -> stats.put(scenario, new ScenarioStats()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        System.out.printf("Load test: %s%n", settings);
+        Map<String, Object> report = new AiLoadTest(settings).run();
+
+        System.out.println(MAPPER.writeValueAsString(report));
+        Path path = Path.of(settings.report());
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        MAPPER.writeValue(path.toFile(), report);
+        System.out.printf("Report written to %s%n", path.toAbsolutePath());
+        System.exit(0);
+    }
+
+    public Map<String, Object> run() throws InterruptedException {
+        if (settings.scenarios().isEmpty() || settings.rps() <= 0) {
+            throw new IllegalArgumentException("At least one scenario and a positive rate are required");
+        }
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sampleMetrics, 0, 1, TimeUnit.SECONDS);
+
+        long intervalNanos = (long) (1_000_000_000L / settings.rps());
+        long start = System.nanoTime();
+        long warmupEnd = start + TimeUnit.SECONDS.toNanos(settings.warmupSeconds());
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+        Instant startedAt = Instant.now();
+
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * intervalNanos;
+            if (scheduled >= end) {
+                break;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (!measuring && scheduled >= warmupEnd) {
+                measuring = true;
+                peakMetrics.clear();
+            }
+            String scenario = settings.scenarios().get((int) (i % settings.scenarios().size()));
+            send(scenario, scheduled);
+        }
+
+        // Let in-flight requests finish, up to the request timeout
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.timeoutMs());
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        sampler.shutdownNow();
+
+        double measuredSeconds = Math.max(settings.durationSeconds(), 1);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("settings", settings);
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+        stats.forEach((scenario, scenarioStats) -> scenarios.put(scenario, scenarioStats.summary(measuredSeconds)));
+        report.put("scenarios", scenarios);
+        report.put("droppedAtDriver", dropped.get());
+        report.put("unfinished", inFlight.get());
+        report.put("peakBackendMetrics", new LinkedHashMap<>(peakMetrics));
+        return report;
+    }
+
+    private void send(String scenario, long scheduledNanos) {
+        ScenarioStats scenarioStats = stats.get(scenario);
+        boolean measured = measuring;
+        if (inFlight.get() >= settings.maxInFlight()) {
+            // The driver protects itself; the backend is far past saturation at this point
+            dropped.incrementAndGet();
+            if (measured) {
+                scenarioStats.sent.incrementAndGet();
+                scenarioStats.record("dropped", 0, false);
+            }
+            return;
+        }
+        if (measured) {
+            scenarioStats.sent.incrementAndGet();
+        }
+
+        inFlight.incrementAndGet();
+        client.sendAsync(request(scenario), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    inFlight.decrementAndGet();
+                    if (!measured) {
+                        return;
+                    }
+                    long latencyMicros = (System.nanoTime() - scheduledNanos) / 1000;
+                    if (error != null) {
+                        String outcome = error instanceof HttpTimeoutException
+                                || error.getCause() instanceof HttpTimeoutException
+                                ? "timeout" : "io_error";
+                        scenarioStats.record(outcome, latencyMicros, false);
+                    } else {
+                        String outcome = outcome(scenario, response);
+                        scenarioStats.record(outcome, latencyMicros, outcome.equals("200"));
+                    }
+                });
+    }
+
+    private HttpRequest request(String scenario) {
+        long n = sequence.incrementAndGet();
+        String question = QUESTIONS.get((int) (n % QUESTIONS.size()))
+                + (settings.uniqueQueries() ? " (request " + n + ")" : "");
+        String uri;
+        Map<String, Object> body;
+        switch (scenario) {
+            case "install" -> {
+                String mallId = settings.mallId() + "-" + n;
+                return HttpRequest.newBuilder(URI.create(settings.baseUrl()
+                                + "/auth/cafe24/callback?code=loadtest-" + n + "&state=" + mallId))
+                        .timeout(Duration.ofMillis(settings.timeoutMs()))
+                        .GET()
+                        .build();
+            }
+            case "health" -> {
+                return HttpRequest.newBuilder(URI.create(settings.baseUrl() + "/actuator/health"))
+                        .timeout(Duration.ofMillis(settings.timeoutMs()))
+                        .GET()
+                        .build();
+            }
+            case "chat" -> {
+                uri = settings.baseUrl() + "/ai/chat";
+                body = Map.of("query", question);
+            }
+            case "insight" -> {
+                uri = settings.baseUrl() + "/ai/insight";
+                body = Map.of("query", question);
+            }
+            case "stub" -> {
+                uri = settings.stubUrl() + "/v1/chat/completions";
+                body = Map.of("model", "stub", "stream", false,
+                        "messages", List.of(Map.of("role", "user", "content", question)));
+            }
+            default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        }
+        try {
+            return HttpRequest.newBuilder(URI.create(uri))
+                    .timeout(Duration.ofMillis(settings.timeoutMs()))
+                    .header("Content-Type", "application/json")
+                    .header("X-Mall-Id", settings.mallId())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * "200" on success. The install callback redirects either way, so a redirect
+     * to the success page counts as "200" and one to the error page as "302_error".
+     */
+    private static String outcome(String scenario, HttpResponse<Void> response) {
+        int status = response.statusCode();
+        if (scenario.equals("install") && status == 302) {
+            String location = response.headers().firstValue("Location").orElse("");
+            return location.contains("/auth/success") ? "200" : "302_error";
+        }
+        return String.valueOf(status);
+    }
+
+    /**
+     * Record the peak of each pool, gateway and Tomcat gauge, summed over its series
+     */
+    private void sampleMetrics() {
+        if (settings.prometheusUrl().isBlank()) {
+            return;
+        }
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(settings.prometheusUrl()))
+                    .timeout(Duration.ofSeconds(2))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return;
+            }
+            Map<String, Double> sample = new LinkedHashMap<>();
+            for (String line : response.body().split("\n")) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                for (String metric : SAMPLED_METRICS) {
+                    if (line.startsWith(metric) && (!metric.startsWith("reactor_netty")
+                            || line.contains("name=\"litellm\""))) {
+                        double value = Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+                        sample.merge(metric, value, Double::sum);
+                    }
+                }
+            }
+            sample.put("driver_in_flight", (double) inFlight.get());
+            sample.forEach((metric, value) -> peakMetrics.merge(metric, value, Math::max));
+        } catch (IOException | RuntimeException e) {
+            // The backend may not expose Prometheus metrics; the latency report still stands
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static double millis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
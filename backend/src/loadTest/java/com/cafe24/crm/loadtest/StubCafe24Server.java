@@ -0,0 +1,297 @@
+package com.cafe24.crm.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stub Cafe24 Server
+ *
+ * Stand-in for Cafe24's OAuth token endpoint ({@code POST /api/v2/oauth/token}),
+ * so app-install bursts can be load tested. Both the authorization code and the
+ * refresh token grant are answered after {@code latency-ms} (plus up to
+ * {@code jitter-ms}) with a token response shaped like Cafe24's, expiry in
+ * Korean local time included. {@code error-rate} of the requests fail with
+ * {@code error-status}.
+ *
+ * It also serves a mock of the Admin API list and count endpoints the sync
+ * pipeline reads ({@code GET /api/v2/admin/{products,customersprivacy,orders}[/count]}),
+ * with {@code products}, {@code customers} and {@code orders} generated records
+ * spread evenly over the days from {@code since} to today. Records are derived
+ * from their index, so repeated syncs see the same data. Date windows, offset
+ * and limit are honoured and every response carries an X-Api-Call-Limit header.
+ *
+ * Settings are system properties prefixed with {@code cafe24.stub.}, e.g.
+ * <pre>
+ * ./gradlew cafe24Stub -Pcafe24.stub.port=18090 -Pcafe24.stub.latency-ms=1000
+ * </pre>
+ * and the backend is pointed at it with {@code CAFE24_API_URL=http://localhost:18090}.
+ */
+public final class StubCafe24Server {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ZoneId CAFE24_ZONE = ZoneId.of("Asia/Seoul");
+
+    /**
+     * Stub behaviour
+     */
+    public record Settings(int port, long latencyMs, long jitterMs, double errorRate, int errorStatus,
+                           long accessTokenLifetimeSeconds, int products, int customers, int orders,
+                           LocalDate since) {
+
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("cafe24.stub.port", 18090),
+                    Long.getLong("cafe24.stub.latency-ms", 1000),
+                    Long.getLong("cafe24.stub.jitter-ms", 200),
+                    Double.parseDouble(System.getProperty("cafe24.stub.error-rate", "0")),
+                    Integer.getInteger("cafe24.stub.error-status", 503),
+                    Long.getLong("cafe24.stub.access-token-lifetime-seconds", 7200),
+                    Integer.getInteger("cafe24.stub.products", 200),
+                    Integer.getInteger("cafe24.stub.customers", 2000),
+                    Integer.getInteger("cafe24.stub.orders", 10000),
+                    LocalDate.parse(System.getProperty("cafe24.stub.since", "2020-01-01")));
+        }
+    }
+
+    private final Settings settings;
+    private final AtomicLong codeExchanges = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong adminRequests = new AtomicLong();
+
+    public StubCafe24Server(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) {
+        Settings settings = Settings.fromSystemProperties();
+        StubCafe24Server stub = new StubCafe24Server(settings);
+        DisposableServer server = stub.start();
+        System.out.printf("Stub Cafe24 listening on http://localhost:%d (%s)%n", server.port(), settings);
+
+        Flux.interval(Duration.ofSeconds(10))
+                .subscribe(tick -> System.out.printf("code_exchanges=%d refreshes=%d failures=%d admin_requests=%d%n",
+                        stub.codeExchanges.get(), stub.refreshes.get(), stub.failures.get(), stub.adminRequests.get()));
+        server.onDispose().block();
+    }
+
+    public DisposableServer start() {
+        return HttpServer.create()
+                .port(settings.port())
+                .route(routes -> routes
+                        .post("/api/v2/oauth/token", this::token)
+                        .get("/api/v2/admin/{resource}/count", (request, response) -> admin(request, response, true))
+                        .get("/api/v2/admin/{resource}", (request, response) -> admin(request, response, false)))
+                .bindNow();
+    }
+
+    private Publisher<Void> token(HttpServerRequest request, HttpServerResponse response) {
+        return request.receive().aggregate().asString().defaultIfEmpty("").flatMap(body -> {
+            Map<String, String> form = parseForm(body);
+            Mono<Long> delay = Mono.delay(latency());
+
+            if (settings.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+                failures.incrementAndGet();
+                return delay.then(response.status(HttpResponseStatus.valueOf(settings.errorStatus()))
+                        .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                        .sendString(Mono.just("{\"error\":\"server_error\",\"error_description\":\"stub failure\"}"))
+                        .then());
+            }
+
+            String grantType = form.getOrDefault("grant_type", "");
+            if (!grantType.equals("authorization_code") && !grantType.equals("refresh_token")) {
+                return response.status(HttpResponseStatus.BAD_REQUEST)
+                        .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                        .sendString(Mono.just("{\"error\":\"unsupported_grant_type\"}"))
+                        .then();
+            }
+            (grantType.equals("refresh_token") ? refreshes : codeExchanges).incrementAndGet();
+
+            String host = request.requestHeaders().get(HttpHeaderNames.HOST, "stub");
+            String mallId = host.contains(".") ? host.substring(0, host.indexOf('.')) : "stub";
+            return delay.then(response
+                    .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                    .sendString(Mono.fromCallable(() -> tokenResponse(mallId)))
+                    .then());
+        });
+    }
+
+    private Publisher<Void> admin(HttpServerRequest request, HttpServerResponse response, boolean count) {
+        adminRequests.incrementAndGet();
+        String resource = request.param("resource");
+        int total = switch (resource == null ? "" : resource) {
+            case "products" -> settings.products();
+            case "customersprivacy" -> settings.customers();
+            case "orders" -> settings.orders();
+            default -> -1;
+        };
+        if (total < 0) {
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+
+        QueryStringDecoder query = new QueryStringDecoder(request.uri());
+        LocalDate from = dateParam(query, LocalDate.MIN, "created_start_date", "updated_start_date", "start_date");
+        LocalDate to = dateParam(query, LocalDate.MAX, "created_end_date", "updated_end_date", "end_date");
+        List<Integer> matching = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            LocalDate date = recordDate(i, total);
+            if (!date.isBefore(from) && !date.isAfter(to)) {
+                matching.add(i);
+            }
+        }
+
+        ObjectNode root = MAPPER.createObjectNode();
+        if (count) {
+            root.put("count", matching.size());
+        } else {
+            int offset = intParam(query, "offset", 0);
+            int limit = intParam(query, "limit", 10);
+            ArrayNode records = root.putArray(resource);
+            for (int i = offset; i < Math.min(matching.size(), offset + limit); i++) {
+                int index = matching.get(i);
+                switch (resource) {
+                    case "products" -> product(records.addObject(), index);
+                    case "customersprivacy" -> customer(records.addObject(), index);
+                    default -> order(records.addObject(), index);
+                }
+            }
+        }
+        return response
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                .header("X-Api-Call-Limit", "1/40")
+                .sendString(Mono.just(root.toString()));
+    }
+
+    private void product(ObjectNode record, int index) {
+        String created = timestamp(recordDate(index, settings.products()));
+        record.put("product_no", index + 1)
+                .put("product_code", String.format("P%07d", index + 1))
+                .put("product_name", "Stub product " + (index + 1))
+                .put("price", String.format("%d.00", 10_000 + (index % 50) * 1_000))
+                .put("retail_price", String.format("%d.00", 12_000 + (index % 50) * 1_000))
+                .put("supply_price", String.format("%d.00", 6_000 + (index % 50) * 500))
+                .put("selling", "T")
+                .put("display", "T")
+                .put("created_date", created)
+                .put("updated_date", created);
+        record.putArray("category").addObject().put("category_no", 24 + index % 8);
+    }
+
+    private void customer(ObjectNode record, int index) {
+        String created = timestamp(recordDate(index, settings.customers()));
+        record.put("member_id", "member" + index)
+                .put("name", "Customer " + index)
+                .put("email", "member" + index + "@example.com")
+                .put("cellphone", String.format("010-%04d-%04d", index / 10_000 % 10_000, index % 10_000))
+                .put("group_no", 1 + index % 3)
+                .put("created_date", created)
+                .put("updated_date", created);
+    }
+
+    private void order(ObjectNode record, int index) {
+        LocalDate date = recordDate(index, settings.orders());
+        int quantity = 1 + index % 3;
+        double amount = quantity * (10_000 + (index % 50) * 1_000);
+        record.put("order_id", String.format("%s-%07d", date.toString().replace("-", ""), index))
+                .put("member_id", "member" + (index * 7919L % Math.max(settings.customers(), 1)))
+                .put("order_date", timestamp(date))
+                .put("payment_amount", String.format("%.2f", amount))
+                .put("paid", "T")
+                .put("canceled", index % 20 == 0 ? "T" : "F")
+                .put("shipping_status", index % 4 == 0 ? "F" : "T")
+                .put("order_from_mobile", index % 2 == 0 ? "T" : "F")
+                .put("payment_method", index % 3 == 0 ? "card" : "cash");
+        record.putObject("actual_order_amount")
+                .put("order_price_amount", String.format("%.2f", amount))
+                .put("shipping_fee", "0.00")
+                .put("coupon_discount_price", "0.00");
+        record.putArray("items").addObject()
+                .put("product_no", 1 + index % Math.max(settings.products(), 1))
+                .put("quantity", quantity);
+    }
+
+    /**
+     * Records are spread evenly from {@code since} to today in index order
+     */
+    private LocalDate recordDate(int index, int total) {
+        long days = ChronoUnit.DAYS.between(settings.since(), LocalDate.now(CAFE24_ZONE));
+        return settings.since().plusDays(total > 1 ? index * days / (total - 1) : 0);
+    }
+
+    private static String timestamp(LocalDate date) {
+        return date.atTime(10, 0).atZone(CAFE24_ZONE).toOffsetDateTime().toString();
+    }
+
+    private static LocalDate dateParam(QueryStringDecoder query, LocalDate fallback, String... names) {
+        for (String name : names) {
+            List<String> values = query.parameters().get(name);
+            if (values != null && !values.isEmpty()) {
+                return LocalDate.parse(values.get(0));
+            }
+        }
+        return fallback;
+    }
+
+    private static int intParam(QueryStringDecoder query, String name, int fallback) {
+        List<String> values = query.parameters().get(name);
+        return values != null && !values.isEmpty() ? Integer.parseInt(values.get(0)) : fallback;
+    }
+
+    private Duration latency() {
+        long jitter = settings.jitterMs() > 0 ? ThreadLocalRandom.current().nextLong(settings.jitterMs() + 1) : 0;
+        return Duration.ofMillis(settings.latencyMs() + jitter);
+    }
+
+    private String tokenResponse(String mallId) throws Exception {
+        LocalDateTime now = LocalDateTime.now(CAFE24_ZONE);
+        ObjectNode root = MAPPER.createObjectNode()
+                .put("access_token", UUID.randomUUID().toString().replace("-", ""))
+                .put("expires_at", now.plusSeconds(settings.accessTokenLifetimeSeconds()).toString())
+                .put("refresh_token", UUID.randomUUID().toString().replace("-", ""))
+                .put("refresh_token_expires_at", now.plusDays(14).toString())
+                .put("client_id", "stub")
+                .put("mall_id", mallId)
+                .put("user_id", "stub")
+                .put("issued_at", now.toString());
+        root.putArray("scopes").add("mall.read_customer").add("mall.read_order").add("mall.read_product");
+        return MAPPER.writeValueAsString(root);
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+}
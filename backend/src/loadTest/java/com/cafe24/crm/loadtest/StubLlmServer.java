@@ -0,0 +1,220 @@
+package com.cafe24.crm.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stub LLM Server
+ *
+ * OpenAI-compatible stand-in for LiteLLM, so the AI endpoints can be load
+ * tested without the remote model. Serves
+ * <ul>
+ *   <li>{@code POST /v1/chat/completions}, plain or with {@code stream: true} as SSE chunks,</li>
+ *   <li>{@code POST /v1/embeddings}, a deterministic unit vector per input text.</li>
+ * </ul>
+ * A completion waits {@code latency-ms} (plus up to {@code jitter-ms}) before
+ * its first token, then emits {@code tokens} tokens at {@code tokens-per-second}.
+ * A plain completion answers once all its tokens would have been generated.
+ * {@code error-rate} of the completions fail with {@code error-status}.
+ *
+ * Settings are system properties prefixed with {@code llm.stub.}, e.g.
+ * <pre>
+ * ./gradlew llmStub -Pllm.stub.port=18089 -Pllm.stub.latency-ms=300 -Pllm.stub.tokens-per-second=40
+ * </pre>
+ * and the backend is pointed at it with {@code LITELLM_URL=http://localhost:18089}.
+ */
+public final class StubLlmServer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Stub behaviour
+     */
+    public record Settings(int port, long latencyMs, long jitterMs, double tokensPerSecond, int tokens,
+                           double errorRate, int errorStatus, int embeddingDimensions) {
+
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("llm.stub.port", 18089),
+                    Long.getLong("llm.stub.latency-ms", 300),
+                    Long.getLong("llm.stub.jitter-ms", 100),
+                    Double.parseDouble(System.getProperty("llm.stub.tokens-per-second", "40")),
+                    Integer.getInteger("llm.stub.tokens", 120),
+                    Double.parseDouble(System.getProperty("llm.stub.error-rate", "0")),
+                    Integer.getInteger("llm.stub.error-status", 503),
+                    Integer.getInteger("llm.stub.embedding-dimensions", 384));
+        }
+
+        Duration tokenInterval() {
+            return Duration.ofNanos((long) (1_000_000_000L / Math.max(tokensPerSecond, 0.001)));
+        }
+    }
+
+    private final Settings settings;
+    private final AtomicLong completions = new AtomicLong();
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong embeddings = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public StubLlmServer(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) {
+        Settings settings = Settings.fromSystemProperties();
+        StubLlmServer stub = new StubLlmServer(settings);
+        DisposableServer server = stub.start();
+        System.out.printf("Stub LLM listening on http://localhost:%d (%s)%n", server.port(), settings);
+
+        Flux.interval(Duration.ofSeconds(10))
+                .subscribe(tick -> System.out.printf("completions=%d streams=%d embeddings=%d failures=%d%n",
+                        stub.completions.get(), stub.streams.get(), stub.embeddings.get(), stub.failures.get()));
+        server.onDispose().block();
+    }
+
+    public DisposableServer start() {
+        return HttpServer.create()
+                .port(settings.port())
+                // h2c as well, so an http2-enabled client can negotiate it by prior knowledge
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                .route(routes -> routes
+                        .post("/v1/chat/completions", this::chatCompletions)
+                        .post("/v1/embeddings", this::embeddings))
+                .bindNow();
+    }
+
+    private Publisher<Void> chatCompletions(HttpServerRequest request, HttpServerResponse response) {
+        return request.receive().aggregate().asString().defaultIfEmpty("{}").flatMap(body -> {
+            JsonNode json = parse(body);
+            String model = json.path("model").asText("stub");
+
+            if (settings.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+                failures.incrementAndGet();
+                return Mono.delay(firstTokenDelay())
+                        .then(response.status(HttpResponseStatus.valueOf(settings.errorStatus()))
+                                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                                .sendString(Mono.just("{\"error\":{\"message\":\"stub failure\"}}"))
+                                .then());
+            }
+
+            if (json.path("stream").asBoolean(false)) {
+                streams.incrementAndGet();
+                Flux<String> chunks = Mono.delay(firstTokenDelay())
+                        .thenMany(Flux.range(0, settings.tokens())
+                                .delayElements(settings.tokenInterval())
+                                .map(index -> "data: " + chunk(model, token(index)) + "\n\n"))
+                        .concatWith(Mono.just("data: [DONE]\n\n"));
+                return response
+                        .header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream")
+                        .header(HttpHeaderNames.CACHE_CONTROL, "no-cache")
+                        .sendString(chunks)
+                        .then();
+            }
+
+            completions.incrementAndGet();
+            Duration generation = settings.tokenInterval().multipliedBy(settings.tokens());
+            return Mono.delay(firstTokenDelay().plus(generation))
+                    .then(response
+                            .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                            .sendString(Mono.fromCallable(() -> completion(model)))
+                            .then());
+        });
+    }
+
+    private Publisher<Void> embeddings(HttpServerRequest request, HttpServerResponse response) {
+        return request.receive().aggregate().asString().defaultIfEmpty("{}").flatMap(body -> {
+            embeddings.incrementAndGet();
+            JsonNode json = parse(body);
+            return response
+                    .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                    .sendString(Mono.fromCallable(() -> embedding(json.path("model").asText("stub"),
+                            json.path("input").asText(""))))
+                    .then();
+        });
+    }
+
+    private Duration firstTokenDelay() {
+        long jitter = settings.jitterMs() > 0 ? ThreadLocalRandom.current().nextLong(settings.jitterMs() + 1) : 0;
+        return Duration.ofMillis(settings.latencyMs() + jitter);
+    }
+
+    private String completion(String model) throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < settings.tokens(); i++) {
+            content.append(token(i));
+        }
+        ObjectNode root = MAPPER.createObjectNode()
+                .put("id", "chatcmpl-" + UUID.randomUUID())
+                .put("object", "chat.completion")
+                .put("created", System.currentTimeMillis() / 1000)
+                .put("model", model);
+        ObjectNode choice = root.putArray("choices").addObject().put("index", 0).put("finish_reason", "stop");
+        choice.putObject("message").put("role", "assistant").put("content", content.toString());
+        root.putObject("usage")
+                .put("prompt_tokens", 0)
+                .put("completion_tokens", settings.tokens())
+                .put("total_tokens", settings.tokens());
+        return MAPPER.writeValueAsString(root);
+    }
+
+    private String chunk(String model, String token) {
+        ObjectNode root = MAPPER.createObjectNode()
+                .put("id", "chatcmpl-stub")
+                .put("object", "chat.completion.chunk")
+                .put("model", model);
+        root.putArray("choices").addObject().put("index", 0).putObject("delta").put("content", token);
+        return root.toString();
+    }
+
+    /**
+     * Same text, same vector, so semantic cache hits behave as with a real model
+     */
+    private String embedding(String model, String input) throws Exception {
+        Random random = new Random(input.hashCode());
+        double[] vector = new double[settings.embeddingDimensions()];
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        norm = Math.sqrt(norm);
+
+        ObjectNode root = MAPPER.createObjectNode().put("object", "list").put("model", model);
+        ObjectNode data = root.putArray("data").addObject().put("object", "embedding").put("index", 0);
+        ArrayNode values = data.putArray("embedding");
+        for (double component : vector) {
+            values.add(component / norm);
+        }
+        return MAPPER.writeValueAsString(root);
+    }
+
+    private static String token(int index) {
+        return "token" + index + " ";
+    }
+
+    private static JsonNode parse(String body) {
+        try {
+            return MAPPER.readTree(body);
+        } catch (Exception e) {
+            return MAPPER.createObjectNode();
+        }
+    }
+}
@@ -1,35 +1,96 @@
 package com.cafe24.crm.client;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ConnectTimeoutException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
 
+import java.net.ConnectException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.Map;
+import java.util.function.Function;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class Cafe24AuthClient {
 
-    @Value("${cafe24.client-id}")
-    private String clientId;
-
-    @Value("${cafe24.client-secret}")
-    private String clientSecret;
-
-    @Value("${cafe24.callback-url:https://crm-api.saemiro.com/api/auth/cafe24/callback}")
-    private String callbackUrl;
-
-    private final WebClient.Builder webClientBuilder;
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_MAP =
+            new ParameterizedTypeReference<>() {};
 
     private static final String CAFE24_SCOPE = "mall.read_store,mall.read_product,mall.read_order,mall.read_customer";
 
+    private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+
+    private final String clientId;
+    private final String clientSecret;
+    private final String callbackUrl;
+    private final String baseUrlTemplate;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final Duration retryMaxBackoff;
+    private final double retryJitter;
+
+    public Cafe24AuthClient(
+            WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${cafe24.client-id}") String clientId,
+            @Value("${cafe24.client-secret}") String clientSecret,
+            @Value("${cafe24.callback-url:https://crm-api.saemiro.com/api/auth/cafe24/callback}") String callbackUrl,
+            @Value("${cafe24.api.base-url:https://{mallId}.cafe24api.com}") String baseUrlTemplate,
+            @Value("${cafe24.oauth.connect-timeout-ms:3000}") int connectTimeoutMs,
+            @Value("${cafe24.oauth.response-timeout-ms:10000}") long responseTimeoutMs,
+            @Value("${cafe24.oauth.max-connections:100}") int maxConnections,
+            @Value("${cafe24.oauth.max-retries:2}") int maxRetries,
+            @Value("${cafe24.oauth.retry-backoff-ms:200}") long retryBackoffMs,
+            @Value("${cafe24.oauth.retry-max-backoff-ms:2000}") long retryMaxBackoffMs,
+            @Value("${cafe24.oauth.retry-jitter:0.5}") double retryJitter) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("cafe24-oauth")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(responseTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .metrics(true, Function.identity());
+
+        this.webClient = webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.meterRegistry = meterRegistry;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.callbackUrl = callbackUrl;
+        this.baseUrlTemplate = baseUrlTemplate;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+        this.retryMaxBackoff = Duration.ofMillis(retryMaxBackoffMs);
+        this.retryJitter = retryJitter;
+    }
+
     /**
      * 카페24 OAuth 인증 URL 생성
      * state 파라미터에 mallId를 넣어서 콜백에서 식별
@@ -46,28 +107,14 @@ public class Cafe24AuthClient {
      * 인증 코드로 액세스 토큰 교환
      */
     public Mono<Map<String, Object>> getAccessToken(String mallId, String code) {
-        String tokenUrl = String.format("https://%s.cafe24api.com/api/v2/oauth/token", mallId);
-        String auth = Base64.getEncoder().encodeToString(
-            (clientId + ":" + clientSecret).getBytes(StandardCharsets.UTF_8)
-        );
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "authorization_code");
+        form.add("code", code);
+        form.add("redirect_uri", callbackUrl);
 
-        WebClient client = webClientBuilder.build();
+        log.info("Exchanging code for token. Mall: {}", mallId);
 
-        String body = String.format(
-            "grant_type=authorization_code&code=%s&redirect_uri=%s",
-            code, callbackUrl
-        );
-
-        log.info("Exchanging code for token. Mall: {}, URL: {}", mallId, tokenUrl);
-
-        return client.post()
-            .uri(tokenUrl)
-            .header("Authorization", "Basic " + auth)
-            .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-            .bodyValue(body)
-            .retrieve()
-            .bodyToMono(Map.class)
-            .map(response -> (Map<String, Object>) response)
+        return requestToken(mallId, "authorization_code", form)
             .doOnSuccess(r -> log.info("Successfully obtained access token for mall: {}", mallId))
             .doOnError(e -> log.error("Failed to get access token for mall {}: {}", mallId, e.getMessage()));
     }
@@ -76,22 +123,58 @@ public class Cafe24AuthClient {
      * 리프레시 토큰으로 액세스 토큰 갱신
      */
     public Mono<Map<String, Object>> refreshToken(String mallId, String refreshToken) {
-        String tokenUrl = String.format("https://%s.cafe24api.com/api/v2/oauth/token", mallId);
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "refresh_token");
+        form.add("refresh_token", refreshToken);
+
+        return requestToken(mallId, "refresh_token", form)
+            .doOnSuccess(r -> log.info("Successfully refreshed token for mall: {}", mallId))
+            .doOnError(e -> log.error("Failed to refresh token for mall {}: {}", mallId, e.getMessage()));
+    }
+
+    /**
+     * 토큰 엔드포인트 호출 (타임아웃, 지터가 적용된 재시도 포함)
+     */
+    private Mono<Map<String, Object>> requestToken(String mallId, String grantType,
+                                                   MultiValueMap<String, String> form) {
+        String tokenUrl = baseUrlTemplate.replace("{mallId}", mallId) + "/api/v2/oauth/token";
         String auth = Base64.getEncoder().encodeToString(
             (clientId + ":" + clientSecret).getBytes(StandardCharsets.UTF_8)
         );
 
-        WebClient client = webClientBuilder.build();
-
-        return client.post()
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return webClient.post()
             .uri(tokenUrl)
             .header("Authorization", "Basic " + auth)
             .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-            .bodyValue("grant_type=refresh_token&refresh_token=" + refreshToken)
+            .body(BodyInserters.fromFormData(form))
             .retrieve()
-            .bodyToMono(Map.class)
-            .map(response -> (Map<String, Object>) response)
-            .doOnSuccess(r -> log.info("Successfully refreshed token for mall: {}", mallId))
-            .doOnError(e -> log.error("Failed to refresh token for mall {}: {}", mallId, e.getMessage()));
+            .bodyToMono(JSON_MAP)
+            .retryWhen(Retry.backoff(maxRetries, retryBackoff)
+                .maxBackoff(retryMaxBackoff)
+                .jitter(retryJitter)
+                .filter(this::isRetryable)
+                .doBeforeRetry(signal -> log.warn("Retrying Cafe24 token request for mall {} (attempt {}): {}",
+                    mallId, signal.totalRetries() + 1, signal.failure().getMessage())))
+            .doOnSuccess(r -> sample.stop(meterRegistry.timer("crm.auth.token.request",
+                "grant", grantType, "outcome", "success")))
+            .doOnError(e -> sample.stop(meterRegistry.timer("crm.auth.token.request",
+                "grant", grantType, "outcome", "error")));
+    }
+
+    /**
+     * 카페24가 요청을 처리하지 않았다고 확신할 수 있는 경우만 재시도
+     * 인증 코드는 일회용이고 리프레시 토큰은 갱신 시 교체되므로,
+     * 연결 실패가 아닌 오류(응답 타임아웃 등)처럼 이미 처리되었을 수 있는 요청은 재시도하지 않음
+     */
+    private boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == HttpStatus.TOO_MANY_REQUESTS.value()
+                || status == HttpStatus.BAD_GATEWAY.value()
+                || status == HttpStatus.SERVICE_UNAVAILABLE.value();
+        }
+        return e instanceof WebClientRequestException
+            && (e.getCause() instanceof ConnectException || e.getCause() instanceof ConnectTimeoutException);
     }
 }
@@ -0,0 +1,75 @@
+package com.cafe24.crm.client;
+
+import java.util.Map;
+
+/**
+ * Cafe24 Admin API resources that are synchronized into the CRM graph.
+ *
+ * Every list endpoint is queried inside a date window; the window parameter
+ * names differ per resource. Full syncs window on the creation date, delta
+ * syncs on the last-modified date where the endpoint supports it.
+ */
+public enum Cafe24Resource {
+
+    PRODUCTS("products", "products", "created_start_date", "created_end_date", Map.of(),
+            "updated_start_date", "updated_end_date", Map.of()),
+    // customersprivacy only filters on sign-up date, so deltas pick up new members
+    CUSTOMERS("customersprivacy", "customersprivacy", "created_start_date", "created_end_date", Map.of(),
+            "created_start_date", "created_end_date", Map.of()),
+    ORDERS("orders", "orders", "start_date", "end_date", Map.of("embed", "items"),
+            "start_date", "end_date", Map.of("embed", "items", "date_type", "updated_date"));
+
+    private final String path;
+    private final String rootKey;
+    private final String windowStartParam;
+    private final String windowEndParam;
+    private final Map<String, String> extraParams;
+    private final String deltaStartParam;
+    private final String deltaEndParam;
+    private final Map<String, String> deltaExtraParams;
+
+    Cafe24Resource(String path, String rootKey, String windowStartParam, String windowEndParam,
+                   Map<String, String> extraParams, String deltaStartParam, String deltaEndParam,
+                   Map<String, String> deltaExtraParams) {
+        this.path = path;
+        this.rootKey = rootKey;
+        this.windowStartParam = windowStartParam;
+        this.windowEndParam = windowEndParam;
+        this.extraParams = extraParams;
+        this.deltaStartParam = deltaStartParam;
+        this.deltaEndParam = deltaEndParam;
+        this.deltaExtraParams = deltaExtraParams;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getRootKey() {
+        return rootKey;
+    }
+
+    public String getWindowStartParam() {
+        return windowStartParam;
+    }
+
+    public String getWindowEndParam() {
+        return windowEndParam;
+    }
+
+    public Map<String, String> getExtraParams() {
+        return extraParams;
+    }
+
+    public String getDeltaStartParam() {
+        return deltaStartParam;
+    }
+
+    public String getDeltaEndParam() {
+        return deltaEndParam;
+    }
+
+    public Map<String, String> getDeltaExtraParams() {
+        return deltaExtraParams;
+    }
+}
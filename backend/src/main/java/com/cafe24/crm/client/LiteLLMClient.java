@@ -1,36 +1,98 @@
 package com.cafe24.crm.client;
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ChannelOption;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
+/**
+ * LiteLLM proxy client.
+ *
+ * Holds one long-lived WebClient on a dedicated Reactor Netty connection
+ * pool, so connections and TLS sessions are reused across calls instead of
+ * being rebuilt per request. Pool and client metrics are exported to
+ * Micrometer under {@code reactor.netty.*} with the pool name "litellm".
+ *
+ * The streaming variants request {@code stream: true} and emit each content
+ * delta as soon as its SSE chunk arrives.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
-public class LiteLLMClient {
+public class LiteLLMClient implements DisposableBean {
 
-    @Value("${external.litellm.base-url}")
-    private String baseUrl;
+    private static final String DEFAULT_MODEL = "cafe24-crm-llama";
+    private static final String STREAM_DONE = "[DONE]";
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_CHUNK =
+            new ParameterizedTypeReference<>() {};
 
-    @Value("${external.litellm.api-key:}")
-    private String apiKey;
+    private static final String CRM_INSIGHT_PROMPT = """
+            You are a Cafe24 CRM AI assistant specialized in e-commerce customer relationship management.
+            Provide actionable insights based on customer data, order patterns, and campaign effectiveness.
+            Always include specific recommendations for improving customer retention and revenue.
+            """;
 
-    @Value("${external.cf-access.client-id:}")
-    private String cfAccessClientId;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final String embeddingModel;
 
-    @Value("${external.cf-access.client-secret:}")
-    private String cfAccessClientSecret;
+    public LiteLLMClient(
+            WebClient.Builder webClientBuilder,
+            ObjectMapper objectMapper,
+            @Value("${external.litellm.base-url}") String baseUrl,
+            @Value("${external.litellm.api-key:}") String apiKey,
+            @Value("${external.cf-access.client-id:}") String cfAccessClientId,
+            @Value("${external.cf-access.client-secret:}") String cfAccessClientSecret,
+            @Value("${external.litellm.pool.max-connections:50}") int maxConnections,
+            @Value("${external.litellm.pool.pending-acquire-max-count:500}") int pendingAcquireMaxCount,
+            @Value("${external.litellm.pool.pending-acquire-timeout-ms:10000}") long pendingAcquireTimeoutMs,
+            @Value("${external.litellm.pool.max-idle-time-ms:60000}") long maxIdleTimeMs,
+            @Value("${external.litellm.pool.max-life-time-ms:600000}") long maxLifeTimeMs,
+            @Value("${external.litellm.connect-timeout-ms:5000}") int connectTimeoutMs,
+            @Value("${external.litellm.response-timeout-ms:120000}") long responseTimeoutMs,
+            @Value("${external.litellm.http2:true}") boolean http2,
+            @Value("${external.litellm.embedding-model:text-embedding}") String embeddingModel) {
+        this.connectionProvider = ConnectionProvider.builder("litellm")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
 
-    private final WebClient.Builder webClientBuilder;
+        // HTTP/2 is negotiated over TLS via ALPN; plain http endpoints stay on HTTP/1.1
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .protocol(http2 ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                        : new HttpProtocol[]{HttpProtocol.HTTP11})
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .metrics(true, Function.identity());
 
-    public Mono<String> chat(String model, String userMessage, String systemPrompt) {
-        WebClient.Builder builder = webClientBuilder
+        WebClient.Builder builder = webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .baseUrl(baseUrl)
                 .defaultHeader("Authorization", "Bearer " + apiKey);
 
@@ -40,21 +102,20 @@ public class LiteLLMClient {
                    .defaultHeader("CF-Access-Client-Secret", cfAccessClientSecret);
         }
 
-        WebClient client = builder.build();
+        this.webClient = builder.build();
+        this.objectMapper = objectMapper;
+        this.embeddingModel = embeddingModel;
+    }
 
-        Map<String, Object> request = Map.of(
-                "model", model,
-                "messages", List.of(
-                        Map.of("role", "system", "content", systemPrompt),
-                        Map.of("role", "user", "content", userMessage)
-                ),
-                "max_tokens", 2000,
-                "temperature", 0.7
-        );
+    @Override
+    public void destroy() {
+        connectionProvider.disposeLater().block(Duration.ofSeconds(5));
+    }
 
-        return client.post()
+    public Mono<String> chat(String model, String userMessage, String systemPrompt) {
+        return webClient.post()
                 .uri("/v1/chat/completions")
-                .bodyValue(request)
+                .bodyValue(request(model, userMessage, systemPrompt, false))
                 .retrieve()
                 .bodyToMono(Map.class)
                 .map(response -> {
@@ -68,13 +129,109 @@ public class LiteLLMClient {
                 .doOnError(e -> log.error("LiteLLM chat error: {}", e.getMessage()));
     }
 
+    /**
+     * Stream the completion as content deltas, in arrival order
+     */
+    public Flux<String> chatStream(String model, String userMessage, String systemPrompt) {
+        return webClient.post()
+                .uri("/v1/chat/completions")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(request(model, userMessage, systemPrompt, true))
+                .retrieve()
+                .bodyToFlux(SSE_CHUNK)
+                .map(event -> event.data() != null ? event.data().trim() : "")
+                .takeWhile(data -> !STREAM_DONE.equals(data))
+                .filter(data -> !data.isEmpty())
+                .map(this::deltaContent)
+                .filter(content -> !content.isEmpty())
+                .doOnError(e -> log.error("LiteLLM chat stream error: {}", e.getMessage()));
+    }
+
+    /**
+     * Embed a text with the configured embedding model
+     */
+    public Mono<float[]> embed(String text) {
+        return embed(text, embeddingModel);
+    }
+
+    /**
+     * Embed a text with a specific model, e.g. the one a Qdrant collection was seeded with
+     */
+    public Mono<float[]> embed(String text, String model) {
+        return webClient.post()
+                .uri("/v1/embeddings")
+                .bodyValue(Map.of("model", model, "input", text))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(response -> {
+                    JsonNode embedding = response.path("data").path(0).path("embedding");
+                    if (!embedding.isArray() || embedding.isEmpty()) {
+                        throw new IllegalStateException("LiteLLM returned no embedding");
+                    }
+                    float[] vector = new float[embedding.size()];
+                    for (int i = 0; i < vector.length; i++) {
+                        vector[i] = (float) embedding.get(i).asDouble();
+                    }
+                    return vector;
+                })
+                .doOnError(e -> log.error("LiteLLM embedding error: {}", e.getMessage()));
+    }
+
+    public String getInsightModel() {
+        return DEFAULT_MODEL;
+    }
+
     public Mono<String> generateCrmInsight(String query) {
-        String systemPrompt = """
-            You are a Cafe24 CRM AI assistant specialized in e-commerce customer relationship management.
-            Provide actionable insights based on customer data, order patterns, and campaign effectiveness.
-            Always include specific recommendations for improving customer retention and revenue.
-            """;
+        return generateCrmInsight(query, null);
+    }
+
+    /**
+     * @param context mall data to ground the answer in, or null
+     */
+    public Mono<String> generateCrmInsight(String query, String context) {
+        return chat(DEFAULT_MODEL, query, insightPrompt(context));
+    }
+
+    public Flux<String> streamCrmInsight(String query, String context) {
+        return chatStream(DEFAULT_MODEL, query, insightPrompt(context));
+    }
+
+    private static String insightPrompt(String context) {
+        if (context == null || context.isBlank()) {
+            return CRM_INSIGHT_PROMPT;
+        }
+        return CRM_INSIGHT_PROMPT + """
 
-        return chat("cafe24-crm-llama", query, systemPrompt);
+                Base your answer on the mall data and reference notes below. Quote the figures you use,
+                and say so when the data does not cover the question.
+
+                """ + context;
+    }
+
+    private static Map<String, Object> request(String model, String userMessage, String systemPrompt,
+                                               boolean stream) {
+        return Map.of(
+                "model", model,
+                "messages", List.of(
+                        Map.of("role", "system", "content", systemPrompt),
+                        Map.of("role", "user", "content", userMessage)
+                ),
+                "max_tokens", 2000,
+                "temperature", 0.7,
+                "stream", stream
+        );
+    }
+
+    /**
+     * Content of the first choice's delta in one OpenAI-style stream chunk
+     */
+    private String deltaContent(String chunk) {
+        try {
+            JsonNode content = objectMapper.readTree(chunk).path("choices").path(0).path("delta").path("content");
+            return content.isTextual() ? content.asText() : "";
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping malformed LiteLLM stream chunk: {}", e.getOriginalMessage());
+            return "";
+        }
     }
 }
@@ -0,0 +1,31 @@
+package com.cafe24.crm.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * JPA Configuration for MySQL
+ *
+ * Neo4jConfig declares its own transaction manager, which stops Spring Boot from
+ * creating the JPA one, so it is declared here and bound to the JPA repositories.
+ */
+@Configuration
+@EnableJpaRepositories(
+        basePackages = "com.cafe24.crm.repository",
+        transactionManagerRef = JpaConfig.JPA_TRANSACTION_MANAGER)
+public class JpaConfig {
+
+    public static final String JPA_TRANSACTION_MANAGER = "jpaTransactionManager";
+
+    /**
+     * Transaction Manager for MySQL (JPA) operations
+     */
+    @Bean(name = JPA_TRANSACTION_MANAGER)
+    PlatformTransactionManager jpaTransactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+}
@@ -1,9 +1,19 @@
 package com.cafe24.crm.config;
 
+import com.cafe24.crm.service.diagnostics.QueryPlanInspector;
+import com.cafe24.crm.service.diagnostics.QueryPlanInspector.QueryPlanReport;
+import com.cafe24.crm.service.diagnostics.QueryPlanInspector.QueryPlanResult;
+import com.cafe24.crm.service.schema.Neo4jSchemaManager;
+import lombok.extern.slf4j.Slf4j;
 import org.neo4j.cypherdsl.core.renderer.Dialect;
 import org.neo4j.driver.Driver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.annotation.Order;
 import org.springframework.data.neo4j.config.EnableNeo4jAuditing;
 import org.springframework.data.neo4j.core.DatabaseSelectionProvider;
 import org.springframework.data.neo4j.core.Neo4jClient;
@@ -21,7 +31,10 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
  * including customers, orders, products, and their relationships.
  */
 @Configuration
-@EnableNeo4jRepositories(basePackages = "com.cafe24.crm.repository.neo4j")
+@Slf4j
+@EnableNeo4jRepositories(
+        basePackages = "com.cafe24.crm.repository.neo4j",
+        transactionManagerRef = "neo4jTransactionManager")
 @EnableNeo4jAuditing
 @EnableTransactionManagement
 public class Neo4jConfig {
@@ -53,11 +66,74 @@ public class Neo4jConfig {
     }
 
     /**
-     * Transaction Manager for Neo4j operations
+     * Transaction Manager for Neo4j operations (default for @Transactional services)
      */
     @Bean(name = "neo4jTransactionManager")
+    @Primary
     PlatformTransactionManager neo4jTransactionManager(Driver driver,
             DatabaseSelectionProvider databaseSelectionProvider) {
         return new Neo4jTransactionManager(driver, databaseSelectionProvider);
     }
+
+    /**
+     * Ensure constraints and indexes exist at startup, then report index population
+     * in the background. Neo4j being unreachable does not block startup.
+     */
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(name = "neo4j.schema.bootstrap.enabled", havingValue = "true", matchIfMissing = true)
+    ApplicationRunner neo4jSchemaBootstrap(Neo4jSchemaManager schemaManager) {
+        return args -> {
+            try {
+                schemaManager.ensureSchema();
+                schemaManager.monitorPopulation();
+            } catch (Exception e) {
+                log.error("Neo4j schema bootstrap failed: {}", e.getMessage(), e);
+            }
+        };
+    }
+
+    /**
+     * EXPLAIN every cataloged query once indexes are online and log flagged plans.
+     * With fail-on-violation the check runs before startup completes and aborts it,
+     * which lets a CI boot against a real Neo4j act as the regression gate.
+     */
+    @Bean
+    @Order(2)
+    @ConditionalOnProperty(name = "diagnostics.query-plans.check-on-startup", havingValue = "true", matchIfMissing = true)
+    ApplicationRunner queryPlanCheck(
+            QueryPlanInspector inspector,
+            @Value("${diagnostics.query-plans.fail-on-violation:false}") boolean failOnViolation,
+            @Value("${diagnostics.query-plans.await-indexes-seconds:300}") int awaitIndexesSeconds) {
+        Runnable check = () -> {
+            inspector.awaitIndexes(awaitIndexesSeconds);
+            QueryPlanReport report = inspector.inspect();
+            for (QueryPlanResult result : report.results()) {
+                if (result.isViolation()) {
+                    log.warn("Query plan check: {} {}", result.query(),
+                            result.error() != null ? "failed: " + result.error() : "uses " + result.violations());
+                }
+            }
+            log.info("Query plan check: {} queries, {} violations", report.queries(), report.violations());
+            if (failOnViolation && report.violations() > 0) {
+                throw new IllegalStateException(report.violations() + " repository queries have flagged plans");
+            }
+        };
+
+        return args -> {
+            if (failOnViolation) {
+                check.run();
+                return;
+            }
+            Thread thread = new Thread(() -> {
+                try {
+                    check.run();
+                } catch (Exception e) {
+                    log.error("Query plan check failed: {}", e.getMessage(), e);
+                }
+            }, "query-plan-check");
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
 }
@@ -0,0 +1,34 @@
+package com.cafe24.crm.config;
+
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.QdrantGrpcClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Qdrant Configuration
+ *
+ * One gRPC client shared by the vector-backed features; the channel is only
+ * connected on first use, so startup does not depend on Qdrant.
+ */
+@Configuration
+public class QdrantConfig {
+
+    @Bean(destroyMethod = "close")
+    public QdrantClient qdrantClient(
+            @Value("${external.qdrant.host}") String host,
+            @Value("${external.qdrant.port:6334}") int port,
+            @Value("${external.qdrant.use-tls:true}") boolean useTls,
+            @Value("${external.qdrant.api-key:}") String apiKey,
+            @Value("${external.qdrant.timeout-ms:2000}") long timeoutMs) {
+        QdrantGrpcClient.Builder builder = QdrantGrpcClient.newBuilder(host, port, useTls)
+                .withTimeout(Duration.ofMillis(timeoutMs));
+        if (!apiKey.isEmpty()) {
+            builder.withApiKey(apiKey);
+        }
+        return new QdrantClient(builder.build());
+    }
+}
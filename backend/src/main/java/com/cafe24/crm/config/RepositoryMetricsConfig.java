@@ -0,0 +1,49 @@
+package com.cafe24.crm.config;
+
+import com.cafe24.crm.service.diagnostics.QueryProfileSampler;
+import com.cafe24.crm.service.diagnostics.RepositoryMetricsInterceptor;
+import com.cafe24.crm.service.diagnostics.RepositoryQueryCatalog;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.neo4j.repository.support.Neo4jRepositoryFactoryBean;
+
+/**
+ * Repository Metrics Configuration
+ *
+ * Adds {@link RepositoryMetricsInterceptor} to every Neo4j repository proxy, so
+ * each repository method is timed without touching the repositories or services.
+ */
+@Configuration
+@ConditionalOnProperty(name = "diagnostics.repository-metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class RepositoryMetricsConfig {
+
+    /**
+     * Static so that the post-processor is registered before the repositories;
+     * its collaborators are resolved lazily when the first repository is built.
+     */
+    @Bean
+    static BeanPostProcessor neo4jRepositoryMetricsPostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            ObjectProvider<RepositoryQueryCatalog> catalog,
+            ObjectProvider<QueryProfileSampler> profileSampler) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof Neo4jRepositoryFactoryBean<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(
+                                    new RepositoryMetricsInterceptor(
+                                            repositoryInformation.getRepositoryInterface().getSimpleName(),
+                                            meterRegistry.getObject(),
+                                            catalog.getObject(),
+                                            profileSampler.getObject()))));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package com.cafe24.crm.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduling Configuration
+ *
+ * Enables @Scheduled background jobs such as the nightly derived-metrics run.
+ * The scheduler pool is sized by spring.task.scheduling.pool.size so that the
+ * long jobs do not hold up the short periodic tasks such as token refresh.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,42 +1,218 @@
 package com.cafe24.crm.controller;
 
-import com.cafe24.crm.client.LiteLLMClient;
+import com.cafe24.crm.dto.ApiResponse;
+import com.cafe24.crm.dto.NlQueryResultDTO;
+import com.cafe24.crm.dto.SegmentInsightsDTO;
+import com.cafe24.crm.service.ai.InsightContextBuilder;
+import com.cafe24.crm.service.ai.LlmGateway;
+import com.cafe24.crm.service.ai.LlmGateway.Priority;
+import com.cafe24.crm.service.ai.NlCypherService;
+import com.cafe24.crm.service.ai.SemanticInsightCache;
+import com.cafe24.crm.service.job.SegmentInsightJob;
+import com.cafe24.crm.support.MallContext;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/ai")
 @RequiredArgsConstructor
+@Slf4j
 public class AiController {
 
-    private final LiteLLMClient liteLLMClient;
+    private final LlmGateway llmGateway;
+    private final SemanticInsightCache semanticInsightCache;
+    private final InsightContextBuilder insightContextBuilder;
+    private final SegmentInsightJob segmentInsightJob;
+    private final NlCypherService nlCypherService;
 
     @PostMapping("/chat")
     public Mono<ResponseEntity<Map<String, String>>> chat(@RequestBody Map<String, String> request) {
         String query = request.get("query");
-        String model = request.getOrDefault("model", "cafe24-crm-llama");
+        if (isBlank(query)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        String model = model(request);
 
-        return liteLLMClient.chat(model, query, "You are a helpful CRM assistant.")
+        return llmGateway.chat(Priority.INTERACTIVE, model, query, "You are a helpful CRM assistant.")
                 .map(response -> ResponseEntity.ok(Map.of(
                         "response", response,
                         "model", model
                 )))
+                .onErrorReturn(IllegalStateException.class, ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build())
                 .onErrorReturn(ResponseEntity.internalServerError().build());
     }
 
+    /**
+     * Generate an insight, answering close paraphrases of a recent prompt of
+     * the same mall (X-Mall-Id) from the semantic cache. Generated insights are
+     * grounded in the shared analytics summary and the closest knowledge notes.
+     */
     @PostMapping("/insight")
-    public Mono<ResponseEntity<Map<String, String>>> generateInsight(@RequestBody Map<String, String> request) {
+    public Mono<ResponseEntity<Map<String, Object>>> generateInsight(@RequestBody Map<String, String> request) {
         String query = request.get("query");
+        if (isBlank(query)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        String mallId = MallContext.current();
 
-        return liteLLMClient.generateCrmInsight(query)
-                .map(insight -> ResponseEntity.ok(Map.of(
+        Mono<Map<String, Object>> cached = semanticInsightCache.lookup(mallId, query)
+                .map(hit -> {
+                    Map<String, Object> body = new LinkedHashMap<>();
+                    body.put("insight", hit.answer());
+                    body.put("query", query);
+                    body.put("cached", true);
+                    body.put("cachedQuery", hit.cachedQuery());
+                    body.put("similarity", hit.similarity());
+                    body.put("cachedAt", hit.cachedAt().toString());
+                    body.put("model", hit.model());
+                    return body;
+                });
+        Mono<Map<String, Object>> generated = insightContextBuilder.build(query)
+                .flatMap(context -> llmGateway.generateCrmInsight(Priority.STANDARD, query, context))
+                .doOnNext(insight -> semanticInsightCache.storeLater(mallId, query, insight))
+                .map(insight -> Map.<String, Object>of(
                         "insight", insight,
-                        "query", query
-                )))
+                        "query", query,
+                        "cached", false
+                ));
+
+        return cached.switchIfEmpty(generated)
+                .map(ResponseEntity::ok)
+                .onErrorReturn(IllegalStateException.class, ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build())
                 .onErrorReturn(ResponseEntity.internalServerError().build());
     }
+
+    /**
+     * Latest batch-generated insights for the RFM segments and recent cohorts
+     * of all malls together; see {@link SegmentInsightJob}
+     */
+    @GetMapping("/insights/segments")
+    public ResponseEntity<ApiResponse<SegmentInsightsDTO>> getSegmentInsights() {
+        try {
+            SegmentInsightsDTO insights = segmentInsightJob.getLatest();
+            if (insights == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.notFound("Segment insights"));
+            }
+            return ResponseEntity.ok(ApiResponse.success(insights));
+
+        } catch (Exception e) {
+            log.error("Error fetching segment insights: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("INSIGHTS_ERROR", "Failed to fetch segment insights"));
+        }
+    }
+
+    /**
+     * Answer an ad-hoc question by translating it into read-only Cypher and
+     * running it on the graph. Body: {"question": ..., "limit": optional row limit}
+     */
+    @PostMapping("/query")
+    public ResponseEntity<ApiResponse<NlQueryResultDTO>> query(@RequestBody Map<String, String> request) {
+        String question = request.get("question");
+
+        try {
+            Integer limit = request.get("limit") != null ? Integer.valueOf(request.get("limit")) : null;
+            return ResponseEntity.ok(ApiResponse.success(nlCypherService.query(question, limit)));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("VALIDATION_ERROR", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("LLM_UNAVAILABLE", e.getMessage()));
+        } catch (QueryTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(ApiResponse.error("QUERY_TIMEOUT", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error answering question: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("QUERY_ERROR", "Failed to answer the question"));
+        }
+    }
+
+    /**
+     * Stream a chat completion as Server-Sent Events: "token" events carrying
+     * {"content": ...}, then a single "done" or "error" event. A missing query
+     * is rejected with 400 before the stream opens.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Map<String, String>>>> chatStream(
+            @RequestBody Map<String, String> request) {
+        String query = request.get("query");
+        if (isBlank(query)) {
+            return ResponseEntity.badRequest().build();
+        }
+        String model = model(request);
+
+        return ResponseEntity.ok(toEvents(
+                llmGateway.chatStream(Priority.INTERACTIVE, model, query, "You are a helpful CRM assistant."),
+                Map.of("model", model)));
+    }
+
+    @PostMapping(value = "/insight/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Map<String, String>>>> generateInsightStream(
+            @RequestBody Map<String, String> request) {
+        String query = request.get("query");
+        if (isBlank(query)) {
+            return ResponseEntity.badRequest().build();
+        }
+        String mallId = MallContext.current();
+
+        // A cache hit is sent as a single token event
+        return ResponseEntity.ok(semanticInsightCache.lookup(mallId, query)
+                .map(hit -> toEvents(Flux.just(hit.answer()), Map.of(
+                        "query", query,
+                        "cached", "true",
+                        "cachedQuery", hit.cachedQuery(),
+                        "similarity", String.valueOf(hit.similarity()))))
+                .switchIfEmpty(insightContextBuilder.build(query)
+                        .map(context -> toEvents(
+                                semanticInsightCache.recording(mallId, query,
+                                        llmGateway.streamCrmInsight(Priority.STANDARD, query, context)),
+                                Map.of("query", query, "cached", "false"))))
+                .flatMapMany(events -> events));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * Requested model; an explicit null falls back to the default as well, since the response maps reject nulls
+     */
+    private static String model(Map<String, String> request) {
+        String model = request.get("model");
+        return isBlank(model) ? "cafe24-crm-llama" : model;
+    }
+
+    private Flux<ServerSentEvent<Map<String, String>>> toEvents(Flux<String> tokens, Map<String, String> done) {
+        return tokens
+                .map(token -> ServerSentEvent.<Map<String, String>>builder()
+                        .event("token")
+                        .data(Map.of("content", token))
+                        .build())
+                .concatWith(Mono.just(ServerSentEvent.<Map<String, String>>builder()
+                        .event("done")
+                        .data(done)
+                        .build()))
+                .onErrorResume(e -> {
+                    log.error("AI stream failed: {}", e.getMessage());
+                    return Mono.just(ServerSentEvent.<Map<String, String>>builder()
+                            .event("error")
+                            .data(Map.of("message", "Failed to generate a response"))
+                            .build());
+                });
+    }
 }
@@ -2,17 +2,29 @@ package com.cafe24.crm.controller;
 
 import com.cafe24.crm.dto.*;
 import com.cafe24.crm.service.AnalyticsService;
+import com.cafe24.crm.service.TimeSeriesService;
+import com.cafe24.crm.service.columnar.CustomerColumnStore;
+import com.cafe24.crm.service.columnar.OrderFactStore;
+import com.cafe24.crm.service.columnar.OrderPivotService;
+import com.cafe24.crm.support.EnumParams;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -30,6 +42,10 @@ import java.util.Map;
 public class AnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final TimeSeriesService timeSeriesService;
+    private final CustomerColumnStore customerColumnStore;
+    private final OrderFactStore orderFactStore;
+    private final OrderPivotService orderPivotService;
 
     /**
      * Get RFM analysis data
@@ -329,4 +345,286 @@ public class AnalyticsController {
                     .body(ApiResponse.error("CLV_ERROR", "Failed to fetch top CLV customers"));
         }
     }
+
+    /**
+     * Query a metric as a time series over an arbitrary date range
+     */
+    @GetMapping("/timeseries")
+    @Operation(
+            summary = "Get time series",
+            description = "Returns a metric bucketed by hour, day, week or month over [from, to], optionally split "
+                    + "by channel, payment method or customer segment. Series longer than maxPoints are "
+                    + "downsampled with LTTB"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Time series retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = TimeSeriesDTO.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid range, granularity, metric or groupBy"
+            )
+    })
+    public ResponseEntity<ApiResponse<TimeSeriesDTO>> getTimeSeries(
+            @Parameter(description = "First day (inclusive)", required = true, example = "2024-01-01")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+
+            @Parameter(description = "Last day (inclusive)", required = true, example = "2024-12-31")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+
+            @Parameter(description = "Bucket size (hour, day, week, month)")
+            @RequestParam(defaultValue = "day") String granularity,
+
+            @Parameter(description = "Metric (revenue, orders, aov, discount, shipping, cancelled)")
+            @RequestParam(defaultValue = "revenue") String metric,
+
+            @Parameter(description = "Split series by channel, payment_method or segment")
+            @RequestParam(required = false) String groupBy,
+
+            @Parameter(description = "Maximum points per series; 0 disables downsampling")
+            @RequestParam(defaultValue = "500") int maxPoints
+    ) {
+        log.info("GET /analytics/timeseries?from={}&to={}&granularity={}&metric={}&groupBy={}",
+                from, to, granularity, metric, groupBy);
+
+        try {
+            TimeSeriesDTO series = timeSeriesService.query(from, to,
+                    EnumParams.parse(TimeSeriesService.Granularity.class, granularity),
+                    EnumParams.parse(TimeSeriesService.Metric.class, metric),
+                    groupBy != null && !groupBy.isBlank()
+                            ? EnumParams.parse(TimeSeriesService.GroupBy.class, groupBy) : null,
+                    Math.max(maxPoints, 0));
+            return ResponseEntity.ok(ApiResponse.success(series));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("VALIDATION_ERROR", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error fetching time series: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("TIMESERIES_ERROR", "Failed to fetch time series"));
+        }
+    }
+
+    /**
+     * Group customers and aggregate a measure from the column store
+     */
+    @GetMapping("/customers/aggregate")
+    @Operation(
+            summary = "Aggregate customers",
+            description = "Groups customers by one or more of segment, tier, status, preferred_category, rfm_score, "
+                    + "recency, frequency, monetary and aggregates total_revenue, clv, avg_order_value, "
+                    + "churn_probability, total_orders or days_since_last_purchase from the columnar side store"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Aggregate computed",
+                    content = @Content(schema = @Schema(implementation = CustomerAggregateDTO.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Unknown dimension or measure"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "503",
+                    description = "The column store has not been built yet"
+            )
+    })
+    public ResponseEntity<ApiResponse<CustomerAggregateDTO>> aggregateCustomers(
+            @Parameter(description = "Comma-separated dimensions", example = "segment,tier")
+            @RequestParam(defaultValue = "segment") String groupBy,
+
+            @Parameter(description = "Measure", example = "clv")
+            @RequestParam(defaultValue = "total_revenue") String measure,
+
+            @Parameter(description = "Only customers whose last order is on or after this date")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate activeSince
+    ) {
+        log.info("GET /analytics/customers/aggregate?groupBy={}&measure={}&activeSince={}", groupBy, measure, activeSince);
+
+        try {
+            List<CustomerColumnStore.Dimension> dimensions = Arrays.stream(groupBy.split(","))
+                    .map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .map(name -> EnumParams.parse(CustomerColumnStore.Dimension.class, name))
+                    .toList();
+            CustomerColumnStore.Measure parsedMeasure = EnumParams.parse(CustomerColumnStore.Measure.class, measure);
+
+            long start = System.nanoTime();
+            List<CustomerAggregateDTO.Group> groups = customerColumnStore.aggregate(dimensions, parsedMeasure, activeSince)
+                    .stream()
+                    .map(stats -> CustomerAggregateDTO.Group.builder()
+                            .keys(stats.keys())
+                            .customers(stats.customers())
+                            .count(stats.count())
+                            .sum(stats.sum())
+                            .avg(stats.average())
+                            .min(stats.min())
+                            .max(stats.max())
+                            .build())
+                    .toList();
+            long micros = (System.nanoTime() - start) / 1000;
+
+            return ResponseEntity.ok(ApiResponse.success(CustomerAggregateDTO.builder()
+                    .groupBy(dimensions.stream().map(d -> d.name().toLowerCase(Locale.ROOT)).toList())
+                    .measure(parsedMeasure.name().toLowerCase(Locale.ROOT))
+                    .tookMicros(micros)
+                    .storeBuiltAt(customerColumnStore.getBuiltAt())
+                    .groups(groups)
+                    .build()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("VALIDATION_ERROR", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("STORE_NOT_READY", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error aggregating customers: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("AGGREGATE_ERROR", "Failed to aggregate customers"));
+        }
+    }
+
+    /**
+     * Group orders by a dimension from the order fact store
+     */
+    @GetMapping("/orders/aggregate")
+    @Operation(
+            summary = "Aggregate orders",
+            description = "Counts orders and sums revenue per channel, payment_method, status, city, device, hour "
+                    + "or day_of_week, scanning the monthly columnar order segments in parallel"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Aggregate computed",
+                    content = @Content(schema = @Schema(implementation = OrderAggregateDTO.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Unknown dimension"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "503",
+                    description = "The order fact store has not been built yet"
+            )
+    })
+    public ResponseEntity<ApiResponse<OrderAggregateDTO>> aggregateOrders(
+            @Parameter(description = "Dimension", example = "channel")
+            @RequestParam(defaultValue = "channel") String groupBy,
+
+            @Parameter(description = "First order date (inclusive)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+
+            @Parameter(description = "Last order date (inclusive)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        log.info("GET /analytics/orders/aggregate?groupBy={}&from={}&to={}", groupBy, from, to);
+
+        try {
+            OrderFactStore.OrderDimension dimension = EnumParams.parse(OrderFactStore.OrderDimension.class, groupBy);
+
+            long start = System.nanoTime();
+            List<OrderAggregateDTO.Group> groups = orderFactStore.aggregate(dimension, from, to, false).stream()
+                    .map(stats -> OrderAggregateDTO.Group.builder()
+                            .key(stats.key())
+                            .orders(stats.orders())
+                            .revenue(stats.revenue())
+                            .build())
+                    .toList();
+            long micros = (System.nanoTime() - start) / 1000;
+
+            return ResponseEntity.ok(ApiResponse.success(OrderAggregateDTO.builder()
+                    .groupBy(dimension.name().toLowerCase(Locale.ROOT))
+                    .from(from)
+                    .to(to)
+                    .tookMicros(micros)
+                    .storeBuiltAt(orderFactStore.getBuiltAt())
+                    .groups(groups)
+                    .build()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("VALIDATION_ERROR", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("STORE_NOT_READY", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error aggregating orders: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("AGGREGATE_ERROR", "Failed to aggregate orders"));
+        }
+    }
+
+    /**
+     * Pivot orders by one or two dimensions
+     */
+    @GetMapping("/orders/pivot")
+    @Operation(
+            summary = "Pivot orders",
+            description = "Cross-tabulates orders by a row and an optional column dimension (channel, payment_method, "
+                    + "status, city, device, month, segment, hour, day_of_week) and computes count, sum, avg and/or "
+                    + "distinct_customers per cell. Results are cached until the order fact store changes"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Pivot computed",
+                    content = @Content(schema = @Schema(implementation = OrderPivotDTO.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Unknown dimension or measure, or too many cells"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "503",
+                    description = "The order fact store has not been built yet"
+            )
+    })
+    public ResponseEntity<ApiResponse<OrderPivotDTO>> pivotOrders(
+            @Parameter(description = "Row dimension", example = "channel")
+            @RequestParam(defaultValue = "channel") String rows,
+
+            @Parameter(description = "Column dimension", example = "device")
+            @RequestParam(required = false) String columns,
+
+            @Parameter(description = "Comma-separated measures", example = "count,sum,distinct_customers")
+            @RequestParam(defaultValue = "count,sum") String measures,
+
+            @Parameter(description = "First order date (inclusive)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+
+            @Parameter(description = "Last order date (inclusive)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        log.info("GET /analytics/orders/pivot?rows={}&columns={}&measures={}&from={}&to={}",
+                rows, columns, measures, from, to);
+
+        try {
+            OrderFactStore.OrderDimension rowDimension = EnumParams.parse(OrderFactStore.OrderDimension.class, rows);
+            OrderFactStore.OrderDimension columnDimension = columns != null && !columns.isBlank()
+                    ? EnumParams.parse(OrderFactStore.OrderDimension.class, columns)
+                    : null;
+            EnumSet<OrderPivotService.PivotMeasure> parsedMeasures = EnumSet.noneOf(OrderPivotService.PivotMeasure.class);
+            Arrays.stream(measures.split(","))
+                    .map(String::trim)
+                    .filter(name -> !name.isEmpty())
+                    .map(name -> EnumParams.parse(OrderPivotService.PivotMeasure.class, name))
+                    .forEach(parsedMeasures::add);
+
+            return ResponseEntity.ok(ApiResponse.success(
+                    orderPivotService.pivot(rowDimension, columnDimension, parsedMeasures, from, to)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("VALIDATION_ERROR", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("STORE_NOT_READY", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error pivoting orders: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("PIVOT_ERROR", "Failed to pivot orders"));
+        }
+    }
 }
@@ -1,15 +1,18 @@
 package com.cafe24.crm.controller;
 
 import com.cafe24.crm.client.Cafe24AuthClient;
+import com.cafe24.crm.service.auth.MallTokenService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
@@ -21,6 +24,7 @@ import java.util.Map;
 public class AuthController {
 
     private final Cafe24AuthClient cafe24AuthClient;
+    private final MallTokenService mallTokenService;
 
     @Value("${cafe24.frontend-url:https://crm.saemiro.com}")
     private String frontendUrl;
@@ -48,49 +52,48 @@ public class AuthController {
      * 카페24 개발자센터에 등록: https://crm-api.saemiro.com/auth/cafe24/callback
      *
      * 사용자가 인증 완료 후 code와 state(mall_id)와 함께 리다이렉트됨
+     * 발급된 토큰은 서버에 저장되어 동기화 등 백엔드 호출에 사용됨
+     *
+     * 토큰 교환은 비동기로 처리되어, 카페24 응답을 기다리는 동안 서블릿 스레드를 점유하지 않음
+     * (앱 설치가 몰릴 때 Tomcat 스레드 풀 고갈 방지)
      */
     @GetMapping("/cafe24/callback")
-    public void oauthCallback(
+    public Mono<ResponseEntity<Void>> oauthCallback(
             @RequestParam("code") String code,
-            @RequestParam("state") String mallId,
-            HttpServletResponse response) throws IOException {
+            @RequestParam("state") String mallId) {
 
         log.info("OAuth callback for mall: {} with code: {}...", mallId, code.substring(0, Math.min(10, code.length())));
 
-        try {
-            Map<String, Object> tokenResponse = cafe24AuthClient.getAccessToken(mallId, code).block();
-
-            if (tokenResponse == null) {
-                throw new RuntimeException("Failed to get token response");
-            }
-
-            String accessToken = (String) tokenResponse.get("access_token");
-            String refreshToken = (String) tokenResponse.get("refresh_token");
-            Number expiresIn = (Number) tokenResponse.get("expires_in");
-
-            // 프론트엔드로 토큰 정보와 함께 리다이렉트
-            String redirectUrl = String.format(
-                "%s/auth/success?mall_id=%s&access_token=%s&refresh_token=%s&expires_in=%d",
-                frontendUrl,
-                URLEncoder.encode(mallId, StandardCharsets.UTF_8),
-                URLEncoder.encode(accessToken, StandardCharsets.UTF_8),
-                URLEncoder.encode(refreshToken, StandardCharsets.UTF_8),
-                expiresIn != null ? expiresIn.longValue() : 0
-            );
-
-            log.info("OAuth success for mall: {}, redirecting to frontend", mallId);
-            response.sendRedirect(redirectUrl);
-
-        } catch (Exception e) {
-            log.error("OAuth callback error for mall {}: {}", mallId, e.getMessage());
-            String errorUrl = String.format(
-                "%s/auth/error?mall_id=%s&error=%s",
-                frontendUrl,
-                URLEncoder.encode(mallId, StandardCharsets.UTF_8),
-                URLEncoder.encode(e.getMessage() != null ? e.getMessage() : "Unknown error", StandardCharsets.UTF_8)
-            );
-            response.sendRedirect(errorUrl);
-        }
+        return cafe24AuthClient.getAccessToken(mallId, code)
+                .flatMap(tokenResponse -> mallTokenService.store(mallId, tokenResponse).thenReturn(tokenResponse))
+                .map(tokenResponse -> {
+                    String accessToken = (String) tokenResponse.get("access_token");
+                    String refreshToken = (String) tokenResponse.get("refresh_token");
+                    Number expiresIn = (Number) tokenResponse.get("expires_in");
+
+                    // 프론트엔드로 토큰 정보와 함께 리다이렉트
+                    String redirectUrl = String.format(
+                        "%s/auth/success?mall_id=%s&access_token=%s&refresh_token=%s&expires_in=%d",
+                        frontendUrl,
+                        URLEncoder.encode(mallId, StandardCharsets.UTF_8),
+                        URLEncoder.encode(accessToken, StandardCharsets.UTF_8),
+                        URLEncoder.encode(refreshToken, StandardCharsets.UTF_8),
+                        expiresIn != null ? expiresIn.longValue() : 0
+                    );
+
+                    log.info("OAuth success for mall: {}, redirecting to frontend", mallId);
+                    return redirect(redirectUrl);
+                })
+                .onErrorResume(e -> {
+                    log.error("OAuth callback error for mall {}: {}", mallId, e.getMessage());
+                    String errorUrl = String.format(
+                        "%s/auth/error?mall_id=%s&error=%s",
+                        frontendUrl,
+                        URLEncoder.encode(mallId, StandardCharsets.UTF_8),
+                        URLEncoder.encode(e.getMessage() != null ? e.getMessage() : "Unknown error", StandardCharsets.UTF_8)
+                    );
+                    return Mono.just(redirect(errorUrl));
+                });
     }
 
     // === API 엔드포인트 (프론트엔드에서 호출) ===
@@ -112,6 +115,7 @@ public class AuthController {
         String code = request.get("code");
 
         return cafe24AuthClient.getAccessToken(mallId, code)
+                .flatMap(token -> mallTokenService.store(mallId, token).thenReturn(token))
                 .map(ResponseEntity::ok)
                 .onErrorReturn(ResponseEntity.badRequest().build());
     }
@@ -123,8 +127,14 @@ public class AuthController {
         String mallId = request.get("mall_id");
         String refreshToken = request.get("refresh_token");
 
-        return cafe24AuthClient.refreshToken(mallId, refreshToken)
-                .map(ResponseEntity::ok)
+        // 호출자가 가진 refresh_token이 저장된 토큰과 일치할 때만 갱신하고 새 토큰을 반환함
+        // (저장된 토큰이 있으면 서버 측 갱신과 합쳐짐, 카페24는 갱신 시 refresh_token을 교체함)
+        return mallTokenService.refresh(mallId, refreshToken)
+                .map(token -> ResponseEntity.ok(token.toResponse()))
                 .onErrorReturn(ResponseEntity.badRequest().build());
     }
+
+    private static ResponseEntity<Void> redirect(String url) {
+        return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(url)).build();
+    }
 }
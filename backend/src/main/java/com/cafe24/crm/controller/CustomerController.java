@@ -1,8 +1,13 @@
 package com.cafe24.crm.controller;
 
 import com.cafe24.crm.dto.*;
+import com.cafe24.crm.service.CustomerExportService;
+import com.cafe24.crm.service.CustomerExportService.ExportFormat;
 import com.cafe24.crm.service.CustomerService;
 import com.cafe24.crm.service.RecommendationService;
+import com.cafe24.crm.service.segment.AudienceSketchService;
+import com.cafe24.crm.service.segment.CustomerSegmentIndexService;
+import com.cafe24.crm.support.MallContext;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,9 +19,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -37,6 +48,9 @@ public class CustomerController {
 
     private final CustomerService customerService;
     private final RecommendationService recommendationService;
+    private final CustomerExportService customerExportService;
+    private final CustomerSegmentIndexService customerSegmentIndexService;
+    private final AudienceSketchService audienceSketchService;
 
     /**
      * List customers with pagination
@@ -272,6 +286,99 @@ public class CustomerController {
         }
     }
 
+    /**
+     * Filter customers by a boolean attribute expression
+     */
+    @PostMapping("/filter")
+    @Operation(
+            summary = "Filter customers",
+            description = "Evaluates an and/or/not expression over segment, tier, status, preferred_category, "
+                    + "RFM cells and numeric attributes against the in-memory bitmap index. "
+                    + "Returns the match count and a page of customer IDs; size=0 returns only the count"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Filter evaluated",
+                    content = @Content(schema = @Schema(implementation = CustomerFilterResultDTO.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Unknown field or operator, or malformed expression"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "503",
+                    description = "The index has not been built yet"
+            )
+    })
+    public ResponseEntity<ApiResponse<CustomerFilterResultDTO>> filterCustomers(
+            @Parameter(description = "Page number (0-based)")
+            @RequestParam(defaultValue = "0") int page,
+
+            @Parameter(description = "Page size (0 for count only)")
+            @RequestParam(defaultValue = "100") int size,
+
+            @RequestBody CustomerFilterDTO filter
+    ) {
+        log.info("POST /customers/filter?page={}&size={}", page, size);
+
+        try {
+            page = Math.max(page, 0);
+            size = Math.max(0, Math.min(size, 10000));
+            return ResponseEntity.ok(ApiResponse.success(customerSegmentIndexService.query(filter, page, size)));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.validationError(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("INDEX_NOT_READY", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error filtering customers: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("FILTER_ERROR", "Failed to filter customers"));
+        }
+    }
+
+    /**
+     * Estimate the audience size of a segment definition
+     */
+    @PostMapping("/audience/estimate")
+    @Operation(
+            summary = "Estimate audience size",
+            description = "Estimates how many customers match an and/or/not expression of eq/in conditions on "
+                    + "segment, tier, category (purchased), channel (ordered through) and month (ordered in), "
+                    + "using HyperLogLog and theta sketches. Returns bounds at about 95% confidence"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "200",
+                    description = "Estimate computed",
+                    content = @Content(schema = @Schema(implementation = AudienceEstimateDTO.class))
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "Unknown dimension or unsupported operator"
+            )
+    })
+    public ResponseEntity<ApiResponse<AudienceEstimateDTO>> estimateAudience(
+            @RequestBody CustomerFilterDTO filter
+    ) {
+        log.info("POST /customers/audience/estimate");
+
+        try {
+            return ResponseEntity.ok(ApiResponse.success(audienceSketchService.estimate(filter)));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.validationError(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error estimating audience: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("ESTIMATE_ERROR", "Failed to estimate audience"));
+        }
+    }
+
     /**
      * Get at-risk customers
      */
@@ -321,6 +428,65 @@ public class CustomerController {
         }
     }
 
+    /**
+     * Export customers as a streamed file
+     */
+    @GetMapping("/export")
+    @Operation(
+            summary = "Export customers",
+            description = "Streams the customers of the request's mall (all malls without X-Mall-Id), "
+                    + "optionally filtered by segment and/or tier, as CSV or NDJSON"
+    )
+    public ResponseEntity<?> exportCustomers(
+            @Parameter(description = "Filter by segment")
+            @RequestParam(required = false) String segment,
+
+            @Parameter(description = "Filter by tier")
+            @RequestParam(required = false) String tier,
+
+            @Parameter(description = "Output format (csv/ndjson)")
+            @RequestParam(defaultValue = "csv") String format,
+
+            @Parameter(description = "Gzip-compress the file")
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        log.info("GET /customers/export?segment={}&tier={}&format={}&gzip={}", segment, tier, format, gzip);
+
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.from(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.validationError(e.getMessage()));
+        }
+
+        // The body is written on an async thread, so capture the mall here
+        String mallId = MallContext.current();
+        String filename = "customers"
+                + (segment != null && !segment.isBlank() ? "-" + segment : "")
+                + (tier != null && !tier.isBlank() ? "-" + tier : "")
+                + "." + exportFormat.getExtension()
+                + (gzip ? ".gz" : "");
+
+        StreamingResponseBody body = out -> {
+            try {
+                customerExportService.export(mallId, segment, tier, exportFormat, gzip, out);
+            } catch (Exception e) {
+                // Headers are already committed, so the client sees a truncated file
+                log.error("Error exporting customers: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename, StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
     /**
      * Get mixed recommendations (for homepage/dashboard)
      */
@@ -0,0 +1,185 @@
+package com.cafe24.crm.controller;
+
+import com.cafe24.crm.dto.ApiResponse;
+import com.cafe24.crm.dto.JobStatusDTO;
+import com.cafe24.crm.service.RevenueRollupService;
+import com.cafe24.crm.service.job.DerivedMetricsJob;
+import com.cafe24.crm.service.job.SegmentInsightJob;
+import com.cafe24.crm.service.segment.AudienceSketchService;
+import com.cafe24.crm.service.segment.CustomerSegmentIndexService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Job Controller
+ *
+ * REST API endpoints for inspecting and triggering background jobs.
+ */
+@RestController
+@RequestMapping("/jobs")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Jobs", description = "Background job APIs")
+@CrossOrigin(origins = {"https://crm.saemiro.com", "http://localhost:3000", "http://localhost:5173"})
+public class JobController {
+
+    private final DerivedMetricsJob derivedMetricsJob;
+    private final RevenueRollupService revenueRollupService;
+    private final CustomerSegmentIndexService customerSegmentIndexService;
+    private final AudienceSketchService audienceSketchService;
+    private final SegmentInsightJob segmentInsightJob;
+
+    /**
+     * Get derived-metrics job status
+     */
+    @GetMapping("/derived-metrics")
+    @Operation(
+            summary = "Get derived-metrics job status",
+            description = "Returns progress of the current or last recomputation of customer order metrics"
+    )
+    public ResponseEntity<ApiResponse<JobStatusDTO>> getDerivedMetricsStatus() {
+        log.info("GET /jobs/derived-metrics");
+        return ResponseEntity.ok(ApiResponse.success(derivedMetricsJob.getStatus()));
+    }
+
+    /**
+     * Trigger the derived-metrics job outside its schedule
+     */
+    @PostMapping("/derived-metrics/run")
+    @Operation(
+            summary = "Run derived-metrics job",
+            description = "Starts a recomputation of customer order metrics in the background"
+    )
+    public ResponseEntity<ApiResponse<JobStatusDTO>> runDerivedMetrics() {
+        log.info("POST /jobs/derived-metrics/run");
+
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(derivedMetricsJob.trigger(), "Job started"));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("JOB_RUNNING", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get segment-insights job status
+     */
+    @GetMapping("/segment-insights")
+    @Operation(
+            summary = "Get segment-insights job status",
+            description = "Returns progress of the current or last batch generation of segment and cohort insights"
+    )
+    public ResponseEntity<ApiResponse<JobStatusDTO>> getSegmentInsightsStatus() {
+        log.info("GET /jobs/segment-insights");
+        return ResponseEntity.ok(ApiResponse.success(segmentInsightJob.getStatus()));
+    }
+
+    /**
+     * Trigger the segment-insights job outside its schedule
+     */
+    @PostMapping("/segment-insights/run")
+    @Operation(
+            summary = "Run segment-insights job",
+            description = "Starts generating a new version of the segment and cohort insights of every mall "
+                    + "in the background"
+    )
+    public ResponseEntity<ApiResponse<JobStatusDTO>> runSegmentInsights() {
+        log.info("POST /jobs/segment-insights/run");
+
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(segmentInsightJob.trigger(), "Job started"));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("JOB_RUNNING", e.getMessage()));
+        }
+    }
+
+    /**
+     * Rebuild revenue rollups from all orders
+     */
+    @PostMapping("/revenue-rollups/rebuild")
+    @Operation(
+            summary = "Rebuild revenue rollups",
+            description = "Recomputes every day, week and month revenue bucket from the orders. "
+                    + "Only needed after orders were changed outside the sync and webhook paths"
+    )
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebuildRevenueRollups() {
+        log.info("POST /jobs/revenue-rollups/rebuild");
+
+        try {
+            int days = revenueRollupService.rebuild();
+            return ResponseEntity.ok(ApiResponse.success(Map.of("days", days), "Rollups rebuilt"));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("JOB_RUNNING", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error rebuilding revenue rollups: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("JOB_ERROR", "Failed to rebuild revenue rollups"));
+        }
+    }
+
+    /**
+     * Rebuild the customer segment bitmap index
+     */
+    @PostMapping("/segment-index/rebuild")
+    @Operation(
+            summary = "Rebuild segment index",
+            description = "Reloads every customer into the bitmap index used by POST /customers/filter "
+                    + "without waiting for the periodic refresh"
+    )
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebuildSegmentIndex() {
+        log.info("POST /jobs/segment-index/rebuild");
+
+        try {
+            int customers = customerSegmentIndexService.rebuild();
+            return ResponseEntity.ok(ApiResponse.success(Map.of("customers", customers), "Segment index rebuilt"));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("JOB_RUNNING", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error rebuilding segment index: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("JOB_ERROR", "Failed to rebuild segment index"));
+        }
+    }
+
+    /**
+     * Rebuild the audience estimation sketches
+     */
+    @PostMapping("/audience-sketches/rebuild")
+    @Operation(
+            summary = "Rebuild audience sketches",
+            description = "Rebuilds the sketches behind POST /customers/audience/estimate from the graph, "
+                    + "dropping customers who left a segment or tier since the last rebuild"
+    )
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebuildAudienceSketches() {
+        log.info("POST /jobs/audience-sketches/rebuild");
+
+        try {
+            int customers = audienceSketchService.rebuild();
+            return ResponseEntity.ok(ApiResponse.success(Map.of("customers", customers), "Audience sketches rebuilt"));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("JOB_RUNNING", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error rebuilding audience sketches: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("JOB_ERROR", "Failed to rebuild audience sketches"));
+        }
+    }
+}
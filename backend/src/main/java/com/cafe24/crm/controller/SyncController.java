@@ -0,0 +1,178 @@
+package com.cafe24.crm.controller;
+
+import com.cafe24.crm.dto.ApiResponse;
+import com.cafe24.crm.dto.SyncStatusDTO;
+import com.cafe24.crm.service.auth.MallTokenService;
+import com.cafe24.crm.service.sync.Cafe24SyncService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Sync Controller
+ *
+ * REST API endpoints for loading a mall's Cafe24 data into the CRM graph
+ * and tracking sync progress.
+ */
+@RestController
+@RequestMapping("/sync")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Sync", description = "Cafe24 data sync APIs")
+@CrossOrigin(origins = {"https://crm.saemiro.com", "http://localhost:3000", "http://localhost:5173"})
+public class SyncController {
+
+    private final Cafe24SyncService syncService;
+    private final MallTokenService mallTokenService;
+
+    /**
+     * Start a full sync for a mall
+     */
+    @PostMapping("/{mallId}/full")
+    @Operation(
+            summary = "Start full sync",
+            description = "Loads all products, customers and orders of the mall from the Cafe24 Admin API. "
+                    + "Runs in the background and resumes from the last checkpoint unless restart=true. "
+                    + "Uses the mall's stored OAuth token unless access_token is given"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "Sync started"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "No access token given and none stored for the mall"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "A sync is already running for the mall"
+            )
+    })
+    public ResponseEntity<ApiResponse<SyncStatusDTO>> startFullSync(
+            @Parameter(description = "Cafe24 mall ID", required = true)
+            @PathVariable String mallId,
+
+            @Parameter(description = "Ignore checkpoints and reload everything")
+            @RequestParam(defaultValue = "false") boolean restart,
+
+            @RequestBody(required = false) Map<String, String> request
+    ) {
+        log.info("POST /sync/{}/full?restart={}", mallId, restart);
+
+        String accessToken = accessToken(request);
+        if (accessToken == null && !mallTokenService.hasToken(mallId)) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("VALIDATION_ERROR",
+                            "access_token is required unless the mall has authorized the app"));
+        }
+
+        try {
+            SyncStatusDTO status = syncService.startFullSync(mallId, accessToken, restart);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(status, "Sync started"));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("SYNC_RUNNING", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error starting sync for mall {}: {}", mallId, e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("SYNC_ERROR", "Failed to start sync"));
+        }
+    }
+
+    /**
+     * Start a delta sync for a mall
+     */
+    @PostMapping("/{mallId}/delta")
+    @Operation(
+            summary = "Start delta sync",
+            description = "Fetches only records changed since the last high-water mark of each resource, "
+                    + "upserts them and recomputes derived metrics for the customers they touch. "
+                    + "Uses the mall's stored OAuth token unless access_token is given"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "Sync started"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "400",
+                    description = "No access token given and none stored for the mall"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "409",
+                    description = "A sync is already running for the mall"
+            )
+    })
+    public ResponseEntity<ApiResponse<SyncStatusDTO>> startDeltaSync(
+            @Parameter(description = "Cafe24 mall ID", required = true)
+            @PathVariable String mallId,
+
+            @RequestBody(required = false) Map<String, String> request
+    ) {
+        log.info("POST /sync/{}/delta", mallId);
+
+        String accessToken = accessToken(request);
+        if (accessToken == null && !mallTokenService.hasToken(mallId)) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("VALIDATION_ERROR",
+                            "access_token is required unless the mall has authorized the app"));
+        }
+
+        try {
+            SyncStatusDTO status = syncService.startDeltaSync(mallId, accessToken);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success(status, "Delta sync started"));
+
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("SYNC_RUNNING", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error starting delta sync for mall {}: {}", mallId, e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("SYNC_ERROR", "Failed to start delta sync"));
+        }
+    }
+
+    /**
+     * Get sync status for a mall
+     */
+    @GetMapping("/{mallId}/status")
+    @Operation(
+            summary = "Get sync status",
+            description = "Returns run progress, throughput and per-resource checkpoints"
+    )
+    public ResponseEntity<ApiResponse<SyncStatusDTO>> getStatus(
+            @Parameter(description = "Cafe24 mall ID", required = true)
+            @PathVariable String mallId
+    ) {
+        log.info("GET /sync/{}/status", mallId);
+
+        try {
+            return ResponseEntity.ok(ApiResponse.success(syncService.getStatus(mallId)));
+
+        } catch (Exception e) {
+            log.error("Error fetching sync status for mall {}: {}", mallId, e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("SYNC_ERROR", "Failed to fetch sync status"));
+        }
+    }
+
+    /**
+     * Explicit access token from the request body, or null to use the stored one
+     */
+    private String accessToken(Map<String, String> request) {
+        String accessToken = request != null ? request.get("access_token") : null;
+        return accessToken == null || accessToken.isBlank() ? null : accessToken;
+    }
+}
@@ -0,0 +1,85 @@
+package com.cafe24.crm.controller;
+
+import com.cafe24.crm.dto.ApiResponse;
+import com.cafe24.crm.service.webhook.WebhookAuthenticator;
+import com.cafe24.crm.service.webhook.WebhookIngestionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Webhook Controller
+ *
+ * Receives Cafe24 order, customer and product events. Requests must carry the
+ * webhook key; events are acknowledged as soon as they are buffered and written
+ * to the graph in batches.
+ */
+@RestController
+@RequestMapping("/webhooks")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Webhooks", description = "Cafe24 webhook intake")
+public class WebhookController {
+
+    private final WebhookIngestionService ingestionService;
+    private final WebhookAuthenticator authenticator;
+
+    /**
+     * Receive a Cafe24 webhook event
+     */
+    @PostMapping("/cafe24")
+    @Operation(
+            summary = "Receive Cafe24 webhook",
+            description = "Buffers the event and acknowledges immediately; it is written to Neo4j in the next batch"
+    )
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "202",
+                    description = "Event accepted"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "401",
+                    description = "Missing or wrong webhook key"
+            ),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(
+                    responseCode = "503",
+                    description = "Buffer full, Cafe24 should retry"
+            )
+    })
+    public ResponseEntity<ApiResponse<Void>> receive(@RequestHeader HttpHeaders headers,
+                                                     @RequestBody Map<String, Object> payload) {
+        log.debug("POST /webhooks/cafe24 event_no={}", payload.get("event_no"));
+
+        if (!authenticator.isAuthentic(headers)) {
+            log.warn("Rejecting unauthenticated webhook event {}", payload.get("event_no"));
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ApiResponse.error("UNAUTHORIZED", "Invalid webhook key"));
+        }
+
+        try {
+            if (!ingestionService.accept(payload)) {
+                log.warn("Webhook buffer full, rejecting event {}", payload.get("event_no"));
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", "5")
+                        .body(ApiResponse.error("BUFFER_FULL", "Webhook buffer is full"));
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success(null, "Accepted"));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("VALIDATION_ERROR", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error accepting webhook: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("WEBHOOK_ERROR", "Failed to record webhook event"));
+        }
+    }
+}
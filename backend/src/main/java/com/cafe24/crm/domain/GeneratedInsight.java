@@ -0,0 +1,72 @@
+package com.cafe24.crm.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A narrative insight produced by the batch insight job for one RFM segment
+ * or acquisition cohort. Each run of the job writes a new version; readers
+ * serve the latest one.
+ */
+@Entity
+@Table(name = "generated_insights",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"mall_id", "version", "subject_type", "subject_key"}),
+        indexes = @Index(name = "idx_generated_insights_mall_version", columnList = "mall_id, version"))
+@Getter @Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GeneratedInsight {
+
+    public static final String SUBJECT_SEGMENT = "SEGMENT";
+    public static final String SUBJECT_COHORT = "COHORT";
+
+    /**
+     * mall_id of insights generated from the analytics of all malls together
+     */
+    public static final String ALL_MALLS = "*";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "mall_id", nullable = false)
+    private String mallId;
+
+    /**
+     * Run number within the mall_id, starting at 1
+     */
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "subject_type", nullable = false, length = 20)
+    private String subjectType;
+
+    /**
+     * Segment name (e.g. Champions) or cohort month (e.g. 2024-06)
+     */
+    @Column(name = "subject_key", nullable = false)
+    private String subjectKey;
+
+    @Column(name = "label")
+    private String label;
+
+    @Column(name = "content", nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "model")
+    private String model;
+
+    @Column(name = "generated_at")
+    private LocalDateTime generatedAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
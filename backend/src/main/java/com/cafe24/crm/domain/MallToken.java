@@ -0,0 +1,77 @@
+package com.cafe24.crm.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cafe24 OAuth tokens of a mall that installed the app, kept so that
+ * server-side API calls such as the sync pipeline do not need the merchant
+ * to re-authenticate. The access token is refreshed before it expires.
+ */
+@Entity
+@Table(name = "mall_tokens")
+@Getter @Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MallToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "mall_id", nullable = false, unique = true)
+    private String mallId;
+
+    @Column(name = "access_token", nullable = false, length = 512)
+    private String accessToken;
+
+    @Column(name = "access_token_expires_at", nullable = false)
+    private LocalDateTime accessTokenExpiresAt;
+
+    @Column(name = "refresh_token", nullable = false, length = 512)
+    private String refreshToken;
+
+    @Column(name = "refresh_token_expires_at")
+    private LocalDateTime refreshTokenExpiresAt;
+
+    /**
+     * Granted scopes, comma separated
+     */
+    @Column(name = "scopes", length = 1000)
+    private String scopes;
+
+    /**
+     * Cafe24 operator who authorized the app
+     */
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(name = "last_refreshed_at")
+    private LocalDateTime lastRefreshedAt;
+
+    /**
+     * Error of the last failed refresh, cleared by the next successful one
+     */
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
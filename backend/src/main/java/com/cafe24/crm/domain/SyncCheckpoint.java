@@ -0,0 +1,88 @@
+package com.cafe24.crm.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a Cafe24 -> Neo4j sync for one mall and resource,
+ * so an interrupted run can resume from the last committed batch.
+ */
+@Entity
+@Table(name = "sync_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"mall_id", "resource"}))
+@Getter @Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SyncCheckpoint {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "mall_id", nullable = false)
+    private String mallId;
+
+    @Column(name = "resource", nullable = false)
+    private String resource;
+
+    @Column(name = "status")
+    private String status;
+
+    /**
+     * Start of the date window currently being synced
+     */
+    @Column(name = "window_start")
+    private LocalDate windowStart;
+
+    /**
+     * Offset of the first page in the window that has not been committed yet
+     */
+    @Column(name = "next_offset")
+    private Integer nextOffset;
+
+    /**
+     * Latest change timestamp seen for this resource; delta syncs start from here
+     */
+    @Column(name = "high_water_mark")
+    private LocalDateTime highWaterMark;
+
+    @Column(name = "last_delta_at")
+    private LocalDateTime lastDeltaAt;
+
+    @Column(name = "records_synced")
+    private Long recordsSynced;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,87 @@
+package com.cafe24.crm.domain.neo4j;
+
+import lombok.*;
+import org.springframework.data.neo4j.core.schema.GeneratedValue;
+import org.springframework.data.neo4j.core.schema.Id;
+import org.springframework.data.neo4j.core.schema.Node;
+import org.springframework.data.neo4j.core.schema.Property;
+import org.springframework.data.neo4j.core.support.UUIDStringGenerator;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Neo4j Node Entity for a Revenue Rollup bucket
+ *
+ * Pre-aggregated order totals for one day, ISO week or month, kept current
+ * on order ingestion so revenue charts read one node per bucket.
+ */
+@Node("CRM_RevenueRollup")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+@EqualsAndHashCode(of = {"granularity", "bucket"})
+public class CrmRevenueRollupNode {
+
+    public static final String DAY = "day";
+    public static final String WEEK = "week";
+    public static final String MONTH = "month";
+
+    @Id
+    @GeneratedValue(UUIDStringGenerator.class)
+    private String id;
+
+    /**
+     * Bucket size: day, week or month
+     */
+    @Property("granularity")
+    private String granularity;
+
+    /**
+     * Bucket key: 2025-01-31, 2025-W05 or 2025-01
+     */
+    @Property("bucket")
+    private String bucket;
+
+    /**
+     * First day of the bucket
+     */
+    @Property("bucket_start")
+    private LocalDate bucketStart;
+
+    /**
+     * All orders in the bucket, including cancelled ones
+     */
+    @Property("order_count")
+    private Long orderCount;
+
+    /**
+     * Sum of total_amount over all orders in the bucket
+     */
+    @Property("revenue")
+    private Double revenue;
+
+    /**
+     * Average order value (revenue / order_count)
+     */
+    @Property("aov")
+    private Double aov;
+
+    @Property("discount")
+    private Double discount;
+
+    @Property("shipping")
+    private Double shipping;
+
+    @Property("cancelled_count")
+    private Long cancelledCount;
+
+    @Property("cancelled_revenue")
+    private Double cancelledRevenue;
+
+    @Property("updated_at")
+    private LocalDateTime updatedAt;
+}
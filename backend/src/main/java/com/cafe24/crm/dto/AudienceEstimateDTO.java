@@ -0,0 +1,43 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for Audience Size Estimates
+ *
+ * Sketch-based estimate of how many customers match a segment definition,
+ * with bounds at about 95% confidence.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Audience size estimate")
+public class AudienceEstimateDTO {
+
+    @Schema(description = "Estimated number of customers", example = "18420")
+    private Long estimate;
+
+    @Schema(description = "Lower bound (about 95% confidence)", example = "17980")
+    private Long lowerBound;
+
+    @Schema(description = "Upper bound (about 95% confidence)", example = "18870")
+    private Long upperBound;
+
+    @Schema(description = "Whether the estimate is an exact count (theta sketches below capacity)", example = "false")
+    private Boolean exact;
+
+    @Schema(description = "Sketch type used (hll for pure unions, theta otherwise)", example = "theta")
+    private String method;
+
+    @Schema(description = "Evaluation time in microseconds", example = "240")
+    private Long tookMicros;
+
+    @Schema(description = "When the sketches were last rebuilt from the graph")
+    private LocalDateTime sketchesBuiltAt;
+}
@@ -0,0 +1,71 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for Customer Column Aggregates
+ *
+ * Group-by result over the customer column store: one entry per combination
+ * of dimension values with customer count and measure statistics.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Customer group-by aggregate")
+public class CustomerAggregateDTO {
+
+    @Schema(description = "Grouping dimensions", example = "[\"segment\", \"tier\"]")
+    private List<String> groupBy;
+
+    @Schema(description = "Aggregated measure", example = "clv")
+    private String measure;
+
+    @Schema(description = "Scan time in microseconds", example = "3200")
+    private Long tookMicros;
+
+    @Schema(description = "When the column store was built")
+    private LocalDateTime storeBuiltAt;
+
+    @Schema(description = "One entry per group")
+    private List<Group> groups;
+
+    /**
+     * Statistics of one group
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Group statistics")
+    public static class Group {
+
+        @Schema(description = "Dimension values, in groupBy order; null where missing")
+        private List<String> keys;
+
+        @Schema(description = "Customers in the group", example = "1520")
+        private Long customers;
+
+        @Schema(description = "Customers with a value for the measure", example = "1498")
+        private Long count;
+
+        @Schema(description = "Sum of the measure", example = "45210000.0")
+        private Double sum;
+
+        @Schema(description = "Average of the measure", example = "30180.2")
+        private Double avg;
+
+        @Schema(description = "Minimum of the measure", example = "0.0")
+        private Double min;
+
+        @Schema(description = "Maximum of the measure", example = "980000.0")
+        private Double max;
+    }
+}
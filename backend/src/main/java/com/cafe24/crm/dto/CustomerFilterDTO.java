@@ -0,0 +1,45 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * DTO for Customer Filter Expressions
+ *
+ * A node of a boolean filter tree: exactly one of {@code and}, {@code or},
+ * {@code not} or a leaf predicate ({@code field} + {@code op}).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Customer filter expression",
+        example = "{\"and\":[{\"field\":\"segment\",\"op\":\"eq\",\"value\":\"VIP\"},"
+                + "{\"field\":\"churn_probability\",\"op\":\"gt\",\"value\":0.5}]}")
+public class CustomerFilterDTO {
+
+    @Schema(description = "All child expressions must match")
+    private List<CustomerFilterDTO> and;
+
+    @Schema(description = "At least one child expression must match")
+    private List<CustomerFilterDTO> or;
+
+    @Schema(description = "Child expression must not match")
+    private CustomerFilterDTO not;
+
+    @Schema(description = "Customer attribute", example = "tier")
+    private String field;
+
+    @Schema(description = "Operator (eq, ne, in, exists, gt, gte, lt, lte, between)", example = "eq")
+    private String op;
+
+    @Schema(description = "Operand of eq, ne, gt, gte, lt, lte", example = "gold")
+    private Object value;
+
+    @Schema(description = "Operands of in, or [min, max] of between")
+    private List<Object> values;
+}
@@ -0,0 +1,37 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for Customer Filter Results
+ *
+ * Match count of a filter expression plus one page of matching customer IDs,
+ * evaluated against the in-memory customer bitmap index.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Customer filter result")
+public class CustomerFilterResultDTO {
+
+    @Schema(description = "Number of matching customers", example = "1842")
+    private Long count;
+
+    @Schema(description = "Evaluation time in microseconds", example = "85")
+    private Long tookMicros;
+
+    @Schema(description = "Customers in the index", example = "250000")
+    private Integer indexedCustomers;
+
+    @Schema(description = "When the index snapshot was built")
+    private LocalDateTime indexBuiltAt;
+
+    @Schema(description = "Page of matching customer keys (\"mall:id\", or the id for customers without a mall), ordered by mall and customer ID")
+    private PageResponse<String> customerIds;
+}
@@ -0,0 +1,48 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for Background Job Status
+ *
+ * Progress of the current or last run of a scheduled job.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Background job status")
+public class JobStatusDTO {
+
+    @Schema(description = "Job name", example = "derived-metrics")
+    private String job;
+
+    @Schema(description = "Whether the job is currently running", example = "false")
+    private Boolean running;
+
+    @Schema(description = "Run start time")
+    private LocalDateTime startedAt;
+
+    @Schema(description = "Run finish time")
+    private LocalDateTime finishedAt;
+
+    @Schema(description = "Partitions completed", example = "1000")
+    private Long partitionsCompleted;
+
+    @Schema(description = "Items processed", example = "5000000")
+    private Long processed;
+
+    @Schema(description = "Items whose values changed and were written", example = "412000")
+    private Long changed;
+
+    @Schema(description = "Throughput in items per second", example = "3400.5")
+    private Double itemsPerSecond;
+
+    @Schema(description = "Error of the last run, if it failed")
+    private String error;
+}
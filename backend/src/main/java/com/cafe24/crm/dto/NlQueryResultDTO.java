@@ -0,0 +1,49 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO for Natural-Language Graph Queries
+ *
+ * The Cypher a question was translated into and the rows it returned.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Result of a natural-language graph query")
+public class NlQueryResultDTO {
+
+    @Schema(description = "Question as asked", example = "Which 5 products did VIP customers buy most last month?")
+    private String question;
+
+    @Schema(description = "Generated read-only Cypher")
+    private String cypher;
+
+    @Schema(description = "Whether the Cypher came from the plan cache instead of the LLM", example = "false")
+    private Boolean cached;
+
+    @Schema(description = "Planner's largest row estimate of any operator", example = "1250.0")
+    private Double estimatedRows;
+
+    @Schema(description = "Result columns in order")
+    private List<String> columns;
+
+    @Schema(description = "Result rows, keyed by column")
+    private List<Map<String, Object>> rows;
+
+    @Schema(description = "Number of rows returned", example = "5")
+    private Integer rowCount;
+
+    @Schema(description = "Whether rows beyond the row limit were cut off", example = "false")
+    private Boolean truncated;
+
+    @Schema(description = "Time to translate, validate and run, in milliseconds", example = "840")
+    private Long tookMillis;
+}
@@ -0,0 +1,62 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for Order Fact Aggregates
+ *
+ * Order count and revenue per value of one order dimension, computed from
+ * the columnar order fact store.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Order group-by aggregate")
+public class OrderAggregateDTO {
+
+    @Schema(description = "Grouping dimension", example = "channel")
+    private String groupBy;
+
+    @Schema(description = "First order date included")
+    private LocalDate from;
+
+    @Schema(description = "Last order date included")
+    private LocalDate to;
+
+    @Schema(description = "Scan time in microseconds", example = "2100")
+    private Long tookMicros;
+
+    @Schema(description = "When the order fact store was built")
+    private LocalDateTime storeBuiltAt;
+
+    @Schema(description = "One entry per dimension value")
+    private List<Group> groups;
+
+    /**
+     * Totals of one dimension value
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Group totals")
+    public static class Group {
+
+        @Schema(description = "Dimension value", example = "mobile")
+        private String key;
+
+        @Schema(description = "Number of orders", example = "5230")
+        private Long orders;
+
+        @Schema(description = "Sum of order totals", example = "182400000.0")
+        private Double revenue;
+    }
+}
@@ -0,0 +1,87 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for Order Pivots
+ *
+ * Sparse cross-tab of orders by up to two dimensions; only non-empty cells
+ * are listed and only the requested measures are filled in.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Order pivot table")
+public class OrderPivotDTO {
+
+    @Schema(description = "Row dimension", example = "channel")
+    private String rows;
+
+    @Schema(description = "Column dimension", example = "device")
+    private String columns;
+
+    @Schema(description = "Computed measures", example = "[\"count\", \"sum\"]")
+    private List<String> measures;
+
+    @Schema(description = "First order date included")
+    private LocalDate from;
+
+    @Schema(description = "Last order date included")
+    private LocalDate to;
+
+    @Schema(description = "Row labels in display order")
+    private List<String> rowKeys;
+
+    @Schema(description = "Column labels in display order")
+    private List<String> columnKeys;
+
+    @Schema(description = "Non-empty cells")
+    private List<Cell> cells;
+
+    @Schema(description = "Scan time in microseconds", example = "3400")
+    private Long tookMicros;
+
+    @Schema(description = "Whether the result came from the pivot cache")
+    private Boolean cached;
+
+    @Schema(description = "When the order fact store was built")
+    private LocalDateTime storeBuiltAt;
+
+    /**
+     * One row x column cell
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Pivot cell")
+    public static class Cell {
+
+        @Schema(description = "Row label", example = "mobile")
+        private String row;
+
+        @Schema(description = "Column label", example = "ios")
+        private String column;
+
+        @Schema(description = "Number of orders", example = "1240")
+        private Long count;
+
+        @Schema(description = "Sum of order totals", example = "48200000.0")
+        private Double sum;
+
+        @Schema(description = "Average order total", example = "38870.9")
+        private Double avg;
+
+        @Schema(description = "Distinct ordering customers", example = "910")
+        private Long distinctCustomers;
+    }
+}
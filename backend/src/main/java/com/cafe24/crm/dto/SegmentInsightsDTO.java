@@ -0,0 +1,62 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for Batch-Generated Segment Insights
+ *
+ * The latest version of the narrative insights the batch job generated for
+ * the RFM segments and acquisition cohorts of all malls together.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Batch-generated segment and cohort insights")
+public class SegmentInsightsDTO {
+
+    @Schema(description = "Malls the insights describe; the segment analytics are not scoped per mall", example = "all")
+    private String scope;
+
+    @Schema(description = "Run number of the batch job", example = "12")
+    private Long version;
+
+    @Schema(description = "When this version was generated")
+    private LocalDateTime generatedAt;
+
+    @Schema(description = "Insights, segments first")
+    private List<Insight> insights;
+
+    /**
+     * One generated insight
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Generated insight for one segment or cohort")
+    public static class Insight {
+
+        @Schema(description = "Subject type", example = "SEGMENT", allowableValues = {"SEGMENT", "COHORT"})
+        private String subjectType;
+
+        @Schema(description = "Segment name or cohort month", example = "Champions")
+        private String subjectKey;
+
+        @Schema(description = "Display label", example = "챔피언")
+        private String label;
+
+        @Schema(description = "Narrative insight")
+        private String content;
+
+        @Schema(description = "Model that generated the insight", example = "cafe24-crm-llama")
+        private String model;
+    }
+}
@@ -0,0 +1,90 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for Cafe24 Sync Status
+ *
+ * Reports the progress and throughput of a mall's Cafe24 -> Neo4j sync,
+ * one entry per synchronized resource.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Cafe24 sync status for a mall")
+public class SyncStatusDTO {
+
+    @Schema(description = "Cafe24 mall ID", example = "myshop")
+    private String mallId;
+
+    @Schema(description = "Whether a sync is currently running for the mall", example = "true")
+    private Boolean running;
+
+    @Schema(description = "Sync mode of the current or last run (full, delta)", example = "full")
+    private String mode;
+
+    @Schema(description = "Run start time")
+    private LocalDateTime startedAt;
+
+    @Schema(description = "Run finish time")
+    private LocalDateTime finishedAt;
+
+    @Schema(description = "Records written in the current or last run", example = "125000")
+    private Long recordsWritten;
+
+    @Schema(description = "Write throughput in records per second", example = "2150.4")
+    private Double recordsPerSecond;
+
+    @Schema(description = "Error of the last run, if it failed")
+    private String error;
+
+    @Schema(description = "Per-resource checkpoints")
+    private List<ResourceStatus> resources;
+
+    /**
+     * Checkpoint of a single resource
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Per-resource sync checkpoint")
+    public static class ResourceStatus {
+
+        @Schema(description = "Resource name", example = "ORDERS")
+        private String resource;
+
+        @Schema(description = "Checkpoint status (RUNNING, COMPLETED, FAILED)", example = "RUNNING")
+        private String status;
+
+        @Schema(description = "Start of the date window being synced", example = "2024-01-01")
+        private LocalDate windowStart;
+
+        @Schema(description = "Next page offset inside the window", example = "400")
+        private Integer nextOffset;
+
+        @Schema(description = "Latest change timestamp seen; delta syncs start from here")
+        private LocalDateTime highWaterMark;
+
+        @Schema(description = "Last successful delta sync")
+        private LocalDateTime lastDeltaAt;
+
+        @Schema(description = "Records synced for this resource", example = "52000")
+        private Long recordsSynced;
+
+        @Schema(description = "Last checkpoint update")
+        private LocalDateTime updatedAt;
+
+        @Schema(description = "Last error message")
+        private String lastError;
+    }
+}
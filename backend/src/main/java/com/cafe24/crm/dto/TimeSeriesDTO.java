@@ -0,0 +1,70 @@
+package com.cafe24.crm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO for Time Series Query Results
+ *
+ * Columnar series for charts: each series carries parallel arrays of bucket
+ * start timestamps and metric values.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Time series query result")
+public class TimeSeriesDTO {
+
+    @Schema(description = "Metric", example = "revenue")
+    private String metric;
+
+    @Schema(description = "Bucket granularity", example = "day")
+    private String granularity;
+
+    @Schema(description = "Grouping dimension, if any", example = "channel")
+    private String groupBy;
+
+    @Schema(description = "First day of the range (inclusive)")
+    private LocalDate from;
+
+    @Schema(description = "Last day of the range (inclusive)")
+    private LocalDate to;
+
+    @Schema(description = "Data source (rollup or orders)", example = "rollup")
+    private String source;
+
+    @Schema(description = "Number of buckets in the range before downsampling", example = "365")
+    private Integer bucketCount;
+
+    @Schema(description = "Whether series were downsampled with LTTB", example = "false")
+    private Boolean downsampled;
+
+    @Schema(description = "One series per group, or a single 'total' series")
+    private List<Series> series;
+
+    /**
+     * One series of the result
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Time series")
+    public static class Series {
+
+        @Schema(description = "Series name (group value or 'total')", example = "mobile")
+        private String name;
+
+        @Schema(description = "Bucket start times in epoch milliseconds")
+        private long[] timestamps;
+
+        @Schema(description = "Metric value per bucket")
+        private double[] values;
+    }
+}
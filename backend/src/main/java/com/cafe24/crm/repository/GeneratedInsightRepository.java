@@ -0,0 +1,29 @@
+package com.cafe24.crm.repository;
+
+import com.cafe24.crm.domain.GeneratedInsight;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GeneratedInsightRepository extends JpaRepository<GeneratedInsight, Long> {
+
+    @Query("SELECT MAX(i.version) FROM GeneratedInsight i WHERE i.mallId = :mallId")
+    Optional<Long> findLatestVersion(@Param("mallId") String mallId);
+
+    List<GeneratedInsight> findByMallIdAndVersionOrderBySubjectTypeDescIdAsc(String mallId, Long version);
+
+    /**
+     * Drop versions older than the given one
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM GeneratedInsight i WHERE i.mallId = :mallId AND i.version < :version")
+    int deleteOlderVersions(@Param("mallId") String mallId, @Param("version") Long version);
+}
@@ -0,0 +1,21 @@
+package com.cafe24.crm.repository;
+
+import com.cafe24.crm.domain.MallToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MallTokenRepository extends JpaRepository<MallToken, Long> {
+
+    Optional<MallToken> findByMallId(String mallId);
+
+    List<MallToken> findByAccessTokenExpiresAtBefore(LocalDateTime horizon);
+
+    @Query("SELECT t.mallId FROM MallToken t")
+    List<String> findAllMallIds();
+}
@@ -0,0 +1,20 @@
+package com.cafe24.crm.repository;
+
+import com.cafe24.crm.domain.SyncCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SyncCheckpointRepository extends JpaRepository<SyncCheckpoint, Long> {
+
+    Optional<SyncCheckpoint> findByMallIdAndResource(String mallId, String resource);
+
+    List<SyncCheckpoint> findByMallId(String mallId);
+
+    @Query("SELECT DISTINCT c.mallId FROM SyncCheckpoint c ORDER BY c.mallId")
+    List<String> findDistinctMallIds();
+}
@@ -0,0 +1,60 @@
+package com.cafe24.crm.repository.neo4j;
+
+import com.cafe24.crm.domain.neo4j.CrmRevenueRollupNode;
+import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Neo4j Repository for CRM Revenue Rollups
+ *
+ * Reads pre-aggregated day/week/month order buckets for time series charts.
+ */
+@Repository
+public interface CrmRevenueRollupNeo4jRepository extends Neo4jRepository<CrmRevenueRollupNode, String> {
+
+    /**
+     * Latest buckets of a granularity, in the column layout of getOrdersByMonth
+     */
+    @Query("""
+            MATCH (r:CRM_RevenueRollup)
+            WHERE r.granularity = $granularity AND r.order_count > 0
+            RETURN r.bucket AS month,
+                   r.order_count AS orderCount,
+                   r.revenue AS totalRevenue,
+                   r.aov AS avgOrderValue
+            ORDER BY r.bucket_start DESC
+            LIMIT $limit
+            """)
+    List<Map<String, Object>> findLatestBuckets(@Param("granularity") String granularity,
+                                                @Param("limit") int limit);
+
+    /**
+     * Buckets of a granularity starting inside [from, to), oldest first
+     */
+    @Query("""
+            MATCH (r:CRM_RevenueRollup)
+            WHERE r.granularity = $granularity
+              AND r.bucket_start >= $from AND r.bucket_start < $to
+            RETURN r
+            ORDER BY r.bucket_start
+            """)
+    List<CrmRevenueRollupNode> findBuckets(@Param("granularity") String granularity,
+                                           @Param("from") LocalDate from,
+                                           @Param("to") LocalDate to);
+
+    /**
+     * Number of rollup buckets of a granularity
+     */
+    @Query("""
+            MATCH (r:CRM_RevenueRollup)
+            WHERE r.granularity = $granularity
+            RETURN count(r)
+            """)
+    Long countBuckets(@Param("granularity") String granularity);
+}
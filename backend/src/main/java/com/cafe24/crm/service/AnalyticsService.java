@@ -3,6 +3,8 @@ package com.cafe24.crm.service;
 import com.cafe24.crm.dto.*;
 import com.cafe24.crm.repository.neo4j.CrmCustomerNeo4jRepository;
 import com.cafe24.crm.repository.neo4j.CrmOrderNeo4jRepository;
+import com.cafe24.crm.service.columnar.CustomerColumnStore;
+import com.cafe24.crm.service.columnar.OrderFactStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -26,6 +28,8 @@ public class AnalyticsService {
 
     private final CrmCustomerNeo4jRepository customerRepository;
     private final CrmOrderNeo4jRepository orderRepository;
+    private final CustomerColumnStore customerColumnStore;
+    private final OrderFactStore orderFactStore;
 
     /**
      * Get RFM analysis data
@@ -34,8 +38,11 @@ public class AnalyticsService {
         log.debug("Fetching RFM analysis");
 
         try {
-            List<Map<String, Object>> rfmDistribution = customerRepository.getRfmDistribution();
-            List<Map<String, Object>> rfmSegmentDist = customerRepository.getRfmSegmentDistribution();
+            boolean columnar = customerColumnStore.isReady();
+            List<Map<String, Object>> rfmDistribution = columnar
+                    ? customerColumnStore.rfmDistribution() : customerRepository.getRfmDistribution();
+            List<Map<String, Object>> rfmSegmentDist = columnar
+                    ? customerColumnStore.rfmScoreDistribution() : customerRepository.getRfmSegmentDistribution();
             Long totalCustomers = customerRepository.getTotalCustomerCount();
 
             if (rfmDistribution == null) {
@@ -343,9 +350,11 @@ public class AnalyticsService {
         log.debug("Fetching CLV predictions");
 
         try {
-            Double avgClv = customerRepository.getAverageClv();
+            boolean columnar = customerColumnStore.isReady();
+            Double avgClv = columnar ? customerColumnStore.averageClv() : customerRepository.getAverageClv();
             Long totalCustomers = customerRepository.getTotalCustomerCount();
-            List<Map<String, Object>> segmentStats = customerRepository.getSegmentStats();
+            List<Map<String, Object>> segmentStats = columnar
+                    ? customerColumnStore.segmentStats() : customerRepository.getSegmentStats();
             var topCustomers = customerRepository.findTopByRevenue(10);
 
             // Calculate total CLV
@@ -442,7 +451,8 @@ public class AnalyticsService {
     public List<Map<String, Object>> getPurchasePatterns() {
         log.debug("Fetching purchase patterns");
         try {
-            return customerRepository.getPurchasePatternsByDayOfWeek();
+            return orderFactStore.isReady()
+                    ? orderFactStore.purchasePatternsByDayOfWeek() : customerRepository.getPurchasePatternsByDayOfWeek();
         } catch (Exception e) {
             log.error("Error fetching purchase patterns: {}", e.getMessage(), e);
             return List.of();
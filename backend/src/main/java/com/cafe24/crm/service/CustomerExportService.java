@@ -0,0 +1,238 @@
+package com.cafe24.crm.service;
+
+import com.cafe24.crm.support.MallContext;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Customer Export Service
+ *
+ * Streams customer rows from Neo4j straight to an output stream so that
+ * exports of a whole segment or tier run in constant memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerExportService {
+
+    /**
+     * Exported columns, in output order. Each maps to a CRM_Customer property.
+     */
+    static final List<String> COLUMNS = List.of(
+            "mall_id", "customer_id", "name", "email", "segment", "tier", "status",
+            "rfm_score", "recency", "frequency", "monetary",
+            "total_orders", "total_revenue", "avg_order_value", "clv",
+            "churn_probability", "days_since_last_purchase",
+            "first_order_date", "last_order_date", "preferred_category"
+    );
+
+    public static final String EXPORT_QUERY = """
+            MATCH (c:CRM_Customer)
+            WHERE ($mallId IS NULL OR c.mall_id = $mallId)
+              AND ($segment IS NULL OR c.segment = $segment)
+              AND ($tier IS NULL OR c.tier = $tier)
+            RETURN c.mall_id AS mall_id, c.customer_id AS customer_id, c.name AS name, c.email AS email,
+                   c.segment AS segment, c.tier AS tier, c.status AS status,
+                   c.rfm_score AS rfm_score, c.recency AS recency,
+                   c.frequency AS frequency, c.monetary AS monetary,
+                   c.total_orders AS total_orders, c.total_revenue AS total_revenue,
+                   c.avg_order_value AS avg_order_value, c.clv AS clv,
+                   c.churn_probability AS churn_probability,
+                   c.days_since_last_purchase AS days_since_last_purchase,
+                   c.first_order_date AS first_order_date,
+                   c.last_order_date AS last_order_date,
+                   c.preferred_category AS preferred_category
+            """;
+
+    private final Driver driver;
+    private final ObjectMapper objectMapper;
+
+    @Value("${export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${export.flush-every:5000}")
+    private int flushEvery;
+
+    /**
+     * Supported export formats
+     */
+    public enum ExportFormat {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static ExportFormat from(String value) {
+            try {
+                return ExportFormat.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    /**
+     * Stream customers matching the optional mall/segment/tier filter to the output.
+     *
+     * The driver pulls records from the server in batches of {@code fetchSize},
+     * and the next batch is only requested once the previous one has been written,
+     * so a slow client throttles the query instead of buffering rows in memory.
+     *
+     * @param mallId mall to export, or null/{@value MallContext#UNKNOWN} for all malls
+     * @return number of rows written
+     */
+    public long export(String mallId, String segment, String tier, ExportFormat format, boolean gzip,
+                       OutputStream out) throws IOException {
+        log.debug("Exporting customers, mall: {}, segment: {}, tier: {}, format: {}, gzip: {}",
+                mallId, segment, tier, format, gzip);
+
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("mallId", MallContext.UNKNOWN.equals(mallId) ? null : blankToNull(mallId));
+        params.put("segment", blankToNull(segment));
+        params.put("tier", blankToNull(tier));
+
+        SessionConfig config = SessionConfig.builder()
+                .withDefaultAccessMode(AccessMode.READ)
+                .withFetchSize(fetchSize)
+                .build();
+
+        long rows;
+        // Auto-commit rather than executeRead: a transparent retry would repeat rows
+        // that have already been written to the client
+        try (Session session = driver.session(config)) {
+            Result result = session.run(EXPORT_QUERY, params);
+            rows = format == ExportFormat.CSV
+                    ? writeCsv(result, target)
+                    : writeNdjson(result, target);
+        }
+
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+        target.flush();
+
+        log.info("Exported {} customers (mall: {}, segment: {}, tier: {}, format: {})",
+                rows, mallId, segment, tier, format);
+        return rows;
+    }
+
+    private long writeCsv(Result result, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        // UTF-8 BOM so that Excel opens Korean names correctly
+        writer.write('\uFEFF');
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+
+        long rows = 0;
+        while (result.hasNext()) {
+            Record record = result.next();
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(csvEscape(toText(record.get(COLUMNS.get(i)).asObject())));
+            }
+            writer.write("\r\n");
+
+            if (++rows % flushEvery == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private long writeNdjson(Result result, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+        long rows = 0;
+        while (result.hasNext()) {
+            Record record = result.next();
+            generator.writeStartObject();
+            for (String column : COLUMNS) {
+                Object value = record.get(column).asObject();
+                if (value == null) {
+                    generator.writeNullField(column);
+                } else if (value instanceof Boolean flag) {
+                    generator.writeBooleanField(column, flag);
+                } else if (value instanceof Long number) {
+                    generator.writeNumberField(column, number);
+                } else if (value instanceof Double number) {
+                    generator.writeNumberField(column, number);
+                } else if (value instanceof Number number) {
+                    generator.writeNumberField(column, number.doubleValue());
+                } else {
+                    generator.writeStringField(column, value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+
+            if (++rows % flushEvery == 0) {
+                generator.flush();
+            }
+        }
+        generator.flush();
+        return rows;
+    }
+
+    private String toText(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private String csvEscape(String text) {
+        if (text.isEmpty()) {
+            return text;
+        }
+        boolean needsQuote = text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+        if (!needsQuote) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -1,9 +1,13 @@
 package com.cafe24.crm.service;
 
+import com.cafe24.crm.domain.neo4j.CrmRevenueRollupNode;
 import com.cafe24.crm.dto.*;
 import com.cafe24.crm.repository.neo4j.CrmCustomerNeo4jRepository;
 import com.cafe24.crm.repository.neo4j.CrmOrderNeo4jRepository;
 import com.cafe24.crm.repository.neo4j.CrmProductNeo4jRepository;
+import com.cafe24.crm.repository.neo4j.CrmRevenueRollupNeo4jRepository;
+import com.cafe24.crm.service.columnar.CustomerColumnStore;
+import com.cafe24.crm.service.columnar.OrderFactStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -28,6 +32,9 @@ public class DashboardService {
     private final CrmCustomerNeo4jRepository customerRepository;
     private final CrmOrderNeo4jRepository orderRepository;
     private final CrmProductNeo4jRepository productRepository;
+    private final CrmRevenueRollupNeo4jRepository revenueRollupRepository;
+    private final CustomerColumnStore customerColumnStore;
+    private final OrderFactStore orderFactStore;
 
     /**
      * Get overall dashboard statistics
@@ -41,7 +48,8 @@ public class DashboardService {
         Long totalOrders = safeQuery(() -> orderRepository.getTotalOrderCount(), 0L, "totalOrders");
         Double totalRevenue = safeQuery(() -> orderRepository.getTotalRevenue(), 0.0, "totalRevenue");
         Double avgOrderValue = safeQuery(() -> orderRepository.getAverageOrderValue(), 0.0, "avgOrderValue");
-        Double avgClv = safeQuery(() -> customerRepository.getAverageClv(), 0.0, "avgClv");
+        Double avgClv = safeQuery(() -> customerColumnStore.isReady()
+                ? customerColumnStore.averageClv() : customerRepository.getAverageClv(), 0.0, "avgClv");
         Long totalProducts = safeQuery(() -> productRepository.getTotalProductCount(), 0L, "totalProducts");
 
         // Get segment count
@@ -107,7 +115,13 @@ public class DashboardService {
         log.debug("Fetching revenue time series for {} months", months);
 
         try {
-            List<Map<String, Object>> rawData = orderRepository.getOrdersByMonth(months);
+            // Monthly rollups cost one node per month; scan the orders only until they are built
+            List<Map<String, Object>> rawData = safeQuery(
+                    () -> revenueRollupRepository.findLatestBuckets(CrmRevenueRollupNode.MONTH, months),
+                    List.of(), "revenueRollups");
+            if (rawData.isEmpty()) {
+                rawData = orderRepository.getOrdersByMonth(months);
+            }
 
             if (rawData == null || rawData.isEmpty()) {
                 return RevenueChartDTO.builder()
@@ -199,7 +213,8 @@ public class DashboardService {
 
         try {
             List<Map<String, Object>> segmentData = customerRepository.countBySegment();
-            List<Map<String, Object>> segmentStats = customerRepository.getSegmentStats();
+            List<Map<String, Object>> segmentStats = customerColumnStore.isReady()
+                    ? customerColumnStore.segmentStats() : customerRepository.getSegmentStats();
 
             if (segmentData == null || segmentData.isEmpty()) {
                 return SegmentDistributionDTO.builder()
@@ -360,7 +375,7 @@ public class DashboardService {
         log.debug("Fetching orders by channel");
 
         try {
-            return orderRepository.getOrdersByChannel();
+            return orderFactStore.isReady() ? orderFactStore.ordersByChannel() : orderRepository.getOrdersByChannel();
         } catch (Exception e) {
             log.error("Error fetching orders by channel: {}", e.getMessage(), e);
             return List.of();
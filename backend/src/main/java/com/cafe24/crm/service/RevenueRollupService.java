@@ -0,0 +1,215 @@
+package com.cafe24.crm.service;
+
+import com.cafe24.crm.domain.neo4j.CrmRevenueRollupNode;
+import com.cafe24.crm.repository.neo4j.CrmRevenueRollupNeo4jRepository;
+import com.cafe24.crm.service.sync.OrdersUpsertedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Revenue Rollup Service
+ *
+ * Maintains CRM_RevenueRollup buckets. Day buckets are re-aggregated from the
+ * orders of that day; week and month buckets are then summed from their day
+ * buckets, so refreshing a batch of orders costs O(orders on those days) plus
+ * O(days per month) instead of a scan over all orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RevenueRollupService {
+
+    private static final String REFRESH_DAYS = """
+            UNWIND $days AS day
+            OPTIONAL MATCH (o:CRM_Order)
+            WHERE o.order_date = day
+            WITH day,
+                 count(o) AS orders,
+                 sum(coalesce(o.total_amount, 0.0)) AS revenue,
+                 sum(coalesce(o.discount_amount, 0.0)) AS discount,
+                 sum(coalesce(o.shipping_cost, 0.0)) AS shipping,
+                 sum(CASE WHEN o.status = 'cancelled' THEN 1 ELSE 0 END) AS cancelled,
+                 sum(CASE WHEN o.status = 'cancelled' THEN coalesce(o.total_amount, 0.0) ELSE 0.0 END) AS cancelledRevenue
+            MERGE (r:CRM_RevenueRollup {granularity: 'day', bucket: toString(day)})
+            ON CREATE SET r.id = randomUUID()
+            SET r.bucket_start = day,
+                r.order_count = orders,
+                r.revenue = revenue,
+                r.aov = CASE WHEN orders > 0 THEN revenue / orders ELSE 0.0 END,
+                r.discount = discount,
+                r.shipping = shipping,
+                r.cancelled_count = cancelled,
+                r.cancelled_revenue = cancelledRevenue,
+                r.updated_at = localdatetime()
+            """;
+
+    private static final String REFRESH_PERIODS = """
+            UNWIND $periods AS period
+            OPTIONAL MATCH (d:CRM_RevenueRollup)
+            WHERE d.granularity = 'day' AND d.bucket_start >= period.start AND d.bucket_start < period.end
+            WITH period,
+                 sum(coalesce(d.order_count, 0)) AS orders,
+                 sum(coalesce(d.revenue, 0.0)) AS revenue,
+                 sum(coalesce(d.discount, 0.0)) AS discount,
+                 sum(coalesce(d.shipping, 0.0)) AS shipping,
+                 sum(coalesce(d.cancelled_count, 0)) AS cancelled,
+                 sum(coalesce(d.cancelled_revenue, 0.0)) AS cancelledRevenue
+            MERGE (r:CRM_RevenueRollup {granularity: $granularity, bucket: period.bucket})
+            ON CREATE SET r.id = randomUUID()
+            SET r.bucket_start = period.start,
+                r.order_count = orders,
+                r.revenue = revenue,
+                r.aov = CASE WHEN orders > 0 THEN revenue / orders ELSE 0.0 END,
+                r.discount = discount,
+                r.shipping = shipping,
+                r.cancelled_count = cancelled,
+                r.cancelled_revenue = cancelledRevenue,
+                r.updated_at = localdatetime()
+            """;
+
+    private static final String ORDER_DATES = """
+            MATCH (o:CRM_Order)
+            WHERE o.order_date IS NOT NULL
+            RETURN DISTINCT o.order_date AS day
+            """;
+
+    private static final int REBUILD_CHUNK_DAYS = 92;
+
+    private final Driver driver;
+    private final CrmRevenueRollupNeo4jRepository rollupRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * Refresh the buckets touched by an ingested order batch
+     */
+    @EventListener
+    public void onOrdersUpserted(OrdersUpsertedEvent event) {
+        if (event.affectedDates().isEmpty()) {
+            return;
+        }
+        try {
+            refresh(event.affectedDates());
+        } catch (Exception e) {
+            // The orders are committed; a later batch or a rebuild will correct the buckets
+            log.error("Failed to refresh revenue rollups for {} days: {}",
+                    event.affectedDates().size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Build the rollups on first start when orders exist but no buckets do
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        Thread thread = new Thread(() -> {
+            try {
+                Long buckets = rollupRepository.countBuckets(CrmRevenueRollupNode.DAY);
+                if (buckets == null || buckets == 0) {
+                    rebuild();
+                }
+            } catch (Exception e) {
+                log.warn("Skipping initial revenue rollup build: {}", e.getMessage());
+            }
+        }, "revenue-rollup-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Recompute every bucket from the orders
+     *
+     * @return number of days with orders
+     * @throws IllegalStateException if a rebuild is already running
+     */
+    public int rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Revenue rollup rebuild is already running");
+        }
+        try {
+            List<LocalDate> days;
+            try (Session session = driver.session()) {
+                days = session.executeRead(tx -> tx.run(ORDER_DATES).list(r -> r.get("day").asLocalDate()));
+            }
+            List<LocalDate> sorted = new ArrayList<>(new TreeSet<>(days));
+            log.info("Rebuilding revenue rollups over {} order days", sorted.size());
+
+            for (int i = 0; i < sorted.size(); i += REBUILD_CHUNK_DAYS) {
+                refresh(sorted.subList(i, Math.min(i + REBUILD_CHUNK_DAYS, sorted.size())));
+            }
+            log.info("Revenue rollups rebuilt");
+            return sorted.size();
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Re-aggregate the given days, then the weeks and months containing them
+     */
+    public void refresh(Collection<LocalDate> days) {
+        Map<String, Map<String, Object>> weeks = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> months = new LinkedHashMap<>();
+        for (LocalDate day : days) {
+            LocalDate weekStart = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            weeks.putIfAbsent(weekBucket(day), period(weekBucket(day), weekStart, weekStart.plusWeeks(1)));
+
+            LocalDate monthStart = day.withDayOfMonth(1);
+            months.putIfAbsent(monthBucket(day), period(monthBucket(day), monthStart, monthStart.plusMonths(1)));
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (Session session = driver.session()) {
+            session.executeWrite(tx -> {
+                tx.run(REFRESH_DAYS, Map.of("days", List.copyOf(days))).consume();
+                tx.run(REFRESH_PERIODS, Map.of("granularity", CrmRevenueRollupNode.WEEK,
+                        "periods", List.copyOf(weeks.values()))).consume();
+                return tx.run(REFRESH_PERIODS, Map.of("granularity", CrmRevenueRollupNode.MONTH,
+                        "periods", List.copyOf(months.values()))).consume();
+            });
+        } finally {
+            sample.stop(meterRegistry.timer("crm.rollup.refresh"));
+        }
+        log.debug("Refreshed revenue rollups: {} days, {} weeks, {} months", days.size(), weeks.size(), months.size());
+    }
+
+    /**
+     * ISO week key, e.g. 2025-W05 (the week-based year can differ from the calendar year)
+     */
+    static String weekBucket(LocalDate day) {
+        return String.format("%d-W%02d", day.get(IsoFields.WEEK_BASED_YEAR), day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    static String monthBucket(LocalDate day) {
+        return String.format("%04d-%02d", day.getYear(), day.getMonthValue());
+    }
+
+    private Map<String, Object> period(String bucket, LocalDate start, LocalDate end) {
+        Map<String, Object> period = new HashMap<>();
+        period.put("bucket", bucket);
+        period.put("start", start);
+        period.put("end", end);
+        return period;
+    }
+}
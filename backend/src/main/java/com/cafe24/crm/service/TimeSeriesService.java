@@ -0,0 +1,368 @@
+package com.cafe24.crm.service;
+
+import com.cafe24.crm.domain.neo4j.CrmRevenueRollupNode;
+import com.cafe24.crm.dto.TimeSeriesDTO;
+import com.cafe24.crm.repository.neo4j.CrmRevenueRollupNeo4jRepository;
+import com.cafe24.crm.support.Lttb;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time Series Service
+ *
+ * Answers arbitrary-range chart queries over orders. Buckets are accumulated
+ * into primitive arrays indexed by bucket number, one column per measure, and
+ * long series are reduced to {@code maxPoints} with LTTB. Ungrouped day, week
+ * and month queries are served from the revenue rollups.
+ */
+@Service
+@Slf4j
+public class TimeSeriesService {
+
+    private static final String OTHER_SERIES = "other";
+    private static final String TOTAL_SERIES = "total";
+
+    private static final String ORDER_BUCKETS = """
+            MATCH (o:CRM_Order)
+            WHERE o.order_date >= $from AND o.order_date < $to
+            %s
+            WITH %s AS bucket, %s AS series, o
+            RETURN bucket, series,
+                   count(o) AS orders,
+                   sum(coalesce(o.total_amount, 0.0)) AS revenue,
+                   sum(coalesce(o.discount_amount, 0.0)) AS discount,
+                   sum(coalesce(o.shipping_cost, 0.0)) AS shipping,
+                   sum(CASE WHEN o.status = 'cancelled' THEN 1 ELSE 0 END) AS cancelled
+            """;
+
+    public enum Granularity {
+        HOUR("localdatetime.truncate('hour', coalesce(o.created_at, localdatetime({date: o.order_date})))"),
+        DAY("o.order_date"),
+        WEEK("date.truncate('week', o.order_date)"),
+        MONTH("date.truncate('month', o.order_date)");
+
+        private final String bucketExpression;
+
+        Granularity(String bucketExpression) {
+            this.bucketExpression = bucketExpression;
+        }
+    }
+
+    public enum Metric {
+        REVENUE, ORDERS, AOV, DISCOUNT, SHIPPING, CANCELLED
+    }
+
+    public enum GroupBy {
+        CHANNEL("coalesce(o.channel, 'unknown')", ""),
+        PAYMENT_METHOD("coalesce(o.payment_method, 'unknown')", ""),
+        SEGMENT("coalesce(c.segment, 'unknown')", "OPTIONAL MATCH (c:CRM_Customer)-[:PLACED_ORDER]->(o)");
+
+        private final String seriesExpression;
+        private final String join;
+
+        GroupBy(String seriesExpression, String join) {
+            this.seriesExpression = seriesExpression;
+            this.join = join;
+        }
+    }
+
+    private final Driver driver;
+    private final CrmRevenueRollupNeo4jRepository rollupRepository;
+    private final ZoneId zone;
+    private final int maxBuckets;
+    private final int maxSeries;
+
+    public TimeSeriesService(
+            Driver driver,
+            CrmRevenueRollupNeo4jRepository rollupRepository,
+            @Value("${analytics.timeseries.zone:Asia/Seoul}") String zone,
+            @Value("${analytics.timeseries.max-buckets:20000}") int maxBuckets,
+            @Value("${analytics.timeseries.max-series:10}") int maxSeries) {
+        this.driver = driver;
+        this.rollupRepository = rollupRepository;
+        this.zone = ZoneId.of(zone);
+        this.maxBuckets = maxBuckets;
+        this.maxSeries = maxSeries;
+    }
+
+    /**
+     * Query a metric over [from, to] (both days inclusive, widened to whole buckets)
+     *
+     * @param groupBy   dimension to split series by, or null for a single total series
+     * @param maxPoints points per series after downsampling; 0 disables downsampling
+     * @throws IllegalArgumentException if the range is inverted or has too many buckets
+     */
+    public TimeSeriesDTO query(LocalDate from, LocalDate to, Granularity granularity,
+                               Metric metric, GroupBy groupBy, int maxPoints) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+
+        LocalDate start = alignStart(from, granularity);
+        LocalDate endExclusive = to.plusDays(1);
+        long bucketCount = bucketIndex(granularity, start, endExclusive.atStartOfDay().minusNanos(1)) + 1;
+        if (bucketCount > maxBuckets) {
+            throw new IllegalArgumentException("Range has " + bucketCount + " " + label(granularity)
+                    + " buckets, more than the limit of " + maxBuckets + "; use a coarser granularity");
+        }
+        int buckets = (int) bucketCount;
+        // Edge buckets are always whole, whichever source serves them
+        LocalDate rangeEnd = bucketStart(granularity, start, buckets).toLocalDate();
+
+        boolean fromRollups = groupBy == null && granularity != Granularity.HOUR;
+        Map<String, Columns> series = fromRollups
+                ? loadRollups(granularity, start, rangeEnd, buckets)
+                : loadOrders(granularity, groupBy, start, rangeEnd, buckets);
+        if (series.isEmpty()) {
+            series.put(TOTAL_SERIES, new Columns(buckets));
+        }
+        series = limitSeries(series, buckets);
+
+        double[] x = new double[buckets];
+        long[] timestamps = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            timestamps[i] = bucketStart(granularity, start, i).atZone(zone).toInstant().toEpochMilli();
+            x[i] = timestamps[i];
+        }
+
+        boolean downsample = maxPoints > 0 && buckets > maxPoints;
+        List<TimeSeriesDTO.Series> result = new ArrayList<>(series.size());
+        for (Map.Entry<String, Columns> entry : series.entrySet()) {
+            double[] values = entry.getValue().values(metric);
+            long[] seriesTimestamps = timestamps;
+            if (downsample) {
+                int[] keep = Lttb.select(x, values, maxPoints);
+                seriesTimestamps = new long[keep.length];
+                double[] kept = new double[keep.length];
+                for (int i = 0; i < keep.length; i++) {
+                    seriesTimestamps[i] = timestamps[keep[i]];
+                    kept[i] = values[keep[i]];
+                }
+                values = kept;
+            }
+            result.add(TimeSeriesDTO.Series.builder()
+                    .name(entry.getKey())
+                    .timestamps(seriesTimestamps)
+                    .values(values)
+                    .build());
+        }
+
+        return TimeSeriesDTO.builder()
+                .metric(label(metric))
+                .granularity(label(granularity))
+                .groupBy(groupBy != null ? label(groupBy) : null)
+                .from(from)
+                .to(to)
+                .source(fromRollups ? "rollup" : "orders")
+                .bucketCount(buckets)
+                .downsampled(downsample)
+                .series(result)
+                .build();
+    }
+
+    private Map<String, Columns> loadRollups(Granularity granularity, LocalDate start,
+                                             LocalDate endExclusive, int buckets) {
+        String rollupGranularity = switch (granularity) {
+            case WEEK -> CrmRevenueRollupNode.WEEK;
+            case MONTH -> CrmRevenueRollupNode.MONTH;
+            default -> CrmRevenueRollupNode.DAY;
+        };
+
+        Columns columns = new Columns(buckets);
+        for (CrmRevenueRollupNode node : rollupRepository.findBuckets(rollupGranularity, start, endExclusive)) {
+            int index = (int) bucketIndex(granularity, start, node.getBucketStart().atStartOfDay());
+            if (index < 0 || index >= buckets) {
+                continue;
+            }
+            columns.add(index,
+                    value(node.getOrderCount()),
+                    value(node.getRevenue()),
+                    value(node.getDiscount()),
+                    value(node.getShipping()),
+                    value(node.getCancelledCount()));
+        }
+
+        Map<String, Columns> series = new LinkedHashMap<>();
+        series.put(TOTAL_SERIES, columns);
+        return series;
+    }
+
+    private Map<String, Columns> loadOrders(Granularity granularity, GroupBy groupBy, LocalDate start,
+                                            LocalDate endExclusive, int buckets) {
+        String cypher = String.format(ORDER_BUCKETS,
+                groupBy != null ? groupBy.join : "",
+                granularity.bucketExpression,
+                groupBy != null ? groupBy.seriesExpression : "'" + TOTAL_SERIES + "'");
+
+        Map<String, Columns> series = new LinkedHashMap<>();
+        try (Session session = driver.session()) {
+            List<Record> records = session.executeRead(tx ->
+                    tx.run(cypher, Map.of("from", start, "to", endExclusive)).list());
+            for (Record record : records) {
+                Object bucket = record.get("bucket").asObject();
+                LocalDateTime bucketTime = bucket instanceof LocalDate date ? date.atStartOfDay()
+                        : bucket instanceof LocalDateTime dateTime ? dateTime : null;
+                if (bucketTime == null) {
+                    continue;
+                }
+                int index = (int) bucketIndex(granularity, start, bucketTime);
+                if (index < 0 || index >= buckets) {
+                    continue;
+                }
+                series.computeIfAbsent(record.get("series").asString(), name -> new Columns(buckets))
+                        .add(index,
+                                record.get("orders").asLong(),
+                                record.get("revenue").asDouble(),
+                                record.get("discount").asDouble(),
+                                record.get("shipping").asDouble(),
+                                record.get("cancelled").asLong());
+            }
+        }
+        log.debug("Loaded {} series over {} {} buckets from orders", series.size(), buckets, granularity);
+        return series;
+    }
+
+    /**
+     * Keep the largest series by revenue and fold the rest into "other"
+     */
+    private Map<String, Columns> limitSeries(Map<String, Columns> series, int buckets) {
+        if (series.size() <= maxSeries) {
+            return series;
+        }
+
+        List<Map.Entry<String, Columns>> ranked = new ArrayList<>(series.entrySet());
+        ranked.sort(Comparator.comparingDouble((Map.Entry<String, Columns> entry) -> entry.getValue().totalRevenue())
+                .reversed());
+
+        Map<String, Columns> limited = new LinkedHashMap<>();
+        Columns other = new Columns(buckets);
+        for (int i = 0; i < ranked.size(); i++) {
+            Map.Entry<String, Columns> entry = ranked.get(i);
+            if (i < maxSeries - 1) {
+                limited.put(entry.getKey(), entry.getValue());
+            } else {
+                other.addAll(entry.getValue());
+            }
+        }
+        limited.merge(OTHER_SERIES, other, (existing, folded) -> {
+            existing.addAll(folded);
+            return existing;
+        });
+        return limited;
+    }
+
+    // Bucket arithmetic
+
+    private static LocalDate alignStart(LocalDate from, Granularity granularity) {
+        return switch (granularity) {
+            case WEEK -> from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> from.withDayOfMonth(1);
+            default -> from;
+        };
+    }
+
+    private static long bucketIndex(Granularity granularity, LocalDate start, LocalDateTime time) {
+        LocalDateTime origin = start.atStartOfDay();
+        return switch (granularity) {
+            case HOUR -> ChronoUnit.HOURS.between(origin, time);
+            case DAY -> ChronoUnit.DAYS.between(origin, time);
+            case WEEK -> ChronoUnit.WEEKS.between(origin, time);
+            case MONTH -> ChronoUnit.MONTHS.between(origin, time);
+        };
+    }
+
+    private static LocalDateTime bucketStart(Granularity granularity, LocalDate start, int index) {
+        LocalDateTime origin = start.atStartOfDay();
+        return switch (granularity) {
+            case HOUR -> origin.plusHours(index);
+            case DAY -> origin.plusDays(index);
+            case WEEK -> origin.plusWeeks(index);
+            case MONTH -> origin.plusMonths(index);
+        };
+    }
+
+    private static String label(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static double value(Number number) {
+        return number != null ? number.doubleValue() : 0.0;
+    }
+
+    /**
+     * Per-bucket measures of one series, one primitive column each
+     */
+    private static final class Columns {
+
+        private final double[] orders;
+        private final double[] revenue;
+        private final double[] discount;
+        private final double[] shipping;
+        private final double[] cancelled;
+
+        Columns(int buckets) {
+            orders = new double[buckets];
+            revenue = new double[buckets];
+            discount = new double[buckets];
+            shipping = new double[buckets];
+            cancelled = new double[buckets];
+        }
+
+        void add(int index, double orderCount, double revenueAmount, double discountAmount,
+                 double shippingCost, double cancelledCount) {
+            orders[index] += orderCount;
+            revenue[index] += revenueAmount;
+            discount[index] += discountAmount;
+            shipping[index] += shippingCost;
+            cancelled[index] += cancelledCount;
+        }
+
+        void addAll(Columns other) {
+            for (int i = 0; i < orders.length; i++) {
+                add(i, other.orders[i], other.revenue[i], other.discount[i], other.shipping[i], other.cancelled[i]);
+            }
+        }
+
+        double totalRevenue() {
+            double total = 0;
+            for (double value : revenue) {
+                total += value;
+            }
+            return total;
+        }
+
+        double[] values(Metric metric) {
+            return switch (metric) {
+                case REVENUE -> revenue.clone();
+                case ORDERS -> orders.clone();
+                case DISCOUNT -> discount.clone();
+                case SHIPPING -> shipping.clone();
+                case CANCELLED -> cancelled.clone();
+                case AOV -> {
+                    double[] aov = new double[orders.length];
+                    for (int i = 0; i < aov.length; i++) {
+                        aov[i] = orders[i] > 0 ? revenue[i] / orders[i] : 0.0;
+                    }
+                    yield aov;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.cafe24.crm.service.ai;
+
+import com.cafe24.crm.client.LiteLLMClient;
+import com.cafe24.crm.dto.CohortDataDTO;
+import com.cafe24.crm.dto.DashboardStatsDTO;
+import com.cafe24.crm.dto.RfmAnalysisDTO;
+import com.cafe24.crm.service.AnalyticsService;
+import com.cafe24.crm.service.DashboardService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points.ScoredPoint;
+import io.qdrant.client.grpc.Points.SearchPoints;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.cafe24.crm.support.ListenableFutures.toMono;
+import static com.cafe24.crm.support.Vectors.boxed;
+import static io.qdrant.client.WithPayloadSelectorFactory.enable;
+
+/**
+ * Insight Context Builder
+ *
+ * Assembles the data an insight prompt is grounded in: a compact analytics
+ * summary (KPIs, RFM segments, cohort retention, top products) and the
+ * reference notes from the seeded Qdrant knowledge collections closest to the
+ * question, trimmed to a token budget.
+ *
+ * The analytics summary is built with its four sources queried in parallel.
+ * Those analytics cover the whole graph rather than one mall, so a single
+ * summary is cached and shared by every prompt. An expired summary is still
+ * served while a refresh runs in the background, so only the prompts that
+ * arrive before the first summary is built wait for the queries, and they all
+ * share one run of them. Knowledge retrieval is bounded by a short timeout
+ * and skipped when it does not answer in time.
+ */
+@Service
+@Slf4j
+public class InsightContextBuilder {
+
+    private static final Duration SOURCE_TIMEOUT = Duration.ofSeconds(5);
+
+    private record CachedSummary(String text, long builtAtNanos) {
+    }
+
+    private final DashboardService dashboardService;
+    private final AnalyticsService analyticsService;
+    private final QdrantClient qdrantClient;
+    private final LiteLLMClient liteLLMClient;
+    private final MeterRegistry meterRegistry;
+    private final long summaryTtlNanos;
+    private final List<String> knowledgeCollections;
+    private final String knowledgeEmbeddingModel;
+    private final float knowledgeScoreThreshold;
+    private final int knowledgeLimit;
+    private final Duration retrievalTimeout;
+    private final int tokenBudget;
+
+    private final AtomicReference<CachedSummary> cachedSummary = new AtomicReference<>();
+    private final AtomicReference<Mono<String>> inflightSummary = new AtomicReference<>();
+
+    public InsightContextBuilder(
+            DashboardService dashboardService,
+            AnalyticsService analyticsService,
+            QdrantClient qdrantClient,
+            LiteLLMClient liteLLMClient,
+            MeterRegistry meterRegistry,
+            @Value("${ai.grounding.summary-ttl-ms:300000}") long summaryTtlMs,
+            @Value("${ai.grounding.knowledge-collections:cafe24_crm_knowledge,cafe24_insights}") String knowledgeCollections,
+            @Value("${ai.grounding.knowledge-embedding-model:all-MiniLM-L6-v2}") String knowledgeEmbeddingModel,
+            @Value("${ai.grounding.knowledge-score-threshold:0.35}") float knowledgeScoreThreshold,
+            @Value("${ai.grounding.knowledge-limit:3}") int knowledgeLimit,
+            @Value("${ai.grounding.retrieval-timeout-ms:400}") long retrievalTimeoutMs,
+            @Value("${ai.grounding.token-budget:1200}") int tokenBudget) {
+        this.dashboardService = dashboardService;
+        this.analyticsService = analyticsService;
+        this.qdrantClient = qdrantClient;
+        this.liteLLMClient = liteLLMClient;
+        this.meterRegistry = meterRegistry;
+        this.summaryTtlNanos = summaryTtlMs * 1_000_000L;
+        this.knowledgeCollections = Arrays.stream(knowledgeCollections.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .toList();
+        this.knowledgeEmbeddingModel = knowledgeEmbeddingModel;
+        this.knowledgeScoreThreshold = knowledgeScoreThreshold;
+        this.knowledgeLimit = knowledgeLimit;
+        this.retrievalTimeout = Duration.ofMillis(retrievalTimeoutMs);
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * Build the grounding context for a question; never fails, at worst returns an empty string
+     */
+    public Mono<String> build(String query) {
+        long started = System.nanoTime();
+        return Mono.zip(summary(), knowledge(query))
+                .map(parts -> fit(parts.getT1(), parts.getT2()))
+                .doOnNext(context -> meterRegistry.timer("crm.ai.grounding.build")
+                        .record(Duration.ofNanos(System.nanoTime() - started)))
+                .onErrorResume(e -> {
+                    log.warn("Failed to build insight context: {}", e.getMessage());
+                    return Mono.just("");
+                });
+    }
+
+    /**
+     * Context without query-specific notes. It is the same for every prompt
+     * until the summary is refreshed, so prompts built on it share one prompt
+     * prefix.
+     */
+    public Mono<String> buildShared() {
+        return summary()
+                .map(summary -> fit(summary, List.of()))
+                .onErrorResume(e -> {
+                    log.warn("Failed to build shared insight context: {}", e.getMessage());
+                    return Mono.just("");
+                });
+    }
+
+    // Analytics summary, one for all malls
+
+    private Mono<String> summary() {
+        CachedSummary cached = cachedSummary.get();
+        if (cached == null) {
+            return sharedRefresh();
+        }
+        if (System.nanoTime() - cached.builtAtNanos() > summaryTtlNanos) {
+            sharedRefresh().subscribe();
+        }
+        return Mono.just(cached.text());
+    }
+
+    /**
+     * The running summary refresh, or a new one. Concurrent prompts on a cold
+     * cache all wait for the same queries instead of each running their own.
+     */
+    private Mono<String> sharedRefresh() {
+        Mono<String> running = inflightSummary.get();
+        if (running != null) {
+            return running;
+        }
+        List<Mono<String>> self = new ArrayList<>(1);
+        Mono<String> shared = refreshSummary()
+                .doFinally(signal -> inflightSummary.compareAndSet(self.get(0), null))
+                .cache();
+        self.add(shared);
+        return inflightSummary.compareAndSet(null, shared) ? shared : sharedRefresh();
+    }
+
+    private Mono<String> refreshSummary() {
+        return Mono.zip(
+                        source(dashboardService::getDashboardStats, "dashboard stats"),
+                        source(analyticsService::getRfmAnalysis, "RFM analysis"),
+                        source(analyticsService::getCohortAnalysis, "cohort analysis"),
+                        source(() -> dashboardService.getTopProducts(5), "top products"))
+                .map(sources -> renderSummary(
+                        sources.getT1().orElse(null),
+                        sources.getT2().orElse(null),
+                        sources.getT3().orElse(null),
+                        sources.getT4().orElse(List.of())))
+                .doOnNext(text -> cachedSummary.set(new CachedSummary(text, System.nanoTime())));
+    }
+
+    private <T> Mono<Optional<T>> source(Callable<T> query, String name) {
+        return Mono.fromCallable(query)
+                .subscribeOn(Schedulers.boundedElastic())
+                .timeout(SOURCE_TIMEOUT)
+                .map(Optional::of)
+                .onErrorResume(e -> {
+                    log.warn("Skipping {} in the insight context: {}", name, e.getMessage());
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    private static String renderSummary(DashboardStatsDTO stats, RfmAnalysisDTO rfm, CohortDataDTO cohorts,
+                                        List<Map<String, Object>> topProducts) {
+        StringBuilder text = new StringBuilder("## CRM data (all malls)\n");
+        if (stats != null) {
+            text.append(String.format(Locale.ROOT,
+                    "- Customers: %d total, %d active (%.1f%%), %d new this month%n",
+                    orZero(stats.getTotalCustomers()), orZero(stats.getActiveCustomers()),
+                    orZero(stats.getActiveCustomerPercentage()), orZero(stats.getNewCustomersThisMonth())));
+            text.append(String.format(Locale.ROOT,
+                    "- Orders: %d, revenue %.0f KRW, AOV %.0f KRW, repeat purchase rate %.1f%%%n",
+                    orZero(stats.getTotalOrders()), orZero(stats.getTotalRevenue()),
+                    orZero(stats.getAverageOrderValue()), orZero(stats.getRepeatPurchaseRate())));
+            text.append(String.format(Locale.ROOT,
+                    "- Growth vs last month: revenue %+.1f%%, orders %+.1f%%; average CLV %.0f KRW%n",
+                    orZero(stats.getRevenueGrowth()), orZero(stats.getOrderGrowth()), orZero(stats.getAverageClv())));
+        }
+        if (rfm != null && rfm.getSegments() != null && !rfm.getSegments().isEmpty()) {
+            text.append("- RFM segments:");
+            for (RfmAnalysisDTO.RfmSegment segment : rfm.getSegments()) {
+                text.append(String.format(Locale.ROOT, " %s %d (%.1f%%, avg CLV %.0f);",
+                        segment.getLabel() != null ? segment.getLabel() : segment.getSegment(),
+                        segment.getCustomerCount() != null ? segment.getCustomerCount() : 0,
+                        orZero(segment.getPercentage()), orZero(segment.getAvgClv())));
+            }
+            text.append('\n');
+        }
+        if (cohorts != null && cohorts.getPeriodCount() != null && cohorts.getPeriodCount() > 0) {
+            text.append(String.format(Locale.ROOT,
+                    "- Cohort retention: month 1 %.1f%%, month 3 %.1f%%, month 6 %.1f%%, month 12 %.1f%%; best cohort %s%n",
+                    orZero(cohorts.getAvgRetentionMonth1()), orZero(cohorts.getAvgRetentionMonth3()),
+                    orZero(cohorts.getAvgRetentionMonth6()), orZero(cohorts.getAvgRetentionMonth12()),
+                    cohorts.getBestCohort()));
+        }
+        if (!topProducts.isEmpty()) {
+            text.append("- Top products:");
+            for (Map<String, Object> product : topProducts) {
+                text.append(String.format(Locale.ROOT, " %s (%s, %s sold);",
+                        product.get("name"), product.get("category"), product.get("totalSold")));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    // Knowledge retrieval from the seeded collections
+
+    private Mono<List<String>> knowledge(String query) {
+        if (knowledgeCollections.isEmpty() || query == null || query.isBlank()) {
+            return Mono.just(List.of());
+        }
+        return liteLLMClient.embed(query, knowledgeEmbeddingModel)
+                .flatMapMany(vector -> Flux.fromIterable(knowledgeCollections)
+                        .flatMap(collection -> toMono(qdrantClient.searchAsync(SearchPoints.newBuilder()
+                                .setCollectionName(collection)
+                                .addAllVector(boxed(vector))
+                                .setScoreThreshold(knowledgeScoreThreshold)
+                                .setLimit(knowledgeLimit)
+                                .setWithPayload(enable(true))
+                                .build()))
+                                .onErrorResume(e -> {
+                                    log.debug("Knowledge search in {} failed: {}", collection, e.getMessage());
+                                    return Mono.just(List.of());
+                                })))
+                .flatMapIterable(points -> points)
+                .sort((left, right) -> Float.compare(right.getScore(), left.getScore()))
+                .map(InsightContextBuilder::renderNote)
+                .filter(note -> !note.isEmpty())
+                .collectList()
+                .timeout(retrievalTimeout)
+                .onErrorResume(e -> {
+                    meterRegistry.counter("crm.ai.grounding.retrieval_skipped").increment();
+                    log.debug("Skipping knowledge retrieval: {}", e.getMessage());
+                    return Mono.just(List.of());
+                });
+    }
+
+    /**
+     * cafe24_insights points carry title/content, cafe24_crm_knowledge points question/answer
+     */
+    private static String renderNote(ScoredPoint point) {
+        Map<String, JsonWithInt.Value> payload = point.getPayloadMap();
+        String title = text(payload, "title", "question");
+        String body = text(payload, "content", "answer");
+        if (body.isEmpty()) {
+            return "";
+        }
+        return "- " + (title.isEmpty() ? "" : title + ": ") + body.replaceAll("\\s+", " ");
+    }
+
+    private static String text(Map<String, JsonWithInt.Value> payload, String key, String fallbackKey) {
+        JsonWithInt.Value value = payload.containsKey(key) ? payload.get(key) : payload.get(fallbackKey);
+        return value != null && value.hasStringValue() ? value.getStringValue().strip() : "";
+    }
+
+    // Token budget
+
+    /**
+     * Keep the summary whole if it fits, then add notes until the budget is spent
+     */
+    private String fit(String summary, List<String> notes) {
+        StringBuilder context = new StringBuilder();
+        int remaining = tokenBudget;
+        remaining = append(context, summary, remaining);
+
+        if (!notes.isEmpty() && remaining > 0) {
+            remaining = append(context, "\n## Reference notes\n", remaining);
+            for (String note : notes) {
+                if (remaining <= 0) {
+                    break;
+                }
+                remaining = append(context, note + "\n", remaining);
+            }
+        }
+        return context.toString().strip();
+    }
+
+    /**
+     * Append as much of the text as the remaining budget allows
+     *
+     * @return the budget left afterwards
+     */
+    private static int append(StringBuilder context, String text, int remaining) {
+        int tokens = estimateTokens(text);
+        if (tokens <= remaining) {
+            context.append(text);
+            return remaining - tokens;
+        }
+        int chars = (int) ((long) text.length() * remaining / Math.max(1, tokens));
+        if (chars > 0) {
+            context.append(text, 0, chars).append("…\n");
+        }
+        return 0;
+    }
+
+    /**
+     * Rough token count: about one token per Hangul syllable and per four other characters
+     */
+    static int estimateTokens(String text) {
+        int hangul = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '가' && c <= '힣') {
+                hangul++;
+            }
+        }
+        return hangul + (text.length() - hangul + 3) / 4;
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static double orZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+}
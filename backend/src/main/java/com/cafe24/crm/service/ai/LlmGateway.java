@@ -0,0 +1,312 @@
+package com.cafe24.crm.service.ai;
+
+import com.cafe24.crm.client.LiteLLMClient;
+import com.cafe24.crm.support.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * LLM Gateway
+ *
+ * Single entry point for LLM generations. In order, a call
+ * <ol>
+ *   <li>joins an identical in-flight call if there is one (single flight),</li>
+ *   <li>waits in a priority queue for a concurrency slot,</li>
+ *   <li>waits for a token from the backend-wide rate limiter,</li>
+ *   <li>and then reaches {@link LiteLLMClient}.</li>
+ * </ol>
+ * The concurrency limit adapts with AIMD: it grows by one slot per limit's
+ * worth of fast successes and is cut multiplicatively on timeouts, 429s, 5xx
+ * responses and slow completions.
+ */
+@Service
+@Slf4j
+public class LlmGateway {
+
+    private static final String RATE_LIMIT_KEY = "litellm";
+
+    /**
+     * Queue priority; lower ordinal is served first
+     */
+    public enum Priority {
+        INTERACTIVE, STANDARD, BACKGROUND
+    }
+
+    private final LiteLLMClient liteLLMClient;
+    private final MeterRegistry meterRegistry;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final double minLimit;
+    private final double maxLimit;
+    private final double backoffRatio;
+    private final long slowCallNanos;
+    private final int maxQueued;
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.sequence));
+    private final Map<String, Mono<String>> inflightCalls = new ConcurrentHashMap<>();
+    private final Map<String, Flux<String>> inflightStreams = new ConcurrentHashMap<>();
+    private double limit;
+    private int inFlight;
+    private long sequence;
+
+    public LlmGateway(
+            LiteLLMClient liteLLMClient,
+            MeterRegistry meterRegistry,
+            @Value("${ai.gateway.requests-per-second:5}") double requestsPerSecond,
+            @Value("${ai.gateway.burst:10}") int burst,
+            @Value("${ai.gateway.initial-concurrency:8}") int initialLimit,
+            @Value("${ai.gateway.min-concurrency:1}") int minLimit,
+            @Value("${ai.gateway.max-concurrency:32}") int maxLimit,
+            @Value("${ai.gateway.backoff-ratio:0.7}") double backoffRatio,
+            @Value("${ai.gateway.slow-call-ms:30000}") long slowCallMs,
+            @Value("${ai.gateway.max-queued:200}") int maxQueued) {
+        this.liteLLMClient = liteLLMClient;
+        this.meterRegistry = meterRegistry;
+        this.rateLimiter = new TokenBucketRateLimiter(requestsPerSecond, burst);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.slowCallNanos = slowCallMs * 1_000_000L;
+        this.maxQueued = maxQueued;
+        this.limit = initialLimit;
+
+        meterRegistry.gauge("crm.ai.gateway.limit", this, gateway -> gateway.snapshot()[0]);
+        meterRegistry.gauge("crm.ai.gateway.in_flight", this, gateway -> gateway.snapshot()[1]);
+        meterRegistry.gauge("crm.ai.gateway.queued", this, gateway -> gateway.snapshot()[2]);
+    }
+
+    public Mono<String> chat(Priority priority, String model, String userMessage, String systemPrompt) {
+        return coalesce(key(model, systemPrompt, userMessage), priority,
+                () -> liteLLMClient.chat(model, userMessage, systemPrompt));
+    }
+
+    public Flux<String> chatStream(Priority priority, String model, String userMessage, String systemPrompt) {
+        return coalesceStream(key(model, systemPrompt, userMessage), priority,
+                () -> liteLLMClient.chatStream(model, userMessage, systemPrompt));
+    }
+
+    public Mono<String> generateCrmInsight(Priority priority, String query, String context) {
+        return coalesce(key("insight", query, context), priority,
+                () -> liteLLMClient.generateCrmInsight(query, context));
+    }
+
+    public Flux<String> streamCrmInsight(Priority priority, String query, String context) {
+        return coalesceStream(key("insight", query, context), priority,
+                () -> liteLLMClient.streamCrmInsight(query, context));
+    }
+
+    // Single flight: the first caller starts the call, identical callers share its result
+
+    private Mono<String> coalesce(String key, Priority priority, Supplier<Mono<String>> call) {
+        return Mono.defer(() -> {
+            AtomicBoolean leader = new AtomicBoolean();
+            Mono<String> flight = inflightCalls.computeIfAbsent(key, k -> {
+                leader.set(true);
+                List<Mono<String>> self = new ArrayList<>(1);
+                Mono<String> shared = limited(priority, call)
+                        .doFinally(signal -> inflightCalls.remove(k, self.get(0)))
+                        .cache();
+                self.add(shared);
+                return shared;
+            });
+            if (!leader.get()) {
+                meterRegistry.counter("crm.ai.gateway.coalesced", "kind", "call").increment();
+            }
+            return flight;
+        });
+    }
+
+    private Flux<String> coalesceStream(String key, Priority priority, Supplier<Flux<String>> call) {
+        return Flux.defer(() -> {
+            AtomicBoolean leader = new AtomicBoolean();
+            Flux<String> flight = inflightStreams.computeIfAbsent(key, k -> {
+                leader.set(true);
+                List<Flux<String>> self = new ArrayList<>(1);
+                // Late joiners replay the tokens they missed
+                Flux<String> shared = limitedStream(priority, call)
+                        .doFinally(signal -> inflightStreams.remove(k, self.get(0)))
+                        .cache();
+                self.add(shared);
+                return shared;
+            });
+            if (!leader.get()) {
+                meterRegistry.counter("crm.ai.gateway.coalesced", "kind", "stream").increment();
+            }
+            return flight;
+        });
+    }
+
+    private Mono<String> limited(Priority priority, Supplier<Mono<String>> call) {
+        return Mono.usingWhen(
+                acquire(priority),
+                permit -> rateLimiter.acquire(RATE_LIMIT_KEY)
+                        .then(Mono.defer(() -> {
+                            permit.startedAt = System.nanoTime();
+                            return call.get();
+                        }))
+                        .doOnSuccess(result -> permit.outcome = System.nanoTime() - permit.startedAt > slowCallNanos
+                                ? Outcome.OVERLOAD : Outcome.SUCCESS)
+                        .doOnError(e -> permit.outcome = classify(e)),
+                this::release,
+                (permit, e) -> release(permit),
+                this::release);
+    }
+
+    private Flux<String> limitedStream(Priority priority, Supplier<Flux<String>> call) {
+        // Stream length depends on the answer, so only errors feed the limit
+        return Flux.usingWhen(
+                acquire(priority),
+                permit -> rateLimiter.acquire(RATE_LIMIT_KEY)
+                        .thenMany(Flux.defer(call))
+                        .doOnComplete(() -> permit.outcome = Outcome.SUCCESS)
+                        .doOnError(e -> permit.outcome = classify(e)),
+                this::release,
+                (permit, e) -> release(permit),
+                this::release);
+    }
+
+    // Adaptive concurrency limit with a priority wait queue
+
+    private enum Outcome {
+        SUCCESS, OVERLOAD, NEUTRAL
+    }
+
+    private static final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long startedAt = System.nanoTime();
+        private volatile Outcome outcome = Outcome.NEUTRAL;
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final long sequence;
+        private final MonoSink<Permit> sink;
+        private Permit permit;
+        private boolean cancelled;
+
+        private Waiter(Priority priority, long sequence, MonoSink<Permit> sink) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.sink = sink;
+        }
+    }
+
+    private Mono<Permit> acquire(Priority priority) {
+        return Mono.create(sink -> {
+            Waiter waiter;
+            boolean granted = false;
+            synchronized (lock) {
+                waiter = new Waiter(priority, sequence++, sink);
+                if (queue.isEmpty() && inFlight < currentLimit()) {
+                    inFlight++;
+                    waiter.permit = new Permit();
+                    granted = true;
+                } else if (queue.size() >= maxQueued) {
+                    waiter = null;
+                } else {
+                    queue.add(waiter);
+                }
+            }
+
+            if (waiter == null) {
+                meterRegistry.counter("crm.ai.gateway.rejected").increment();
+                sink.error(new IllegalStateException("LLM gateway queue is full"));
+                return;
+            }
+            Waiter registered = waiter;
+            sink.onCancel(() -> {
+                Permit permit;
+                synchronized (lock) {
+                    registered.cancelled = true;
+                    queue.remove(registered);
+                    permit = registered.permit;
+                }
+                if (permit != null) {
+                    release(permit);
+                }
+            });
+            if (granted) {
+                sink.success(waiter.permit);
+            }
+        });
+    }
+
+    private Mono<Void> release(Permit permit) {
+        if (!permit.released.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (lock) {
+            inFlight--;
+            switch (permit.outcome) {
+                case SUCCESS -> limit = Math.min(maxLimit, limit + 1.0 / limit);
+                case OVERLOAD -> {
+                    double reduced = Math.max(minLimit, limit * backoffRatio);
+                    if (reduced < limit) {
+                        log.info("LLM gateway concurrency limit {} -> {}", (int) limit, (int) reduced);
+                    }
+                    limit = reduced;
+                }
+                case NEUTRAL -> {
+                }
+            }
+            while (inFlight < currentLimit() && !queue.isEmpty()) {
+                Waiter next = queue.poll();
+                if (next.cancelled) {
+                    continue;
+                }
+                inFlight++;
+                next.permit = new Permit();
+                granted.add(next);
+            }
+        }
+        // Complete outside the lock; subscribers may call back into the gateway
+        granted.forEach(waiter -> waiter.sink.success(waiter.permit));
+        return Mono.empty();
+    }
+
+    private int currentLimit() {
+        return (int) Math.floor(limit);
+    }
+
+    private static Outcome classify(Throwable e) {
+        // Connect failures and response timeouts surface as request exceptions
+        if (e instanceof TimeoutException || e instanceof WebClientRequestException) {
+            return Outcome.OVERLOAD;
+        }
+        if (e instanceof WebClientResponseException response) {
+            HttpStatusCode status = response.getStatusCode();
+            return status.value() == 429 || status.is5xxServerError() ? Outcome.OVERLOAD : Outcome.NEUTRAL;
+        }
+        return Outcome.NEUTRAL;
+    }
+
+    private double[] snapshot() {
+        synchronized (lock) {
+            return new double[]{limit, inFlight, queue.size()};
+        }
+    }
+
+    private static String key(String... parts) {
+        return String.join("\u0000", parts);
+    }
+}
@@ -0,0 +1,390 @@
+package com.cafe24.crm.service.ai;
+
+import com.cafe24.crm.domain.neo4j.CrmCustomerNode;
+import com.cafe24.crm.domain.neo4j.CrmOrderNode;
+import com.cafe24.crm.domain.neo4j.CrmProductNode;
+import com.cafe24.crm.dto.NlQueryResultDTO;
+import com.cafe24.crm.service.ai.LlmGateway.Priority;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.TransactionConfig;
+import org.neo4j.driver.exceptions.ClientException;
+import org.neo4j.driver.summary.Plan;
+import org.neo4j.driver.summary.QueryType;
+import org.neo4j.driver.summary.ResultSummary;
+import org.neo4j.driver.types.Entity;
+import org.neo4j.driver.types.Node;
+import org.neo4j.driver.types.Path;
+import org.neo4j.driver.types.Relationship;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.neo4j.core.schema.Property;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Natural-Language Cypher Service
+ *
+ * Answers ad-hoc analyst questions by having the LLM translate them into
+ * Cypher against the CRM ontology and running the result on the graph. A
+ * generated query has to pass, in order:
+ * <ol>
+ *   <li>a single statement without CALL, LOAD CSV or USE clauses,</li>
+ *   <li>EXPLAIN (nothing is executed) reporting a read-only query type,</li>
+ *   <li>no AllNodesScan and no operator estimated above the row threshold.</li>
+ * </ol>
+ * It then runs in a read transaction with a server-side timeout, pulling at
+ * most one batch of {@code maxRows + 1} records. Accepted translations are
+ * cached by normalized question, so a repeated question skips the LLM.
+ */
+@Service
+@Slf4j
+public class NlCypherService {
+
+    private static final Pattern CODE_FENCE = Pattern.compile("```(?:cypher)?\\s*(.*?)```",
+            Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern FORBIDDEN_CLAUSE = Pattern.compile("\\b(CALL|LOAD\\s+CSV|USE)\\b",
+            Pattern.CASE_INSENSITIVE);
+    // String literals, quoted identifiers and comments, matched left to right so that
+    // quotes inside comments and comment markers inside strings are not misread
+    private static final Pattern NON_CODE = Pattern.compile(
+            "'(?:[^'\\\\]|\\\\.)*'|\"(?:[^\"\\\\]|\\\\.)*\"|`(?:[^`]|``)*`|//[^\\n]*|/\\*.*?\\*/",
+            Pattern.DOTALL);
+    private static final Set<String> FORBIDDEN_OPERATORS = Set.of("AllNodesScan");
+
+    private static final String SYSTEM_PROMPT = """
+            You translate questions about a Cafe24 e-commerce CRM into a single Neo4j 5 Cypher query.
+
+            Graph schema:
+            %s
+            Rules:
+            - Answer with the Cypher query only, no explanation and no code fences.
+            - The query must be read-only: MATCH, OPTIONAL MATCH, WHERE, WITH, UNWIND, RETURN, ORDER BY, SKIP, LIMIT.
+            - Do not use CALL, LOAD CSV, parameters or APOC; inline literal values.
+            - Always start from a labelled node and give every returned column a short alias.
+            - Return properties or aggregates, not whole nodes, and end with LIMIT %d or lower.
+            """;
+
+    private record CachedPlan(String cypher, double estimatedRows) {
+    }
+
+    private record Execution(List<String> columns, List<Map<String, Object>> rows, boolean truncated) {
+    }
+
+    private final LlmGateway llmGateway;
+    private final Driver driver;
+    private final MeterRegistry meterRegistry;
+    private final String model;
+    private final double maxEstimatedRows;
+    private final int maxRows;
+    private final Duration queryTimeout;
+    private final Duration translateTimeout;
+    private final String systemPrompt;
+    private final Map<String, CachedPlan> planCache;
+
+    public NlCypherService(
+            LlmGateway llmGateway,
+            Driver driver,
+            MeterRegistry meterRegistry,
+            @Value("${ai.nl-query.model:cafe24-crm-llama}") String model,
+            @Value("${ai.nl-query.max-estimated-rows:1000000}") double maxEstimatedRows,
+            @Value("${ai.nl-query.max-rows:500}") int maxRows,
+            @Value("${ai.nl-query.query-timeout-ms:10000}") long queryTimeoutMs,
+            @Value("${ai.nl-query.translate-timeout-ms:60000}") long translateTimeoutMs,
+            @Value("${ai.nl-query.plan-cache-size:500}") int planCacheSize) {
+        this.llmGateway = llmGateway;
+        this.driver = driver;
+        this.meterRegistry = meterRegistry;
+        this.model = model;
+        this.maxEstimatedRows = maxEstimatedRows;
+        this.maxRows = maxRows;
+        this.queryTimeout = Duration.ofMillis(queryTimeoutMs);
+        this.translateTimeout = Duration.ofMillis(translateTimeoutMs);
+        this.systemPrompt = SYSTEM_PROMPT.formatted(describeSchema(), maxRows);
+        this.planCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPlan> eldest) {
+                return size() > planCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Translate a question into Cypher, validate it and run it
+     *
+     * @param limit maximum rows to return, capped at the configured maximum
+     * @throws IllegalArgumentException if the question is empty or the generated query is rejected
+     * @throws IllegalStateException    if the LLM gateway is saturated
+     * @throws QueryTimeoutException    if the query runs past the timeout
+     */
+    public NlQueryResultDTO query(String question, Integer limit) {
+        if (question == null || question.isBlank()) {
+            throw new IllegalArgumentException("Question must not be empty");
+        }
+        long started = System.nanoTime();
+        int rowLimit = limit != null && limit > 0 ? Math.min(limit, maxRows) : maxRows;
+        String key = normalize(question);
+
+        CachedPlan plan;
+        synchronized (planCache) {
+            plan = planCache.get(key);
+        }
+        boolean cached = plan != null;
+        if (!cached) {
+            plan = translate(question);
+            synchronized (planCache) {
+                planCache.put(key, plan);
+            }
+        }
+
+        Execution execution;
+        try {
+            execution = execute(plan.cypher(), rowLimit);
+        } catch (IllegalArgumentException e) {
+            // Do not keep serving a translation that fails at run time
+            synchronized (planCache) {
+                planCache.remove(key);
+            }
+            throw e;
+        }
+        meterRegistry.counter("crm.ai.nl_query", "plan", cached ? "cached" : "translated").increment();
+
+        return NlQueryResultDTO.builder()
+                .question(question)
+                .cypher(plan.cypher())
+                .cached(cached)
+                .estimatedRows(plan.estimatedRows())
+                .columns(execution.columns())
+                .rows(execution.rows())
+                .rowCount(execution.rows().size())
+                .truncated(execution.truncated())
+                .tookMillis((System.nanoTime() - started) / 1_000_000)
+                .build();
+    }
+
+    // Translation and validation
+
+    private CachedPlan translate(String question) {
+        String answer = llmGateway.chat(Priority.INTERACTIVE, model, question, systemPrompt)
+                .block(translateTimeout);
+        String cypher = extractCypher(answer);
+        log.info("Translated question into Cypher: {}", cypher.replaceAll("\\s+", " "));
+
+        try {
+            return validate(cypher);
+        } catch (IllegalArgumentException e) {
+            meterRegistry.counter("crm.ai.nl_query.rejected").increment();
+            log.warn("Rejected generated Cypher: {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    private CachedPlan validate(String cypher) {
+        if (cypher.isEmpty()) {
+            throw new IllegalArgumentException("The question could not be translated into a query");
+        }
+        // Check keywords and separators in code only: WHERE p.name = 'Use case' is fine
+        String code = NON_CODE.matcher(cypher).replaceAll(" ");
+        if (code.contains(";")) {
+            throw new IllegalArgumentException("Generated query contains more than one statement");
+        }
+        Matcher forbidden = FORBIDDEN_CLAUSE.matcher(code);
+        if (forbidden.find()) {
+            throw new IllegalArgumentException("Generated query uses a forbidden clause: "
+                    + forbidden.group(1).toUpperCase(Locale.ROOT));
+        }
+
+        ResultSummary summary;
+        SessionConfig config = SessionConfig.builder().withDefaultAccessMode(AccessMode.READ).build();
+        try (Session session = driver.session(config)) {
+            summary = session.run("EXPLAIN " + cypher).consume();
+        } catch (ClientException e) {
+            throw new IllegalArgumentException("Generated query is not valid Cypher: " + e.getMessage());
+        }
+
+        if (summary.queryType() != QueryType.READ_ONLY) {
+            throw new IllegalArgumentException("Generated query is not read-only (" + summary.queryType() + ")");
+        }
+        Set<String> operators = new TreeSet<>();
+        double estimatedRows = inspect(summary.plan(), operators);
+        for (String operator : operators) {
+            if (FORBIDDEN_OPERATORS.contains(operator)) {
+                throw new IllegalArgumentException("Generated query scans all nodes (" + operator + ")");
+            }
+        }
+        if (estimatedRows > maxEstimatedRows) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Generated query is too expensive: an estimated %.0f rows, the limit is %.0f",
+                    estimatedRows, maxEstimatedRows));
+        }
+        return new CachedPlan(cypher, estimatedRows);
+    }
+
+    /**
+     * Collect operator names and return the largest row estimate in the plan
+     */
+    private static double inspect(Plan plan, Set<String> operators) {
+        if (plan == null) {
+            return 0;
+        }
+        String operator = plan.operatorType();
+        int suffix = operator.indexOf('@');
+        operators.add(suffix >= 0 ? operator.substring(0, suffix) : operator);
+
+        org.neo4j.driver.Value estimate = plan.arguments().get("EstimatedRows");
+        double largest = estimate != null && !estimate.isNull() ? estimate.asDouble() : 0;
+        for (Plan child : plan.children()) {
+            largest = Math.max(largest, inspect(child, operators));
+        }
+        return largest;
+    }
+
+    // Execution
+
+    private Execution execute(String cypher, int rowLimit) {
+        SessionConfig config = SessionConfig.builder()
+                .withDefaultAccessMode(AccessMode.READ)
+                .withFetchSize(rowLimit + 1)
+                .build();
+        TransactionConfig transaction = TransactionConfig.builder()
+                .withTimeout(queryTimeout)
+                .withMetadata(Map.of("app", "nl-query"))
+                .build();
+
+        try (Session session = driver.session(config)) {
+            return session.executeRead(tx -> {
+                Result result = tx.run(cypher);
+                List<String> columns = result.keys();
+                List<Map<String, Object>> rows = new ArrayList<>();
+                while (rows.size() < rowLimit && result.hasNext()) {
+                    Record record = result.next();
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (String column : columns) {
+                        row.put(column, toJson(record.get(column)));
+                    }
+                    rows.add(row);
+                }
+                // Anything left unread is discarded when the transaction closes
+                return new Execution(columns, rows, result.hasNext());
+            }, transaction);
+        } catch (ClientException e) {
+            if (e.code() != null && e.code().contains("TransactionTimedOut")) {
+                meterRegistry.counter("crm.ai.nl_query.timeout").increment();
+                throw new QueryTimeoutException("Query did not finish within " + queryTimeout.toMillis() + " ms", e);
+            }
+            throw new IllegalArgumentException("Generated query failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Graph values as JSON-friendly objects; nodes and relationships become property maps
+     */
+    private static Object toJson(org.neo4j.driver.Value value) {
+        return toJson(value.asObject());
+    }
+
+    private static Object toJson(Object value) {
+        if (value instanceof Node node) {
+            Map<String, Object> map = properties(node);
+            map.put("_labels", node.labels());
+            return map;
+        }
+        if (value instanceof Relationship relationship) {
+            Map<String, Object> map = properties(relationship);
+            map.put("_type", relationship.type());
+            return map;
+        }
+        if (value instanceof Path path) {
+            List<Object> segments = new ArrayList<>();
+            path.nodes().forEach(node -> segments.add(toJson(node)));
+            return segments;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(NlCypherService::toJson).toList();
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> converted = new LinkedHashMap<>();
+            map.forEach((key, item) -> converted.put(String.valueOf(key), toJson(item)));
+            return converted;
+        }
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof String
+                || value instanceof TemporalAccessor) {
+            return value;
+        }
+        // Durations, points and byte arrays
+        return value.toString();
+    }
+
+    private static Map<String, Object> properties(Entity entity) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        entity.asMap().forEach((key, item) -> map.put(key, toJson(item)));
+        return map;
+    }
+
+    // Schema description from the mapped domain classes
+
+    private static String describeSchema() {
+        StringBuilder schema = new StringBuilder();
+        for (Class<?> type : List.of(CrmCustomerNode.class, CrmOrderNode.class, CrmProductNode.class)) {
+            org.springframework.data.neo4j.core.schema.Node node =
+                    type.getAnnotation(org.springframework.data.neo4j.core.schema.Node.class);
+            List<String> properties = new ArrayList<>();
+            for (Field field : type.getDeclaredFields()) {
+                Property property = field.getAnnotation(Property.class);
+                if (property != null) {
+                    properties.add(property.value() + ": " + field.getType().getSimpleName());
+                }
+            }
+            schema.append("(:").append(node.value()[0]).append(" {")
+                    .append(String.join(", ", properties)).append("})\n");
+        }
+        schema.append("""
+                (:CRM_Customer)-[:PLACED_ORDER]->(:CRM_Order)
+                (:CRM_Order)-[:CONTAINS]->(:CRM_Product)
+                (:CRM_Customer)-[:PURCHASED]->(:CRM_Product)
+                (:CRM_Customer)-[:VIEWED]->(:CRM_Product)
+                (:CRM_Product)-[:RELATED_TO]->(:CRM_Product)
+                Dates (order_date, first_order_date, last_order_date) are Date values, e.g. date('2024-06-01').
+                order_month is a 'YYYY-MM' string. Amounts are in KRW.
+                """);
+        return schema.toString();
+    }
+
+    /**
+     * The model sometimes wraps the query in a code fence or ends it with a semicolon
+     */
+    private static String extractCypher(String answer) {
+        if (answer == null) {
+            return "";
+        }
+        Matcher fence = CODE_FENCE.matcher(answer);
+        String cypher = fence.find() ? fence.group(1) : answer;
+        cypher = cypher.strip();
+        while (cypher.endsWith(";")) {
+            cypher = cypher.substring(0, cypher.length() - 1).stripTrailing();
+        }
+        return cypher;
+    }
+
+    private static String normalize(String question) {
+        return question.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
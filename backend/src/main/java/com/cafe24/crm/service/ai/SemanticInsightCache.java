@@ -0,0 +1,244 @@
+package com.cafe24.crm.service.ai;
+
+import com.cafe24.crm.client.LiteLLMClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Collections.Distance;
+import io.qdrant.client.grpc.Collections.PayloadSchemaType;
+import io.qdrant.client.grpc.Collections.VectorParams;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points.Filter;
+import io.qdrant.client.grpc.Points.PointStruct;
+import io.qdrant.client.grpc.Points.Range;
+import io.qdrant.client.grpc.Points.ScoredPoint;
+import io.qdrant.client.grpc.Points.SearchPoints;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.cafe24.crm.support.ListenableFutures.toMono;
+import static com.cafe24.crm.support.Vectors.boxed;
+import static io.qdrant.client.ConditionFactory.matchKeyword;
+import static io.qdrant.client.ConditionFactory.range;
+import static io.qdrant.client.PointIdFactory.id;
+import static io.qdrant.client.ValueFactory.value;
+import static io.qdrant.client.VectorsFactory.vectors;
+import static io.qdrant.client.WithPayloadSelectorFactory.enable;
+
+/**
+ * Semantic Insight Cache
+ *
+ * Answers insight prompts that are close paraphrases of a recent prompt from
+ * the same mall without calling the LLM. Prompts are embedded through LiteLLM
+ * and searched in a Qdrant collection filtered by mall and expiry; a hit above
+ * the similarity threshold returns the stored answer with its provenance.
+ *
+ * The cache is best effort: any embedding or Qdrant failure is treated as a
+ * miss and the prompt goes to the LLM as before.
+ */
+@Service
+@Slf4j
+public class SemanticInsightCache {
+
+    private static final String MALL_ID = "mall_id";
+    private static final String EXPIRES_AT = "expires_at";
+
+    /**
+     * A cached answer and where it came from
+     *
+     * @param similarity cosine similarity between the new prompt and {@code cachedQuery}
+     */
+    public record Hit(String answer, String cachedQuery, double similarity, Instant cachedAt, String model) {
+    }
+
+    private final QdrantClient qdrantClient;
+    private final LiteLLMClient liteLLMClient;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final String collection;
+    private final float similarityThreshold;
+    private final Duration ttl;
+    private volatile Mono<Void> collectionReady;
+
+    public SemanticInsightCache(
+            QdrantClient qdrantClient,
+            LiteLLMClient liteLLMClient,
+            MeterRegistry meterRegistry,
+            @Value("${ai.semantic-cache.enabled:true}") boolean enabled,
+            @Value("${ai.semantic-cache.collection:crm_insight_cache}") String collection,
+            @Value("${ai.semantic-cache.similarity-threshold:0.92}") float similarityThreshold,
+            @Value("${ai.semantic-cache.ttl-hours:24}") long ttlHours) {
+        this.qdrantClient = qdrantClient;
+        this.liteLLMClient = liteLLMClient;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.collection = collection;
+        this.similarityThreshold = similarityThreshold;
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    /**
+     * Find a live cached answer for a similar prompt of the same mall
+     *
+     * @return the best hit, or empty on a miss or when the cache is unavailable
+     */
+    public Mono<Hit> lookup(String mallId, String query) {
+        if (!enabled || query == null || query.isBlank()) {
+            return Mono.empty();
+        }
+        long started = System.nanoTime();
+        return liteLLMClient.embed(normalize(query))
+                .flatMap(vector -> ensureCollection(vector.length)
+                        .then(toMono(qdrantClient.searchAsync(SearchPoints.newBuilder()
+                                .setCollectionName(collection)
+                                .addAllVector(boxed(vector))
+                                .setFilter(liveFilter(mallId))
+                                .setScoreThreshold(similarityThreshold)
+                                .setLimit(1)
+                                .setWithPayload(enable(true))
+                                .build()))))
+                .flatMap(points -> points.isEmpty() ? Mono.empty() : Mono.just(toHit(points.get(0))))
+                .doOnNext(hit -> log.info("Semantic cache hit for mall {} (similarity {})", mallId, hit.similarity()))
+                .doOnSuccess(hit -> record(hit != null ? "hit" : "miss", started))
+                .onErrorResume(e -> {
+                    log.warn("Semantic cache lookup failed, falling through to the LLM: {}", e.getMessage());
+                    record("error", started);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Store an answer for later similar prompts; failures are logged and swallowed
+     */
+    public Mono<Void> store(String mallId, String query, String answer) {
+        if (!enabled || query == null || query.isBlank() || answer == null || answer.isBlank()) {
+            return Mono.empty();
+        }
+        Instant now = Instant.now();
+        return liteLLMClient.embed(normalize(query))
+                .flatMap(vector -> ensureCollection(vector.length)
+                        .then(toMono(qdrantClient.upsertAsync(collection, List.of(PointStruct.newBuilder()
+                                .setId(id(UUID.randomUUID()))
+                                .setVectors(vectors(vector))
+                                .putAllPayload(Map.of(
+                                        MALL_ID, value(mallId),
+                                        "query", value(query),
+                                        "answer", value(answer),
+                                        "model", value(liteLLMClient.getInsightModel()),
+                                        "cached_at", value(now.getEpochSecond()),
+                                        EXPIRES_AT, value(now.plus(ttl).getEpochSecond())))
+                                .build())))))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Failed to store insight in the semantic cache: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Store an answer in the background, off the response path
+     */
+    public void storeLater(String mallId, String query, String answer) {
+        store(mallId, query, answer).subscribe();
+    }
+
+    /**
+     * Pass a token stream through and cache the assembled answer once it completes
+     */
+    public Flux<String> recording(String mallId, String query, Flux<String> tokens) {
+        StringBuilder answer = new StringBuilder();
+        return tokens
+                .doOnNext(answer::append)
+                .doOnComplete(() -> storeLater(mallId, query, answer.toString()));
+    }
+
+    /**
+     * Delete expired entries; the search filter already hides them
+     */
+    @Scheduled(fixedDelayString = "${ai.semantic-cache.cleanup-interval-ms:3600000}")
+    public void deleteExpired() {
+        if (!enabled || collectionReady == null) {
+            return;
+        }
+        Filter expired = Filter.newBuilder()
+                .addMust(range(EXPIRES_AT, Range.newBuilder().setLt(Instant.now().getEpochSecond()).build()))
+                .build();
+        toMono(qdrantClient.deleteAsync(collection, expired))
+                .doOnError(e -> log.warn("Failed to delete expired semantic cache entries: {}", e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .block(Duration.ofSeconds(30));
+    }
+
+    private Mono<Void> ensureCollection(int dimensions) {
+        Mono<Void> ready = collectionReady;
+        if (ready == null) {
+            synchronized (this) {
+                if (collectionReady == null) {
+                    collectionReady = createCollection(dimensions)
+                            .doOnError(e -> collectionReady = null)
+                            .cache();
+                }
+                ready = collectionReady;
+            }
+        }
+        return ready;
+    }
+
+    private Mono<Void> createCollection(int dimensions) {
+        return toMono(qdrantClient.listCollectionsAsync())
+                .flatMap(collections -> {
+                    if (collections.contains(collection)) {
+                        return Mono.empty();
+                    }
+                    log.info("Creating semantic cache collection {} ({} dimensions)", collection, dimensions);
+                    return toMono(qdrantClient.createCollectionAsync(collection, VectorParams.newBuilder()
+                            .setDistance(Distance.Cosine)
+                            .setSize(dimensions)
+                            .build()))
+                            .then(toMono(qdrantClient.createPayloadIndexAsync(collection, MALL_ID,
+                                    PayloadSchemaType.Keyword, null, true, null, null)))
+                            .then(toMono(qdrantClient.createPayloadIndexAsync(collection, EXPIRES_AT,
+                                    PayloadSchemaType.Integer, null, true, null, null)));
+                })
+                .then();
+    }
+
+    private static Filter liveFilter(String mallId) {
+        return Filter.newBuilder()
+                .addMust(matchKeyword(MALL_ID, mallId))
+                .addMust(range(EXPIRES_AT, Range.newBuilder().setGt(Instant.now().getEpochSecond()).build()))
+                .build();
+    }
+
+    private static Hit toHit(ScoredPoint point) {
+        Map<String, JsonWithInt.Value> payload = point.getPayloadMap();
+        return new Hit(
+                payload.get("answer").getStringValue(),
+                payload.get("query").getStringValue(),
+                point.getScore(),
+                Instant.ofEpochSecond(payload.get("cached_at").getIntegerValue()),
+                payload.get("model").getStringValue());
+    }
+
+    private void record(String result, long startedNanos) {
+        meterRegistry.timer("crm.ai.semantic_cache.lookup", "result", result)
+                .record(Duration.ofNanos(System.nanoTime() - startedNanos));
+    }
+
+    /**
+     * Whitespace and case differences should not cost an LLM call
+     */
+    private static String normalize(String query) {
+        return query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
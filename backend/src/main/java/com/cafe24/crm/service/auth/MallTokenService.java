@@ -0,0 +1,324 @@
+package com.cafe24.crm.service.auth;
+
+import com.cafe24.crm.client.Cafe24AuthClient;
+import com.cafe24.crm.domain.MallToken;
+import com.cafe24.crm.repository.MallTokenRepository;
+import com.cafe24.crm.support.KnownMalls;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mall Token Service
+ *
+ * Keeps the Cafe24 OAuth tokens of every installed mall in MySQL with an
+ * in-memory copy, and hands out access tokens that are valid for at least
+ * {@code cafe24.token.min-validity-ms}. Tokens about to expire are refreshed
+ * in the background ahead of time, so callers rarely wait for a refresh.
+ *
+ * Cafe24 rotates the refresh token on every refresh and rejects the old one,
+ * so concurrent refreshes of a mall are collapsed into a single call whose
+ * result every caller shares.
+ */
+@Service
+@Slf4j
+public class MallTokenService {
+
+    /**
+     * Cafe24 reports expiry as local time in Korea without an offset
+     */
+    private static final ZoneId CAFE24_ZONE = ZoneId.of("Asia/Seoul");
+    private static final Duration DEFAULT_ACCESS_TOKEN_LIFETIME = Duration.ofHours(2);
+    private static final Duration DEFAULT_REFRESH_TOKEN_LIFETIME = Duration.ofDays(14);
+
+    /**
+     * Immutable view of a mall's tokens
+     */
+    public record Token(String mallId, String accessToken, Instant expiresAt,
+                        String refreshToken, Instant refreshTokenExpiresAt) {
+
+        boolean expiresWithin(Duration window) {
+            return expiresAt.isBefore(Instant.now().plus(window));
+        }
+
+        boolean canRefresh() {
+            return refreshToken != null
+                    && (refreshTokenExpiresAt == null || refreshTokenExpiresAt.isAfter(Instant.now()));
+        }
+
+        /**
+         * Same field names as Cafe24's token response, for the auth endpoints
+         */
+        public Map<String, Object> toResponse() {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("mall_id", mallId);
+            response.put("access_token", accessToken);
+            response.put("expires_at", expiresAt.toString());
+            response.put("expires_in", Math.max(0, Duration.between(Instant.now(), expiresAt).getSeconds()));
+            response.put("refresh_token", refreshToken);
+            if (refreshTokenExpiresAt != null) {
+                response.put("refresh_token_expires_at", refreshTokenExpiresAt.toString());
+            }
+            return response;
+        }
+    }
+
+    private final MallTokenRepository repository;
+    private final Cafe24AuthClient authClient;
+    private final KnownMalls knownMalls;
+    private final MeterRegistry meterRegistry;
+
+    private final Duration minValidity;
+    private final Duration refreshAhead;
+    private final int refreshConcurrency;
+
+    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+    private final Map<String, Mono<Token>> inflightRefreshes = new ConcurrentHashMap<>();
+
+    public MallTokenService(
+            MallTokenRepository repository,
+            Cafe24AuthClient authClient,
+            KnownMalls knownMalls,
+            MeterRegistry meterRegistry,
+            @Value("${cafe24.token.min-validity-ms:60000}") long minValidityMs,
+            @Value("${cafe24.token.refresh-ahead-ms:600000}") long refreshAheadMs,
+            @Value("${cafe24.token.refresh-concurrency:4}") int refreshConcurrency) {
+        this.repository = repository;
+        this.authClient = authClient;
+        this.knownMalls = knownMalls;
+        this.meterRegistry = meterRegistry;
+        this.minValidity = Duration.ofMillis(minValidityMs);
+        this.refreshAhead = Duration.ofMillis(refreshAheadMs);
+        this.refreshConcurrency = refreshConcurrency;
+    }
+
+    /**
+     * Access token of a mall, refreshed first when it is about to expire.
+     * Fails with IllegalStateException when the mall never authorized the app
+     * or its refresh token has expired as well.
+     */
+    public Mono<String> getAccessToken(String mallId) {
+        return current(mallId)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                        "Mall " + mallId + " has not authorized the app")))
+                .flatMap(token -> token.expiresWithin(minValidity) ? refresh(mallId) : Mono.just(token))
+                .map(Token::accessToken);
+    }
+
+    /**
+     * Whether tokens are stored for the mall, regardless of their expiry
+     */
+    public boolean hasToken(String mallId) {
+        return tokens.containsKey(mallId) || repository.findByMallId(mallId).isPresent();
+    }
+
+    /**
+     * Store the tokens of a Cafe24 token response, from a code exchange or a refresh
+     */
+    public Mono<Token> store(String mallId, Map<String, Object> response) {
+        return blocking(() -> {
+            MallToken entity = repository.findByMallId(mallId)
+                    .orElseGet(() -> MallToken.builder().mallId(mallId).build());
+            apply(entity, response);
+            MallToken saved = repository.save(entity);
+            knownMalls.register(mallId);
+            return cache(saved);
+        });
+    }
+
+    /**
+     * Refresh the mall's access token now. Concurrent calls share one request to Cafe24.
+     */
+    public Mono<Token> refresh(String mallId) {
+        return Mono.defer(() -> inflightRefreshes.computeIfAbsent(mallId, key -> {
+            List<Mono<Token>> self = new ArrayList<>(1);
+            Mono<Token> shared = current(key)
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                            "Mall " + key + " has not authorized the app")))
+                    .flatMap(token -> {
+                        if (!token.canRefresh()) {
+                            return Mono.error(new IllegalStateException(
+                                    "Refresh token of mall " + key + " has expired, the app must be re-authorized"));
+                        }
+                        return authClient.refreshToken(key, token.refreshToken());
+                    })
+                    .flatMap(response -> store(key, response))
+                    .doOnSuccess(token -> meterRegistry.counter("crm.auth.token.refresh", "outcome", "success").increment())
+                    .onErrorResume(e -> recordFailure(key, e).then(Mono.error(e)))
+                    .doFinally(signal -> inflightRefreshes.remove(key, self.get(0)))
+                    .cache();
+            self.add(shared);
+            return shared;
+        }));
+    }
+
+    /**
+     * Refresh on behalf of a caller presenting a refresh token. For a stored
+     * mall the token must match the stored one, so only a holder of the mall's
+     * current refresh token gets the new tokens back; otherwise Cafe24 itself
+     * validates it, e.g. for a mall authorized before tokens were kept server-side.
+     *
+     * @throws IllegalArgumentException (as error signal) if the token is missing or does not match
+     */
+    public Mono<Token> refresh(String mallId, String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return Mono.error(new IllegalArgumentException("refresh_token is required"));
+        }
+        return current(mallId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(stored -> {
+                    if (stored.isEmpty()) {
+                        return authClient.refreshToken(mallId, refreshToken)
+                                .flatMap(response -> store(mallId, response));
+                    }
+                    if (!matches(stored.get().refreshToken(), refreshToken)) {
+                        return Mono.error(new IllegalArgumentException("refresh_token does not match"));
+                    }
+                    return refresh(mallId);
+                });
+    }
+
+    /**
+     * Refresh every token that expires within {@code cafe24.token.refresh-ahead-ms}
+     */
+    @Scheduled(fixedDelayString = "${cafe24.token.refresh-check-interval-ms:60000}",
+            initialDelayString = "${cafe24.token.refresh-check-interval-ms:60000}")
+    public void refreshExpiring() {
+        LocalDateTime horizon = toLocal(Instant.now().plus(refreshAhead));
+        List<MallToken> expiring = repository.findByAccessTokenExpiresAtBefore(horizon);
+        if (expiring.isEmpty()) {
+            return;
+        }
+
+        Flux.fromIterable(expiring)
+                .map(this::cache)
+                .filter(Token::canRefresh)
+                .flatMap(token -> refresh(token.mallId())
+                        .doOnError(e -> log.warn("Proactive token refresh failed for mall {}: {}",
+                                token.mallId(), e.getMessage()))
+                        .onErrorResume(e -> Mono.empty()), refreshConcurrency)
+                .then()
+                .block(Duration.ofMinutes(5));
+    }
+
+    private Mono<Token> current(String mallId) {
+        return Mono.defer(() -> {
+            Token cached = tokens.get(mallId);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return blocking(() -> repository.findByMallId(mallId).map(this::cache).orElse(null));
+        });
+    }
+
+    private Mono<Void> recordFailure(String mallId, Throwable e) {
+        meterRegistry.counter("crm.auth.token.refresh", "outcome", "error").increment();
+        log.error("Token refresh failed for mall {}: {}", mallId, e.getMessage());
+        return blocking(() -> {
+            repository.findByMallId(mallId).ifPresent(entity -> {
+                entity.setLastError(truncate(e.getMessage()));
+                repository.save(entity);
+            });
+            return null;
+        }).onErrorResume(saveError -> Mono.empty()).then();
+    }
+
+    private void apply(MallToken entity, Map<String, Object> response) {
+        Instant now = Instant.now();
+        String accessToken = stringValue(response.get("access_token"));
+        if (accessToken == null) {
+            throw new IllegalArgumentException("Token response has no access_token");
+        }
+        entity.setAccessToken(accessToken);
+        entity.setAccessTokenExpiresAt(toLocal(expiry(response, "expires_at", "expires_in",
+                now.plus(DEFAULT_ACCESS_TOKEN_LIFETIME))));
+
+        // Keep the previous refresh token if Cafe24 did not rotate it
+        String refreshToken = stringValue(response.get("refresh_token"));
+        if (refreshToken != null) {
+            entity.setRefreshToken(refreshToken);
+            entity.setRefreshTokenExpiresAt(toLocal(expiry(response, "refresh_token_expires_at", null,
+                    now.plus(DEFAULT_REFRESH_TOKEN_LIFETIME))));
+        }
+
+        Object scopes = response.get("scopes");
+        if (scopes instanceof List<?> list) {
+            entity.setScopes(String.join(",", list.stream().map(String::valueOf).toList()));
+        }
+        Optional.ofNullable(stringValue(response.get("user_id"))).ifPresent(entity::setUserId);
+        entity.setLastRefreshedAt(toLocal(now));
+        entity.setLastError(null);
+    }
+
+    private Instant expiry(Map<String, Object> response, String atField, String inField, Instant fallback) {
+        String at = stringValue(response.get(atField));
+        if (at != null) {
+            try {
+                return LocalDateTime.parse(at).atZone(CAFE24_ZONE).toInstant();
+            } catch (DateTimeParseException e) {
+                log.debug("Unparseable {} in token response: {}", atField, at);
+            }
+        }
+        if (inField != null && response.get(inField) instanceof Number seconds) {
+            return Instant.now().plusSeconds(seconds.longValue());
+        }
+        return fallback;
+    }
+
+    private Token cache(MallToken entity) {
+        Token token = new Token(entity.getMallId(), entity.getAccessToken(),
+                toInstant(entity.getAccessTokenExpiresAt()), entity.getRefreshToken(),
+                entity.getRefreshTokenExpiresAt() != null ? toInstant(entity.getRefreshTokenExpiresAt()) : null);
+        tokens.put(token.mallId(), token);
+        return token;
+    }
+
+    private static boolean matches(String expected, String actual) {
+        return expected != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    private static Instant toInstant(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static String stringValue(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,48 @@
+package com.cafe24.crm.service.columnar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Value dictionary of a dictionary-encoded column; code 0 means missing.
+ *
+ * Codes are assigned in first-seen order and never change. Rows are not
+ * append-only, though: a patch rewrites existing rows in place, so a reader
+ * that took {@link #size()} earlier can still meet a row with a code at or
+ * above it and must skip that row.
+ */
+final class ColumnDictionary {
+
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Short> codes = new ConcurrentHashMap<>();
+
+    synchronized short code(Object value) {
+        if (value == null || value.toString().isBlank()) {
+            return 0;
+        }
+        String key = value.toString();
+        Short code = codes.get(key);
+        if (code == null) {
+            if (values.size() >= Short.MAX_VALUE - 1) {
+                throw new IllegalStateException("Too many distinct values for a dictionary column");
+            }
+            values.add(key);
+            code = (short) values.size();
+            codes.put(key, code);
+        }
+        return code;
+    }
+
+    /**
+     * Number of codes including the missing code 0
+     */
+    synchronized int size() {
+        return values.size() + 1;
+    }
+
+    synchronized String value(int code) {
+        return code == 0 ? null : values.get(code - 1);
+    }
+}
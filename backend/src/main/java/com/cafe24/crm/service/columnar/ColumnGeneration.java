@@ -0,0 +1,169 @@
+package com.cafe24.crm.service.columnar;
+
+import com.cafe24.crm.service.columnar.CustomerColumnStore.DateColumn;
+import com.cafe24.crm.service.columnar.CustomerColumnStore.Dimension;
+import com.cafe24.crm.service.columnar.CustomerColumnStore.Measure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One generation of the customer column files.
+ *
+ * Every column is a fixed-width file mapped into memory: measures as doubles
+ * (NaN for missing), dimensions as dictionary codes (0 for missing) and dates
+ * as epoch days ({@link #NULL_DAY} for missing). Row i of every column belongs
+ * to the same customer. Rows are only written under the store's write lock;
+ * readers see a row once {@link #rows()} covers it.
+ */
+final class ColumnGeneration {
+
+    static final int NULL_DAY = Integer.MIN_VALUE;
+
+    final Path directory;
+    final int capacity;
+    final LocalDateTime builtAt;
+
+    private final DoubleBuffer[] measures;
+    private final ShortBuffer[] dimensions;
+    private final IntBuffer[] dates;
+    private final ColumnDictionary[] dictionaries;
+    private final Map<String, Integer> rowsById;
+    private volatile int rows;
+
+    private ColumnGeneration(Path directory, int capacity, LocalDateTime builtAt, ColumnDictionary[] dictionaries,
+                             Map<String, Integer> rowsById, int rows) throws IOException {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.builtAt = builtAt;
+        this.dictionaries = dictionaries;
+        this.rowsById = rowsById;
+        this.rows = rows;
+
+        measures = new DoubleBuffer[Measure.values().length];
+        for (Measure measure : Measure.values()) {
+            measures[measure.ordinal()] = map(measure.property, Double.BYTES).asDoubleBuffer();
+        }
+        dimensions = new ShortBuffer[Dimension.values().length];
+        for (Dimension dimension : Dimension.values()) {
+            dimensions[dimension.ordinal()] = map(dimension.property, Short.BYTES).asShortBuffer();
+        }
+        dates = new IntBuffer[DateColumn.values().length];
+        for (DateColumn date : DateColumn.values()) {
+            dates[date.ordinal()] = map(date.property, Integer.BYTES).asIntBuffer();
+        }
+    }
+
+    /**
+     * Create empty column files in a new directory
+     */
+    static ColumnGeneration create(Path directory, int capacity) {
+        try {
+            Files.createDirectories(directory);
+            ColumnDictionary[] dictionaries = new ColumnDictionary[Dimension.values().length];
+            for (int i = 0; i < dictionaries.length; i++) {
+                dictionaries[i] = new ColumnDictionary();
+            }
+            return new ColumnGeneration(directory, capacity, LocalDateTime.now(), dictionaries,
+                    new ConcurrentHashMap<>(), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create column files in " + directory, e);
+        }
+    }
+
+    /**
+     * Map the same files with a larger capacity; rows and dictionaries are shared
+     */
+    ColumnGeneration grow(int newCapacity) {
+        try {
+            return new ColumnGeneration(directory, newCapacity, builtAt, dictionaries, rowsById, rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow column files in " + directory, e);
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /**
+     * Row of a customer by its {@link com.cafe24.crm.support.MallKey} string
+     */
+    Integer rowOf(String customerKey) {
+        return rowsById.get(customerKey);
+    }
+
+    /**
+     * Append a customer and write its values
+     *
+     * @return false if the generation is full
+     */
+    boolean append(String customerKey, Map<String, Object> values) {
+        int row = rows;
+        if (row >= capacity) {
+            return false;
+        }
+        write(row, values);
+        rowsById.put(customerKey, row);
+        rows = row + 1;
+        return true;
+    }
+
+    /**
+     * Overwrite all columns of an existing row
+     */
+    void write(int row, Map<String, Object> values) {
+        for (Measure measure : Measure.values()) {
+            Object value = values.get(measure.property);
+            measures[measure.ordinal()].put(row, value instanceof Number n ? n.doubleValue() : Double.NaN);
+        }
+        for (Dimension dimension : Dimension.values()) {
+            Object value = values.get(dimension.property);
+            dimensions[dimension.ordinal()].put(row, dictionaries[dimension.ordinal()].code(value));
+        }
+        for (DateColumn date : DateColumn.values()) {
+            Object value = values.get(date.property);
+            dates[date.ordinal()].put(row, value instanceof LocalDate day ? (int) day.toEpochDay() : NULL_DAY);
+        }
+    }
+
+    // Bulk reads into caller-owned chunk arrays
+
+    void read(Measure measure, int from, double[] target, int length) {
+        measures[measure.ordinal()].get(from, target, 0, length);
+    }
+
+    void read(Dimension dimension, int from, short[] target, int length) {
+        dimensions[dimension.ordinal()].get(from, target, 0, length);
+    }
+
+    void read(DateColumn date, int from, int[] target, int length) {
+        dates[date.ordinal()].get(from, target, 0, length);
+    }
+
+    ColumnDictionary dictionary(Dimension dimension) {
+        return dictionaries[dimension.ordinal()];
+    }
+
+    private MappedByteBuffer map(String column, int width) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(column + ".col"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * width);
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.cafe24.crm.service.columnar;
+
+import com.cafe24.crm.service.metrics.CustomerMetricsUpdatedEvent;
+import com.cafe24.crm.support.MallKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Customer Column Store
+ *
+ * Analytical side store mirroring scalar CRM_Customer properties into
+ * memory-mapped column files outside the Java heap. Aggregates scan the
+ * columns in chunks copied into primitive arrays, so a group-by over millions
+ * of customers is a few tight loops instead of a Neo4j property scan.
+ *
+ * The files are working storage, not a source of truth: the store is rebuilt
+ * from the graph at startup and periodically, and customers whose metrics
+ * are recomputed are patched in place in between.
+ */
+@Service
+@Slf4j
+public class CustomerColumnStore {
+
+    private static final int CHUNK = 4096;
+    private static final int MAX_GROUPS = 1 << 20;
+
+    public enum Measure {
+        TOTAL_REVENUE("total_revenue"),
+        CLV("clv"),
+        AVG_ORDER_VALUE("avg_order_value"),
+        CHURN_PROBABILITY("churn_probability"),
+        TOTAL_ORDERS("total_orders"),
+        DAYS_SINCE_LAST_PURCHASE("days_since_last_purchase");
+
+        final String property;
+
+        Measure(String property) {
+            this.property = property;
+        }
+    }
+
+    public enum Dimension {
+        SEGMENT("segment"),
+        TIER("tier"),
+        STATUS("status"),
+        PREFERRED_CATEGORY("preferred_category"),
+        RFM_SCORE("rfm_score"),
+        RECENCY("recency"),
+        FREQUENCY("frequency"),
+        MONETARY("monetary");
+
+        final String property;
+
+        Dimension(String property) {
+            this.property = property;
+        }
+    }
+
+    public enum DateColumn {
+        FIRST_ORDER_DATE("first_order_date"),
+        LAST_ORDER_DATE("last_order_date");
+
+        final String property;
+
+        DateColumn(String property) {
+            this.property = property;
+        }
+    }
+
+    /**
+     * Aggregate of one group
+     *
+     * @param keys      dimension values of the group, null where missing
+     * @param customers customers in the group
+     * @param count     customers with a value for the measure
+     */
+    public record GroupStats(List<String> keys, long customers, long count, double sum, double min, double max) {
+
+        public double average() {
+            return count > 0 ? sum / count : 0.0;
+        }
+    }
+
+    private static final String COUNT_CUSTOMERS = """
+            MATCH (c:CRM_Customer)
+            WHERE c.customer_id IS NOT NULL
+            RETURN count(c) AS customers
+            """;
+
+    private static final String LOAD_ALL = """
+            MATCH (c:CRM_Customer)
+            WHERE c.customer_id IS NOT NULL
+            RETURN c.mall_id AS mall_id, c.customer_id AS customer_id, properties(c) AS props
+            """;
+
+    private static final String LOAD_SOME = """
+            UNWIND $customerKeys AS key
+            MATCH (c:CRM_Customer {customer_id: key.id})
+            WHERE coalesce(c.mall_id, '') = coalesce(key.mall_id, '')
+            RETURN c.mall_id AS mall_id, c.customer_id AS customer_id, properties(c) AS props
+            """;
+
+    private final Driver driver;
+    private final MeterRegistry meterRegistry;
+    private final Path baseDirectory;
+    private final boolean enabled;
+    private final Object writeLock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Set<MallKey> patchedDuringRebuild = new LinkedHashSet<>();
+    private volatile ColumnGeneration current;
+
+    public CustomerColumnStore(
+            Driver driver,
+            MeterRegistry meterRegistry,
+            @Value("${columnar.customers.dir:./data/columnar/customers}") String directory,
+            @Value("${columnar.customers.enabled:true}") boolean enabled) {
+        this.driver = driver;
+        this.meterRegistry = meterRegistry;
+        this.baseDirectory = Path.of(directory);
+        this.enabled = enabled;
+
+        meterRegistry.gauge("crm.columnar.customers.rows", this,
+                store -> store.current != null ? store.current.rows() : 0);
+    }
+
+    /**
+     * Whether aggregates can be served from the store
+     */
+    public boolean isReady() {
+        return enabled && current != null;
+    }
+
+    /**
+     * When the current generation was built, or null before the first build
+     */
+    public LocalDateTime getBuiltAt() {
+        ColumnGeneration generation = current;
+        return generation != null ? generation.builtAt : null;
+    }
+
+    /**
+     * Build the store once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialBuild() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("Skipping initial customer column store build: {}", e.getMessage());
+            }
+        }, "columnar-customers-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Periodic rebuild picks up customer changes that bypass the metrics recompute
+     */
+    @Scheduled(initialDelayString = "${columnar.customers.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${columnar.customers.rebuild-interval-ms:3600000}")
+    public void scheduledRebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (IllegalStateException e) {
+            log.debug("Skipping scheduled customer column store rebuild: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Customer column store rebuild failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Patch the customers whose derived metrics were just recomputed
+     */
+    @EventListener
+    public void onCustomerMetricsUpdated(CustomerMetricsUpdatedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            patch(event.customers());
+        } catch (Exception e) {
+            // The graph is already updated; the next rebuild catches up
+            log.error("Failed to patch {} customers in the column store: {}",
+                    event.customers().size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write every customer into a new generation of column files and swap it in
+     *
+     * @return number of customers stored
+     * @throws IllegalStateException if a rebuild is already in progress
+     */
+    public int rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Customer column store rebuild is already running");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (Session session = driver.session()) {
+            int expected = session.executeRead(tx -> tx.run(COUNT_CUSTOMERS).single().get("customers").asInt());
+
+            ColumnGeneration built = session.executeRead(tx -> {
+                // A fresh directory per attempt, so a retried transaction never appends twice
+                ColumnGeneration generation = ColumnGeneration.create(
+                        baseDirectory.resolve("gen-" + System.nanoTime()), expected + expected / 4 + 1024);
+                Result result = tx.run(LOAD_ALL);
+                while (result.hasNext()) {
+                    Record record = result.next();
+                    String customer = MallKey.of(record, "customer_id").toString();
+                    Map<String, Object> props = record.get("props").asMap();
+                    if (!generation.append(customer, props)) {
+                        generation = generation.grow(generation.capacity * 2);
+                        generation.append(customer, props);
+                    }
+                }
+                return generation;
+            });
+
+            List<MallKey> missed;
+            synchronized (writeLock) {
+                current = built;
+                missed = new ArrayList<>(patchedDuringRebuild);
+                patchedDuringRebuild.clear();
+            }
+            if (!missed.isEmpty()) {
+                patch(missed);
+            }
+            deleteStaleGenerations(built.directory);
+
+            long nanos = sample.stop(meterRegistry.timer("crm.columnar.customers.rebuild"));
+            log.info("Customer column store rebuilt: {} customers in {} ms",
+                    built.rows(), TimeUnit.NANOSECONDS.toMillis(nanos));
+            return built.rows();
+        } finally {
+            synchronized (writeLock) {
+                patchedDuringRebuild.clear();
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Re-read the given customers from the graph and overwrite or append their rows.
+     *
+     * The read happens under the write lock: two patches of the same customer
+     * that read outside it could write their snapshots in the opposite order
+     * and leave the older values in the store.
+     */
+    public void patch(Collection<MallKey> customers) {
+        if (customers.isEmpty() || (current == null && !rebuilding.get())) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            Map<String, Map<String, Object>> props = new HashMap<>();
+            try (Session session = driver.session()) {
+                List<Map<String, Object>> keys = customers.stream().map(MallKey::toParameter).toList();
+                session.executeRead(tx -> tx.run(LOAD_SOME, Map.of("customerKeys", keys)).list())
+                        .forEach(record -> props.put(MallKey.of(record, "customer_id").toString(),
+                                record.get("props").asMap()));
+            }
+
+            if (rebuilding.get()) {
+                // The running rebuild may have read these customers before the change
+                patchedDuringRebuild.addAll(customers);
+            }
+            ColumnGeneration generation = current;
+            if (generation == null) {
+                return;
+            }
+            for (Map.Entry<String, Map<String, Object>> entry : props.entrySet()) {
+                Integer row = generation.rowOf(entry.getKey());
+                if (row != null) {
+                    generation.write(row, entry.getValue());
+                } else if (!generation.append(entry.getKey(), entry.getValue())) {
+                    generation = generation.grow(generation.capacity * 2);
+                    current = generation;
+                    generation.append(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Group customers by one or more dimensions and aggregate a measure
+     *
+     * @param activeSince only customers whose last order is on or after this date; null for all
+     * @throws IllegalArgumentException if the dimensions have too many combined groups
+     * @throws IllegalStateException    if the store is not ready
+     */
+    public List<GroupStats> aggregate(List<Dimension> groupBy, Measure measure, LocalDate activeSince) {
+        ColumnGeneration generation = requireReady();
+        int rows = generation.rows();
+
+        int dimensionCount = groupBy.size();
+        int[] radix = new int[dimensionCount];
+        long groups = 1;
+        for (int d = 0; d < dimensionCount; d++) {
+            radix[d] = generation.dictionary(groupBy.get(d)).size();
+            groups *= radix[d];
+        }
+        if (groups > MAX_GROUPS) {
+            throw new IllegalArgumentException("Too many groups (" + groups + ") for " + groupBy);
+        }
+
+        long[] customers = new long[(int) groups];
+        long[] counts = new long[(int) groups];
+        double[] sums = new double[(int) groups];
+        double[] mins = new double[(int) groups];
+        double[] maxs = new double[(int) groups];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+
+        short[][] codes = new short[dimensionCount][CHUNK];
+        int[] keys = new int[CHUNK];
+        double[] values = new double[CHUNK];
+        int[] lastOrder = activeSince != null ? new int[CHUNK] : null;
+        int since = activeSince != null ? (int) activeSince.toEpochDay() : 0;
+
+        for (int start = 0; start < rows; start += CHUNK) {
+            int length = Math.min(CHUNK, rows - start);
+            generation.read(measure, start, values, length);
+
+            // Combined group key per row, mixed radix over the dimension codes. A patch can
+            // rewrite a row with a code assigned after the radix was read; such rows are
+            // marked -1 and skipped rather than folded into another group
+            Arrays.fill(keys, 0, length, 0);
+            for (int d = 0; d < dimensionCount; d++) {
+                generation.read(groupBy.get(d), start, codes[d], length);
+                short[] column = codes[d];
+                int base = radix[d];
+                for (int i = 0; i < length; i++) {
+                    if (keys[i] < 0 || column[i] >= base) {
+                        keys[i] = -1;
+                    } else {
+                        keys[i] = keys[i] * base + column[i];
+                    }
+                }
+            }
+            if (lastOrder != null) {
+                generation.read(DateColumn.LAST_ORDER_DATE, start, lastOrder, length);
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (keys[i] < 0 || (lastOrder != null && lastOrder[i] < since)) {
+                    continue;
+                }
+                int key = keys[i];
+                double value = values[i];
+                customers[key]++;
+                if (value == value) {
+                    counts[key]++;
+                    sums[key] += value;
+                    mins[key] = Math.min(mins[key], value);
+                    maxs[key] = Math.max(maxs[key], value);
+                }
+            }
+        }
+
+        List<GroupStats> result = new ArrayList<>();
+        for (int key = 0; key < groups; key++) {
+            if (customers[key] == 0) {
+                continue;
+            }
+            String[] groupKeys = new String[dimensionCount];
+            int remainder = key;
+            for (int d = dimensionCount - 1; d >= 0; d--) {
+                groupKeys[d] = generation.dictionary(groupBy.get(d)).value(remainder % radix[d]);
+                remainder /= radix[d];
+            }
+            boolean any = counts[key] > 0;
+            result.add(new GroupStats(Arrays.asList(groupKeys), customers[key], counts[key], sums[key],
+                    any ? mins[key] : 0.0, any ? maxs[key] : 0.0));
+        }
+        return result;
+    }
+
+    /**
+     * Aggregate a measure over all customers
+     *
+     * @throws IllegalStateException if the store is not ready
+     */
+    public GroupStats total(Measure measure) {
+        ColumnGeneration generation = requireReady();
+        int rows = generation.rows();
+        double[] values = new double[CHUNK];
+        long count = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        for (int start = 0; start < rows; start += CHUNK) {
+            int length = Math.min(CHUNK, rows - start);
+            generation.read(measure, start, values, length);
+            for (int i = 0; i < length; i++) {
+                double value = values[i];
+                if (value == value) {
+                    count++;
+                    sum += value;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+        }
+        return new GroupStats(List.of(), rows, count, sum,
+                count > 0 ? min : 0.0, count > 0 ? max : 0.0);
+    }
+
+    // Drop-in replacements for the repository aggregates, same row shape
+
+    /**
+     * Same rows as {@code CrmCustomerNeo4jRepository.getSegmentStats()}
+     */
+    public List<Map<String, Object>> segmentStats() {
+        Map<List<String>, GroupStats> clv = new HashMap<>();
+        aggregate(List.of(Dimension.SEGMENT), Measure.CLV, null).forEach(stats -> clv.put(stats.keys(), stats));
+
+        return aggregate(List.of(Dimension.SEGMENT), Measure.TOTAL_REVENUE, null).stream()
+                .filter(stats -> stats.keys().get(0) != null)
+                .sorted(Comparator.comparingDouble(GroupStats::sum).reversed())
+                .map(stats -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("segment", stats.keys().get(0));
+                    row.put("customerCount", stats.customers());
+                    row.put("totalRevenue", stats.sum());
+                    row.put("avgRevenue", stats.count() > 0 ? stats.average() : null);
+                    GroupStats segmentClv = clv.get(stats.keys());
+                    row.put("avgClv", segmentClv != null && segmentClv.count() > 0 ? segmentClv.average() : null);
+                    return row;
+                })
+                .toList();
+    }
+
+    /**
+     * Same rows as {@code CrmCustomerNeo4jRepository.getRfmDistribution()}
+     */
+    public List<Map<String, Object>> rfmDistribution() {
+        return aggregate(List.of(Dimension.RECENCY, Dimension.FREQUENCY, Dimension.MONETARY), Measure.TOTAL_REVENUE, null)
+                .stream()
+                .filter(stats -> !stats.keys().contains(null))
+                .map(stats -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("recency", score(stats.keys().get(0)));
+                    row.put("frequency", score(stats.keys().get(1)));
+                    row.put("monetary", score(stats.keys().get(2)));
+                    row.put("customerCount", stats.customers());
+                    return row;
+                })
+                .sorted(Comparator.comparing((Map<String, Object> row) -> (Long) row.get("recency"))
+                        .thenComparing(row -> (Long) row.get("frequency"))
+                        .thenComparing(row -> (Long) row.get("monetary")))
+                .toList();
+    }
+
+    /**
+     * Same rows as {@code CrmCustomerNeo4jRepository.getRfmSegmentDistribution()}
+     */
+    public List<Map<String, Object>> rfmScoreDistribution() {
+        return aggregate(List.of(Dimension.RFM_SCORE), Measure.TOTAL_REVENUE, null).stream()
+                .filter(stats -> stats.keys().get(0) != null)
+                .sorted(Comparator.comparingLong(GroupStats::customers).reversed())
+                .map(stats -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("rfmScore", stats.keys().get(0));
+                    row.put("count", stats.customers());
+                    return row;
+                })
+                .toList();
+    }
+
+    /**
+     * Same value as {@code CrmCustomerNeo4jRepository.getAverageClv()}
+     */
+    public Double averageClv() {
+        GroupStats clv = total(Measure.CLV);
+        return clv.count() > 0 ? clv.average() : null;
+    }
+
+    private static Long score(String value) {
+        return Math.round(Double.parseDouble(value));
+    }
+
+    private ColumnGeneration requireReady() {
+        ColumnGeneration generation = current;
+        if (!enabled || generation == null) {
+            throw new IllegalStateException("Customer column store is not built yet");
+        }
+        return generation;
+    }
+
+    private void deleteStaleGenerations(Path keep) {
+        try (Stream<Path> directories = Files.list(baseDirectory)) {
+            for (Path directory : directories.filter(path -> !path.equals(keep)).toList()) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete stale column store generations: {}", e.getMessage());
+        }
+    }
+}
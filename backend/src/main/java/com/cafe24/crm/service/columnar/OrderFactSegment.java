@@ -0,0 +1,265 @@
+package com.cafe24.crm.service.columnar;
+
+import com.cafe24.crm.service.columnar.OrderFactStore.OrderDimension;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only columns of the orders of one month.
+ *
+ * Each column is a fixed-width file mapped with {@link FileChannel#map}.
+ * Categorical columns hold codes of store-wide dictionaries, so partial
+ * aggregates of different months can be merged by code. An updated order is
+ * appended again and its previous row is cleared in the flags column.
+ */
+final class OrderFactSegment {
+
+    static final byte LIVE = 1;
+    static final byte HAS_CUSTOMER = 2;
+
+    private static final int CHUNK = 4096;
+
+    final String month;
+    final Path directory;
+    final int capacity;
+
+    private final DoubleBuffer amounts;
+    private final IntBuffer epochDays;
+    private final IntBuffer customers;
+    private final ShortBuffer[] codes;
+    private final ByteBuffer hours;
+    private final ByteBuffer daysOfWeek;
+    private final ByteBuffer flags;
+    private volatile int rows;
+
+    private OrderFactSegment(String month, Path directory, int capacity, int rows) throws IOException {
+        this.month = month;
+        this.directory = directory;
+        this.capacity = capacity;
+        this.rows = rows;
+
+        Files.createDirectories(directory);
+        amounts = map("total_amount", Double.BYTES).asDoubleBuffer();
+        epochDays = map("order_date", Integer.BYTES).asIntBuffer();
+        customers = map("customer", Integer.BYTES).asIntBuffer();
+        codes = new ShortBuffer[OrderDimension.values().length];
+        for (OrderDimension dimension : OrderDimension.values()) {
+            if (dimension.property != null) {
+                codes[dimension.ordinal()] = map(dimension.property, Short.BYTES).asShortBuffer();
+            }
+        }
+        hours = map("hour", Byte.BYTES);
+        daysOfWeek = map("day_of_week", Byte.BYTES);
+        flags = map("flags", Byte.BYTES);
+    }
+
+    static OrderFactSegment create(String month, Path directory, int capacity) {
+        try {
+            return new OrderFactSegment(month, directory, capacity, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create order segment " + directory, e);
+        }
+    }
+
+    /**
+     * Map the same files with a larger capacity
+     */
+    OrderFactSegment grow(int newCapacity) {
+        try {
+            return new OrderFactSegment(month, directory, newCapacity, rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow order segment " + directory, e);
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /**
+     * Append one order
+     *
+     * @param dimensionCodes code per {@link OrderDimension} ordinal; hour and day of week are 0 when missing
+     * @param customerCode   store-wide code of the (mall, customer), 0 for guest orders
+     * @return the new row, or -1 if the segment is full
+     */
+    int append(double amount, int epochDay, short[] dimensionCodes, int customerCode) {
+        int row = rows;
+        if (row >= capacity) {
+            return -1;
+        }
+        amounts.put(row, amount);
+        epochDays.put(row, epochDay);
+        customers.put(row, customerCode);
+        for (OrderDimension dimension : OrderDimension.values()) {
+            short code = dimensionCodes[dimension.ordinal()];
+            switch (dimension) {
+                case HOUR -> hours.put(row, (byte) code);
+                case DAY_OF_WEEK -> daysOfWeek.put(row, (byte) code);
+                default -> codes[dimension.ordinal()].put(row, code);
+            }
+        }
+        flags.put(row, (byte) (LIVE | (customerCode != 0 ? HAS_CUSTOMER : 0)));
+        rows = row + 1;
+        return row;
+    }
+
+    /**
+     * Clear the live flag of a superseded row
+     */
+    void retire(int row) {
+        flags.put(row, (byte) (flags.get(row) & ~LIVE));
+    }
+
+    /**
+     * Add this segment's live orders to per-code count and revenue arrays
+     *
+     * @param fromDay         first epoch day to include
+     * @param toDay           last epoch day to include
+     * @param requireCustomer only count orders placed by a known customer
+     */
+    void scan(OrderDimension dimension, int fromDay, int toDay, boolean requireCustomer,
+              long[] counts, double[] revenue) {
+        int limit = rows;
+        int radix = counts.length;
+        byte required = (byte) (LIVE | (requireCustomer ? HAS_CUSTOMER : 0));
+        boolean dateFilter = fromDay != Integer.MIN_VALUE || toDay != Integer.MAX_VALUE;
+
+        int[] keys = new int[CHUNK];
+        short[] shortScratch = new short[CHUNK];
+        byte[] byteScratch = new byte[CHUNK];
+        byte[] rowFlags = new byte[CHUNK];
+        double[] rowAmounts = new double[CHUNK];
+        int[] rowDays = dateFilter ? new int[CHUNK] : null;
+
+        for (int start = 0; start < limit; start += CHUNK) {
+            int length = Math.min(CHUNK, limit - start);
+            flags.get(start, rowFlags, 0, length);
+            amounts.get(start, rowAmounts, 0, length);
+            if (rowDays != null) {
+                epochDays.get(start, rowDays, 0, length);
+            }
+            readKeys(dimension, start, length, shortScratch, byteScratch, keys);
+
+            for (int i = 0; i < length; i++) {
+                if ((rowFlags[i] & required) != required) {
+                    continue;
+                }
+                if (rowDays != null && (rowDays[i] < fromDay || rowDays[i] > toDay)) {
+                    continue;
+                }
+                int key = keys[i];
+                if (key >= radix) {
+                    continue;
+                }
+                counts[key]++;
+                double amount = rowAmounts[i];
+                if (amount == amount) {
+                    revenue[key] += amount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the live orders of rows [from, to) to a pivot partial
+     *
+     * @param columns second dimension, or null for a one-dimensional pivot
+     */
+    void pivot(OrderDimension rowDimension, OrderDimension columns, int from, int to, int fromDay, int toDay,
+               OrderPivot.Partial partial) {
+        int limit = Math.min(to, rows);
+        int rowRadix = partial.rowRadix;
+        int columnRadix = partial.columnRadix;
+        boolean dateFilter = fromDay != Integer.MIN_VALUE || toDay != Integer.MAX_VALUE;
+
+        int[] rowKeys = new int[CHUNK];
+        int[] columnKeys = new int[CHUNK];
+        short[] shortScratch = new short[CHUNK];
+        byte[] byteScratch = new byte[CHUNK];
+        byte[] rowFlags = new byte[CHUNK];
+        double[] rowAmounts = new double[CHUNK];
+        int[] rowDays = dateFilter ? new int[CHUNK] : null;
+        int[] rowCustomers = partial.customers != null ? new int[CHUNK] : null;
+
+        for (int start = from; start < limit; start += CHUNK) {
+            int length = Math.min(CHUNK, limit - start);
+            flags.get(start, rowFlags, 0, length);
+            amounts.get(start, rowAmounts, 0, length);
+            if (rowDays != null) {
+                epochDays.get(start, rowDays, 0, length);
+            }
+            if (rowCustomers != null) {
+                customers.get(start, rowCustomers, 0, length);
+            }
+            readKeys(rowDimension, start, length, shortScratch, byteScratch, rowKeys);
+            if (columns != null) {
+                readKeys(columns, start, length, shortScratch, byteScratch, columnKeys);
+            }
+
+            for (int i = 0; i < length; i++) {
+                if ((rowFlags[i] & LIVE) == 0) {
+                    continue;
+                }
+                if (rowDays != null && (rowDays[i] < fromDay || rowDays[i] > toDay)) {
+                    continue;
+                }
+                // Codes assigned after the query started fall outside the radix
+                if (rowKeys[i] >= rowRadix || columnKeys[i] >= columnRadix) {
+                    continue;
+                }
+                int cell = rowKeys[i] * columnRadix + columnKeys[i];
+                partial.orders[cell]++;
+                double amount = rowAmounts[i];
+                if (amount == amount) {
+                    partial.amounts[cell]++;
+                    partial.revenue[cell] += amount;
+                }
+                if (rowCustomers != null && rowCustomers[i] != 0) {
+                    partial.customer(cell).add(rowCustomers[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the codes of a dimension as ints
+     */
+    private void readKeys(OrderDimension dimension, int start, int length,
+                          short[] shortScratch, byte[] byteScratch, int[] keys) {
+        switch (dimension) {
+            case HOUR, DAY_OF_WEEK -> {
+                (dimension == OrderDimension.HOUR ? hours : daysOfWeek).get(start, byteScratch, 0, length);
+                for (int i = 0; i < length; i++) {
+                    keys[i] = byteScratch[i];
+                }
+            }
+            default -> {
+                codes[dimension.ordinal()].get(start, shortScratch, 0, length);
+                for (int i = 0; i < length; i++) {
+                    keys[i] = shortScratch[i];
+                }
+            }
+        }
+    }
+
+    private MappedByteBuffer map(String column, int width) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(column + ".col"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * width);
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package com.cafe24.crm.service.columnar;
+
+import com.cafe24.crm.service.sync.OrdersUpsertedEvent;
+import com.cafe24.crm.support.MallKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Order Fact Store
+ *
+ * Append-only columnar copy of CRM_Order, one {@link OrderFactSegment} per
+ * order month. Group-by scans run one task per month segment in parallel and
+ * merge the partial count/revenue arrays by dictionary code; two-dimensional
+ * pivots split segments further into row ranges (see {@link OrderPivot}).
+ *
+ * Like the customer column store the files are working storage: they are
+ * rebuilt from the graph at startup and nightly, and ingested order batches
+ * are appended in between.
+ */
+@Service
+@Slf4j
+public class OrderFactStore implements DisposableBean {
+
+    private static final String UNDATED = "undated";
+    private static final int MAX_PIVOT_CELLS = 1 << 16;
+
+    public enum OrderDimension {
+        CHANNEL("channel"),
+        PAYMENT_METHOD("payment_method"),
+        STATUS("status"),
+        CITY("shipping_city"),
+        DEVICE("device_type"),
+        MONTH("order_month"),
+        // Segment of the ordering customer as of the last rebuild or ingest of the order
+        SEGMENT("customer_segment"),
+        HOUR(null),
+        DAY_OF_WEEK(null);
+
+        final String property;
+
+        OrderDimension(String property) {
+            this.property = property;
+        }
+    }
+
+    /**
+     * Orders and revenue of one dimension value
+     */
+    public record OrderGroupStats(String key, long orders, double revenue) {
+    }
+
+    /**
+     * One cell of an order pivot
+     *
+     * @param pricedOrders orders with a total amount, the denominator of the average
+     * @param customers    distinct customers, or null when not requested
+     */
+    public record PivotCell(String row, String column, long orders, long pricedOrders, double revenue,
+                            Long customers) {
+
+        public Double averageOrderValue() {
+            return pricedOrders > 0 ? revenue / pricedOrders : null;
+        }
+    }
+
+    private static final String LOAD_ALL = """
+            MATCH (o:CRM_Order)
+            WHERE o.order_id IS NOT NULL
+            OPTIONAL MATCH (c:CRM_Customer)-[:PLACED_ORDER]->(o)
+            RETURN o.mall_id AS mall_id, o.order_id AS order_id, o {.*, customer_segment: c.segment} AS props
+            """;
+
+    private static final String LOAD_SOME = """
+            UNWIND $orderKeys AS key
+            MATCH (o:CRM_Order {order_id: key.id})
+            WHERE coalesce(o.mall_id, '') = coalesce(key.mall_id, '')
+            OPTIONAL MATCH (c:CRM_Customer)-[:PLACED_ORDER]->(o)
+            RETURN o.mall_id AS mall_id, o.order_id AS order_id, o {.*, customer_segment: c.segment} AS props
+            """;
+
+    private final Driver driver;
+    private final MeterRegistry meterRegistry;
+    private final Path baseDirectory;
+    private final boolean enabled;
+    private final int segmentCapacity;
+    private final ForkJoinPool scanPool;
+    private final Object writeLock = new Object();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong version = new AtomicLong();
+    private final List<MallKey> ingestedDuringRebuild = new ArrayList<>();
+    private volatile Generation current;
+
+    public OrderFactStore(
+            Driver driver,
+            MeterRegistry meterRegistry,
+            @Value("${columnar.orders.dir:./data/columnar/orders}") String directory,
+            @Value("${columnar.orders.enabled:true}") boolean enabled,
+            @Value("${columnar.orders.segment-capacity:16384}") int segmentCapacity,
+            @Value("${columnar.orders.scan-parallelism:4}") int scanParallelism) {
+        this.driver = driver;
+        this.meterRegistry = meterRegistry;
+        this.baseDirectory = Path.of(directory);
+        this.enabled = enabled;
+        this.segmentCapacity = segmentCapacity;
+        this.scanPool = new ForkJoinPool(scanParallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("order-fact-scan-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+
+        meterRegistry.gauge("crm.columnar.orders.segments", this,
+                store -> store.current != null ? store.current.segments.size() : 0);
+    }
+
+    @Override
+    public void destroy() {
+        scanPool.shutdownNow();
+    }
+
+    /**
+     * Whether aggregates can be served from the store
+     */
+    public boolean isReady() {
+        return enabled && current != null;
+    }
+
+    /**
+     * When the current generation was built, or null before the first build
+     */
+    public LocalDateTime getBuiltAt() {
+        Generation generation = current;
+        return generation != null ? generation.builtAt : null;
+    }
+
+    /**
+     * Incremented whenever rows are appended or a new generation is swapped in
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Build the store once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialBuild() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("Skipping initial order fact store build: {}", e.getMessage());
+            }
+        }, "columnar-orders-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Nightly rebuild compacts away superseded rows
+     */
+    @Scheduled(cron = "${columnar.orders.rebuild-cron:0 30 4 * * *}", zone = "${jobs.derived-metrics.zone:Asia/Seoul}")
+    public void scheduledRebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (IllegalStateException e) {
+            log.debug("Skipping scheduled order fact store rebuild: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Order fact store rebuild failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Append the orders of an ingested batch, superseding their previous rows
+     */
+    @EventListener
+    public void onOrdersUpserted(OrdersUpsertedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        List<MallKey> orders = event.rows().stream()
+                .map(row -> MallKey.of(row, "order_id"))
+                .filter(key -> key != null)
+                .toList();
+        try {
+            ingest(orders);
+        } catch (Exception e) {
+            // The graph is already updated; the nightly rebuild catches up
+            log.error("Failed to append {} orders to the fact store: {}", orders.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write every order into a new generation of month segments and swap it in
+     *
+     * @return number of orders stored
+     * @throws IllegalStateException if a rebuild is already in progress
+     */
+    public int rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Order fact store rebuild is already running");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (Session session = driver.session()) {
+            Generation built = session.executeRead(tx -> {
+                // A fresh directory per attempt, so a retried transaction never appends twice
+                Generation generation = new Generation(baseDirectory.resolve("gen-" + System.nanoTime()));
+                Result result = tx.run(LOAD_ALL);
+                while (result.hasNext()) {
+                    Record record = result.next();
+                    append(generation, MallKey.of(record, "order_id"), record.get("props").asMap());
+                }
+                return generation;
+            });
+
+            List<MallKey> missed;
+            synchronized (writeLock) {
+                current = built;
+                version.incrementAndGet();
+                missed = new ArrayList<>(ingestedDuringRebuild);
+                ingestedDuringRebuild.clear();
+            }
+            if (!missed.isEmpty()) {
+                ingest(missed);
+            }
+            deleteStaleGenerations(built.directory);
+
+            long nanos = sample.stop(meterRegistry.timer("crm.columnar.orders.rebuild"));
+            log.info("Order fact store rebuilt: {} orders in {} month segments in {} ms",
+                    built.locations.size(), built.segments.size(), TimeUnit.NANOSECONDS.toMillis(nanos));
+            return built.locations.size();
+        } finally {
+            synchronized (writeLock) {
+                ingestedDuringRebuild.clear();
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Re-read the given orders from the graph and append them
+     */
+    public void ingest(List<MallKey> orders) {
+        if (orders.isEmpty() || (current == null && !rebuilding.get())) {
+            return;
+        }
+
+        List<Record> records;
+        try (Session session = driver.session()) {
+            List<Map<String, Object>> keys = orders.stream().map(MallKey::toParameter).toList();
+            records = session.executeRead(tx -> tx.run(LOAD_SOME, Map.of("orderKeys", keys)).list());
+        }
+
+        synchronized (writeLock) {
+            if (rebuilding.get()) {
+                // The running rebuild may have read these orders before the change
+                ingestedDuringRebuild.addAll(orders);
+            }
+            Generation generation = current;
+            if (generation == null) {
+                return;
+            }
+            for (Record record : records) {
+                append(generation, MallKey.of(record, "order_id"), record.get("props").asMap());
+            }
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Count orders and sum revenue per value of a dimension, scanning month segments in parallel
+     *
+     * @param from            first order date to include, or null
+     * @param to              last order date to include, or null
+     * @param requireCustomer only count orders placed by a known customer
+     * @throws IllegalStateException if the store is not ready
+     */
+    public List<OrderGroupStats> aggregate(OrderDimension dimension, LocalDate from, LocalDate to,
+                                           boolean requireCustomer) {
+        Generation generation = current;
+        if (!enabled || generation == null) {
+            throw new IllegalStateException("Order fact store is not built yet");
+        }
+
+        int radix = radix(generation, dimension);
+        int fromDay = from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+        int toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+
+        List<Future<Object[]>> partials = new ArrayList<>();
+        for (OrderFactSegment segment : segmentsInRange(generation, from, to)) {
+            partials.add(scanPool.submit(() -> {
+                long[] counts = new long[radix];
+                double[] revenue = new double[radix];
+                segment.scan(dimension, fromDay, toDay, requireCustomer, counts, revenue);
+                return new Object[]{counts, revenue};
+            }));
+        }
+
+        long[] counts = new long[radix];
+        double[] revenue = new double[radix];
+        try {
+            for (Future<Object[]> partial : partials) {
+                Object[] result = partial.get();
+                long[] partialCounts = (long[]) result[0];
+                double[] partialRevenue = (double[]) result[1];
+                for (int key = 0; key < radix; key++) {
+                    counts[key] += partialCounts[key];
+                    revenue[key] += partialRevenue[key];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning order segments", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Order segment scan failed", e.getCause());
+        }
+
+        List<OrderGroupStats> result = new ArrayList<>();
+        for (int key = 1; key < radix; key++) {
+            if (counts[key] == 0) {
+                continue;
+            }
+            result.add(new OrderGroupStats(label(generation, dimension, key), counts[key], revenue[key]));
+        }
+        return result;
+    }
+
+    /**
+     * Cross-tabulate orders by one or two dimensions on the fork-join scan pool
+     *
+     * @param columns           second dimension, or null
+     * @param distinctCustomers also count distinct customers per cell
+     * @throws IllegalArgumentException if the dimensions have too many combined cells
+     * @throws IllegalStateException    if the store is not ready
+     */
+    public List<PivotCell> pivot(OrderDimension rows, OrderDimension columns, boolean distinctCustomers,
+                                 LocalDate from, LocalDate to) {
+        Generation generation = current;
+        if (!enabled || generation == null) {
+            throw new IllegalStateException("Order fact store is not built yet");
+        }
+
+        int rowRadix = radix(generation, rows);
+        int columnRadix = columns != null ? radix(generation, columns) : 1;
+        if ((long) rowRadix * columnRadix > MAX_PIVOT_CELLS) {
+            throw new IllegalArgumentException("Too many cells (" + (long) rowRadix * columnRadix + ") for "
+                    + rows + " x " + columns);
+        }
+        int fromDay = from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+        int toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+
+        List<OrderPivot.Slice> slices = new ArrayList<>();
+        for (OrderFactSegment segment : segmentsInRange(generation, from, to)) {
+            slices.add(new OrderPivot.Slice(segment, 0, segment.rows()));
+        }
+        OrderPivot.Partial partial = scanPool.invoke(new OrderPivot.Task(slices, rows, columns, fromDay, toDay,
+                rowRadix, columnRadix, distinctCustomers));
+
+        List<PivotCell> cells = new ArrayList<>();
+        for (int rowCode = 1; rowCode < rowRadix; rowCode++) {
+            // Column code 0 is the whole row when there is no second dimension, otherwise a missing value
+            for (int columnCode = columns != null ? 1 : 0; columnCode < columnRadix; columnCode++) {
+                int cell = rowCode * columnRadix + columnCode;
+                if (partial.orders[cell] == 0) {
+                    continue;
+                }
+                Long customers = null;
+                if (distinctCustomers) {
+                    customers = partial.customers[cell] != null ? (long) partial.customers[cell].getCardinality() : 0L;
+                }
+                cells.add(new PivotCell(label(generation, rows, rowCode),
+                        columns != null ? label(generation, columns, columnCode) : null,
+                        partial.orders[cell], partial.amounts[cell], partial.revenue[cell], customers));
+            }
+        }
+        return cells;
+    }
+
+    // Drop-in replacements for the repository aggregates, same row shape
+
+    /**
+     * Same rows as {@code CrmOrderNeo4jRepository.getOrdersByChannel()}
+     */
+    public List<Map<String, Object>> ordersByChannel() {
+        return aggregate(OrderDimension.CHANNEL, null, null, false).stream()
+                .sorted(Comparator.comparingDouble(OrderGroupStats::revenue).reversed())
+                .map(stats -> row("channel", stats.key(), stats))
+                .toList();
+    }
+
+    /**
+     * Same rows as {@code CrmOrderNeo4jRepository.getOrdersByPaymentMethod()}
+     */
+    public List<Map<String, Object>> ordersByPaymentMethod() {
+        return aggregate(OrderDimension.PAYMENT_METHOD, null, null, false).stream()
+                .sorted(Comparator.comparingLong(OrderGroupStats::orders).reversed())
+                .map(stats -> row("paymentMethod", stats.key(), stats))
+                .toList();
+    }
+
+    /**
+     * Same rows as {@code CrmOrderNeo4jRepository.getHourlyOrderDistribution()}
+     */
+    public List<Map<String, Object>> hourlyOrderDistribution() {
+        return aggregate(OrderDimension.HOUR, null, null, false).stream()
+                .map(stats -> countRow("hour", Long.valueOf(stats.key()), stats))
+                .toList();
+    }
+
+    /**
+     * Same rows as {@code CrmCustomerNeo4jRepository.getPurchasePatternsByDayOfWeek()}
+     */
+    public List<Map<String, Object>> purchasePatternsByDayOfWeek() {
+        return aggregate(OrderDimension.DAY_OF_WEEK, null, null, true).stream()
+                .map(stats -> countRow("dayOfWeek", Long.valueOf(stats.key()), stats))
+                .toList();
+    }
+
+    private static Map<String, Object> row(String keyName, String key, OrderGroupStats stats) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(keyName, key);
+        row.put("orderCount", stats.orders());
+        row.put("totalRevenue", stats.revenue());
+        return row;
+    }
+
+    private static Map<String, Object> countRow(String keyName, Object key, OrderGroupStats stats) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(keyName, key);
+        row.put("orderCount", stats.orders());
+        return row;
+    }
+
+    private static int radix(Generation generation, OrderDimension dimension) {
+        return switch (dimension) {
+            case HOUR -> 25;
+            case DAY_OF_WEEK -> 8;
+            default -> generation.dictionaries[dimension.ordinal()].size();
+        };
+    }
+
+    private static String label(Generation generation, OrderDimension dimension, int code) {
+        return switch (dimension) {
+            case HOUR -> String.valueOf(code - 1);
+            case DAY_OF_WEEK -> String.valueOf(code);
+            default -> generation.dictionaries[dimension.ordinal()].value(code);
+        };
+    }
+
+    /**
+     * Month segments that can hold orders between the dates; undated orders only match an open range
+     */
+    private static List<OrderFactSegment> segmentsInRange(Generation generation, LocalDate from, LocalDate to) {
+        String fromMonth = from != null ? from.toString().substring(0, 7) : null;
+        String toMonth = to != null ? to.toString().substring(0, 7) : null;
+        List<OrderFactSegment> segments = new ArrayList<>();
+        for (OrderFactSegment segment : generation.segments.values()) {
+            boolean dated = !UNDATED.equals(segment.month);
+            if ((from != null || to != null) && (!dated
+                    || (fromMonth != null && segment.month.compareTo(fromMonth) < 0)
+                    || (toMonth != null && segment.month.compareTo(toMonth) > 0))) {
+                continue;
+            }
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    /**
+     * @param order key of the order, so a re-ingested order supersedes its previous row; its
+     *              mall also qualifies the customer, as member ids are only unique within a mall
+     */
+    private void append(Generation generation, MallKey order, Map<String, Object> props) {
+        LocalDate orderDate = props.get("order_date") instanceof LocalDate date ? date : null;
+        LocalDateTime createdAt = props.get("created_at") instanceof LocalDateTime dateTime ? dateTime : null;
+        String month = orderDate != null ? orderDate.toString().substring(0, 7) : UNDATED;
+
+        short[] codes = new short[OrderDimension.values().length];
+        for (OrderDimension dimension : OrderDimension.values()) {
+            codes[dimension.ordinal()] = switch (dimension) {
+                case HOUR -> (short) (createdAt != null ? createdAt.getHour() + 1 : 0);
+                case DAY_OF_WEEK -> (short) (orderDate != null ? orderDate.getDayOfWeek().getValue() : 0);
+                case MONTH -> generation.dictionaries[dimension.ordinal()].code(orderDate != null ? month : null);
+                default -> generation.dictionaries[dimension.ordinal()].code(props.get(dimension.property));
+            };
+        }
+        double amount = props.get("total_amount") instanceof Number n ? n.doubleValue() : Double.NaN;
+        int epochDay = orderDate != null ? (int) orderDate.toEpochDay() : Integer.MIN_VALUE;
+        Object customerId = props.get("customer_id");
+        int customerCode = customerId != null
+                ? generation.customerCodes.computeIfAbsent(new MallKey(order.mallId(), customerId.toString()),
+                        key -> generation.customerCodes.size() + 1)
+                : 0;
+
+        OrderFactSegment segment = generation.segments.computeIfAbsent(month,
+                key -> OrderFactSegment.create(key, generation.directory.resolve(key), segmentCapacity));
+        int row = segment.append(amount, epochDay, codes, customerCode);
+        if (row < 0) {
+            segment = segment.grow(segment.capacity * 2);
+            generation.segments.put(month, segment);
+            row = segment.append(amount, epochDay, codes, customerCode);
+        }
+
+        Location previous = generation.locations.put(order.toString(), new Location(month, row));
+        if (previous != null) {
+            generation.segments.get(previous.month()).retire(previous.row());
+        }
+    }
+
+    private void deleteStaleGenerations(Path keep) {
+        try (Stream<Path> directories = Files.list(baseDirectory)) {
+            for (Path directory : directories.filter(path -> !path.equals(keep)).toList()) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete stale order fact store generations: {}", e.getMessage());
+        }
+    }
+
+    private record Location(String month, int row) {
+    }
+
+    /**
+     * Month segments, dictionaries and row locations built together
+     */
+    private static final class Generation {
+
+        private final Path directory;
+        private final LocalDateTime builtAt = LocalDateTime.now();
+        private final Map<String, OrderFactSegment> segments = new ConcurrentSkipListMap<>();
+        private final Map<String, Location> locations = new ConcurrentHashMap<>();
+        private final ColumnDictionary[] dictionaries = new ColumnDictionary[OrderDimension.values().length];
+        // Distinct-customer bitmaps work on dense int codes, one per (mall, customer);
+        // only touched under the write lock or by the rebuild
+        private final Map<MallKey, Integer> customerCodes = new HashMap<>();
+
+        Generation(Path directory) {
+            this.directory = directory;
+            for (int i = 0; i < dictionaries.length; i++) {
+                dictionaries[i] = new ColumnDictionary();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.cafe24.crm.service.columnar;
+
+import com.cafe24.crm.service.columnar.OrderFactStore.OrderDimension;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join kernel of the order pivot.
+ *
+ * The work is a list of row ranges over month segments. A task forks while it
+ * covers more than one range or a range larger than {@link #SPLIT_ROWS}; the
+ * leaves scan their range into a dense cell array indexed by
+ * {@code rowCode * columnRadix + columnCode}, and partials are merged on join.
+ */
+final class OrderPivot {
+
+    static final int SPLIT_ROWS = 1 << 16;
+
+    private OrderPivot() {
+    }
+
+    /**
+     * One contiguous row range of a segment
+     */
+    record Slice(OrderFactSegment segment, int from, int to) {
+    }
+
+    /**
+     * Cell accumulators of one task
+     */
+    static final class Partial {
+
+        final int rowRadix;
+        final int columnRadix;
+        final long[] orders;
+        final long[] amounts;
+        final double[] revenue;
+        // Customer codes of the fact store, one per (mall, customer)
+        final RoaringBitmap[] customers;
+
+        Partial(int rowRadix, int columnRadix, boolean distinctCustomers) {
+            int cells = rowRadix * columnRadix;
+            this.rowRadix = rowRadix;
+            this.columnRadix = columnRadix;
+            this.orders = new long[cells];
+            this.amounts = new long[cells];
+            this.revenue = new double[cells];
+            this.customers = distinctCustomers ? new RoaringBitmap[cells] : null;
+        }
+
+        RoaringBitmap customer(int cell) {
+            RoaringBitmap bitmap = customers[cell];
+            if (bitmap == null) {
+                bitmap = new RoaringBitmap();
+                customers[cell] = bitmap;
+            }
+            return bitmap;
+        }
+
+        Partial merge(Partial other) {
+            for (int cell = 0; cell < orders.length; cell++) {
+                orders[cell] += other.orders[cell];
+                amounts[cell] += other.amounts[cell];
+                revenue[cell] += other.revenue[cell];
+                if (customers != null && other.customers[cell] != null) {
+                    customer(cell).or(other.customers[cell]);
+                }
+            }
+            return this;
+        }
+    }
+
+    static final class Task extends RecursiveTask<Partial> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Slice> slices;
+        private final OrderDimension rows;
+        private final OrderDimension columns;
+        private final int fromDay;
+        private final int toDay;
+        private final int rowRadix;
+        private final int columnRadix;
+        private final boolean distinctCustomers;
+
+        Task(List<Slice> slices, OrderDimension rows, OrderDimension columns, int fromDay, int toDay,
+             int rowRadix, int columnRadix, boolean distinctCustomers) {
+            this.slices = slices;
+            this.rows = rows;
+            this.columns = columns;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.rowRadix = rowRadix;
+            this.columnRadix = columnRadix;
+            this.distinctCustomers = distinctCustomers;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (slices.size() > 1) {
+                int middle = slices.size() / 2;
+                return fork(slices.subList(0, middle), slices.subList(middle, slices.size()));
+            }
+            if (slices.isEmpty()) {
+                return new Partial(rowRadix, columnRadix, distinctCustomers);
+            }
+
+            Slice slice = slices.get(0);
+            if (slice.to() - slice.from() > SPLIT_ROWS) {
+                int middle = slice.from() + (slice.to() - slice.from()) / 2;
+                return fork(List.of(new Slice(slice.segment(), slice.from(), middle)),
+                        List.of(new Slice(slice.segment(), middle, slice.to())));
+            }
+
+            Partial partial = new Partial(rowRadix, columnRadix, distinctCustomers);
+            slice.segment().pivot(rows, columns, slice.from(), slice.to(), fromDay, toDay, partial);
+            return partial;
+        }
+
+        private Partial fork(List<Slice> left, List<Slice> right) {
+            Task leftTask = new Task(new ArrayList<>(left), rows, columns, fromDay, toDay,
+                    rowRadix, columnRadix, distinctCustomers);
+            Task rightTask = new Task(new ArrayList<>(right), rows, columns, fromDay, toDay,
+                    rowRadix, columnRadix, distinctCustomers);
+            leftTask.fork();
+            return rightTask.compute().merge(leftTask.join());
+        }
+    }
+}
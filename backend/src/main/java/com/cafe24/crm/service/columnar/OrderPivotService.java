@@ -0,0 +1,138 @@
+package com.cafe24.crm.service.columnar;
+
+import com.cafe24.crm.dto.OrderPivotDTO;
+import com.cafe24.crm.service.columnar.OrderFactStore.OrderDimension;
+import com.cafe24.crm.service.columnar.OrderFactStore.PivotCell;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Order Pivot Service
+ *
+ * Two-dimensional order breakdowns (channel x device, segment x month, ...)
+ * from the order fact store. Results are cached per query signature and
+ * dropped as soon as the store version moves, so a cached pivot never lags
+ * the store.
+ */
+@Service
+@Slf4j
+public class OrderPivotService {
+
+    public enum PivotMeasure {
+        COUNT, SUM, AVG,
+        // Distinct (mall, customer) pairs; the same member id in two malls counts twice
+        DISTINCT_CUSTOMERS
+    }
+
+    // Hour and day-of-week labels are numbers, months are ISO strings
+    private static final Comparator<String> KEY_ORDER = (left, right) -> {
+        boolean numeric = left.chars().allMatch(Character::isDigit) && right.chars().allMatch(Character::isDigit);
+        return numeric ? Integer.compare(Integer.parseInt(left), Integer.parseInt(right)) : left.compareTo(right);
+    };
+
+    private final OrderFactStore orderFactStore;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, OrderPivotDTO> cache;
+    private long cachedVersion = -1;
+
+    public OrderPivotService(
+            OrderFactStore orderFactStore,
+            MeterRegistry meterRegistry,
+            @Value("${columnar.orders.pivot-cache-size:256}") int cacheSize) {
+        this.orderFactStore = orderFactStore;
+        this.meterRegistry = meterRegistry;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OrderPivotDTO> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Pivot orders by one or two dimensions
+     *
+     * @param columns second dimension, or null
+     * @throws IllegalArgumentException if the dimensions have too many combined cells
+     * @throws IllegalStateException    if the order fact store is not ready
+     */
+    public OrderPivotDTO pivot(OrderDimension rows, OrderDimension columns, Set<PivotMeasure> measures,
+                               LocalDate from, LocalDate to) {
+        if (columns == rows) {
+            throw new IllegalArgumentException("Rows and columns must be different dimensions");
+        }
+        Set<PivotMeasure> requested = measures.isEmpty() ? EnumSet.of(PivotMeasure.COUNT) : EnumSet.copyOf(measures);
+        String signature = rows + "|" + columns + "|" + requested + "|" + from + "|" + to;
+
+        long version = orderFactStore.getVersion();
+        synchronized (cache) {
+            if (version != cachedVersion) {
+                cache.clear();
+                cachedVersion = version;
+            }
+            OrderPivotDTO cached = cache.get(signature);
+            if (cached != null) {
+                meterRegistry.counter("crm.columnar.orders.pivot", "cache", "hit").increment();
+                return cached.toBuilder().cached(true).build();
+            }
+        }
+        meterRegistry.counter("crm.columnar.orders.pivot", "cache", "miss").increment();
+
+        long start = System.nanoTime();
+        List<PivotCell> cells = orderFactStore.pivot(rows, columns,
+                requested.contains(PivotMeasure.DISTINCT_CUSTOMERS), from, to);
+        long micros = (System.nanoTime() - start) / 1000;
+
+        OrderPivotDTO result = OrderPivotDTO.builder()
+                .rows(name(rows))
+                .columns(columns != null ? name(columns) : null)
+                .measures(requested.stream().map(OrderPivotService::name).toList())
+                .from(from)
+                .to(to)
+                .rowKeys(cells.stream().map(PivotCell::row).distinct().sorted(KEY_ORDER).toList())
+                .columnKeys(columns != null
+                        ? cells.stream().map(PivotCell::column).distinct().sorted(KEY_ORDER).toList()
+                        : Collections.emptyList())
+                .cells(cells.stream().map(cell -> toDto(cell, requested)).toList())
+                .tookMicros(micros)
+                .cached(false)
+                .storeBuiltAt(orderFactStore.getBuiltAt())
+                .build();
+
+        synchronized (cache) {
+            // A store change while scanning already cleared or will clear the cache
+            if (version == cachedVersion) {
+                cache.put(signature, result);
+            }
+        }
+        log.debug("Order pivot {} computed in {} us ({} cells)", signature, micros, cells.size());
+        return result;
+    }
+
+    private static OrderPivotDTO.Cell toDto(PivotCell cell, Set<PivotMeasure> measures) {
+        return OrderPivotDTO.Cell.builder()
+                .row(cell.row())
+                .column(cell.column())
+                .count(measures.contains(PivotMeasure.COUNT) ? cell.orders() : null)
+                .sum(measures.contains(PivotMeasure.SUM) ? cell.revenue() : null)
+                .avg(measures.contains(PivotMeasure.AVG) ? cell.averageOrderValue() : null)
+                .distinctCustomers(cell.customers())
+                .build();
+    }
+
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,24 @@
+package com.cafe24.crm.service.diagnostics;
+
+import com.cafe24.crm.service.diagnostics.QueryPlanInspector.QueryPlanReport;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code /actuator/queryplans}: plans every cataloged query
+ * on demand and reports flagged operators.
+ */
+@Component
+@Endpoint(id = "queryplans")
+@RequiredArgsConstructor
+public class QueryPlanEndpoint {
+
+    private final QueryPlanInspector inspector;
+
+    @ReadOperation
+    public QueryPlanReport queryPlans() {
+        return inspector.inspect();
+    }
+}
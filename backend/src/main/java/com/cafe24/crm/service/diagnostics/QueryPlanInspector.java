@@ -0,0 +1,138 @@
+package com.cafe24.crm.service.diagnostics;
+
+import com.cafe24.crm.service.diagnostics.RepositoryQueryCatalog.CatalogedQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.summary.Plan;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Query Plan Inspector
+ *
+ * Plans every cataloged query with EXPLAIN (nothing is executed)
+ * and flags operators that mean a query is not using an index:
+ * AllNodesScan and CartesianProduct anywhere, and NodeByLabelScan in lookup
+ * queries. Queries listed in {@code diagnostics.query-plans.allow} are
+ * reported but not counted as violations.
+ */
+@Component
+@Slf4j
+public class QueryPlanInspector {
+
+    private static final Set<String> ALWAYS_FLAGGED = Set.of("AllNodesScan", "CartesianProduct");
+    private static final Set<String> FLAGGED_ON_LOOKUP = Set.of("NodeByLabelScan");
+
+    private final Driver driver;
+    private final RepositoryQueryCatalog catalog;
+    private final Set<String> allowed;
+
+    public QueryPlanInspector(
+            Driver driver,
+            RepositoryQueryCatalog catalog,
+            @Value("${diagnostics.query-plans.allow:}") Set<String> allowed) {
+        this.driver = driver;
+        this.catalog = catalog;
+        this.allowed = allowed;
+    }
+
+    /**
+     * Plan check result of one query
+     *
+     * @param query      repository and method, e.g. CrmCustomerNeo4jRepository.findBySegment,
+     *                   or class and constant of a direct statement, e.g. GraphBatchWriter.UPSERT_ORDERS
+     * @param lookup     whether the query filters on a parameter
+     * @param operators  distinct plan operators
+     * @param violations flagged operators, empty when the plan is fine
+     * @param allowed    whether violations are accepted via configuration
+     * @param error      planning error, e.g. a syntax error
+     */
+    public record QueryPlanResult(String query, boolean lookup, Set<String> operators,
+                                  List<String> violations, boolean allowed, String error) {
+
+        public boolean isViolation() {
+            return (!violations.isEmpty() || error != null) && !allowed;
+        }
+    }
+
+    /**
+     * Plan check result of all queries
+     */
+    public record QueryPlanReport(LocalDateTime checkedAt, int queries, int violations,
+                                  List<QueryPlanResult> results) {
+    }
+
+    /**
+     * EXPLAIN every cataloged query and evaluate its plan
+     */
+    public QueryPlanReport inspect() {
+        List<QueryPlanResult> results = new ArrayList<>();
+        // Write access: the catalog includes the sync upserts, and EXPLAIN executes nothing
+        SessionConfig config = SessionConfig.builder().withDefaultAccessMode(AccessMode.WRITE).build();
+
+        try (Session session = driver.session(config)) {
+            for (CatalogedQuery query : catalog.getQueries()) {
+                results.add(inspect(session, query));
+            }
+        }
+
+        int violations = (int) results.stream().filter(QueryPlanResult::isViolation).count();
+        return new QueryPlanReport(LocalDateTime.now(), results.size(), violations, results);
+    }
+
+    /**
+     * Wait for index population so plans reflect the final schema
+     */
+    public void awaitIndexes(int timeoutSeconds) {
+        try (Session session = driver.session()) {
+            session.run("CALL db.awaitIndexes($timeout)", Map.of("timeout", timeoutSeconds)).consume();
+        } catch (Exception e) {
+            log.warn("Indexes not online after {}s, plans may not use them yet: {}", timeoutSeconds, e.getMessage());
+        }
+    }
+
+    private QueryPlanResult inspect(Session session, CatalogedQuery query) {
+        boolean isAllowed = allowed.contains(query.key());
+        try {
+            Plan plan = session.run("EXPLAIN " + query.cypher(), query.sampleParameters()).consume().plan();
+            Set<String> operators = new TreeSet<>();
+            collectOperators(plan, operators);
+
+            List<String> violations = new ArrayList<>();
+            for (String operator : operators) {
+                if (ALWAYS_FLAGGED.contains(operator)
+                        || (query.lookup() && FLAGGED_ON_LOOKUP.contains(operator))) {
+                    violations.add(operator);
+                }
+            }
+            return new QueryPlanResult(query.key(), query.lookup(), operators, violations, isAllowed, null);
+        } catch (Exception e) {
+            return new QueryPlanResult(query.key(), query.lookup(), Set.of(), List.of(), isAllowed, e.getMessage());
+        }
+    }
+
+    /**
+     * Operator types carry a planner suffix such as "NodeIndexSeek@neo4j"
+     */
+    private void collectOperators(Plan plan, Set<String> operators) {
+        if (plan == null) {
+            return;
+        }
+        String operator = plan.operatorType();
+        int suffix = operator.indexOf('@');
+        operators.add(suffix >= 0 ? operator.substring(0, suffix) : operator);
+        for (Plan child : plan.children()) {
+            collectOperators(child, operators);
+        }
+    }
+}
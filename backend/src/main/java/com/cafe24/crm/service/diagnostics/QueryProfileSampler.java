@@ -0,0 +1,133 @@
+package com.cafe24.crm.service.diagnostics;
+
+import com.cafe24.crm.service.diagnostics.RepositoryQueryCatalog.CatalogedQuery;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.summary.ProfiledPlan;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-runs a sample of repository queries with PROFILE to record database hits
+ * and page-cache hits/misses, which SDN results do not expose.
+ *
+ * Profiling happens off the request thread on a single worker with a small
+ * queue; samples are dropped rather than queued when it is busy.
+ */
+@Component
+@Slf4j
+public class QueryProfileSampler {
+
+    private final Driver driver;
+    private final MeterRegistry meterRegistry;
+    private final double sampleRate;
+    private final ThreadPoolExecutor executor;
+
+    public QueryProfileSampler(
+            Driver driver,
+            MeterRegistry meterRegistry,
+            @Value("${diagnostics.repository-metrics.profile-sample-rate:0.01}") double sampleRate) {
+        this.driver = driver;
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = sampleRate;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(16), runnable -> {
+                    Thread thread = new Thread(runnable, "query-profile-sampler");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Profile this invocation with probability {@code sampleRate}
+     */
+    public void maybeProfile(CatalogedQuery query, Method method, Object[] arguments, Tags tags) {
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        Map<String, Object> parameters = parameters(query, method, arguments);
+        try {
+            executor.execute(() -> profile(query, parameters, tags));
+        } catch (RejectedExecutionException e) {
+            log.debug("Profile sampler shut down, skipping {}", query.key());
+        }
+    }
+
+    private void profile(CatalogedQuery query, Map<String, Object> parameters, Tags tags) {
+        SessionConfig config = SessionConfig.builder().withDefaultAccessMode(AccessMode.READ).build();
+        try (Session session = driver.session(config)) {
+            ProfiledPlan plan = session.run("PROFILE " + query.cypher(), parameters).consume().profile();
+            if (plan == null) {
+                return;
+            }
+            long[] totals = new long[3];
+            sum(plan, totals);
+
+            DistributionSummary.builder("crm.neo4j.repository.db_hits")
+                    .description("Database hits per sampled repository query")
+                    .tags(tags)
+                    .register(meterRegistry)
+                    .record(totals[0]);
+            meterRegistry.counter("crm.neo4j.repository.page_cache", tags.and("result", "hit")).increment(totals[1]);
+            meterRegistry.counter("crm.neo4j.repository.page_cache", tags.and("result", "miss")).increment(totals[2]);
+        } catch (Exception e) {
+            log.debug("Failed to profile {}: {}", query.key(), e.getMessage());
+        }
+    }
+
+    private void sum(ProfiledPlan plan, long[] totals) {
+        totals[0] += plan.dbHits();
+        if (plan.hasPageCacheStats()) {
+            totals[1] += plan.pageCacheHits();
+            totals[2] += plan.pageCacheMisses();
+        }
+        for (ProfiledPlan child : plan.children()) {
+            sum(child, totals);
+        }
+    }
+
+    /**
+     * Bind the invocation's arguments to the Cypher parameters the same way SDN does
+     */
+    private Map<String, Object> parameters(CatalogedQuery query, Method method, Object[] arguments) {
+        Map<String, Object> parameters = new HashMap<>(query.sampleParameters());
+        Parameter[] declared = method.getParameters();
+        for (int i = 0; i < declared.length && i < arguments.length; i++) {
+            Object argument = arguments[i];
+            if (argument instanceof Pageable pageable && pageable.isPaged()) {
+                parameters.put("skip", pageable.getOffset());
+                parameters.put("limit", (long) pageable.getPageSize());
+                continue;
+            }
+            Param param = declared[i].getAnnotation(Param.class);
+            if (param != null) {
+                parameters.put(param.value(), argument instanceof Integer number ? number.longValue() : argument);
+            }
+        }
+        return parameters;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
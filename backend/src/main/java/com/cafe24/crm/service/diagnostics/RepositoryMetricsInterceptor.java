@@ -0,0 +1,100 @@
+package com.cafe24.crm.service.diagnostics;
+
+import com.cafe24.crm.support.MallContext;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Times every Neo4j repository call and records its result size and errors,
+ * tagged by repository, method and mall. The mall is the one bound by
+ * {@link com.cafe24.crm.support.MallContextFilter}, which is limited to known
+ * malls, so the number of latency histograms stays bounded. Calls to cataloged @Query methods are
+ * also offered to the {@link QueryProfileSampler}.
+ */
+public class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+    private final String repository;
+    private final MeterRegistry meterRegistry;
+    private final RepositoryQueryCatalog catalog;
+    private final QueryProfileSampler profileSampler;
+
+    public RepositoryMetricsInterceptor(String repository, MeterRegistry meterRegistry,
+                                        RepositoryQueryCatalog catalog, QueryProfileSampler profileSampler) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        this.catalog = catalog;
+        this.profileSampler = profileSampler;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        String method = invocation.getMethod().getName();
+        if (invocation.getMethod().getDeclaringClass() == Object.class) {
+            return invocation.proceed();
+        }
+
+        Tags tags = Tags.of("repository", repository, "method", method, "mall", MallContext.current());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            Object result = invocation.proceed();
+
+            long rows = rowCount(result);
+            if (rows >= 0) {
+                DistributionSummary.builder("crm.neo4j.repository.rows")
+                        .description("Rows returned per repository call")
+                        .tags(tags)
+                        .register(meterRegistry)
+                        .record(rows);
+            }
+            catalog.find(invocation.getMethod()).ifPresent(query ->
+                    profileSampler.maybeProfile(query, invocation.getMethod(), invocation.getArguments(), tags));
+            return result;
+        } catch (Throwable e) {
+            outcome = "error";
+            meterRegistry.counter("crm.neo4j.repository.errors",
+                    tags.and("exception", e.getClass().getSimpleName())).increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("crm.neo4j.repository")
+                    .description("Neo4j repository call latency")
+                    .tags(tags.and("outcome", outcome))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Result size, or -1 for results whose size cannot be taken without consuming them
+     */
+    static long rowCount(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        if (result instanceof Map<?, ?> || result instanceof Number || result instanceof Boolean) {
+            return 1;
+        }
+        if (result instanceof Iterable<?>) {
+            return -1;
+        }
+        return 1;
+    }
+}
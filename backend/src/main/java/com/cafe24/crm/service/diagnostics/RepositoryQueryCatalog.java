@@ -0,0 +1,194 @@
+package com.cafe24.crm.service.diagnostics;
+
+import com.cafe24.crm.repository.neo4j.CrmCustomerNeo4jRepository;
+import com.cafe24.crm.repository.neo4j.CrmOrderNeo4jRepository;
+import com.cafe24.crm.repository.neo4j.CrmProductNeo4jRepository;
+import com.cafe24.crm.repository.neo4j.CrmRevenueRollupNeo4jRepository;
+import com.cafe24.crm.service.CustomerExportService;
+import com.cafe24.crm.service.job.DerivedMetricsJob;
+import com.cafe24.crm.service.segment.CustomerSegmentIndexService;
+import com.cafe24.crm.service.sync.GraphBatchWriter;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Catalog of the Cypher declared with {@code @Query} on the Neo4j repositories,
+ * plus the statements that services run on the driver directly.
+ *
+ * Each entry carries sample parameters so the statement can be planned with
+ * EXPLAIN or PROFILE without a caller. Repository queries that look up by a
+ * parameter (anything but paging) are marked as lookups: they are on request
+ * paths and are expected to start from an index. Direct statements declare
+ * whether they are lookups, since the batch reads filter on parameters but
+ * scan by design.
+ */
+@Component
+public class RepositoryQueryCatalog {
+
+    private static final List<Class<?>> REPOSITORIES = List.of(
+            CrmCustomerNeo4jRepository.class,
+            CrmOrderNeo4jRepository.class,
+            CrmProductNeo4jRepository.class,
+            CrmRevenueRollupNeo4jRepository.class);
+
+    private static final Pattern PARAMETER = Pattern.compile("\\$([A-Za-z_][A-Za-z0-9_]*)");
+
+    private static final Set<String> PAGING_PARAMETERS = Set.of("skip", "limit");
+
+    private final List<CatalogedQuery> queries;
+    private final Map<Method, CatalogedQuery> byMethod = new HashMap<>();
+
+    public RepositoryQueryCatalog() {
+        List<CatalogedQuery> collected = new ArrayList<>();
+        for (Class<?> repository : REPOSITORIES) {
+            for (Method method : repository.getDeclaredMethods()) {
+                Query query = method.getAnnotation(Query.class);
+                if (query == null || query.value().isBlank()) {
+                    continue;
+                }
+                CatalogedQuery entry = catalog(repository, method, method.getName(), query.value());
+                collected.add(entry);
+                byMethod.put(method, entry);
+                if (!query.countQuery().isBlank()) {
+                    collected.add(catalog(repository, method, method.getName() + "#count", query.countQuery()));
+                }
+            }
+        }
+        collected.addAll(directQueries());
+        collected.sort(Comparator.comparing(CatalogedQuery::key));
+        this.queries = List.copyOf(collected);
+    }
+
+    /**
+     * A declared repository query
+     *
+     * @param repository       repository interface simple name, or the declaring class of a direct statement
+     * @param method           method name, with a {@code #count} suffix for count queries, or constant name
+     * @param cypher           the declared Cypher
+     * @param sampleParameters placeholder values for every parameter in the Cypher
+     * @param lookup           whether the query filters on a non-paging parameter
+     */
+    public record CatalogedQuery(String repository, String method, String cypher,
+                                 Map<String, Object> sampleParameters, boolean lookup) {
+
+        public String key() {
+            return repository + "." + method;
+        }
+    }
+
+    /**
+     * All declared queries, sorted by key
+     */
+    public List<CatalogedQuery> getQueries() {
+        return queries;
+    }
+
+    /**
+     * The main (non-count) query declared on a repository method
+     */
+    public Optional<CatalogedQuery> find(Method method) {
+        return Optional.ofNullable(byMethod.get(method));
+    }
+
+    /**
+     * Statements run through the driver rather than a repository. The upserts
+     * MERGE on the (mall, id) constraints and must seek; the batch reads stream
+     * every customer and are only checked for the always-flagged operators.
+     */
+    private static List<CatalogedQuery> directQueries() {
+        Map<String, Object> customerRow = Map.of(
+                "mall_id", "sample", "customer_id", "sample", "props", Map.of("name", "sample"));
+        Map<String, Object> productRow = Map.of(
+                "mall_id", "sample", "product_id", "sample", "props", Map.of("name", "sample"));
+        Map<String, Object> orderRow = Map.of(
+                "mall_id", "sample", "order_id", "sample", "customer_id", "sample",
+                "product_ids", List.of("sample"), "props", Map.of("order_status", "sample"));
+
+        return List.of(
+                direct(DerivedMetricsJob.class, "NEXT_PARTITION", DerivedMetricsJob.NEXT_PARTITION,
+                        false, Map.of()),
+                direct(GraphBatchWriter.class, "UPSERT_CUSTOMERS", GraphBatchWriter.UPSERT_CUSTOMERS,
+                        true, Map.of("rows", List.of(customerRow))),
+                direct(GraphBatchWriter.class, "UPSERT_PRODUCTS", GraphBatchWriter.UPSERT_PRODUCTS,
+                        true, Map.of("rows", List.of(productRow))),
+                direct(GraphBatchWriter.class, "UPSERT_ORDERS", GraphBatchWriter.UPSERT_ORDERS,
+                        true, Map.of("rows", List.of(orderRow))),
+                direct(GraphBatchWriter.class, "PREVIOUS_ORDER_DATES", GraphBatchWriter.PREVIOUS_ORDER_DATES,
+                        true, Map.of("orderKeys", List.of(Map.of("mall_id", "sample", "id", "sample")))),
+                direct(CustomerSegmentIndexService.class, "LOAD_CUSTOMERS", CustomerSegmentIndexService.LOAD_CUSTOMERS,
+                        false, Map.of()),
+                direct(CustomerExportService.class, "EXPORT_QUERY", CustomerExportService.EXPORT_QUERY,
+                        false, Map.of()));
+    }
+
+    private static CatalogedQuery direct(Class<?> owner, String name, String cypher, boolean lookup,
+                                         Map<String, Object> samples) {
+        Map<String, Object> sample = new LinkedHashMap<>();
+        Matcher matcher = PARAMETER.matcher(cypher);
+        while (matcher.find()) {
+            String parameter = matcher.group(1);
+            sample.put(parameter, samples.containsKey(parameter)
+                    ? samples.get(parameter)
+                    : sampleValue(parameter, null));
+        }
+        return new CatalogedQuery(owner.getSimpleName(), name, cypher, sample, lookup);
+    }
+
+    private CatalogedQuery catalog(Class<?> repository, Method method, String name, String cypher) {
+        Map<String, Class<?>> parameterTypes = new HashMap<>();
+        for (Parameter parameter : method.getParameters()) {
+            Param param = parameter.getAnnotation(Param.class);
+            if (param != null) {
+                parameterTypes.put(param.value(), parameter.getType());
+            }
+        }
+
+        Map<String, Object> sample = new LinkedHashMap<>();
+        boolean lookup = false;
+        Matcher matcher = PARAMETER.matcher(cypher);
+        while (matcher.find()) {
+            String parameter = matcher.group(1);
+            sample.put(parameter, sampleValue(parameter, parameterTypes.get(parameter)));
+            lookup |= !PAGING_PARAMETERS.contains(parameter);
+        }
+        return new CatalogedQuery(repository.getSimpleName(), name, cypher, sample, lookup);
+    }
+
+    private static Object sampleValue(String parameter, Class<?> type) {
+        if (PAGING_PARAMETERS.contains(parameter)) {
+            return 10L;
+        }
+        if (type == null) {
+            return "sample";
+        }
+        if (type == int.class || type == Integer.class || type == long.class || type == Long.class) {
+            return 10L;
+        }
+        if (type == double.class || type == Double.class) {
+            return 1.0;
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.now();
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return List.of("sample");
+        }
+        return "sample";
+    }
+}
@@ -0,0 +1,231 @@
+package com.cafe24.crm.service.job;
+
+import com.cafe24.crm.dto.JobStatusDTO;
+import com.cafe24.crm.service.metrics.CustomerMetricsCalculator;
+import com.cafe24.crm.support.MallKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Derived Metrics Job
+ *
+ * Nightly recomputation of order-derived customer metrics so that values such as
+ * days_since_last_purchase stay current without new orders. Customers are walked
+ * in (customer_id, mall_id) order in fixed-size partitions; each partition is recomputed by
+ * a worker in its own write transaction, and only changed customers are written.
+ * At most {@code parallelism * 2} partitions are held in memory at a time.
+ */
+@Component
+@Slf4j
+public class DerivedMetricsJob {
+
+    public static final String JOB_NAME = "derived-metrics";
+
+    public static final String NEXT_PARTITION = """
+            MATCH (c:CRM_Customer)
+            WHERE c.customer_id >= $afterId
+              AND (c.customer_id > $afterId OR coalesce(c.mall_id, '') > $afterMall)
+            RETURN c.customer_id AS customerId, coalesce(c.mall_id, '') AS mallId
+            ORDER BY customerId, mallId
+            LIMIT $limit
+            """;
+
+    private final Driver driver;
+    private final CustomerMetricsCalculator customerMetricsCalculator;
+    private final MeterRegistry meterRegistry;
+
+    private final int partitionSize;
+    private final int parallelism;
+    private final ZoneId zone;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong partitionsCompleted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicReference<String> lastError = new AtomicReference<>();
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public DerivedMetricsJob(
+            Driver driver,
+            CustomerMetricsCalculator customerMetricsCalculator,
+            MeterRegistry meterRegistry,
+            @Value("${jobs.derived-metrics.partition-size:5000}") int partitionSize,
+            @Value("${jobs.derived-metrics.parallelism:4}") int parallelism,
+            @Value("${jobs.derived-metrics.zone:Asia/Seoul}") String zone) {
+        this.driver = driver;
+        this.customerMetricsCalculator = customerMetricsCalculator;
+        this.meterRegistry = meterRegistry;
+        this.partitionSize = partitionSize;
+        this.parallelism = parallelism;
+        this.zone = ZoneId.of(zone);
+
+        meterRegistry.gauge("crm.job.derived_metrics.processed", processed);
+        meterRegistry.gauge("crm.job.derived_metrics.changed", changed);
+        meterRegistry.gauge("crm.job.derived_metrics.partitions", partitionsCompleted);
+    }
+
+    /**
+     * Nightly run
+     */
+    @Scheduled(cron = "${jobs.derived-metrics.cron:0 30 2 * * *}", zone = "${jobs.derived-metrics.zone:Asia/Seoul}")
+    public void scheduledRun() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Skipping scheduled derived-metrics run: previous run still in progress");
+            return;
+        }
+        execute();
+    }
+
+    /**
+     * Start a run on a background thread
+     *
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public JobStatusDTO trigger() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Derived-metrics job is already running");
+        }
+        Thread thread = new Thread(this::execute, "derived-metrics-manual");
+        thread.setDaemon(true);
+        thread.start();
+        return getStatus();
+    }
+
+    /**
+     * Progress of the current or last run
+     */
+    public JobStatusDTO getStatus() {
+        JobStatusDTO.JobStatusDTOBuilder status = JobStatusDTO.builder()
+                .job(JOB_NAME)
+                .running(running.get())
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .partitionsCompleted(partitionsCompleted.get())
+                .processed(processed.get())
+                .changed(changed.get())
+                .error(lastError.get());
+
+        if (startedAt != null) {
+            LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+            double seconds = Math.max(Duration.between(startedAt, end).toMillis() / 1000.0, 0.001);
+            status.itemsPerSecond(Math.round(processed.get() / seconds * 10) / 10.0);
+        }
+        return status.build();
+    }
+
+    private void execute() {
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        partitionsCompleted.set(0);
+        processed.set(0);
+        changed.set(0);
+        lastError.set(null);
+
+        LocalDate today = LocalDate.now(zone);
+        log.info("Derived-metrics job started (as of {}, partition size {}, parallelism {})",
+                today, partitionSize, parallelism);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "derived-metrics-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Bounds the partitions queued or in flight, and so the id lists held on the heap
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        String outcome = "success";
+
+        try {
+            MallKey after = new MallKey("", "");
+            while (lastError.get() == null) {
+                List<MallKey> partition = nextPartition(after);
+                if (partition.isEmpty()) {
+                    break;
+                }
+                after = partition.get(partition.size() - 1);
+
+                inFlight.acquire();
+                workers.execute(() -> {
+                    try {
+                        int partitionChanged = customerMetricsCalculator.recompute(partition, today);
+                        processed.addAndGet(partition.size());
+                        changed.addAndGet(partitionChanged);
+                        partitionsCompleted.incrementAndGet();
+                    } catch (Exception e) {
+                        lastError.compareAndSet(null, e.getMessage());
+                        log.error("Derived-metrics partition starting at {} failed: {}", partition.get(0), e.getMessage(), e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            if (lastError.get() != null) {
+                outcome = "error";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lastError.compareAndSet(null, "Interrupted");
+            outcome = "error";
+        } catch (Exception e) {
+            lastError.compareAndSet(null, e.getMessage());
+            log.error("Derived-metrics job failed: {}", e.getMessage(), e);
+            outcome = "error";
+        } finally {
+            workers.shutdownNow();
+            sample.stop(meterRegistry.timer("crm.job.derived_metrics.duration", "outcome", outcome));
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+
+        log.info("Derived-metrics job finished in {}s: {} customers, {} changed, {} partitions ({})",
+                Duration.between(startedAt, finishedAt).toSeconds(),
+                processed.get(), changed.get(), partitionsCompleted.get(), outcome);
+    }
+
+    /**
+     * Next page of customers after the given one; keyset paging on the indexed customer_id,
+     * with the mall breaking ties between malls that share a member id
+     */
+    private List<MallKey> nextPartition(MallKey after) {
+        SessionConfig config = SessionConfig.builder().withDefaultAccessMode(AccessMode.READ).build();
+        try (Session session = driver.session(config)) {
+            return session.executeRead(tx -> {
+                List<MallKey> keys = new ArrayList<>(partitionSize);
+                tx.run(NEXT_PARTITION, Map.of("afterId", after.id(),
+                                "afterMall", after.mallId() != null ? after.mallId() : "", "limit", partitionSize))
+                        .forEachRemaining(record -> {
+                            String mallId = record.get("mallId").asString();
+                            keys.add(new MallKey(mallId.isEmpty() ? null : mallId, record.get("customerId").asString()));
+                        });
+                return keys;
+            });
+        }
+    }
+}
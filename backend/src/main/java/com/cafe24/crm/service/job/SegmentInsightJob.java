@@ -0,0 +1,317 @@
+package com.cafe24.crm.service.job;
+
+import com.cafe24.crm.client.LiteLLMClient;
+import com.cafe24.crm.domain.GeneratedInsight;
+import com.cafe24.crm.dto.CohortDataDTO;
+import com.cafe24.crm.dto.JobStatusDTO;
+import com.cafe24.crm.dto.RfmAnalysisDTO;
+import com.cafe24.crm.dto.SegmentInsightsDTO;
+import com.cafe24.crm.repository.GeneratedInsightRepository;
+import com.cafe24.crm.service.AnalyticsService;
+import com.cafe24.crm.service.ai.InsightContextBuilder;
+import com.cafe24.crm.service.ai.LlmGateway;
+import com.cafe24.crm.service.ai.LlmGateway.Priority;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Segment Insight Job
+ *
+ * Generates a narrative insight for every RFM segment and the most recent
+ * acquisition cohorts, so the dashboard can show them without an interactive
+ * LLM call per segment and user. The RFM and cohort analytics span all malls,
+ * so each run generates one set, stored under {@link GeneratedInsight#ALL_MALLS}
+ * and served to every caller.
+ *
+ * Prompts go through {@link LlmGateway} at background priority with at most
+ * {@code parallelism} in flight. All prompts carry the same grounding context
+ * in the system message and differ only in the user message, so the shared
+ * prefix is served from the model backend's prompt cache after the first call.
+ * The insights are written as a new version in one batch once all prompts have
+ * finished; readers never see a half-written version.
+ */
+@Component
+@Slf4j
+public class SegmentInsightJob {
+
+    public static final String JOB_NAME = "segment-insights";
+
+    private record Prompt(String subjectType, String subjectKey, String label, String question) {
+    }
+
+    private final AnalyticsService analyticsService;
+    private final InsightContextBuilder insightContextBuilder;
+    private final LlmGateway llmGateway;
+    private final LiteLLMClient liteLLMClient;
+    private final GeneratedInsightRepository generatedInsightRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final int parallelism;
+    private final int cohortLimit;
+    private final int keepVersions;
+    private final Duration timeout;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicReference<String> lastError = new AtomicReference<>();
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    // Latest version, so reads do not hit the database
+    private final AtomicReference<SegmentInsightsDTO> latest = new AtomicReference<>();
+
+    public SegmentInsightJob(
+            AnalyticsService analyticsService,
+            InsightContextBuilder insightContextBuilder,
+            LlmGateway llmGateway,
+            LiteLLMClient liteLLMClient,
+            GeneratedInsightRepository generatedInsightRepository,
+            MeterRegistry meterRegistry,
+            @Value("${jobs.segment-insights.parallelism:4}") int parallelism,
+            @Value("${jobs.segment-insights.cohort-limit:6}") int cohortLimit,
+            @Value("${jobs.segment-insights.keep-versions:3}") int keepVersions,
+            @Value("${jobs.segment-insights.timeout-ms:900000}") long timeoutMs) {
+        this.analyticsService = analyticsService;
+        this.insightContextBuilder = insightContextBuilder;
+        this.llmGateway = llmGateway;
+        this.liteLLMClient = liteLLMClient;
+        this.generatedInsightRepository = generatedInsightRepository;
+        this.meterRegistry = meterRegistry;
+        this.parallelism = parallelism;
+        this.cohortLimit = cohortLimit;
+        this.keepVersions = Math.max(1, keepVersions);
+        this.timeout = Duration.ofMillis(timeoutMs);
+
+        meterRegistry.gauge("crm.job.segment_insights.processed", processed);
+        meterRegistry.gauge("crm.job.segment_insights.stored", stored);
+    }
+
+    /**
+     * Nightly run, after the derived metrics are current
+     */
+    @Scheduled(cron = "${jobs.segment-insights.cron:0 30 4 * * *}", zone = "${jobs.segment-insights.zone:Asia/Seoul}")
+    public void scheduledRun() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Skipping scheduled segment-insights run: previous run still in progress");
+            return;
+        }
+        execute();
+    }
+
+    /**
+     * Start a run on a background thread
+     *
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public JobStatusDTO trigger() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Segment-insights job is already running");
+        }
+        Thread thread = new Thread(this::execute, "segment-insights-manual");
+        thread.setDaemon(true);
+        thread.start();
+        return getStatus();
+    }
+
+    /**
+     * Progress of the current or last run
+     */
+    public JobStatusDTO getStatus() {
+        JobStatusDTO.JobStatusDTOBuilder status = JobStatusDTO.builder()
+                .job(JOB_NAME)
+                .running(running.get())
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .processed(processed.get())
+                .changed(stored.get())
+                .error(lastError.get());
+
+        if (startedAt != null) {
+            LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+            double seconds = Math.max(Duration.between(startedAt, end).toMillis() / 1000.0, 0.001);
+            status.itemsPerSecond(Math.round(processed.get() / seconds * 10) / 10.0);
+        }
+        return status.build();
+    }
+
+    /**
+     * Latest generated insights
+     *
+     * @return the latest version, or null if the job has not produced one yet
+     */
+    public SegmentInsightsDTO getLatest() {
+        SegmentInsightsDTO cached = latest.get();
+        if (cached != null) {
+            return cached;
+        }
+        SegmentInsightsDTO loaded = generatedInsightRepository.findLatestVersion(GeneratedInsight.ALL_MALLS)
+                .map(version -> toDto(version, generatedInsightRepository
+                        .findByMallIdAndVersionOrderBySubjectTypeDescIdAsc(GeneratedInsight.ALL_MALLS, version)))
+                .orElse(null);
+        if (loaded != null) {
+            latest.compareAndSet(null, loaded);
+        }
+        return loaded;
+    }
+
+    private void execute() {
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        processed.set(0);
+        stored.set(0);
+        lastError.set(null);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            log.info("Segment-insights job started (parallelism {})", parallelism);
+            generate();
+            if (lastError.get() != null) {
+                outcome = "partial";
+            }
+        } catch (Exception e) {
+            lastError.compareAndSet(null, e.getMessage());
+            log.error("Segment-insights job failed: {}", e.getMessage(), e);
+            outcome = "error";
+        } finally {
+            sample.stop(meterRegistry.timer("crm.job.segment_insights.duration", "outcome", outcome));
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+
+        log.info("Segment-insights job finished in {}s: {} prompts, {} insights stored ({})",
+                Duration.between(startedAt, finishedAt).toSeconds(), processed.get(), stored.get(), outcome);
+    }
+
+    private void generate() {
+        List<Prompt> prompts = prompts(analyticsService.getRfmAnalysis(), analyticsService.getCohortAnalysis());
+        if (prompts.isEmpty()) {
+            log.info("No segments or cohorts to describe");
+            return;
+        }
+        // Resolved once, so every prompt carries the identical prefix
+        String context = insightContextBuilder.buildShared().block(timeout);
+        String model = liteLLMClient.getInsightModel();
+
+        List<GeneratedInsight> insights = Flux.fromIterable(prompts)
+                .flatMapSequential(prompt -> llmGateway.generateCrmInsight(Priority.BACKGROUND, prompt.question(), context)
+                        .filter(content -> !content.isBlank())
+                        .map(content -> GeneratedInsight.builder()
+                                .mallId(GeneratedInsight.ALL_MALLS)
+                                .subjectType(prompt.subjectType())
+                                .subjectKey(prompt.subjectKey())
+                                .label(prompt.label())
+                                .content(content.strip())
+                                .model(model)
+                                .generatedAt(LocalDateTime.now())
+                                .build())
+                        .doFinally(signal -> processed.incrementAndGet())
+                        .onErrorResume(e -> {
+                            lastError.compareAndSet(null, e.getMessage());
+                            meterRegistry.counter("crm.job.segment_insights.failed").increment();
+                            log.warn("Insight for {} {} failed: {}",
+                                    prompt.subjectType(), prompt.subjectKey(), e.getMessage());
+                            return Mono.empty();
+                        }), parallelism)
+                .collectList()
+                .block(timeout);
+
+        if (insights == null || insights.isEmpty()) {
+            log.warn("No insights generated; keeping the previous version");
+            return;
+        }
+
+        long version = generatedInsightRepository.findLatestVersion(GeneratedInsight.ALL_MALLS).orElse(0L) + 1;
+        insights.forEach(insight -> insight.setVersion(version));
+        List<GeneratedInsight> saved = generatedInsightRepository.saveAll(insights);
+        stored.addAndGet(saved.size());
+        latest.set(toDto(version, saved));
+        generatedInsightRepository.deleteOlderVersions(GeneratedInsight.ALL_MALLS, version - keepVersions + 1);
+
+        log.info("Stored {} of {} insights as version {}", saved.size(), prompts.size(), version);
+    }
+
+    private List<Prompt> prompts(RfmAnalysisDTO rfm, CohortDataDTO cohorts) {
+        List<Prompt> prompts = new ArrayList<>();
+        if (rfm != null && rfm.getSegments() != null) {
+            for (RfmAnalysisDTO.RfmSegment segment : rfm.getSegments()) {
+                if (segment.getSegment() == null || segment.getCustomerCount() == null
+                        || segment.getCustomerCount() == 0) {
+                    continue;
+                }
+                prompts.add(new Prompt(GeneratedInsight.SUBJECT_SEGMENT, segment.getSegment(), segment.getLabel(),
+                        segmentQuestion(segment)));
+            }
+        }
+        if (cohorts != null && cohorts.getCohorts() != null) {
+            List<CohortDataDTO.CohortRow> rows = cohorts.getCohorts().stream()
+                    .filter(row -> row.getCohort() != null && row.getCohortSize() != null && row.getCohortSize() > 0)
+                    .toList();
+            for (CohortDataDTO.CohortRow row : rows.subList(Math.max(0, rows.size() - cohortLimit), rows.size())) {
+                prompts.add(new Prompt(GeneratedInsight.SUBJECT_COHORT, row.getCohort(), row.getLabel(),
+                        cohortQuestion(row)));
+            }
+        }
+        return prompts;
+    }
+
+    private static String segmentQuestion(RfmAnalysisDTO.RfmSegment segment) {
+        return String.format(Locale.ROOT, """
+                        Write a short narrative insight on the RFM segment "%s" (%s): %d customers (%.1f%% of all), \
+                        revenue %.0f KRW, average CLV %.0f KRW. The current playbook says: %s
+                        Explain what characterises these customers and give three concrete actions.""",
+                segment.getSegment(), segment.getLabel(), segment.getCustomerCount(),
+                orZero(segment.getPercentage()), orZero(segment.getTotalRevenue()), orZero(segment.getAvgClv()),
+                segment.getRecommendedAction() != null ? segment.getRecommendedAction() : "-");
+    }
+
+    private static String cohortQuestion(CohortDataDTO.CohortRow row) {
+        return String.format(Locale.ROOT, """
+                        Write a short narrative insight on the customers acquired in %s: %d customers, \
+                        retention by month %s, average retention %.1f%%, lifetime value %.0f KRW.
+                        Compare the cohort with the average retention and give three concrete actions.""",
+                row.getCohort(), row.getCohortSize(), row.getRetentionRates(),
+                orZero(row.getAvgRetention()), orZero(row.getCohortLtv()));
+    }
+
+    private static SegmentInsightsDTO toDto(long version, List<GeneratedInsight> insights) {
+        return SegmentInsightsDTO.builder()
+                .scope("all")
+                .version(version)
+                .generatedAt(insights.stream()
+                        .map(GeneratedInsight::getGeneratedAt)
+                        .filter(at -> at != null)
+                        .max(LocalDateTime::compareTo)
+                        .orElse(null))
+                .insights(insights.stream()
+                        .map(insight -> SegmentInsightsDTO.Insight.builder()
+                                .subjectType(insight.getSubjectType())
+                                .subjectKey(insight.getSubjectKey())
+                                .label(insight.getLabel())
+                                .content(insight.getContent())
+                                .model(insight.getModel())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    private static double orZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+}
@@ -0,0 +1,117 @@
+package com.cafe24.crm.service.metrics;
+
+import com.cafe24.crm.support.MallKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recomputes derived order metrics on CRM_Customer nodes.
+ *
+ * Used after sync and webhook writes for the customers they touched, and by
+ * the nightly job for every customer. Only customers whose values actually
+ * changed are written, so a re-run over unchanged data creates no writes.
+ * Recomputes that changed anything are announced as
+ * {@link CustomerMetricsUpdatedEvent}s.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerMetricsCalculator {
+
+    /**
+     * Aggregates non-cancelled orders per customer. Churn probability grows with
+     * the time since the last order relative to the customer's own purchase
+     * cadence (average days between orders, 90 for single-order customers):
+     * 1 - exp(-days / (2 * cadence)), so it passes 0.5 at about 1.4 cadences.
+     */
+    private static final String RECOMPUTE = """
+            UNWIND $customerKeys AS key
+            MATCH (c:CRM_Customer {customer_id: key.id})
+            WHERE coalesce(c.mall_id, '') = coalesce(key.mall_id, '')
+            OPTIONAL MATCH (c)-[:PLACED_ORDER]->(o:CRM_Order)
+            WHERE coalesce(o.status, '') <> 'cancelled'
+            WITH c, count(o) AS orders, sum(coalesce(o.total_amount, 0.0)) AS revenue,
+                 min(o.order_date) AS firstOrder, max(o.order_date) AS lastOrder
+            WITH c, orders, revenue, firstOrder, lastOrder,
+                 CASE WHEN orders > 0 THEN revenue / orders ELSE 0.0 END AS aov,
+                 CASE WHEN lastOrder IS NULL THEN null ELSE duration.inDays(lastOrder, $today).days END AS days,
+                 CASE WHEN orders > 1
+                      THEN toFloat(duration.inDays(firstOrder, lastOrder).days) / (orders - 1)
+                      ELSE $defaultCadenceDays END AS cadence
+            WITH c, orders, revenue, firstOrder, lastOrder, aov, days,
+                 CASE WHEN days IS NULL THEN null
+                      ELSE round(1 - exp(-days / (2.0 * CASE WHEN cadence < 7 THEN 7.0 ELSE cadence END)), 3)
+                 END AS churn
+            WHERE c.total_orders IS NULL OR c.total_orders <> orders
+               OR c.total_revenue IS NULL OR c.total_revenue <> revenue
+               OR c.avg_order_value IS NULL OR c.avg_order_value <> aov
+               OR (c.first_order_date IS NULL) <> (firstOrder IS NULL) OR c.first_order_date <> firstOrder
+               OR (c.last_order_date IS NULL) <> (lastOrder IS NULL) OR c.last_order_date <> lastOrder
+               OR (c.days_since_last_purchase IS NULL) <> (days IS NULL) OR c.days_since_last_purchase <> days
+               OR (c.churn_probability IS NULL) <> (churn IS NULL) OR c.churn_probability <> churn
+            SET c.total_orders = orders,
+                c.total_revenue = revenue,
+                c.avg_order_value = aov,
+                c.first_order_date = firstOrder,
+                c.last_order_date = lastOrder,
+                c.days_since_last_purchase = days,
+                c.churn_probability = churn
+            RETURN count(c) AS changed
+            """;
+
+    private static final double DEFAULT_CADENCE_DAYS = 90.0;
+
+    private final Driver driver;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Recompute total_orders, total_revenue, avg_order_value, first/last order date,
+     * days_since_last_purchase and churn_probability for the given customers
+     *
+     * @return number of customers whose values changed
+     */
+    public int recompute(Collection<MallKey> customers) {
+        return recompute(customers, LocalDate.now());
+    }
+
+    /**
+     * Recompute as of the given date, in one write transaction
+     *
+     * @return number of customers whose values changed
+     */
+    public int recompute(Collection<MallKey> customers, LocalDate today) {
+        if (customers.isEmpty()) {
+            return 0;
+        }
+
+        int changed;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (Session session = driver.session()) {
+            Map<String, Object> params = Map.of(
+                    "customerKeys", customers.stream().map(MallKey::toParameter).toList(),
+                    "today", today,
+                    "defaultCadenceDays", DEFAULT_CADENCE_DAYS);
+            changed = session.executeWrite(tx -> tx.run(RECOMPUTE, params).single().get("changed").asInt());
+            log.debug("Recomputed derived metrics for {} customers, {} changed", customers.size(), changed);
+        } finally {
+            sample.stop(meterRegistry.timer("crm.customer.metrics.recompute"));
+        }
+
+        if (changed > 0) {
+            eventPublisher.publishEvent(new CustomerMetricsUpdatedEvent(List.copyOf(customers)));
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,14 @@
+package com.cafe24.crm.service.metrics;
+
+import com.cafe24.crm.support.MallKey;
+
+import java.util.Collection;
+
+/**
+ * Published by {@link CustomerMetricsCalculator} after a recompute changed at
+ * least one customer.
+ *
+ * @param customers the customers that were recomputed (a superset of the changed ones)
+ */
+public record CustomerMetricsUpdatedEvent(Collection<MallKey> customers) {
+}
@@ -0,0 +1,347 @@
+package com.cafe24.crm.service.schema;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Neo4j Schema Manager
+ *
+ * Creates the uniqueness constraints, range indexes and text indexes that the
+ * repository queries rely on. Every statement uses IF NOT EXISTS, so running it
+ * on each startup is a no-op once the schema is in place. Constraints and
+ * indexes from older schemas that conflict with the current ones are dropped
+ * first, each with a log line, and seeded nodes without a mall are assigned
+ * {@code neo4j.schema.seed-mall-id} so that syncs merge into them. Index population is then followed on a
+ * background thread and reported per index.
+ */
+@Component
+@Slf4j
+public class Neo4jSchemaManager {
+
+    /**
+     * Constraints replaced by later versions of the schema, dropped before the current ones are created
+     */
+    private static final Map<String, String> SUPERSEDED_CONSTRAINTS = orderedMap(
+            "crm_customer_id_unique", "customer ids are only unique within a mall",
+            "crm_order_id_unique", "order ids are only unique within a mall",
+            "crm_product_id_unique", "product numbers are only unique within a mall"
+    );
+
+    /**
+     * Indexes created by scripts/build_crm_ontology.py on the properties the node id
+     * constraints cover; Neo4j refuses a uniqueness constraint over an existing
+     * range index on the same property, so these are dropped first
+     */
+    private static final Map<String, String> SUPERSEDED_INDEXES = orderedMap(
+            "crm_customer_id", "replaced by crm_customer_node_id_unique",
+            "crm_order_id", "replaced by crm_order_node_id_unique",
+            "crm_product_id", "replaced by crm_product_node_id_unique"
+    );
+
+    /**
+     * Business keys (unique per mall) and the SDN id property; uniqueness constraints are backed by range indexes
+     */
+    private static final Map<String, String> CONSTRAINTS = orderedMap(
+            "crm_customer_mall_key_unique", "FOR (c:CRM_Customer) REQUIRE (c.mall_id, c.customer_id) IS UNIQUE",
+            "crm_order_mall_key_unique", "FOR (o:CRM_Order) REQUIRE (o.mall_id, o.order_id) IS UNIQUE",
+            "crm_product_mall_key_unique", "FOR (p:CRM_Product) REQUIRE (p.mall_id, p.product_id) IS UNIQUE",
+            "crm_customer_node_id_unique", "FOR (c:CRM_Customer) REQUIRE c.id IS UNIQUE",
+            "crm_order_node_id_unique", "FOR (o:CRM_Order) REQUIRE o.id IS UNIQUE",
+            "crm_product_node_id_unique", "FOR (p:CRM_Product) REQUIRE p.id IS UNIQUE",
+            "crm_revenue_rollup_bucket_unique",
+            "FOR (r:CRM_RevenueRollup) REQUIRE (r.granularity, r.bucket) IS UNIQUE"
+    );
+
+    /**
+     * Filter and sort properties used by the repository queries
+     */
+    private static final Map<String, String> RANGE_INDEXES = orderedMap(
+            // Lookups by business id alone, also for seeded nodes without a mall
+            "crm_customer_customer_id", "FOR (c:CRM_Customer) ON (c.customer_id)",
+            "crm_order_order_id", "FOR (o:CRM_Order) ON (o.order_id)",
+            "crm_product_product_id", "FOR (p:CRM_Product) ON (p.product_id)",
+            "crm_customer_segment", "FOR (c:CRM_Customer) ON (c.segment)",
+            "crm_customer_tier", "FOR (c:CRM_Customer) ON (c.tier)",
+            "crm_customer_total_revenue", "FOR (c:CRM_Customer) ON (c.total_revenue)",
+            "crm_customer_churn_probability", "FOR (c:CRM_Customer) ON (c.churn_probability)",
+            "crm_customer_days_since_last_purchase", "FOR (c:CRM_Customer) ON (c.days_since_last_purchase)",
+            "crm_customer_recency", "FOR (c:CRM_Customer) ON (c.recency)",
+            "crm_customer_mall_id", "FOR (c:CRM_Customer) ON (c.mall_id)",
+            "crm_order_order_date", "FOR (o:CRM_Order) ON (o.order_date)",
+            "crm_order_customer_id", "FOR (o:CRM_Order) ON (o.customer_id)",
+            "crm_order_status", "FOR (o:CRM_Order) ON (o.status)",
+            "crm_order_created_at", "FOR (o:CRM_Order) ON (o.created_at)",
+            "crm_product_total_sold", "FOR (p:CRM_Product) ON (p.total_sold)",
+            "crm_product_category", "FOR (p:CRM_Product) ON (p.category)",
+            "crm_product_price", "FOR (p:CRM_Product) ON (p.price)",
+            "crm_product_stock_quantity", "FOR (p:CRM_Product) ON (p.stock_quantity)",
+            "crm_product_total_revenue", "FOR (p:CRM_Product) ON (p.total_revenue)",
+            "crm_revenue_rollup_bucket_start", "FOR (r:CRM_RevenueRollup) ON (r.granularity, r.bucket_start)"
+    );
+
+    /**
+     * Search fields, for CONTAINS / ENDS WITH lookups
+     */
+    private static final Map<String, String> TEXT_INDEXES = orderedMap(
+            "crm_customer_name_text", "FOR (c:CRM_Customer) ON (c.name)",
+            "crm_customer_email_text", "FOR (c:CRM_Customer) ON (c.email)",
+            "crm_product_name_text", "FOR (p:CRM_Product) ON (p.name)",
+            "crm_product_brand_text", "FOR (p:CRM_Product) ON (p.brand)",
+            "crm_product_category_text", "FOR (p:CRM_Product) ON (p.category)"
+    );
+
+    /**
+     * Business id property per label, for the seed mall backfill
+     */
+    private static final Map<String, String> MALL_KEYED_LABELS = orderedMap(
+            "CRM_Customer", "customer_id",
+            "CRM_Order", "order_id",
+            "CRM_Product", "product_id"
+    );
+
+    /**
+     * Assigns the seed mall to nodes the seed scripts created without one. A node whose
+     * (mall, id) already exists from a sync is left alone rather than breaking the key.
+     */
+    private static final String BACKFILL_SEED_MALL = """
+            MATCH (n:%1$s)
+            WHERE n.mall_id IS NULL AND n.%2$s IS NOT NULL
+              AND NOT EXISTS { MATCH (:%1$s {mall_id: $mallId, %2$s: n.%2$s}) }
+            CALL { WITH n SET n.mall_id = $mallId } IN TRANSACTIONS OF 10000 ROWS
+            """;
+
+    private static final String COUNT_WITHOUT_MALL = """
+            MATCH (n:%s) WHERE n.mall_id IS NULL RETURN count(n) AS nodes
+            """;
+
+    private static final String SHOW_INDEXES = """
+            SHOW INDEXES YIELD name, state, populationPercent
+            RETURN name, state, populationPercent
+            """;
+
+    private final Driver driver;
+    private final MeterRegistry meterRegistry;
+    private final Duration pollInterval;
+    private final Duration awaitTimeout;
+    private final String seedMallId;
+
+    private final Map<String, IndexStatus> indexStatus = new ConcurrentHashMap<>();
+
+    public Neo4jSchemaManager(
+            Driver driver,
+            MeterRegistry meterRegistry,
+            @Value("${neo4j.schema.poll-interval:5s}") Duration pollInterval,
+            @Value("${neo4j.schema.await-timeout:30m}") Duration awaitTimeout,
+            @Value("${neo4j.schema.seed-mall-id:}") String seedMallId) {
+        this.driver = driver;
+        this.meterRegistry = meterRegistry;
+        this.pollInterval = pollInterval;
+        this.awaitTimeout = awaitTimeout;
+        this.seedMallId = seedMallId;
+    }
+
+    /**
+     * Population state of one managed index
+     */
+    public record IndexStatus(String name, String state, double populationPercent) {
+    }
+
+    /**
+     * Create all constraints and indexes that do not exist yet
+     *
+     * A failing statement (e.g. a uniqueness constraint over existing duplicates)
+     * is logged and skipped so that the remaining schema is still created.
+     *
+     * @return number of statements that failed
+     */
+    public int ensureSchema() {
+        int failed = dropSuperseded();
+        failed += backfillSeedMall();
+        failed += apply("CREATE CONSTRAINT %s IF NOT EXISTS %s", CONSTRAINTS);
+        failed += apply("CREATE RANGE INDEX %s IF NOT EXISTS %s", RANGE_INDEXES);
+        failed += apply("CREATE TEXT INDEX %s IF NOT EXISTS %s", TEXT_INDEXES);
+
+        int total = CONSTRAINTS.size() + RANGE_INDEXES.size() + TEXT_INDEXES.size();
+        log.info("Neo4j schema bootstrap: {} of {} constraints and indexes in place", total - failed, total);
+        return failed;
+    }
+
+    /**
+     * Follow index population on a background thread until every managed index
+     * is online, one has failed, or the timeout elapses
+     */
+    public void monitorPopulation() {
+        Thread monitor = new Thread(this::awaitPopulation, "neo4j-schema-monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    /**
+     * Current state of the managed indexes
+     */
+    public List<IndexStatus> getIndexStatus() {
+        return new ArrayList<>(indexStatus.values());
+    }
+
+    private int dropSuperseded() {
+        int failed = 0;
+        try (Session session = driver.session()) {
+            for (Map.Entry<String, String> superseded : SUPERSEDED_CONSTRAINTS.entrySet()) {
+                try {
+                    int dropped = session.run("DROP CONSTRAINT " + superseded.getKey() + " IF EXISTS")
+                            .consume().counters().constraintsRemoved();
+                    if (dropped > 0) {
+                        log.info("Schema migration: dropped constraint {} ({})", superseded.getKey(), superseded.getValue());
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    log.error("Failed to drop superseded constraint {}: {}", superseded.getKey(), e.getMessage());
+                }
+            }
+            for (Map.Entry<String, String> superseded : SUPERSEDED_INDEXES.entrySet()) {
+                try {
+                    int dropped = session.run("DROP INDEX " + superseded.getKey() + " IF EXISTS")
+                            .consume().counters().indexesRemoved();
+                    if (dropped > 0) {
+                        log.info("Schema migration: dropped index {} ({})", superseded.getKey(), superseded.getValue());
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    log.error("Failed to drop superseded index {}: {}", superseded.getKey(), e.getMessage());
+                }
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Give seeded customers, orders and products the configured seed mall, so that
+     * syncing that mall merges into them instead of creating a copy of each
+     */
+    private int backfillSeedMall() {
+        int failed = 0;
+        try (Session session = driver.session()) {
+            for (Map.Entry<String, String> label : MALL_KEYED_LABELS.entrySet()) {
+                try {
+                    if (seedMallId.isBlank()) {
+                        long unowned = session.run(String.format(COUNT_WITHOUT_MALL, label.getKey()))
+                                .single().get("nodes").asLong();
+                        if (unowned > 0) {
+                            log.warn("{} {} nodes have no mall_id and neo4j.schema.seed-mall-id is not set; "
+                                    + "syncing their mall will create separate nodes", unowned, label.getKey());
+                        }
+                        continue;
+                    }
+                    int updated = session.run(String.format(BACKFILL_SEED_MALL, label.getKey(), label.getValue()),
+                            Map.of("mallId", seedMallId)).consume().counters().propertiesSet();
+                    if (updated > 0) {
+                        log.info("Schema migration: assigned mall {} to {} seeded {} nodes",
+                                seedMallId, updated, label.getKey());
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    log.error("Failed to backfill mall_id on {}: {}", label.getKey(), e.getMessage());
+                }
+            }
+        }
+        return failed;
+    }
+
+    private int apply(String template, Map<String, String> definitions) {
+        int failed = 0;
+        try (Session session = driver.session()) {
+            for (Map.Entry<String, String> definition : definitions.entrySet()) {
+                String statement = String.format(template, definition.getKey(), definition.getValue());
+                try {
+                    session.run(statement).consume();
+                } catch (Exception e) {
+                    failed++;
+                    log.error("Failed to create {}: {}", definition.getKey(), e.getMessage());
+                }
+            }
+        }
+        return failed;
+    }
+
+    private void awaitPopulation() {
+        long deadline = System.nanoTime() + awaitTimeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                refreshStatus();
+            } catch (Exception e) {
+                log.warn("Failed to read index population state: {}", e.getMessage());
+            }
+
+            List<IndexStatus> pending = indexStatus.values().stream()
+                    .filter(status -> !"ONLINE".equals(status.state()))
+                    .toList();
+            if (pending.isEmpty() && !indexStatus.isEmpty()) {
+                log.info("All {} managed Neo4j indexes are online", indexStatus.size());
+                return;
+            }
+            if (pending.stream().anyMatch(status -> "FAILED".equals(status.state()))) {
+                log.error("Neo4j index population failed: {}", pending);
+                return;
+            }
+            log.info("Neo4j index population in progress: {}", pending.stream()
+                    .map(status -> status.name() + "=" + status.populationPercent() + "%")
+                    .toList());
+
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.warn("Neo4j index population not finished after {}", awaitTimeout);
+    }
+
+    private void refreshStatus() {
+        try (Session session = driver.session()) {
+            for (Record record : session.run(SHOW_INDEXES).list()) {
+                String name = record.get("name").asString();
+                if (!isManaged(name)) {
+                    continue;
+                }
+                IndexStatus status = new IndexStatus(name, record.get("state").asString(),
+                        record.get("populationPercent").asDouble(0.0));
+                if (indexStatus.put(name, status) == null) {
+                    Gauge.builder("crm.neo4j.index.population", indexStatus,
+                                    statuses -> statuses.get(name).populationPercent())
+                            .tag("index", name)
+                            .description("Population progress of a managed Neo4j index in percent")
+                            .register(meterRegistry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constraints are backed by an index of the same name
+     */
+    private boolean isManaged(String name) {
+        return CONSTRAINTS.containsKey(name) || RANGE_INDEXES.containsKey(name) || TEXT_INDEXES.containsKey(name);
+    }
+
+    private static Map<String, String> orderedMap(String... keyValues) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+}
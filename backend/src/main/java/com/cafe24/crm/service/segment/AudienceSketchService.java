@@ -0,0 +1,419 @@
+package com.cafe24.crm.service.segment;
+
+import com.cafe24.crm.dto.AudienceEstimateDTO;
+import com.cafe24.crm.dto.CustomerFilterDTO;
+import com.cafe24.crm.service.sync.OrdersUpsertedEvent;
+import com.cafe24.crm.support.MallKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.datasketches.hll.HllSketch;
+import org.apache.datasketches.theta.AnotB;
+import org.apache.datasketches.theta.Intersection;
+import org.apache.datasketches.theta.SetOperation;
+import org.apache.datasketches.theta.Sketch;
+import org.apache.datasketches.theta.Union;
+import org.apache.datasketches.theta.UpdateSketch;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Audience Sketch Service
+ *
+ * Keeps a theta sketch and an HLL sketch of customer IDs per attribute value
+ * (segment, tier, purchased category, order channel, active month) so the
+ * campaign page can estimate audience sizes without scanning the graph.
+ * Order batches from sync and webhooks are added as they are committed;
+ * sketches cannot forget members, so a scheduled rebuild drops customers who
+ * moved to another segment or tier.
+ */
+@Service
+@Slf4j
+public class AudienceSketchService {
+
+    static final List<String> DIMENSIONS = List.of("segment", "tier", "category", "channel", "month");
+
+    /** Standard deviations of the reported bounds; 2 is about 95% confidence */
+    private static final int BOUND_STD_DEVS = 2;
+
+    private static final String LOAD_MEMBERSHIPS = """
+            MATCH (c:CRM_Customer)
+            WHERE c.customer_id IS NOT NULL
+            OPTIONAL MATCH (c)-[:PLACED_ORDER]->(o:CRM_Order)
+            WITH c, collect(DISTINCT o.channel) AS channels, collect(DISTINCT o.order_month) AS months
+            OPTIONAL MATCH (c)-[:PURCHASED]->(p:CRM_Product)
+            RETURN c.mall_id AS mall_id,
+                   c.customer_id AS customer_id,
+                   c.segment AS segment,
+                   c.tier AS tier,
+                   channels,
+                   months,
+                   collect(DISTINCT p.category) AS categories
+            """;
+
+    private static final String PRODUCT_CATEGORIES = """
+            UNWIND $productKeys AS key
+            MATCH (p:CRM_Product {product_id: key.id})
+            WHERE coalesce(p.mall_id, '') = coalesce(key.mall_id, '') AND p.category IS NOT NULL
+            RETURN p.mall_id AS mall_id, p.product_id AS product_id, p.category AS category
+            """;
+
+    private final Driver driver;
+    private final MeterRegistry meterRegistry;
+    private final int lgK;
+    private final int nominalEntries;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Object lock = new Object();
+    private volatile Sketches current;
+    private volatile Sketches building;
+
+    public AudienceSketchService(
+            Driver driver,
+            MeterRegistry meterRegistry,
+            @Value("${audience.sketch.hll-lg-k:12}") int lgK,
+            @Value("${audience.sketch.theta-nominal-entries:4096}") int nominalEntries) {
+        this.driver = driver;
+        this.meterRegistry = meterRegistry;
+        this.lgK = lgK;
+        this.nominalEntries = nominalEntries;
+        this.current = new Sketches(lgK, nominalEntries);
+    }
+
+    /**
+     * Add the customers of an ingested order batch to their channel, month and category sketches
+     */
+    @EventListener
+    public void onOrdersUpserted(OrdersUpsertedEvent event) {
+        try {
+            Set<MallKey> products = new HashSet<>();
+            for (Map<String, Object> row : event.rows()) {
+                String mallId = row.get("mall_id") != null ? row.get("mall_id").toString() : null;
+                if (row.get("product_ids") instanceof List<?> ids) {
+                    ids.forEach(id -> products.add(new MallKey(mallId, id.toString())));
+                }
+            }
+            Map<MallKey, String> categories = productCategories(products);
+
+            synchronized (lock) {
+                for (Map<String, Object> row : event.rows()) {
+                    MallKey customer = MallKey.of(row, "customer_id");
+                    if (customer == null) {
+                        continue;
+                    }
+                    String mallId = customer.mallId();
+                    Map<String, List<Object>> memberships = new HashMap<>();
+                    if (row.get("props") instanceof Map<?, ?> props) {
+                        memberships.put("channel", single(props.get("channel")));
+                        memberships.put("month", single(props.get("order_month")));
+                    }
+                    List<Object> rowCategories = new ArrayList<>();
+                    if (row.get("product_ids") instanceof List<?> ids) {
+                        ids.forEach(id -> {
+                            String category = categories.get(new MallKey(mallId, id.toString()));
+                            if (category != null) {
+                                rowCategories.add(category);
+                            }
+                        });
+                    }
+                    memberships.put("category", rowCategories);
+
+                    // Members of different malls may share an id; count them as distinct customers
+                    current.add(customer.toString(), memberships);
+                    if (building != null) {
+                        building.add(customer.toString(), memberships);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // The orders are committed; the next rebuild picks them up
+            log.error("Failed to update audience sketches for {} orders: {}", event.rows().size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Build the sketches once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialBuild() {
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("Skipping initial audience sketch build: {}", e.getMessage());
+            }
+        }, "audience-sketch-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Nightly rebuild, after the derived-metrics job has reassigned segments
+     */
+    @Scheduled(cron = "${audience.sketch.rebuild-cron:0 0 4 * * *}", zone = "${jobs.derived-metrics.zone:Asia/Seoul}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (IllegalStateException e) {
+            log.debug("Skipping scheduled audience sketch rebuild: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Audience sketch rebuild failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rebuild every sketch from the graph and swap them in
+     *
+     * @return number of customers read
+     * @throws IllegalStateException if a rebuild is already in progress
+     */
+    public int rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Audience sketch rebuild is already running");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            // Batches committed while the graph is read are added to both sets
+            building = new Sketches(lgK, nominalEntries);
+            int customers;
+            try (Session session = driver.session()) {
+                customers = session.executeRead(tx -> {
+                    int count = 0;
+                    Result result = tx.run(LOAD_MEMBERSHIPS);
+                    while (result.hasNext()) {
+                        Record record = result.next();
+                        Map<String, List<Object>> memberships = new HashMap<>();
+                        memberships.put("segment", single(record.get("segment").asObject()));
+                        memberships.put("tier", single(record.get("tier").asObject()));
+                        memberships.put("channel", record.get("channels").asList(value -> value.asObject()));
+                        memberships.put("month", record.get("months").asList(value -> value.asObject()));
+                        memberships.put("category", record.get("categories").asList(value -> value.asObject()));
+                        synchronized (lock) {
+                            building.add(MallKey.of(record, "customer_id").toString(), memberships);
+                        }
+                        count++;
+                    }
+                    return count;
+                });
+            }
+            synchronized (lock) {
+                current = building;
+                building = null;
+            }
+            long nanos = sample.stop(meterRegistry.timer("crm.audience.sketch.rebuild"));
+            log.info("Audience sketches rebuilt: {} customers in {} ms", customers, TimeUnit.NANOSECONDS.toMillis(nanos));
+            return customers;
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Estimate how many customers match a filter expression
+     *
+     * Only eq and in leaves over the sketch dimensions are supported. Expressions
+     * made of unions only are answered from the HLL sketches; anything with
+     * and/not uses theta set operations.
+     *
+     * @throws IllegalArgumentException for unsupported fields or operators
+     */
+    public AudienceEstimateDTO estimate(CustomerFilterDTO filter) {
+        long start = System.nanoTime();
+        AudienceEstimateDTO.AudienceEstimateDTOBuilder result = AudienceEstimateDTO.builder();
+
+        synchronized (lock) {
+            Sketches sketches = current;
+            if (filter != null && isUnionOnly(filter)) {
+                org.apache.datasketches.hll.Union union = new org.apache.datasketches.hll.Union(lgK);
+                collectHll(sketches, filter, union);
+                HllSketch sketch = union.getResult();
+                result.method("hll")
+                        .estimate(Math.round(sketch.getEstimate()))
+                        .lowerBound((long) Math.floor(sketch.getLowerBound(BOUND_STD_DEVS)))
+                        .upperBound((long) Math.ceil(sketch.getUpperBound(BOUND_STD_DEVS)));
+            } else {
+                Sketch sketch = evaluateTheta(sketches, filter);
+                result.method("theta")
+                        .estimate(Math.round(sketch.getEstimate()))
+                        .lowerBound((long) Math.floor(sketch.getLowerBound(BOUND_STD_DEVS)))
+                        .upperBound((long) Math.ceil(sketch.getUpperBound(BOUND_STD_DEVS)))
+                        .exact(!sketch.isEstimationMode());
+            }
+            result.sketchesBuiltAt(sketches.builtAt);
+        }
+
+        long nanos = System.nanoTime() - start;
+        meterRegistry.timer("crm.audience.estimate").record(nanos, TimeUnit.NANOSECONDS);
+        return result.tookMicros(TimeUnit.NANOSECONDS.toMicros(nanos)).build();
+    }
+
+    private Map<MallKey, String> productCategories(Set<MallKey> products) {
+        if (products.isEmpty()) {
+            return Map.of();
+        }
+        Map<MallKey, String> categories = new HashMap<>();
+        List<Map<String, Object>> keys = products.stream().map(MallKey::toParameter).toList();
+        try (Session session = driver.session()) {
+            session.executeRead(tx -> tx.run(PRODUCT_CATEGORIES, Map.of("productKeys", keys)).list())
+                    .forEach(record -> categories.put(MallKey.of(record, "product_id"),
+                            record.get("category").asObject().toString()));
+        }
+        return categories;
+    }
+
+    private static List<Object> single(Object value) {
+        return value != null ? List.of(value) : List.of();
+    }
+
+    private static boolean isUnionOnly(CustomerFilterDTO filter) {
+        if (filter.getAnd() != null || filter.getNot() != null) {
+            return false;
+        }
+        if (filter.getOr() != null) {
+            return filter.getOr().stream().allMatch(AudienceSketchService::isUnionOnly);
+        }
+        return true;
+    }
+
+    private void collectHll(Sketches sketches, CustomerFilterDTO filter,
+                            org.apache.datasketches.hll.Union union) {
+        if (filter.getOr() != null) {
+            filter.getOr().forEach(child -> collectHll(sketches, child, union));
+            return;
+        }
+        for (String value : leafValues(filter)) {
+            ValueSketches sketch = sketches.get(filter.getField(), value);
+            if (sketch != null) {
+                union.update(sketch.hll);
+            }
+        }
+    }
+
+    private Sketch evaluateTheta(Sketches sketches, CustomerFilterDTO filter) {
+        if (filter == null) {
+            return sketches.all.compact();
+        }
+        if (filter.getAnd() != null) {
+            if (filter.getAnd().isEmpty()) {
+                return sketches.all.compact();
+            }
+            Intersection intersection = SetOperation.builder().setNominalEntries(nominalEntries).buildIntersection();
+            for (CustomerFilterDTO child : filter.getAnd()) {
+                intersection.intersect(evaluateTheta(sketches, child));
+            }
+            return intersection.getResult();
+        }
+        if (filter.getOr() != null) {
+            Union union = SetOperation.builder().setNominalEntries(nominalEntries).buildUnion();
+            for (CustomerFilterDTO child : filter.getOr()) {
+                union.union(evaluateTheta(sketches, child));
+            }
+            return union.getResult();
+        }
+        if (filter.getNot() != null) {
+            AnotB difference = SetOperation.builder().setNominalEntries(nominalEntries).buildANotB();
+            return difference.aNotB(sketches.all, evaluateTheta(sketches, filter.getNot()));
+        }
+
+        Union union = SetOperation.builder().setNominalEntries(nominalEntries).buildUnion();
+        for (String value : leafValues(filter)) {
+            ValueSketches sketch = sketches.get(filter.getField(), value);
+            if (sketch != null) {
+                union.union(sketch.theta);
+            }
+        }
+        return union.getResult();
+    }
+
+    private static List<String> leafValues(CustomerFilterDTO filter) {
+        String field = filter.getField();
+        if (field == null) {
+            throw new IllegalArgumentException("Filter node needs one of and, or, not or field");
+        }
+        if (!DIMENSIONS.contains(field)) {
+            throw new IllegalArgumentException("Unknown audience dimension: " + field + "; expected one of " + DIMENSIONS);
+        }
+        String op = filter.getOp() != null ? filter.getOp().toLowerCase(Locale.ROOT) : "eq";
+        List<Object> values = switch (op) {
+            case "eq" -> filter.getValue() != null ? List.of(filter.getValue()) : null;
+            case "in" -> filter.getValues();
+            default -> throw new IllegalArgumentException("Operator " + op + " is not supported for audience estimates");
+        };
+        if (values == null) {
+            throw new IllegalArgumentException("Operator " + op + " on " + field + " needs a value");
+        }
+        return values.stream().map(CustomerBitmapIndex::key).toList();
+    }
+
+    /**
+     * Sketches of one attribute value
+     */
+    private static final class ValueSketches {
+
+        private final HllSketch hll;
+        private final UpdateSketch theta;
+
+        ValueSketches(int lgK, int nominalEntries) {
+            this.hll = new HllSketch(lgK);
+            this.theta = UpdateSketch.builder().setNominalEntries(nominalEntries).build();
+        }
+    }
+
+    /**
+     * One generation of sketches; guarded by the service lock
+     */
+    private static final class Sketches {
+
+        private final int lgK;
+        private final int nominalEntries;
+        private final UpdateSketch all;
+        private final Map<String, Map<String, ValueSketches>> dimensions = new HashMap<>();
+        private final LocalDateTime builtAt = LocalDateTime.now();
+
+        Sketches(int lgK, int nominalEntries) {
+            this.lgK = lgK;
+            this.nominalEntries = nominalEntries;
+            this.all = UpdateSketch.builder().setNominalEntries(nominalEntries).build();
+            DIMENSIONS.forEach(dimension -> dimensions.put(dimension, new HashMap<>()));
+        }
+
+        void add(String customerId, Map<String, List<Object>> memberships) {
+            all.update(customerId);
+            memberships.forEach((dimension, values) -> {
+                Map<String, ValueSketches> sketches = dimensions.get(dimension);
+                for (Object value : values) {
+                    if (value == null || value.toString().isBlank()) {
+                        continue;
+                    }
+                    ValueSketches sketch = sketches.computeIfAbsent(CustomerBitmapIndex.key(value),
+                            key -> new ValueSketches(lgK, nominalEntries));
+                    sketch.hll.update(customerId);
+                    sketch.theta.update(customerId);
+                }
+            });
+        }
+
+        ValueSketches get(String dimension, String value) {
+            return dimensions.get(dimension).get(value);
+        }
+    }
+}
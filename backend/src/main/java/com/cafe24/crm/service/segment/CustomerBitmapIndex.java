@@ -0,0 +1,330 @@
+package com.cafe24.crm.service.segment;
+
+import com.cafe24.crm.dto.CustomerFilterDTO;
+import com.cafe24.crm.support.MallKey;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable bitmap index over customer ordinals.
+ *
+ * Customers are numbered 0..n-1 in customer_id order. Every categorical value
+ * has a bitmap of the ordinals holding it; numeric attributes are split into
+ * equal-population buckets, each with a bitmap and its min/max, so a range
+ * predicate ORs whole buckets and only checks raw values in the edge buckets.
+ */
+public final class CustomerBitmapIndex {
+
+    private static final int NUMERIC_BUCKETS = 32;
+
+    private final String[] customerIds;
+    private final RoaringBitmap universe;
+    private final Map<String, Map<String, RoaringBitmap>> categorical;
+    private final Map<String, RoaringBitmap> categoricalPresent;
+    private final Map<String, NumericColumn> numeric;
+    private final LocalDateTime builtAt;
+
+    private CustomerBitmapIndex(String[] customerIds,
+                                Map<String, Map<String, RoaringBitmap>> categorical,
+                                Map<String, NumericColumn> numeric) {
+        this.customerIds = customerIds;
+        this.universe = RoaringBitmap.bitmapOfRange(0, customerIds.length);
+        this.categorical = categorical;
+        this.numeric = numeric;
+        this.categoricalPresent = new HashMap<>();
+        categorical.forEach((field, values) ->
+                categoricalPresent.put(field, RoaringBitmap.or(values.values().iterator())));
+        this.builtAt = LocalDateTime.now();
+    }
+
+    public int size() {
+        return customerIds.length;
+    }
+
+    public LocalDateTime getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * Evaluate a filter tree to the bitmap of matching ordinals
+     *
+     * @throws IllegalArgumentException for unknown fields, operators or malformed nodes
+     */
+    public RoaringBitmap evaluate(CustomerFilterDTO filter) {
+        if (filter == null) {
+            return universe.clone();
+        }
+        if (filter.getAnd() != null) {
+            if (filter.getAnd().isEmpty()) {
+                return universe.clone();
+            }
+            // Smallest first keeps the intermediate results small
+            List<RoaringBitmap> parts = new ArrayList<>();
+            for (CustomerFilterDTO child : filter.getAnd()) {
+                parts.add(evaluate(child));
+            }
+            parts.sort((a, b) -> Integer.compare(a.getCardinality(), b.getCardinality()));
+            RoaringBitmap result = parts.get(0);
+            for (int i = 1; i < parts.size() && !result.isEmpty(); i++) {
+                result.and(parts.get(i));
+            }
+            return result;
+        }
+        if (filter.getOr() != null) {
+            RoaringBitmap result = new RoaringBitmap();
+            for (CustomerFilterDTO child : filter.getOr()) {
+                result.or(evaluate(child));
+            }
+            return result;
+        }
+        if (filter.getNot() != null) {
+            return RoaringBitmap.andNot(universe, evaluate(filter.getNot()));
+        }
+        return evaluateLeaf(filter);
+    }
+
+    /**
+     * Customer keys ("mall:id", see {@link MallKey}) of one page of a result, in ordinal order
+     */
+    public List<String> page(RoaringBitmap matches, int page, int size) {
+        long offset = (long) page * size;
+        if (size <= 0 || offset >= matches.getLongCardinality()) {
+            return List.of();
+        }
+        List<String> ids = new ArrayList<>(size);
+        PeekableIntIterator iterator = matches.getIntIterator();
+        iterator.advanceIfNeeded(matches.select((int) offset));
+        while (iterator.hasNext() && ids.size() < size) {
+            ids.add(customerIds[iterator.next()]);
+        }
+        return ids;
+    }
+
+    private RoaringBitmap evaluateLeaf(CustomerFilterDTO filter) {
+        String field = filter.getField();
+        String op = filter.getOp() != null ? filter.getOp().toLowerCase(Locale.ROOT) : "eq";
+        if (field == null) {
+            throw new IllegalArgumentException("Filter node needs one of and, or, not or field");
+        }
+
+        Map<String, RoaringBitmap> values = categorical.get(field);
+        if (values != null) {
+            return switch (op) {
+                case "eq" -> lookup(values, operand(filter));
+                case "ne" -> RoaringBitmap.andNot(categoricalPresent.get(field), lookup(values, operand(filter)));
+                case "in" -> {
+                    RoaringBitmap result = new RoaringBitmap();
+                    for (Object value : operands(filter)) {
+                        result.or(lookup(values, value));
+                    }
+                    yield result;
+                }
+                case "exists" -> categoricalPresent.get(field).clone();
+                default -> throw new IllegalArgumentException("Operator " + op + " is not supported for " + field);
+            };
+        }
+
+        NumericColumn column = numeric.get(field);
+        if (column != null) {
+            return switch (op) {
+                case "eq" -> column.range(number(operand(filter)), true, number(operand(filter)), true);
+                case "ne" -> RoaringBitmap.andNot(column.present,
+                        column.range(number(operand(filter)), true, number(operand(filter)), true));
+                case "gt" -> column.range(number(operand(filter)), false, Double.POSITIVE_INFINITY, true);
+                case "gte" -> column.range(number(operand(filter)), true, Double.POSITIVE_INFINITY, true);
+                case "lt" -> column.range(Double.NEGATIVE_INFINITY, true, number(operand(filter)), false);
+                case "lte" -> column.range(Double.NEGATIVE_INFINITY, true, number(operand(filter)), true);
+                case "between" -> {
+                    List<Object> bounds = operands(filter);
+                    if (bounds.size() != 2) {
+                        throw new IllegalArgumentException("between needs values [min, max]");
+                    }
+                    yield column.range(number(bounds.get(0)), true, number(bounds.get(1)), true);
+                }
+                case "exists" -> column.present.clone();
+                default -> throw new IllegalArgumentException("Operator " + op + " is not supported for " + field);
+            };
+        }
+
+        throw new IllegalArgumentException("Unknown filter field: " + field);
+    }
+
+    private static RoaringBitmap lookup(Map<String, RoaringBitmap> values, Object value) {
+        RoaringBitmap bitmap = value != null ? values.get(key(value)) : null;
+        return bitmap != null ? bitmap.clone() : new RoaringBitmap();
+    }
+
+    private static Object operand(CustomerFilterDTO filter) {
+        if (filter.getValue() == null) {
+            throw new IllegalArgumentException("Operator " + filter.getOp() + " on " + filter.getField() + " needs a value");
+        }
+        return filter.getValue();
+    }
+
+    private static List<Object> operands(CustomerFilterDTO filter) {
+        if (filter.getValues() == null) {
+            throw new IllegalArgumentException("Operator " + filter.getOp() + " on " + filter.getField() + " needs values");
+        }
+        return filter.getValues();
+    }
+
+    private static double number(Object value) {
+        if (value instanceof Number n) {
+            return n.doubleValue();
+        }
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    static String key(Object value) {
+        return value.toString().trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Equal-population buckets of a numeric attribute
+     */
+    private static final class NumericColumn {
+
+        private final double[] values;
+        private final RoaringBitmap present;
+        private final RoaringBitmap[] buckets;
+        private final double[] bucketMin;
+        private final double[] bucketMax;
+
+        NumericColumn(double[] values) {
+            this.values = values;
+
+            List<Integer> withValue = new ArrayList<>();
+            for (int ordinal = 0; ordinal < values.length; ordinal++) {
+                if (!Double.isNaN(values[ordinal])) {
+                    withValue.add(ordinal);
+                }
+            }
+            int count = withValue.size();
+            Integer[] order = withValue.toArray(new Integer[0]);
+            Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+            List<RoaringBitmap> bucketList = new ArrayList<>();
+            List<double[]> ranges = new ArrayList<>();
+            int target = Math.max(1, (count + NUMERIC_BUCKETS - 1) / NUMERIC_BUCKETS);
+            int start = 0;
+            while (start < count) {
+                int end = Math.min(start + target, count);
+                // Never split equal values across buckets
+                while (end < count && values[order[end]] == values[order[end - 1]]) {
+                    end++;
+                }
+                RoaringBitmap bucket = new RoaringBitmap();
+                for (int i = start; i < end; i++) {
+                    bucket.add(order[i]);
+                }
+                bucket.runOptimize();
+                bucketList.add(bucket);
+                ranges.add(new double[]{values[order[start]], values[order[end - 1]]});
+                start = end;
+            }
+
+            this.buckets = bucketList.toArray(new RoaringBitmap[0]);
+            this.bucketMin = new double[buckets.length];
+            this.bucketMax = new double[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                bucketMin[i] = ranges.get(i)[0];
+                bucketMax[i] = ranges.get(i)[1];
+            }
+            this.present = buckets.length > 0 ? RoaringBitmap.or(buckets) : new RoaringBitmap();
+        }
+
+        RoaringBitmap range(double low, boolean lowInclusive, double high, boolean highInclusive) {
+            RoaringBitmap result = new RoaringBitmap();
+            for (int i = 0; i < buckets.length; i++) {
+                boolean minInside = aboveLow(bucketMin[i], low, lowInclusive) && belowHigh(bucketMin[i], high, highInclusive);
+                boolean maxInside = aboveLow(bucketMax[i], low, lowInclusive) && belowHigh(bucketMax[i], high, highInclusive);
+                if (minInside && maxInside) {
+                    result.or(buckets[i]);
+                } else if (aboveLow(bucketMax[i], low, lowInclusive) && belowHigh(bucketMin[i], high, highInclusive)) {
+                    // Edge bucket: check each value
+                    buckets[i].forEach((int ordinal) -> {
+                        double value = values[ordinal];
+                        if (aboveLow(value, low, lowInclusive) && belowHigh(value, high, highInclusive)) {
+                            result.add(ordinal);
+                        }
+                    });
+                }
+            }
+            return result;
+        }
+
+        private static boolean aboveLow(double value, double low, boolean inclusive) {
+            return inclusive ? value >= low : value > low;
+        }
+
+        private static boolean belowHigh(double value, double high, boolean inclusive) {
+            return inclusive ? value <= high : value < high;
+        }
+    }
+
+    /**
+     * Accumulates customers in ordinal order
+     */
+    public static final class Builder {
+
+        private final List<String> customerIds = new ArrayList<>();
+        private final Set<MallKey> added = new HashSet<>();
+        private final Map<String, Map<String, RoaringBitmap>> categorical = new HashMap<>();
+        private final Map<String, double[]> numeric = new HashMap<>();
+
+        public Builder(List<String> categoricalFields, List<String> numericFields) {
+            categoricalFields.forEach(field -> categorical.put(field, new HashMap<>()));
+            numericFields.forEach(field -> numeric.put(field, new double[1024]));
+        }
+
+        /**
+         * Add the next customer; missing attributes are simply absent from the index.
+         * Customer ids are only unique within a mall, so each (mall, id) gets its own
+         * ordinal; a repeated key is ignored.
+         */
+        public void add(MallKey customer, Map<String, Object> attributes) {
+            if (!added.add(customer)) {
+                return;
+            }
+            int ordinal = customerIds.size();
+            customerIds.add(customer.toString());
+
+            categorical.forEach((field, values) -> {
+                Object value = attributes.get(field);
+                if (value != null && !value.toString().isBlank()) {
+                    values.computeIfAbsent(key(value), k -> new RoaringBitmap()).add(ordinal);
+                }
+            });
+            numeric.replaceAll((field, column) -> {
+                if (ordinal >= column.length) {
+                    column = Arrays.copyOf(column, column.length * 2);
+                }
+                Object value = attributes.get(field);
+                column[ordinal] = value instanceof Number n ? n.doubleValue() : Double.NaN;
+                return column;
+            });
+        }
+
+        public CustomerBitmapIndex build() {
+            categorical.values().forEach(values -> values.values().forEach(RoaringBitmap::runOptimize));
+            Map<String, NumericColumn> columns = new HashMap<>();
+            numeric.forEach((field, column) ->
+                    columns.put(field, new NumericColumn(Arrays.copyOf(column, customerIds.size()))));
+            return new CustomerBitmapIndex(customerIds.toArray(new String[0]), categorical, columns);
+        }
+    }
+}
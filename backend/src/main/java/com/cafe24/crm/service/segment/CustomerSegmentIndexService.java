@@ -0,0 +1,161 @@
+package com.cafe24.crm.service.segment;
+
+import com.cafe24.crm.dto.CustomerFilterDTO;
+import com.cafe24.crm.dto.CustomerFilterResultDTO;
+import com.cafe24.crm.dto.PageResponse;
+import com.cafe24.crm.support.MallKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Customer Segment Index Service
+ *
+ * Keeps a {@link CustomerBitmapIndex} snapshot of all customers for campaign
+ * targeting. The snapshot is rebuilt periodically with one streaming read and
+ * swapped atomically, so queries never block on a rebuild.
+ */
+@Service
+@Slf4j
+public class CustomerSegmentIndexService {
+
+    static final List<String> CATEGORICAL_FIELDS = List.of(
+            "segment", "tier", "status", "preferred_category", "rfm_score", "rfm_cell");
+
+    static final List<String> NUMERIC_FIELDS = List.of(
+            "recency", "frequency", "monetary", "churn_probability", "total_orders",
+            "total_revenue", "avg_order_value", "clv", "days_since_last_purchase");
+
+    public static final String LOAD_CUSTOMERS = """
+            MATCH (c:CRM_Customer)
+            WHERE c.customer_id IS NOT NULL
+            RETURN c.mall_id AS mall_id,
+                   c.customer_id AS customer_id,
+                   c.segment AS segment,
+                   c.tier AS tier,
+                   c.status AS status,
+                   c.preferred_category AS preferred_category,
+                   c.rfm_score AS rfm_score,
+                   CASE WHEN c.recency IS NULL OR c.frequency IS NULL OR c.monetary IS NULL THEN null
+                        ELSE toString(c.recency) + '-' + toString(c.frequency) + '-' + toString(c.monetary)
+                   END AS rfm_cell,
+                   c.recency AS recency,
+                   c.frequency AS frequency,
+                   c.monetary AS monetary,
+                   c.churn_probability AS churn_probability,
+                   c.total_orders AS total_orders,
+                   c.total_revenue AS total_revenue,
+                   c.avg_order_value AS avg_order_value,
+                   c.clv AS clv,
+                   c.days_since_last_purchase AS days_since_last_purchase
+            ORDER BY c.mall_id, c.customer_id
+            """;
+
+    private final Driver driver;
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile CustomerBitmapIndex index;
+
+    public CustomerSegmentIndexService(Driver driver, MeterRegistry meterRegistry) {
+        this.driver = driver;
+        this.meterRegistry = meterRegistry;
+
+        meterRegistry.gauge("crm.segments.index.customers", this,
+                service -> service.index != null ? service.index.size() : 0);
+    }
+
+    /**
+     * Periodic rebuild; the first run happens shortly after startup
+     */
+    @Scheduled(initialDelayString = "${segments.index.initial-delay-ms:10000}",
+            fixedDelayString = "${segments.index.refresh-interval-ms:600000}")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (IllegalStateException e) {
+            log.debug("Skipping scheduled segment index rebuild: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Segment index rebuild failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rebuild the index from the graph and swap it in
+     *
+     * @return number of customers indexed
+     * @throws IllegalStateException if a rebuild is already in progress
+     */
+    public int rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Segment index rebuild is already running");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (Session session = driver.session()) {
+            CustomerBitmapIndex rebuilt = session.executeRead(tx -> {
+                CustomerBitmapIndex.Builder builder = new CustomerBitmapIndex.Builder(CATEGORICAL_FIELDS, NUMERIC_FIELDS);
+                Result result = tx.run(LOAD_CUSTOMERS);
+                while (result.hasNext()) {
+                    Record record = result.next();
+                    Map<String, Object> attributes = new HashMap<>();
+                    for (String field : CATEGORICAL_FIELDS) {
+                        attributes.put(field, record.get(field).asObject());
+                    }
+                    for (String field : NUMERIC_FIELDS) {
+                        attributes.put(field, record.get(field).asObject());
+                    }
+                    builder.add(MallKey.of(record, "customer_id"), attributes);
+                }
+                return builder.build();
+            });
+            index = rebuilt;
+            long nanos = sample.stop(meterRegistry.timer("crm.segments.index.rebuild"));
+            log.info("Segment index rebuilt: {} customers in {} ms", rebuilt.size(), TimeUnit.NANOSECONDS.toMillis(nanos));
+            return rebuilt.size();
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Count the customers matching a filter and return one page of their keys
+     * ("mall:id"; just the id for seeded customers without a mall)
+     *
+     * @throws IllegalArgumentException if the filter is malformed
+     * @throws IllegalStateException    if the index has not been built yet
+     */
+    public CustomerFilterResultDTO query(CustomerFilterDTO filter, int page, int size) {
+        CustomerBitmapIndex current = index;
+        if (current == null) {
+            throw new IllegalStateException("Segment index is not built yet");
+        }
+
+        long start = System.nanoTime();
+        RoaringBitmap matches = current.evaluate(filter);
+        long count = matches.getLongCardinality();
+        List<String> ids = current.page(matches, page, size);
+        long nanos = System.nanoTime() - start;
+        meterRegistry.timer("crm.segments.query").record(nanos, TimeUnit.NANOSECONDS);
+
+        return CustomerFilterResultDTO.builder()
+                .count(count)
+                .tookMicros(TimeUnit.NANOSECONDS.toMicros(nanos))
+                .indexedCustomers(current.size())
+                .indexBuiltAt(current.getBuiltAt())
+                .customerIds(size > 0 ? PageResponse.of(ids, page, size, count) : null)
+                .build();
+    }
+}
@@ -0,0 +1,274 @@
+package com.cafe24.crm.service.sync;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps Cafe24 Admin API records to CRM graph rows.
+ *
+ * Each row carries the mall and business key plus a {@code props} map that is applied
+ * with {@code SET n += row.props}; absent fields are left out of the map so an
+ * update never wipes a property that Cafe24 did not send.
+ */
+@Component
+public class Cafe24RecordMapper {
+
+    private static final List<String> ORDER_DISCOUNT_FIELDS = List.of(
+            "coupon_discount_price", "membership_discount_amount",
+            "set_product_discount_amount", "app_discount_amount", "points_spent_amount");
+
+    /**
+     * Map a customer (customersprivacy) record
+     */
+    public Map<String, Object> mapCustomer(String mallId, Map<String, Object> source) {
+        String customerId = text(source.get("member_id"));
+        if (customerId == null) {
+            return null;
+        }
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("mall_id", mallId);
+        putIfPresent(props, "name", text(source.get("name")));
+        putIfPresent(props, "email", text(source.get("email")));
+        putIfPresent(props, "phone", firstText(source.get("cellphone"), source.get("phone")));
+        putIfPresent(props, "created_at", dateTime(source.get("created_date")));
+        putIfPresent(props, "updated_at", dateTime(source.get("updated_date")));
+        Object groupNo = source.get("group_no");
+        if (groupNo != null) {
+            props.put("tier", "group_" + groupNo);
+        }
+
+        Map<String, Object> row = new HashMap<>();
+        row.put("mall_id", mallId);
+        row.put("customer_id", customerId);
+        row.put("props", props);
+        return row;
+    }
+
+    /**
+     * Map an order record (requested with embed=items)
+     */
+    public Map<String, Object> mapOrder(String mallId, Map<String, Object> source) {
+        String orderId = text(source.get("order_id"));
+        if (orderId == null) {
+            return null;
+        }
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("mall_id", mallId);
+
+        LocalDateTime orderedAt = dateTime(source.get("order_date"));
+        if (orderedAt != null) {
+            props.put("created_at", orderedAt);
+            props.put("order_date", orderedAt.toLocalDate());
+            props.put("order_month", String.format("%04d-%02d", orderedAt.getYear(), orderedAt.getMonthValue()));
+        }
+        putIfPresent(props, "completed_at", dateTime(source.get("shipend_date")));
+        putIfPresent(props, "total_amount", number(firstNonNull(source.get("payment_amount"),
+                nested(source, "actual_order_amount", "payment_amount"))));
+
+        Object amounts = source.get("actual_order_amount");
+        if (amounts instanceof Map<?, ?> amountMap) {
+            putIfPresent(props, "subtotal", number(amountMap.get("order_price_amount")));
+            putIfPresent(props, "shipping_cost", number(amountMap.get("shipping_fee")));
+            double discount = 0;
+            boolean anyDiscount = false;
+            for (String field : ORDER_DISCOUNT_FIELDS) {
+                Double value = number(amountMap.get(field));
+                if (value != null) {
+                    discount += value;
+                    anyDiscount = true;
+                }
+            }
+            if (anyDiscount) {
+                props.put("discount_amount", discount);
+            }
+        }
+
+        // Webhook payloads are partial, so derived flags are only set when their source fields are sent
+        if (source.containsKey("canceled") || source.containsKey("shipping_status") || source.containsKey("paid")) {
+            props.put("status", orderStatus(source));
+        }
+        if (source.containsKey("paid")) {
+            props.put("payment_status", "T".equals(source.get("paid")) ? "paid" : "unpaid");
+        }
+        putIfPresent(props, "payment_method", firstText(source.get("payment_method")));
+        if (source.containsKey("order_from_mobile")) {
+            boolean mobile = "T".equals(source.get("order_from_mobile"));
+            putIfPresent(props, "channel", firstText(source.get("order_place_name"), mobile ? "mobile" : "web"));
+            props.put("device_type", mobile ? "mobile" : "desktop");
+        } else {
+            putIfPresent(props, "channel", firstText(source.get("order_place_name")));
+        }
+
+        Set<String> productIds = new LinkedHashSet<>();
+        int itemCount = 0;
+        Object items = source.get("items");
+        if (items instanceof List<?> itemList) {
+            for (Object item : itemList) {
+                if (item instanceof Map<?, ?> itemMap) {
+                    String productId = text(itemMap.get("product_no"));
+                    if (productId != null) {
+                        productIds.add(productId);
+                    }
+                    Double quantity = number(itemMap.get("quantity"));
+                    itemCount += quantity != null ? quantity.intValue() : 1;
+                }
+            }
+            props.put("item_count", itemCount);
+            props.put("items", String.join(",", productIds));
+        }
+
+        String customerId = text(source.get("member_id"));
+        putIfPresent(props, "customer_id", customerId);
+
+        Map<String, Object> row = new HashMap<>();
+        row.put("mall_id", mallId);
+        row.put("order_id", orderId);
+        row.put("customer_id", customerId);
+        row.put("product_ids", new ArrayList<>(productIds));
+        row.put("props", props);
+        return row;
+    }
+
+    /**
+     * Map a product record
+     */
+    public Map<String, Object> mapProduct(String mallId, Map<String, Object> source) {
+        String productId = text(source.get("product_no"));
+        if (productId == null) {
+            return null;
+        }
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("mall_id", mallId);
+        putIfPresent(props, "name", text(source.get("product_name")));
+        putIfPresent(props, "description", text(source.get("summary_description")));
+        putIfPresent(props, "price", number(source.get("price")));
+        putIfPresent(props, "original_price", number(source.get("retail_price")));
+        putIfPresent(props, "cost_price", number(source.get("supply_price")));
+        putIfPresent(props, "sku", text(source.get("product_code")));
+        putIfPresent(props, "brand", text(source.get("brand_code")));
+        putIfPresent(props, "created_at", dateTime(source.get("created_date")));
+        putIfPresent(props, "updated_at", dateTime(source.get("updated_date")));
+        if (source.containsKey("selling") || source.containsKey("display")) {
+            boolean active = "T".equals(source.get("selling")) && !"F".equals(source.get("display"));
+            props.put("status", active ? "active" : "inactive");
+        }
+        Object categories = source.get("category");
+        if (categories instanceof List<?> list && !list.isEmpty() && list.get(0) instanceof Map<?, ?> first) {
+            putIfPresent(props, "category", text(first.get("category_no")));
+        }
+
+        Map<String, Object> row = new HashMap<>();
+        row.put("mall_id", mallId);
+        row.put("product_id", productId);
+        row.put("props", props);
+        return row;
+    }
+
+    private String orderStatus(Map<String, Object> source) {
+        if ("T".equals(source.get("canceled"))) {
+            return "cancelled";
+        }
+        Object shipping = source.get("shipping_status");
+        if ("T".equals(shipping)) {
+            return "shipped";
+        }
+        if ("T".equals(source.get("paid"))) {
+            return "confirmed";
+        }
+        return "pending";
+    }
+
+    // Value helpers
+
+    private void putIfPresent(Map<String, Object> props, String key, Object value) {
+        if (value != null) {
+            props.put(key, value);
+        }
+    }
+
+    private Object nested(Map<String, Object> source, String key, String child) {
+        Object value = source.get(key);
+        return value instanceof Map<?, ?> map ? map.get(child) : null;
+    }
+
+    private Object firstNonNull(Object... values) {
+        for (Object value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private String firstText(Object... values) {
+        for (Object value : values) {
+            if (value instanceof List<?> list) {
+                value = list.isEmpty() ? null : list.get(0);
+            }
+            String text = text(value);
+            if (text != null) {
+                return text;
+            }
+        }
+        return null;
+    }
+
+    static String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.toString().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    static Double number(Object value) {
+        if (value instanceof Number n) {
+            return n.doubleValue();
+        }
+        String text = text(value);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(text.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Cafe24 timestamps look like 2024-05-01T13:20:11+09:00
+     */
+    static LocalDateTime dateTime(Object value) {
+        String text = text(value);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(text).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(text.replace(' ', 'T'));
+            } catch (DateTimeParseException e2) {
+                try {
+                    return LocalDate.parse(text).atStartOfDay();
+                } catch (DateTimeParseException e3) {
+                    return null;
+                }
+            }
+        }
+    }
+}
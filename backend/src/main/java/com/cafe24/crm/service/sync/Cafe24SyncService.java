@@ -0,0 +1,480 @@
+package com.cafe24.crm.service.sync;
+
+import com.cafe24.crm.client.Cafe24AdminClient;
+import com.cafe24.crm.client.Cafe24Resource;
+import com.cafe24.crm.domain.SyncCheckpoint;
+import com.cafe24.crm.dto.SyncStatusDTO;
+import com.cafe24.crm.repository.SyncCheckpointRepository;
+import com.cafe24.crm.service.metrics.CustomerMetricsCalculator;
+import com.cafe24.crm.support.MallKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cafe24 Sync Service
+ *
+ * Bulk-loads a mall's products, customers and orders from the Cafe24 Admin API
+ * into the CRM graph. Pages are fetched in parallel within each date window and
+ * written in large batches; a checkpoint is committed after every batch so an
+ * interrupted run resumes where it stopped. Delta runs re-fetch only records
+ * changed since the per-resource high-water mark.
+ */
+@Service
+@Slf4j
+public class Cafe24SyncService {
+
+    /**
+     * Products and customers first so that orders link to fully populated nodes
+     */
+    private static final List<Cafe24Resource> SYNC_ORDER =
+            List.of(Cafe24Resource.PRODUCTS, Cafe24Resource.CUSTOMERS, Cafe24Resource.ORDERS);
+
+    private final Cafe24AdminClient adminClient;
+    private final Cafe24RecordMapper recordMapper;
+    private final GraphBatchWriter graphBatchWriter;
+    private final CustomerMetricsCalculator customerMetricsCalculator;
+    private final SyncCheckpointRepository checkpointRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final int pageSize;
+    private final int batchSize;
+    private final int parallelism;
+    private final int windowDays;
+    private final LocalDate initialSince;
+    private final int deltaOverlapDays;
+
+    private final ConcurrentMap<String, SyncRun> runs = new ConcurrentHashMap<>();
+
+    public Cafe24SyncService(
+            Cafe24AdminClient adminClient,
+            Cafe24RecordMapper recordMapper,
+            GraphBatchWriter graphBatchWriter,
+            CustomerMetricsCalculator customerMetricsCalculator,
+            SyncCheckpointRepository checkpointRepository,
+            MeterRegistry meterRegistry,
+            @Value("${sync.page-size:100}") int pageSize,
+            @Value("${sync.batch-size:1000}") int batchSize,
+            @Value("${sync.parallelism:4}") int parallelism,
+            @Value("${sync.window-days:90}") int windowDays,
+            @Value("${sync.initial-since:2020-01-01}") LocalDate initialSince,
+            @Value("${sync.delta.overlap-days:1}") int deltaOverlapDays) {
+        this.adminClient = adminClient;
+        this.recordMapper = recordMapper;
+        this.graphBatchWriter = graphBatchWriter;
+        this.customerMetricsCalculator = customerMetricsCalculator;
+        this.checkpointRepository = checkpointRepository;
+        this.meterRegistry = meterRegistry;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.windowDays = windowDays;
+        this.initialSince = initialSince;
+        this.deltaOverlapDays = deltaOverlapDays;
+    }
+
+    /**
+     * Start a full sync in the background
+     *
+     * @param accessToken Cafe24 access token, or {@code null} for the mall's stored token
+     * @param restart ignore existing checkpoints and reload everything
+     * @throws IllegalStateException if a sync is already running for the mall
+     */
+    public SyncStatusDTO startFullSync(String mallId, String accessToken, boolean restart) {
+        SyncRun run = begin(mallId, "full");
+        log.info("Starting full Cafe24 sync for mall {} (restart: {})", mallId, restart);
+
+        Flux.fromIterable(SYNC_ORDER)
+                .concatMap(resource -> syncResource(mallId, accessToken, resource, restart, run))
+                .then()
+                .subscribe(
+                        unused -> { },
+                        error -> finish(mallId, run, error),
+                        () -> finish(mallId, run, null));
+
+        return getStatus(mallId);
+    }
+
+    /**
+     * Current status and checkpoints for a mall
+     */
+    public SyncStatusDTO getStatus(String mallId) {
+        SyncRun run = runs.get(mallId);
+        List<SyncStatusDTO.ResourceStatus> resources = checkpointRepository.findByMallId(mallId).stream()
+                .sorted(Comparator.comparing(SyncCheckpoint::getResource))
+                .map(cp -> SyncStatusDTO.ResourceStatus.builder()
+                        .resource(cp.getResource())
+                        .status(cp.getStatus())
+                        .windowStart(cp.getWindowStart())
+                        .nextOffset(cp.getNextOffset())
+                        .highWaterMark(cp.getHighWaterMark())
+                        .lastDeltaAt(cp.getLastDeltaAt())
+                        .recordsSynced(cp.getRecordsSynced())
+                        .updatedAt(cp.getUpdatedAt())
+                        .lastError(cp.getLastError())
+                        .build())
+                .toList();
+
+        SyncStatusDTO.SyncStatusDTOBuilder status = SyncStatusDTO.builder()
+                .mallId(mallId)
+                .running(run != null && run.finishedAt == null)
+                .resources(resources);
+
+        if (run != null) {
+            LocalDateTime end = run.finishedAt != null ? run.finishedAt : LocalDateTime.now();
+            double seconds = Math.max(Duration.between(run.startedAt, end).toMillis() / 1000.0, 0.001);
+            status.mode(run.mode)
+                    .startedAt(run.startedAt)
+                    .finishedAt(run.finishedAt)
+                    .recordsWritten(run.records.get())
+                    .recordsPerSecond(Math.round(run.records.get() / seconds * 10) / 10.0)
+                    .error(run.error);
+        }
+        return status.build();
+    }
+
+    /**
+     * Whether a sync is currently running for the mall
+     */
+    public boolean isRunning(String mallId) {
+        SyncRun run = runs.get(mallId);
+        return run != null && run.finishedAt == null;
+    }
+
+    // Run bookkeeping
+
+    SyncRun begin(String mallId, String mode) {
+        SyncRun run = new SyncRun(mode);
+        SyncRun existing = runs.merge(mallId, run,
+                (previous, next) -> previous.finishedAt == null ? previous : next);
+        if (existing != run) {
+            throw new IllegalStateException("A sync is already running for mall " + mallId);
+        }
+        return run;
+    }
+
+    void finish(String mallId, SyncRun run, Throwable error) {
+        run.finishedAt = LocalDateTime.now();
+        if (error != null) {
+            run.error = error.getMessage();
+            log.error("Cafe24 {} sync for mall {} failed after {} records: {}",
+                    run.mode, mallId, run.records.get(), error.getMessage(), error);
+        } else {
+            log.info("Cafe24 {} sync for mall {} finished: {} records", run.mode, mallId, run.records.get());
+        }
+    }
+
+    // Full sync
+
+    private Mono<Void> syncResource(String mallId, String accessToken, Cafe24Resource resource,
+                                    boolean restart, SyncRun run) {
+        return blocking(() -> loadCheckpoint(mallId, resource, restart))
+                .flatMap(checkpoint -> {
+                    if (SyncCheckpoint.STATUS_COMPLETED.equals(checkpoint.getStatus()) && !restart) {
+                        log.info("Skipping {} for mall {}: already completed", resource, mallId);
+                        return Mono.<Void>empty();
+                    }
+
+                    LocalDate resumeFrom = checkpoint.getWindowStart() != null
+                            ? checkpoint.getWindowStart() : initialSince;
+                    int resumeOffset = checkpoint.getNextOffset() != null ? checkpoint.getNextOffset() : 0;
+                    log.info("Syncing {} for mall {} from {} (offset {})", resource, mallId, resumeFrom, resumeOffset);
+
+                    AtomicReference<LocalDateTime> highWaterMark = new AtomicReference<>();
+                    return Flux.fromIterable(windows(resumeFrom, LocalDate.now()))
+                            .concatMap(window -> syncWindow(mallId, accessToken, resource, window,
+                                    window.from().equals(resumeFrom) ? resumeOffset : 0, false, checkpoint,
+                                    highWaterMark, run))
+                            .then(blocking(() -> {
+                                advanceHighWaterMark(checkpoint, highWaterMark.get());
+                                checkpoint.setStatus(SyncCheckpoint.STATUS_COMPLETED);
+                                checkpoint.setCompletedAt(LocalDateTime.now());
+                                checkpoint.setLastError(null);
+                                return checkpointRepository.save(checkpoint);
+                            }))
+                            .onErrorResume(error -> blocking(() -> {
+                                checkpoint.setStatus(SyncCheckpoint.STATUS_FAILED);
+                                checkpoint.setLastError(truncate(error.getMessage()));
+                                return checkpointRepository.save(checkpoint);
+                            }).then(Mono.error(error)))
+                            .then();
+                });
+    }
+
+    // Delta sync
+
+    /**
+     * Start a delta sync in the background
+     *
+     * Fetches only records changed since each resource's high-water mark
+     * (minus a small overlap for late writes) and upserts them; resources
+     * whose full sync has not completed are skipped.
+     *
+     * @param accessToken Cafe24 access token, or {@code null} for the mall's stored token
+     * @throws IllegalStateException if a sync is already running for the mall
+     */
+    public SyncStatusDTO startDeltaSync(String mallId, String accessToken) {
+        SyncRun run = begin(mallId, "delta");
+        log.info("Starting delta Cafe24 sync for mall {}", mallId);
+
+        Flux.fromIterable(SYNC_ORDER)
+                .concatMap(resource -> syncResourceDelta(mallId, accessToken, resource, run))
+                .then()
+                .subscribe(
+                        unused -> { },
+                        error -> finish(mallId, run, error),
+                        () -> finish(mallId, run, null));
+
+        return getStatus(mallId);
+    }
+
+    private Mono<Void> syncResourceDelta(String mallId, String accessToken, Cafe24Resource resource, SyncRun run) {
+        return blocking(() -> checkpointRepository.findByMallIdAndResource(mallId, resource.name()))
+                .flatMap(found -> {
+                    SyncCheckpoint checkpoint = found.orElse(null);
+                    if (checkpoint == null || !SyncCheckpoint.STATUS_COMPLETED.equals(checkpoint.getStatus())) {
+                        log.warn("Skipping delta of {} for mall {}: no completed full sync", resource, mallId);
+                        return Mono.<Void>empty();
+                    }
+
+                    LocalDate from = checkpoint.getHighWaterMark() != null
+                            ? checkpoint.getHighWaterMark().toLocalDate().minusDays(deltaOverlapDays)
+                            : initialSince;
+                    log.info("Delta syncing {} for mall {} changed since {}", resource, mallId, from);
+
+                    // The new mark is only persisted once every window is written; a run that
+                    // fails part-way must restart from the old mark or it would skip the rest
+                    AtomicReference<LocalDateTime> highWaterMark = new AtomicReference<>();
+                    return Flux.fromIterable(windows(from, LocalDate.now()))
+                            .concatMap(window -> syncWindow(mallId, accessToken, resource, window,
+                                    0, true, checkpoint, highWaterMark, run))
+                            .then(blocking(() -> {
+                                advanceHighWaterMark(checkpoint, highWaterMark.get());
+                                checkpoint.setLastDeltaAt(LocalDateTime.now());
+                                checkpoint.setLastError(null);
+                                return checkpointRepository.save(checkpoint);
+                            }))
+                            .onErrorResume(error -> blocking(() -> {
+                                // Only the error is recorded: status and mark are untouched, so the next delta repeats this one
+                                checkpoint.setLastError(truncate(error.getMessage()));
+                                return checkpointRepository.save(checkpoint);
+                            }).then(Mono.error(error)))
+                            .then();
+                });
+    }
+
+    // Shared window pipeline
+
+    private Mono<Void> syncWindow(String mallId, String accessToken, Cafe24Resource resource, Window window,
+                                  int startOffset, boolean delta, SyncCheckpoint checkpoint,
+                                  AtomicReference<LocalDateTime> highWaterMark, SyncRun run) {
+        int pagesPerBatch = Math.max(1, batchSize / pageSize);
+
+        return adminClient.count(mallId, accessToken, resource, window.from(), window.to(), delta)
+                .flatMapMany(total -> {
+                    int pages = (int) Math.max(0, (total - startOffset + pageSize - 1) / pageSize);
+                    log.debug("{} window {}..{} for mall {}: {} records, {} pages",
+                            resource, window.from(), window.to(), mallId, total, pages);
+                    return Flux.range(0, pages)
+                            .map(page -> startOffset + page * pageSize)
+                            .flatMapSequential(offset -> adminClient
+                                    .fetchPage(mallId, accessToken, resource, window.from(), window.to(),
+                                            delta, offset, pageSize)
+                                    .map(records -> new Page(offset, records)), parallelism);
+                })
+                .buffer(pagesPerBatch)
+                .concatMap(pages -> blocking(() -> {
+                    int written = writeBatch(mallId, resource, pages, highWaterMark, run);
+                    if (!delta) {
+                        Page last = pages.get(pages.size() - 1);
+                        checkpoint.setWindowStart(window.from());
+                        checkpoint.setNextOffset(last.offset() + pageSize);
+                    }
+                    checkpoint.setRecordsSynced(nullToZero(checkpoint.getRecordsSynced()) + written);
+                    return checkpointRepository.save(checkpoint);
+                }))
+                .then(delta ? Mono.<SyncCheckpoint>empty() : blocking(() -> {
+                    checkpoint.setWindowStart(window.to().plusDays(1));
+                    checkpoint.setNextOffset(0);
+                    return checkpointRepository.save(checkpoint);
+                }))
+                .then();
+    }
+
+    /**
+     * Map and write one batch of fetched pages
+     *
+     * Raises the run's pending high-water mark and, for orders, recomputes the
+     * derived metrics of the customers the batch touched.
+     */
+    int writeBatch(String mallId, Cafe24Resource resource, List<Page> pages,
+                   AtomicReference<LocalDateTime> highWaterMark, SyncRun run) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Page page : pages) {
+            for (Map<String, Object> record : page.records()) {
+                rows.add(map(mallId, resource, record));
+            }
+        }
+        rows.removeIf(Objects::isNull);
+
+        int written = graphBatchWriter.write(resource, rows);
+        run.records.addAndGet(written);
+        meterRegistry.counter("crm.sync.records", "mall", mallId, "resource", resource.name(), "mode", run.mode)
+                .increment(written);
+
+        if (resource == Cafe24Resource.ORDERS) {
+            Set<MallKey> customers = new HashSet<>();
+            for (Map<String, Object> row : rows) {
+                MallKey customer = MallKey.of(row, "customer_id");
+                if (customer != null) {
+                    customers.add(customer);
+                }
+            }
+            int recomputed = customerMetricsCalculator.recompute(customers);
+            meterRegistry.counter("crm.sync.customers.recomputed", "mall", mallId, "mode", run.mode)
+                    .increment(recomputed);
+        }
+
+        LocalDateTime batchMark = highWaterMark(rows);
+        if (batchMark != null) {
+            highWaterMark.accumulateAndGet(batchMark,
+                    (current, candidate) -> current == null || candidate.isAfter(current) ? candidate : current);
+        }
+        return written;
+    }
+
+    /**
+     * Move the checkpoint's high-water mark forward to a completed run's mark
+     */
+    private static void advanceHighWaterMark(SyncCheckpoint checkpoint, LocalDateTime highWaterMark) {
+        if (highWaterMark != null && (checkpoint.getHighWaterMark() == null
+                || highWaterMark.isAfter(checkpoint.getHighWaterMark()))) {
+            checkpoint.setHighWaterMark(highWaterMark);
+        }
+    }
+
+    /**
+     * Latest change timestamp in a batch: updated_at, falling back to created_at
+     */
+    private LocalDateTime highWaterMark(List<Map<String, Object>> rows) {
+        LocalDateTime max = null;
+        LocalDateTime now = LocalDateTime.now();
+        for (Map<String, Object> row : rows) {
+            if (!(row.get("props") instanceof Map<?, ?> props)) {
+                continue;
+            }
+            Object value = props.get("updated_at") != null ? props.get("updated_at") : props.get("created_at");
+            // Ignore future-dated records so a bad timestamp cannot make deltas skip real changes
+            if (value instanceof LocalDateTime timestamp && !timestamp.isAfter(now)
+                    && (max == null || timestamp.isAfter(max))) {
+                max = timestamp;
+            }
+        }
+        return max;
+    }
+
+    Map<String, Object> map(String mallId, Cafe24Resource resource, Map<String, Object> record) {
+        return switch (resource) {
+            case CUSTOMERS -> recordMapper.mapCustomer(mallId, record);
+            case PRODUCTS -> recordMapper.mapProduct(mallId, record);
+            case ORDERS -> recordMapper.mapOrder(mallId, record);
+        };
+    }
+
+    private SyncCheckpoint loadCheckpoint(String mallId, Cafe24Resource resource, boolean restart) {
+        SyncCheckpoint checkpoint = checkpointRepository.findByMallIdAndResource(mallId, resource.name())
+                .orElseGet(() -> SyncCheckpoint.builder()
+                        .mallId(mallId)
+                        .resource(resource.name())
+                        .recordsSynced(0L)
+                        .build());
+
+        if (restart) {
+            checkpoint.setWindowStart(null);
+            checkpoint.setNextOffset(0);
+            checkpoint.setRecordsSynced(0L);
+        }
+        if (restart || !SyncCheckpoint.STATUS_COMPLETED.equals(checkpoint.getStatus())) {
+            checkpoint.setStatus(SyncCheckpoint.STATUS_RUNNING);
+            checkpoint.setStartedAt(LocalDateTime.now());
+            checkpoint.setCompletedAt(null);
+        }
+        return checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Split [from, to] into consecutive windows of at most windowDays days (both ends inclusive)
+     */
+    List<Window> windows(LocalDate from, LocalDate to) {
+        List<Window> windows = new ArrayList<>();
+        LocalDate start = from;
+        while (!start.isAfter(to)) {
+            LocalDate end = start.plusDays(windowDays - 1L);
+            if (end.isAfter(to)) {
+                end = to;
+            }
+            windows.add(new Window(start, end));
+            start = end.plusDays(1);
+        }
+        return windows;
+    }
+
+    /**
+     * Run blocking JPA / Neo4j work off the reactor threads
+     */
+    <T> Mono<T> blocking(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private long nullToZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    record Window(LocalDate from, LocalDate to) {
+    }
+
+    record Page(int offset, List<Map<String, Object>> records) {
+    }
+
+    /**
+     * In-memory state of a running or finished sync
+     */
+    static class SyncRun {
+        final String mode;
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final AtomicLong records = new AtomicLong();
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+
+        SyncRun(String mode) {
+            this.mode = mode;
+        }
+    }
+}
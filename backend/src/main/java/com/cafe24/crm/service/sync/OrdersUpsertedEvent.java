@@ -0,0 +1,16 @@
+package com.cafe24.crm.service.sync;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Published by {@link GraphBatchWriter} after a batch of orders is committed.
+ *
+ * @param rows          the mapped order rows that were written
+ * @param affectedDates order dates of the batch, including the previous date of
+ *                      any order whose date changed
+ */
+public record OrdersUpsertedEvent(List<Map<String, Object>> rows, Set<LocalDate> affectedDates) {
+}
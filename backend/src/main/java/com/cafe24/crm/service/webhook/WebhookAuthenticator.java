@@ -0,0 +1,45 @@
+package com.cafe24.crm.service.webhook;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Checks that a webhook request comes from Cafe24.
+ *
+ * Cafe24 sends the key registered with the webhook in a request header. The
+ * key is compared in constant time. Without a configured key every request is
+ * rejected, so an unconfigured deployment never accepts anonymous writes.
+ */
+@Component
+@Slf4j
+public class WebhookAuthenticator {
+
+    private final String header;
+    private final byte[] key;
+
+    public WebhookAuthenticator(
+            @Value("${webhook.auth.header:X-Api-Key}") String header,
+            @Value("${webhook.auth.key:}") String key) {
+        this.header = header;
+        this.key = key.getBytes(StandardCharsets.UTF_8);
+        if (key.isBlank()) {
+            log.warn("webhook.auth.key is not set; all webhook requests will be rejected");
+        }
+    }
+
+    /**
+     * @return true if the request carries the configured webhook key
+     */
+    public boolean isAuthentic(HttpHeaders headers) {
+        String supplied = headers.getFirst(header);
+        if (key.length == 0 || supplied == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(key, supplied.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,22 @@
+package com.cafe24.crm.service.webhook;
+
+import com.cafe24.crm.client.Cafe24Resource;
+
+import java.util.Map;
+
+/**
+ * A Cafe24 webhook event accepted into the ingestion buffer.
+ *
+ * @param sequence   position in the local event log, increasing per process
+ * @param receivedAt receive time in epoch milliseconds
+ * @param mallId     mall that sent the event
+ * @param resource   resource the event's record belongs to
+ * @param record     the {@code resource} object of the webhook payload
+ */
+public record WebhookEvent(
+        long sequence,
+        long receivedAt,
+        String mallId,
+        Cafe24Resource resource,
+        Map<String, Object> record) {
+}
@@ -0,0 +1,210 @@
+package com.cafe24.crm.service.webhook;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Append-only local log of accepted webhook events.
+ *
+ * Every event is written here before it is acknowledged, and a separate offset
+ * file records the last sequence flushed to Neo4j. On startup everything past
+ * that offset is replayed.
+ *
+ * The log is split into segment files named after the lowest sequence they can
+ * hold. Appends go to the newest segment, which is rolled once it reaches
+ * {@code webhook.log.segment-bytes}. Each commit deletes the older segments
+ * whose events are all flushed, and empties the active one when nothing past
+ * the offset remains, so disk use stays bounded by the unflushed events plus
+ * one segment even if the flusher never fully catches up.
+ */
+@Component
+@Slf4j
+public class WebhookEventLog {
+
+    private static final String LEGACY_LOG_FILE = "events.log";
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String OFFSET_FILE = "events.offset";
+
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final Path offsetFile;
+    private final boolean fsync;
+    private final long segmentBytes;
+    /**
+     * Segments by the lowest sequence they can hold; the last entry is the active one
+     */
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel channel;
+
+    private long committedSequence;
+    private long lastSequence;
+
+    public WebhookEventLog(
+            ObjectMapper objectMapper,
+            @Value("${webhook.log.dir:./data/webhooks}") String directory,
+            @Value("${webhook.log.fsync:false}") boolean fsync,
+            @Value("${webhook.log.segment-bytes:16777216}") long segmentBytes) throws IOException {
+        this.objectMapper = objectMapper;
+        this.dir = Path.of(directory);
+        Files.createDirectories(dir);
+        this.offsetFile = dir.resolve(OFFSET_FILE);
+        this.fsync = fsync;
+        this.segmentBytes = segmentBytes;
+        this.committedSequence = readOffset();
+        this.lastSequence = committedSequence;
+
+        Path legacy = dir.resolve(LEGACY_LOG_FILE);
+        if (Files.exists(legacy)) {
+            // Single-file log from before segmenting; it sorts before every new segment
+            Files.move(legacy, segmentPath(0L), StandardCopyOption.ATOMIC_MOVE);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.put(segmentStart(file), file);
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(committedSequence + 1, segmentPath(committedSequence + 1));
+        }
+        this.channel = openActive();
+        log.info("Webhook event log at {} ({} segments, committed sequence {}, fsync {})",
+                dir, segments.size(), committedSequence, fsync);
+    }
+
+    /**
+     * Append an event. Without fsync the write reaches the OS page cache, which
+     * survives a process crash but not a host crash.
+     */
+    public synchronized void append(WebhookEvent event) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(event) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        lastSequence = Math.max(lastSequence, event.sequence());
+
+        if (channel.size() >= segmentBytes) {
+            roll();
+        }
+    }
+
+    /**
+     * Mark every event up to and including the sequence as flushed, and drop
+     * the segments that hold nothing newer
+     */
+    public synchronized void commit(long sequence) throws IOException {
+        if (sequence <= committedSequence) {
+            return;
+        }
+        Path tmp = offsetFile.resolveSibling(OFFSET_FILE + ".tmp");
+        Files.writeString(tmp, Long.toString(sequence), StandardCharsets.UTF_8);
+        Files.move(tmp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committedSequence = sequence;
+
+        // A closed segment ends just below the start of the next one
+        Long active = segments.lastKey();
+        Map.Entry<Long, Path> oldest;
+        while ((oldest = segments.firstEntry()) != null && !oldest.getKey().equals(active)
+                && segments.higherKey(oldest.getKey()) - 1 <= committedSequence) {
+            Files.deleteIfExists(oldest.getValue());
+            segments.pollFirstEntry();
+        }
+        if (committedSequence >= lastSequence) {
+            channel.truncate(0);
+        }
+    }
+
+    /**
+     * Events that were appended but never committed, in sequence order
+     */
+    public synchronized List<WebhookEvent> replay() throws IOException {
+        List<WebhookEvent> events = new ArrayList<>();
+        for (Path segment : segments.values()) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        WebhookEvent event = objectMapper.readValue(line, WebhookEvent.class);
+                        lastSequence = Math.max(lastSequence, event.sequence());
+                        if (event.sequence() > committedSequence) {
+                            events.add(event);
+                        }
+                    } catch (IOException e) {
+                        // A torn last line after a crash; the event was never acknowledged
+                        log.warn("Skipping unreadable webhook log entry in {}: {}", segment.getFileName(),
+                                e.getMessage());
+                    }
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Highest sequence ever appended, so new events continue after it
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void roll() throws IOException {
+        channel.close();
+        long start = lastSequence + 1;
+        segments.put(start, segmentPath(start));
+        channel = openActive();
+        log.debug("Rolled webhook event log to segment {}", start);
+    }
+
+    private FileChannel openActive() throws IOException {
+        return FileChannel.open(segments.lastEntry().getValue(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long start) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private long readOffset() throws IOException {
+        if (!Files.exists(offsetFile)) {
+            return 0L;
+        }
+        String text = Files.readString(offsetFile, StandardCharsets.UTF_8).trim();
+        return text.isEmpty() ? 0L : Long.parseLong(text);
+    }
+}
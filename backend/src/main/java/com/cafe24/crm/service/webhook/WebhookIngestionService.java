@@ -0,0 +1,366 @@
+package com.cafe24.crm.service.webhook;
+
+import com.cafe24.crm.client.Cafe24Resource;
+import com.cafe24.crm.service.metrics.CustomerMetricsCalculator;
+import com.cafe24.crm.support.MallKey;
+import com.cafe24.crm.service.sync.Cafe24RecordMapper;
+import com.cafe24.crm.service.sync.GraphBatchWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Webhook Ingestion Service
+ *
+ * Accepts Cafe24 webhook events into a bounded in-memory buffer, backed by the
+ * local {@link WebhookEventLog}, and writes them to Neo4j behind the request.
+ * A single flusher thread drains the buffer when it reaches the batch size or
+ * the flush interval elapses, coalesces events for the same record and upserts
+ * each batch in one transaction per resource.
+ */
+@Service
+@Slf4j
+public class WebhookIngestionService implements SmartLifecycle {
+
+    private static final List<Cafe24Resource> FLUSH_ORDER =
+            List.of(Cafe24Resource.PRODUCTS, Cafe24Resource.CUSTOMERS, Cafe24Resource.ORDERS);
+
+    private final WebhookEventLog eventLog;
+    private final Cafe24RecordMapper recordMapper;
+    private final GraphBatchWriter graphBatchWriter;
+    private final CustomerMetricsCalculator customerMetricsCalculator;
+    private final MeterRegistry meterRegistry;
+
+    private final ArrayBlockingQueue<WebhookEvent> buffer;
+    private final int batchSize;
+    private final Duration flushInterval;
+
+    private final Object appendLock = new Object();
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * Replayed events that have not been flushed yet; drained before the live buffer
+     */
+    private final Deque<WebhookEvent> backlog = new ConcurrentLinkedDeque<>();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public WebhookIngestionService(
+            WebhookEventLog eventLog,
+            Cafe24RecordMapper recordMapper,
+            GraphBatchWriter graphBatchWriter,
+            CustomerMetricsCalculator customerMetricsCalculator,
+            MeterRegistry meterRegistry,
+            @Value("${webhook.buffer-capacity:10000}") int bufferCapacity,
+            @Value("${webhook.batch-size:500}") int batchSize,
+            @Value("${webhook.flush-interval:2s}") Duration flushInterval) {
+        this.eventLog = eventLog;
+        this.recordMapper = recordMapper;
+        this.graphBatchWriter = graphBatchWriter;
+        this.customerMetricsCalculator = customerMetricsCalculator;
+        this.meterRegistry = meterRegistry;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+
+        meterRegistry.gauge("crm.webhook.buffer.size", buffer, ArrayBlockingQueue::size);
+    }
+
+    /**
+     * Accept a webhook payload
+     *
+     * @return false if the buffer is full and the event was not accepted
+     * @throws IllegalArgumentException if the payload is not a supported Cafe24 event
+     * @throws IOException if the event could not be written to the local log
+     */
+    public boolean accept(Map<String, Object> payload) throws IOException {
+        WebhookEvent event = classify(payload);
+
+        synchronized (appendLock) {
+            if (buffer.remainingCapacity() == 0) {
+                meterRegistry.counter("crm.webhook.events", "outcome", "rejected",
+                        "resource", event.resource().name()).increment();
+                return false;
+            }
+            WebhookEvent sequenced = new WebhookEvent(sequence.incrementAndGet(), event.receivedAt(),
+                    event.mallId(), event.resource(), event.record());
+            eventLog.append(sequenced);
+            // Only the flusher removes elements, so capacity checked above is still there
+            buffer.add(sequenced);
+        }
+
+        meterRegistry.counter("crm.webhook.events", "outcome", "accepted",
+                "resource", event.resource().name()).increment();
+        return true;
+    }
+
+    /**
+     * Events waiting to be flushed
+     */
+    public int getPendingCount() {
+        return buffer.size() + backlog.size();
+    }
+
+    WebhookEvent classify(Map<String, Object> payload) {
+        if (!(payload.get("resource") instanceof Map<?, ?> resourceObject)) {
+            throw new IllegalArgumentException("Webhook payload has no resource object");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> record = (Map<String, Object>) resourceObject;
+
+        String mallId = record.get("mall_id") != null ? record.get("mall_id").toString() : null;
+        if (mallId == null || mallId.isBlank()) {
+            throw new IllegalArgumentException("Webhook payload has no mall_id");
+        }
+
+        Cafe24Resource resource;
+        if (record.containsKey("order_id")) {
+            resource = Cafe24Resource.ORDERS;
+        } else if (record.containsKey("product_no")) {
+            resource = Cafe24Resource.PRODUCTS;
+        } else if (record.containsKey("member_id")) {
+            resource = Cafe24Resource.CUSTOMERS;
+        } else {
+            throw new IllegalArgumentException("Unsupported webhook event: " + payload.get("event_no"));
+        }
+        return new WebhookEvent(0L, System.currentTimeMillis(), mallId, resource, record);
+    }
+
+    // Flushing
+
+    private void runFlusher() {
+        while (running || !buffer.isEmpty() || !backlog.isEmpty()) {
+            List<WebhookEvent> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+            if (!flushWithRetry(batch)) {
+                // Shutting down with Neo4j unavailable; the log replays these on the next start
+                return;
+            }
+        }
+    }
+
+    /**
+     * Block until the first event arrives, then collect until the batch is full
+     * or the flush interval has passed since that first event
+     */
+    private List<WebhookEvent> nextBatch() throws InterruptedException {
+        List<WebhookEvent> batch = new ArrayList<>(batchSize);
+        if (!backlog.isEmpty()) {
+            while (batch.size() < batchSize && !backlog.isEmpty()) {
+                batch.add(backlog.poll());
+            }
+            return batch;
+        }
+
+        WebhookEvent first = buffer.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (batch.size() < batchSize) {
+            buffer.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                break;
+            }
+            WebhookEvent next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private boolean flushWithRetry(List<WebhookEvent> batch) {
+        long backoffMillis = 500;
+        while (true) {
+            try {
+                flush(batch);
+                return true;
+            } catch (Exception e) {
+                meterRegistry.counter("crm.webhook.flush.errors").increment();
+                log.error("Failed to flush {} webhook events, retrying in {} ms: {}",
+                        batch.size(), backoffMillis, e.getMessage(), e);
+                if (!running) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, 30_000);
+            }
+        }
+    }
+
+    /**
+     * Coalesce a batch per record and upsert it, then commit the log offset
+     */
+    void flush(List<WebhookEvent> batch) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        Map<Cafe24Resource, Map<String, Map<String, Object>>> rowsByResource = new HashMap<>();
+        long lastSequence = 0;
+        for (WebhookEvent event : batch) {
+            lastSequence = Math.max(lastSequence, event.sequence());
+            Map<String, Object> row = map(event);
+            if (row == null) {
+                continue;
+            }
+            String key = event.mallId() + ":" + row.get(keyField(event.resource()));
+            rowsByResource.computeIfAbsent(event.resource(), r -> new LinkedHashMap<>())
+                    .merge(key, row, WebhookIngestionService::coalesce);
+        }
+
+        int rows = 0;
+        for (Cafe24Resource resource : FLUSH_ORDER) {
+            Map<String, Map<String, Object>> coalesced = rowsByResource.get(resource);
+            if (coalesced == null) {
+                continue;
+            }
+            List<Map<String, Object>> resourceRows = new ArrayList<>(coalesced.values());
+            rows += graphBatchWriter.write(resource, resourceRows);
+
+            if (resource == Cafe24Resource.ORDERS) {
+                Set<MallKey> customers = new HashSet<>();
+                for (Map<String, Object> row : resourceRows) {
+                    MallKey customer = MallKey.of(row, "customer_id");
+                    if (customer != null) {
+                        customers.add(customer);
+                    }
+                }
+                customerMetricsCalculator.recompute(customers);
+            }
+        }
+
+        eventLog.commit(lastSequence);
+
+        sample.stop(meterRegistry.timer("crm.webhook.flush"));
+        meterRegistry.counter("crm.webhook.events.coalesced").increment(batch.size() - rows);
+        log.debug("Flushed {} webhook events as {} upserts (through sequence {})", batch.size(), rows, lastSequence);
+    }
+
+    private Map<String, Object> map(WebhookEvent event) {
+        return switch (event.resource()) {
+            case CUSTOMERS -> recordMapper.mapCustomer(event.mallId(), event.record());
+            case PRODUCTS -> recordMapper.mapProduct(event.mallId(), event.record());
+            case ORDERS -> recordMapper.mapOrder(event.mallId(), event.record());
+        };
+    }
+
+    private static String keyField(Cafe24Resource resource) {
+        return switch (resource) {
+            case CUSTOMERS -> "customer_id";
+            case PRODUCTS -> "product_id";
+            case ORDERS -> "order_id";
+        };
+    }
+
+    /**
+     * Later events win per property; keys and item lists are kept unless the later event has them
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> coalesce(Map<String, Object> earlier, Map<String, Object> later) {
+        Map<String, Object> merged = new HashMap<>(earlier);
+        Map<String, Object> props = new HashMap<>((Map<String, Object>) earlier.get("props"));
+        props.putAll((Map<String, Object>) later.get("props"));
+        merged.put("props", props);
+
+        later.forEach((key, value) -> {
+            if ("props".equals(key) || value == null) {
+                return;
+            }
+            if (value instanceof List<?> list && list.isEmpty()) {
+                return;
+            }
+            merged.put(key, value);
+        });
+        return merged;
+    }
+
+    // Lifecycle
+
+    /**
+     * Restore the sequence and the unflushed events before the bean is handed
+     * out; the web server takes requests before SmartLifecycle beans start, and
+     * an event accepted earlier would reuse a sequence already in the log
+     */
+    @PostConstruct
+    void restore() {
+        try {
+            List<WebhookEvent> replayed = eventLog.replay();
+            backlog.addAll(replayed);
+            sequence.set(eventLog.getLastSequence());
+            if (!replayed.isEmpty()) {
+                log.info("Replaying {} unflushed webhook events from the local log", replayed.size());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to replay webhook event log", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlusher, "webhook-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        try {
+            // Drain what is buffered; anything left over is replayed from the log on restart
+            flusher.join(flushInterval.toMillis() * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
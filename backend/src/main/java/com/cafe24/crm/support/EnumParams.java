@@ -0,0 +1,26 @@
+package com.cafe24.crm.support;
+
+import java.util.Locale;
+
+/**
+ * Parses request parameters into enums.
+ */
+public final class EnumParams {
+
+    private EnumParams() {
+    }
+
+    /**
+     * Parse a request parameter into one of the enums, case-insensitively
+     *
+     * @throws IllegalArgumentException for unknown values
+     */
+    public static <E extends Enum<E>> E parse(Class<E> type, String value) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + type.getSimpleName().toLowerCase(Locale.ROOT)
+                    + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.cafe24.crm.support;
+
+import com.cafe24.crm.repository.MallTokenRepository;
+import com.cafe24.crm.repository.SyncCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Malls the backend has actually seen: those with stored OAuth tokens or sync
+ * checkpoints.
+ *
+ * The X-Mall-Id header is client-controlled, so it is only trusted as a metric
+ * tag and cache key when it names one of these malls. The set is reloaded
+ * periodically and extended right away when a mall installs the app.
+ */
+@Component
+@Slf4j
+public class KnownMalls {
+
+    private final MallTokenRepository mallTokenRepository;
+    private final SyncCheckpointRepository syncCheckpointRepository;
+
+    private final Set<String> malls = ConcurrentHashMap.newKeySet();
+
+    public KnownMalls(MallTokenRepository mallTokenRepository, SyncCheckpointRepository syncCheckpointRepository) {
+        this.mallTokenRepository = mallTokenRepository;
+        this.syncCheckpointRepository = syncCheckpointRepository;
+    }
+
+    /**
+     * The mall if it is known, otherwise {@link MallContext#UNKNOWN}
+     */
+    public String resolve(String mallId) {
+        return mallId != null && malls.contains(mallId) ? mallId : MallContext.UNKNOWN;
+    }
+
+    /**
+     * Add a mall as soon as its tokens are stored, ahead of the next reload
+     */
+    public void register(String mallId) {
+        malls.add(mallId);
+    }
+
+    @Scheduled(fixedDelayString = "${mall.known.refresh-interval-ms:60000}")
+    public void reload() {
+        try {
+            Set<String> loaded = ConcurrentHashMap.newKeySet();
+            loaded.addAll(mallTokenRepository.findAllMallIds());
+            loaded.addAll(syncCheckpointRepository.findDistinctMallIds());
+            malls.addAll(loaded);
+            malls.retainAll(loaded);
+        } catch (Exception e) {
+            log.warn("Failed to reload known malls, keeping {}: {}", malls.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.cafe24.crm.support;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bridges the Guava futures returned by the Qdrant client into Reactor.
+ */
+public final class ListenableFutures {
+
+    private ListenableFutures() {
+    }
+
+    /**
+     * A Mono that completes with the future's result without blocking a thread
+     */
+    public static <T> Mono<T> toMono(ListenableFuture<T> future) {
+        CompletableFuture<T> completable = new CompletableFuture<>();
+        Futures.addCallback(future, new FutureCallback<>() {
+            @Override
+            public void onSuccess(T result) {
+                completable.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                completable.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return Mono.fromFuture(completable);
+    }
+}
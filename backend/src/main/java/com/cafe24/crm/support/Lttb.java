@@ -0,0 +1,71 @@
+package com.cafe24.crm.support;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling.
+ *
+ * Picks the points of a series that best preserve its visual shape: the first
+ * and last point are kept, and from each of the remaining buckets the point
+ * forming the largest triangle with the previously kept point and the average
+ * of the next bucket.
+ */
+public final class Lttb {
+
+    private Lttb() {
+    }
+
+    /**
+     * Indices of the points to keep, in ascending order
+     *
+     * @param x         strictly increasing x values
+     * @param y         y values, same length as x
+     * @param threshold number of points to keep; below 3 or at least x.length keeps all
+     */
+    public static int[] select(double[] x, double[] y, int threshold) {
+        int n = x.length;
+        if (threshold >= n || threshold < 3) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        double every = (double) (n - 2) / (threshold - 2);
+        int previous = 0;
+        selected[0] = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket, the third triangle vertex
+            int averageStart = (int) Math.floor((bucket + 1) * every) + 1;
+            int averageEnd = Math.min((int) Math.floor((bucket + 2) * every) + 1, n);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = averageStart; i < averageEnd; i++) {
+                averageX += x[i];
+                averageY += y[i];
+            }
+            int averageLength = averageEnd - averageStart;
+            averageX /= averageLength;
+            averageY /= averageLength;
+
+            int rangeStart = (int) Math.floor(bucket * every) + 1;
+            int rangeEnd = (int) Math.floor((bucket + 1) * every) + 1;
+            double maxArea = -1;
+            int chosen = rangeStart;
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                double area = Math.abs((x[previous] - averageX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (averageY - y[previous]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            selected[bucket + 1] = chosen;
+            previous = chosen;
+        }
+
+        selected[threshold - 1] = n - 1;
+        return selected;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cafe24.crm.support;
+
+/**
+ * Mall of the request being served on the current thread.
+ *
+ * Set by {@link MallContextFilter} from the X-Mall-Id header so that metrics
+ * and logs deeper in the call stack can be attributed to a mall. Only malls
+ * in {@link KnownMalls} are bound, so the value is safe as a metric tag.
+ */
+public final class MallContext {
+
+    public static final String UNKNOWN = "unknown";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private MallContext() {
+    }
+
+    /**
+     * Mall of the current request, or {@value #UNKNOWN}
+     */
+    public static String current() {
+        String mallId = CURRENT.get();
+        return mallId != null ? mallId : UNKNOWN;
+    }
+
+    public static void set(String mallId) {
+        CURRENT.set(mallId);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,50 @@
+package com.cafe24.crm.support;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Binds the mall of each request to {@link MallContext}.
+ *
+ * The mall comes from the X-Mall-Id header, falling back to a mallId query
+ * parameter. Only malls in {@link KnownMalls} are bound; anything else becomes
+ * {@link MallContext#UNKNOWN}, so a client cannot blow up metric tag cardinality
+ * by sending arbitrary ids.
+ */
+@Component
+public class MallContextFilter extends OncePerRequestFilter {
+
+    public static final String MALL_HEADER = "X-Mall-Id";
+
+    private static final Pattern MALL_ID = Pattern.compile("[a-z0-9][a-z0-9_-]{1,31}");
+
+    private final KnownMalls knownMalls;
+
+    public MallContextFilter(KnownMalls knownMalls) {
+        this.knownMalls = knownMalls;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String mallId = request.getHeader(MALL_HEADER);
+        if (mallId == null) {
+            mallId = request.getParameter("mallId");
+        }
+
+        MallContext.set(mallId != null && MALL_ID.matcher(mallId).matches()
+                ? knownMalls.resolve(mallId) : MallContext.UNKNOWN);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MallContext.clear();
+        }
+    }
+}
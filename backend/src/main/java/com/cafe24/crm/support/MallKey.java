@@ -0,0 +1,56 @@
+package com.cafe24.crm.support;
+
+import org.neo4j.driver.Record;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Identity of a customer, order or product node.
+ *
+ * Cafe24 member ids, order ids and product numbers are only unique within a
+ * mall, so graph nodes and the in-memory stores built from them are keyed by
+ * the mall and the business id together. The mall is null for nodes loaded by
+ * the seed scripts, which predate multi-mall sync.
+ */
+public record MallKey(String mallId, String id) {
+
+    /**
+     * Key of a mapped row or node properties carrying {@code mall_id} and the given id field
+     */
+    public static MallKey of(Map<?, ?> values, String idField) {
+        Object id = values.get(idField);
+        if (id == null) {
+            return null;
+        }
+        Object mallId = values.get("mall_id");
+        return new MallKey(mallId != null ? mallId.toString() : null, id.toString());
+    }
+
+    /**
+     * Key of a query result with a {@code mall_id} column and the given id column
+     */
+    public static MallKey of(Record record, String idColumn) {
+        return new MallKey(record.get("mall_id").isNull() ? null : record.get("mall_id").asString(),
+                record.get(idColumn).asString());
+    }
+
+    /**
+     * Cypher parameter {@code {mall_id, id}}; lookups match the mall with
+     * {@code coalesce(n.mall_id, '') = coalesce(key.mall_id, '')}
+     */
+    public Map<String, Object> toParameter() {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("mall_id", mallId);
+        parameter.put("id", id);
+        return parameter;
+    }
+
+    /**
+     * "mall:id", for maps and sketches keyed by string
+     */
+    @Override
+    public String toString() {
+        return mallId != null ? mallId + ":" + id : id;
+    }
+}
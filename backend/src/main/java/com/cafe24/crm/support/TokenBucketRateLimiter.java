@@ -0,0 +1,87 @@
+package com.cafe24.crm.support;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keyed Token Bucket Rate Limiter
+ *
+ * Generic cell rate algorithm (equivalent to a token bucket) with one bucket per key,
+ * e.g. per mall. Callers reserve a slot and are told how long to wait for it, so
+ * waiting never blocks a thread.
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final ConcurrentMap<String, AtomicLong> theoreticalArrival = new ConcurrentHashMap<>();
+
+    /**
+     * @param permitsPerSecond sustained rate
+     * @param burst            number of permits that may be taken back to back
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond must be > 0 and burst >= 1");
+        }
+        this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    /**
+     * Reserve the next permit for the key and return how long the caller must wait
+     */
+    public Duration reserve(String key) {
+        AtomicLong tat = theoreticalArrival.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            long allowAt = Math.max(current - toleranceNanos, now);
+            long next = Math.max(current, allowAt) + intervalNanos;
+            if (tat.compareAndSet(current, next)) {
+                return Duration.ofNanos(allowAt - now);
+            }
+        }
+    }
+
+    /**
+     * Take a permit only if one is available right now
+     */
+    public boolean tryAcquire(String key) {
+        AtomicLong tat = theoreticalArrival.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            if (current - toleranceNanos > now) {
+                return false;
+            }
+            if (tat.compareAndSet(current, Math.max(current, now) + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Complete once a permit for the key is available
+     */
+    public Mono<Void> acquire(String key) {
+        return Mono.defer(() -> {
+            Duration wait = reserve(key);
+            return wait.isZero() ? Mono.<Void>empty() : Mono.delay(wait).then();
+        });
+    }
+
+    /**
+     * Hold back all further permits for the key for at least the given duration,
+     * e.g. when the remote side reports that its own bucket is nearly full
+     */
+    public void pause(String key, Duration duration) {
+        AtomicLong tat = theoreticalArrival.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        long until = System.nanoTime() + duration.toNanos() + toleranceNanos;
+        tat.accumulateAndGet(until, Math::max);
+    }
+}
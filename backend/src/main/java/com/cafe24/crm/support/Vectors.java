@@ -0,0 +1,25 @@
+package com.cafe24.crm.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversions between the float[] embeddings returned by LiteLLM and the
+ * List&lt;Float&gt; vectors the Qdrant client expects.
+ */
+public final class Vectors {
+
+    private Vectors() {
+    }
+
+    /**
+     * Box an embedding for a Qdrant search or upsert
+     */
+    public static List<Float> boxed(float[] vector) {
+        List<Float> boxed = new ArrayList<>(vector.length);
+        for (float component : vector) {
+            boxed.add(component);
+        }
+        return boxed;
+    }
+}
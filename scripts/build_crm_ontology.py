@@ -63,12 +63,14 @@ def create_schema():
     print("\n📋 Creating schema (indexes and constraints)...")
 
     schema_queries = [
+        # Node ids; the same constraints the backend creates on startup
+        "CREATE CONSTRAINT crm_customer_node_id_unique IF NOT EXISTS FOR (c:CRM_Customer) REQUIRE c.id IS UNIQUE",
+        "CREATE CONSTRAINT crm_order_node_id_unique IF NOT EXISTS FOR (o:CRM_Order) REQUIRE o.id IS UNIQUE",
+        "CREATE CONSTRAINT crm_product_node_id_unique IF NOT EXISTS FOR (p:CRM_Product) REQUIRE p.id IS UNIQUE",
+
         # Indexes for CRM entities
-        "CREATE INDEX crm_customer_id IF NOT EXISTS FOR (c:CRM_Customer) ON (c.id)",
         "CREATE INDEX crm_customer_email IF NOT EXISTS FOR (c:CRM_Customer) ON (c.email)",
-        "CREATE INDEX crm_order_id IF NOT EXISTS FOR (o:CRM_Order) ON (o.id)",
         "CREATE INDEX crm_order_status IF NOT EXISTS FOR (o:CRM_Order) ON (o.status)",
-        "CREATE INDEX crm_product_id IF NOT EXISTS FOR (p:CRM_Product) ON (p.id)",
         "CREATE INDEX crm_campaign_id IF NOT EXISTS FOR (c:CRM_Campaign) ON (c.id)",
         "CREATE INDEX crm_segment_id IF NOT EXISTS FOR (s:CRM_Segment) ON (s.id)",
 